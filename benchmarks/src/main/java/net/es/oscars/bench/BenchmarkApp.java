@@ -0,0 +1,35 @@
+package net.es.oscars.bench;
+
+import net.es.oscars.CoreApp;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+/**
+ * The core application context without the web server, the scheduled tasks and the startup population,
+ * so that a benchmark only measures the calls it makes.
+ */
+@Configuration
+@ComponentScan(basePackages = "net.es.oscars",
+        excludeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = CoreApp.class))
+@EnableAutoConfiguration
+@EnableConfigurationProperties
+@EnableJpaRepositories(basePackages = "net.es.oscars")
+@EntityScan(basePackages = "net.es.oscars")
+public class BenchmarkApp {
+
+    public static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(BenchmarkApp.class)
+                .web(false)
+                .properties("spring.config.location=file:" + BenchmarkFiles.coreFile("config/application.properties"),
+                        "spring.jpa.show-sql=false",
+                        "logging.level.root=WARN")
+                .run();
+    }
+}
@@ -0,0 +1,29 @@
+package net.es.oscars.bench;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.UncheckedIOException;
+
+/**
+ * Locates files of the core module. Benchmarks may be started from the repository root or from the benchmarks
+ * directory; -Doscars.core.dir overrides both.
+ */
+public final class BenchmarkFiles {
+    private BenchmarkFiles() {
+    }
+
+    public static String coreFile(String path) {
+        String override = System.getProperty("oscars.core.dir");
+        String[] candidates = override != null
+                ? new String[]{override}
+                : new String[]{"core", "../core"};
+
+        for (String dir : candidates) {
+            File f = new File(dir, path);
+            if (f.exists()) {
+                return f.getAbsolutePath();
+            }
+        }
+        throw new UncheckedIOException(new FileNotFoundException(path + " not found; set -Doscars.core.dir"));
+    }
+}
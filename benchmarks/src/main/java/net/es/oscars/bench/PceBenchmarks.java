@@ -0,0 +1,91 @@
+package net.es.oscars.bench;
+
+import net.es.oscars.dto.topo.TopoEdge;
+import net.es.oscars.dto.topo.Topology;
+import net.es.oscars.helpers.VlanBitmap;
+import net.es.oscars.pce.*;
+import net.es.oscars.resv.ent.ReservedBlueprintE;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/**
+ * The PCE and resource availability hot paths, measured against a prepared PceState.
+ *
+ * Run with the GC profiler (see BenchmarkRunner) to get the allocation rate next to the throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@State(Scope.Thread)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PceBenchmarks {
+
+    private PruningService pruningService;
+    private DijkstraPCE dijkstraPCE;
+    private BhandariPCE bhandariPCE;
+    private VlanService vlanService;
+    private BandwidthService bandwidthService;
+    private TopPCE topPCE;
+    private TransactionTemplate rollbackTemplate;
+
+    @Setup(Level.Trial)
+    public void setup(PceState state) {
+        pruningService = state.context.getBean(PruningService.class);
+        dijkstraPCE = state.context.getBean(DijkstraPCE.class);
+        bhandariPCE = state.context.getBean(BhandariPCE.class);
+        vlanService = state.context.getBean(VlanService.class);
+        bandwidthService = state.context.getBean(BandwidthService.class);
+        topPCE = state.context.getBean(TopPCE.class);
+        rollbackTemplate = new TransactionTemplate(state.context.getBean(PlatformTransactionManager.class));
+    }
+
+    @Benchmark
+    public Topology pruneWithPipe(PceState state) {
+        return pruningService.pruneWithPipe(state.multilayer, state.pipe, state.bwAvailMap, state.reservedVlans);
+    }
+
+    @Benchmark
+    public List<TopoEdge> dijkstra(PceState state) {
+        return dijkstraPCE.computeShortestPathEdges(state.pruned, state.srcPort, state.dstPort);
+    }
+
+    @Benchmark
+    public List<List<TopoEdge>> bhandariDisjointPaths(PceState state) {
+        return bhandariPCE.computeDisjointPaths(state.mpls, state.srcDevice, state.dstDevice, 2);
+    }
+
+    @Benchmark
+    public Set<TopoEdge> findMaxValidEdgeSet(PceState state) {
+        return vlanService.findMaxValidEdgeSet(state.multilayer.getEdges(), state.urnMap, state.vlans,
+                state.availVlanMap);
+    }
+
+    @Benchmark
+    public Map<String, VlanBitmap> buildAvailableVlanIdMap(PceState state) {
+        return vlanService.buildAvailableVlanIdMap(state.urnMap, state.reservedVlans, state.portToDeviceMap);
+    }
+
+    @Benchmark
+    public BandwidthAvailabilityTable buildBandwidthAvailabilityMap(PceState state) {
+        return bandwidthService.buildBandwidthAvailabilityMapFromUrnList(state.reservedBandwidths, state.urns);
+    }
+
+    /**
+     * The whole computation for a single pipe. Runs in a transaction that is rolled back, so that the result is
+     * never committed to the reservation index and every invocation sees the same reservations.
+     */
+    @Benchmark
+    public Optional<ReservedBlueprintE> makeReserved(PceState state) {
+        return rollbackTemplate.execute(status -> {
+            status.setRollbackOnly();
+            try {
+                return topPCE.makeReserved(state.requested, state.schedule, new ArrayList<>());
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+    }
+}
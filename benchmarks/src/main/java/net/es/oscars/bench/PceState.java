@@ -0,0 +1,182 @@
+package net.es.oscars.bench;
+
+import net.es.oscars.dto.IntRange;
+import net.es.oscars.dto.spec.PalindromicType;
+import net.es.oscars.dto.spec.SurvivabilityType;
+import net.es.oscars.dto.topo.TopoVertex;
+import net.es.oscars.dto.topo.Topology;
+import net.es.oscars.dto.topo.enums.Layer;
+import net.es.oscars.helpers.RequestedEntityBuilder;
+import net.es.oscars.helpers.VlanBitmap;
+import net.es.oscars.pce.BandwidthAvailabilityTable;
+import net.es.oscars.pce.BandwidthService;
+import net.es.oscars.pce.PruningService;
+import net.es.oscars.pce.VlanService;
+import net.es.oscars.resv.dao.ReservedBandwidthRepository;
+import net.es.oscars.resv.dao.ReservedVlanRepository;
+import net.es.oscars.resv.ent.*;
+import net.es.oscars.topo.ent.UrnE;
+import net.es.oscars.topo.pop.TopoFileImporter;
+import net.es.oscars.topo.svc.TopoService;
+import net.es.oscars.topo.svc.TopoSnapshot;
+import net.es.oscars.topo.svc.TopoSnapshotService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * One application context per trial, with the requested topology imported and the requested number of
+ * reservations overlapping the benchmark request. Everything a measured call needs is prepared here.
+ */
+@State(Scope.Benchmark)
+public class PceState {
+
+    /**
+     * "esnet", or "synthetic-N" for a generated network of N routers.
+     */
+    @Param({"esnet", "synthetic-100", "synthetic-400"})
+    public String topology;
+
+    @Param({"0", "1000", "10000"})
+    public int reservations;
+
+    public ConfigurableApplicationContext context;
+
+    public RequestedBlueprintE requested;
+    public ScheduleSpecificationE schedule;
+    public RequestedVlanPipeE pipe;
+
+    public Topology multilayer;
+    public Topology mpls;
+    public Topology pruned;
+    public TopoVertex srcPort;
+    public TopoVertex dstPort;
+    public TopoVertex srcDevice;
+    public TopoVertex dstDevice;
+
+    public List<UrnE> urns;
+    public Map<String, UrnE> urnMap;
+    public Map<String, String> portToDeviceMap;
+    public List<ReservedBandwidthE> reservedBandwidths;
+    public List<ReservedVlanE> reservedVlans;
+    public BandwidthAvailabilityTable bwAvailMap;
+    public Map<String, VlanBitmap> availVlanMap;
+    public List<IntRange> vlans;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        context = BenchmarkApp.start();
+
+        String aPort;
+        String zPort;
+        if (topology.equals("esnet")) {
+            context.getBean(TopoFileImporter.class).importFromFile(true,
+                    BenchmarkFiles.coreFile("config/topo/esnet-devices.json"),
+                    BenchmarkFiles.coreFile("config/topo/esnet-adjcies.json"));
+            aPort = "chic-cr5:3/2/1";
+            zPort = "lond-cr5:10/1/4";
+        } else if (topology.startsWith("synthetic-")) {
+            int routers = Integer.parseInt(topology.substring("synthetic-".length()));
+            File dir = Files.createTempDirectory("oscars-bench").toFile();
+            String[] files = new SyntheticTopology(routers, 42L).write(dir);
+            context.getBean(TopoFileImporter.class).importFromFile(true, files[0], files[1]);
+            aPort = SyntheticTopology.edgePort(0, 0);
+            zPort = SyntheticTopology.edgePort(routers / 2, 0);
+        } else {
+            throw new IllegalArgumentException("unknown topology " + topology);
+        }
+
+        TopoService topoService = context.getBean(TopoService.class);
+        TopoSnapshot snapshot = context.getBean(TopoSnapshotService.class).current();
+        urns = snapshot.getUrns();
+        urnMap = urns.stream().collect(Collectors.toMap(UrnE::getUrn, u -> u));
+        portToDeviceMap = topoService.buildPortToDeviceMap(topoService.buildDeviceToPortMap().getMap());
+        String aDevice = portToDeviceMap.get(aPort);
+        String zDevice = portToDeviceMap.get(zPort);
+
+        Instant start = Instant.now().plus(1, ChronoUnit.HOURS);
+        Instant end = start.plus(1, ChronoUnit.HOURS);
+        seed(start, end);
+
+        RequestedEntityBuilder builder = context.getBean(RequestedEntityBuilder.class);
+        requested = builder.buildRequest(aPort, aDevice, zPort, zDevice, 25, 25,
+                PalindromicType.PALINDROME, SurvivabilityType.SURVIVABILITY_NONE, "any", 1, 1, 1, "bench");
+        schedule = builder.buildSchedule(Date.from(start), Date.from(end));
+        pipe = requested.getVlanFlow().getPipes().iterator().next();
+
+        BandwidthService bandwidthService = context.getBean(BandwidthService.class);
+        VlanService vlanService = context.getBean(VlanService.class);
+        reservedBandwidths = bandwidthService.getReservedBandwidthFromRepo(Date.from(start), Date.from(end));
+        reservedVlans = vlanService.getReservedVlansFromRepo(Date.from(start), Date.from(end));
+        bwAvailMap = bandwidthService.buildBandwidthAvailabilityMapFromUrnList(reservedBandwidths, urns);
+        availVlanMap = vlanService.buildAvailableVlanIdMap(urnMap, reservedVlans, portToDeviceMap);
+        vlans = vlanService.getIntRangesFromString("any");
+
+        multilayer = topoService.getMultilayerTopology();
+        mpls = topoService.layer(Layer.MPLS);
+        pruned = context.getBean(PruningService.class)
+                .pruneWithPipe(multilayer, pipe, bwAvailMap, reservedVlans);
+        srcPort = multilayer.getVertexByUrn(aPort).orElseThrow(NoSuchElementException::new);
+        dstPort = multilayer.getVertexByUrn(zPort).orElseThrow(NoSuchElementException::new);
+        srcDevice = mpls.getVertexByUrn(aDevice).orElseThrow(NoSuchElementException::new);
+        dstDevice = mpls.getVertexByUrn(zDevice).orElseThrow(NoSuchElementException::new);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    /**
+     * Reserve random bandwidth on random ports, and random VLANs on random edge ports, all overlapping the
+     * benchmark schedule so that availability calculations have to account for them.
+     */
+    private void seed(Instant start, Instant end) {
+        if (reservations == 0) {
+            return;
+        }
+        Random random = new Random(7L);
+        List<String> bwPorts = urns.stream()
+                .filter(u -> u.getReservableBandwidth() != null)
+                .map(UrnE::getUrn)
+                .collect(Collectors.toList());
+        List<String> vlanPorts = urns.stream()
+                .filter(u -> u.getReservableVlans() != null)
+                .map(UrnE::getUrn)
+                .collect(Collectors.toList());
+
+        List<ReservedBandwidthE> bandwidths = new ArrayList<>();
+        List<ReservedVlanE> vlanList = new ArrayList<>();
+        for (int i = 0; i < reservations; i++) {
+            Instant beginning = start.minus(random.nextInt(60), ChronoUnit.MINUTES);
+            Instant ending = end.plus(random.nextInt(60), ChronoUnit.MINUTES);
+            String connectionId = "seed-" + i;
+            bandwidths.add(ReservedBandwidthE.builder()
+                    .urn(bwPorts.get(random.nextInt(bwPorts.size())))
+                    .containerConnectionId(connectionId)
+                    .inBandwidth(1 + random.nextInt(5))
+                    .egBandwidth(1 + random.nextInt(5))
+                    .beginning(beginning)
+                    .ending(ending)
+                    .build());
+            if (!vlanPorts.isEmpty()) {
+                vlanList.add(ReservedVlanE.builder()
+                        .urn(vlanPorts.get(random.nextInt(vlanPorts.size())))
+                        .vlan(2000 + random.nextInt(1000))
+                        .beginning(beginning)
+                        .ending(ending)
+                        .build());
+            }
+        }
+        context.getBean(ReservedBandwidthRepository.class).save(bandwidths);
+        context.getBean(ReservedVlanRepository.class).save(vlanList);
+    }
+}
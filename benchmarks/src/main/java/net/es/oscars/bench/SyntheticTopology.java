@@ -0,0 +1,117 @@
+package net.es.oscars.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Writes device and adjacency files in the format of config/topo, for a network of a given number of routers.
+ *
+ * Routers are connected in a ring, plus a chord from every fourth router to a random other one, so that there are
+ * several disjoint paths between most router pairs. Every router has two Ethernet edge ports.
+ */
+public class SyntheticTopology {
+    public static final int EDGE_PORTS = 2;
+
+    private final int routers;
+    private final Random random;
+
+    public SyntheticTopology(int routers, long seed) {
+        if (routers < 3) {
+            throw new IllegalArgumentException("need at least three routers for a ring");
+        }
+        this.routers = routers;
+        this.random = new Random(seed);
+    }
+
+    public static String device(int i) {
+        return "syn-rt" + i;
+    }
+
+    public static String edgePort(int i, int port) {
+        return device(i) + ":eth-" + port;
+    }
+
+    /**
+     * @param dir - Directory to write to
+     * @return The devices and adjacencies file names
+     */
+    public String[] write(File dir) throws IOException {
+        List<int[]> links = new ArrayList<>();
+        for (int i = 0; i < routers; i++) {
+            links.add(new int[]{i, (i + 1) % routers});
+        }
+        for (int i = 0; i < routers; i += 4) {
+            int j = random.nextInt(routers);
+            if (j != i && j != (i + 1) % routers && i != (j + 1) % routers) {
+                links.add(new int[]{i, j});
+            }
+        }
+
+        List<List<Map<String, Object>>> ifces = new ArrayList<>();
+        for (int i = 0; i < routers; i++) {
+            List<Map<String, Object>> routerIfces = new ArrayList<>();
+            for (int p = 0; p < EDGE_PORTS; p++) {
+                Map<String, Object> ifce = new LinkedHashMap<>();
+                ifce.put("urn", edgePort(i, p));
+                ifce.put("reservableBw", 10000);
+                ifce.put("capabilities", Collections.singletonList("ETHERNET"));
+                Map<String, Object> range = new LinkedHashMap<>();
+                range.put("floor", 2000);
+                range.put("ceiling", 2999);
+                ifce.put("reservableVlans", Collections.singletonList(range));
+                routerIfces.add(ifce);
+            }
+            ifces.add(routerIfces);
+        }
+
+        List<Map<String, Object>> adjcies = new ArrayList<>();
+        for (int[] link : links) {
+            String a = device(link[0]) + ":mpls-" + ifces.get(link[0]).size();
+            String z = device(link[1]) + ":mpls-" + ifces.get(link[1]).size();
+            ifces.get(link[0]).add(mplsIfce(a));
+            ifces.get(link[1]).add(mplsIfce(z));
+
+            int metric = 1 + random.nextInt(10);
+            adjcies.add(adjcy(a, z, metric));
+            adjcies.add(adjcy(z, a, metric));
+        }
+
+        List<Map<String, Object>> devices = new ArrayList<>();
+        for (int i = 0; i < routers; i++) {
+            Map<String, Object> device = new LinkedHashMap<>();
+            device.put("urn", device(i));
+            device.put("capabilities", Arrays.asList("ETHERNET", "MPLS"));
+            device.put("reservableVlans", Collections.emptyList());
+            device.put("model", i % 2 == 0 ? "JUNIPER_MX" : "ALCATEL_SR7750");
+            device.put("type", "ROUTER");
+            device.put("ifces", ifces.get(i));
+            devices.add(device);
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+        File devicesFile = new File(dir, "synthetic" + routers + "-devices.json");
+        File adjciesFile = new File(dir, "synthetic" + routers + "-adjcies.json");
+        mapper.writeValue(devicesFile, devices);
+        mapper.writeValue(adjciesFile, adjcies);
+        return new String[]{devicesFile.getAbsolutePath(), adjciesFile.getAbsolutePath()};
+    }
+
+    private static Map<String, Object> mplsIfce(String urn) {
+        Map<String, Object> ifce = new LinkedHashMap<>();
+        ifce.put("urn", urn);
+        ifce.put("reservableBw", 10000);
+        ifce.put("capabilities", Collections.singletonList("MPLS"));
+        return ifce;
+    }
+
+    private static Map<String, Object> adjcy(String a, String z, int metric) {
+        Map<String, Object> adjcy = new LinkedHashMap<>();
+        adjcy.put("a", a);
+        adjcy.put("z", z);
+        adjcy.put("metrics", Collections.singletonMap("MPLS", metric));
+        return adjcy;
+    }
+}
@@ -3,8 +3,8 @@ package net.es.oscars.acct.rest;
 import lombok.extern.slf4j.Slf4j;
 import net.es.oscars.acct.ent.CustomerE;
 import net.es.oscars.acct.svc.CustService;
+import net.es.oscars.acct.svc.CustomerMapper;
 import net.es.oscars.dto.acct.Customer;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
@@ -25,8 +25,6 @@ public class AcctController {
 
     private CustService custService;
 
-    private ModelMapper modelMapper = new ModelMapper();
-
     @ExceptionHandler(NoSuchElementException.class)
     @ResponseStatus(value = HttpStatus.NOT_FOUND)
     public void handleResourceNotFoundException(NoSuchElementException ex) {
@@ -82,11 +80,11 @@ public class AcctController {
     }
 
     private CustomerE convertToEnt(Customer dtoCustomer) {
-        return modelMapper.map(dtoCustomer, CustomerE.class);
+        return CustomerMapper.toEntity(dtoCustomer);
     }
 
     private Customer convertToDto(CustomerE customerE) {
-        return modelMapper.map(customerE, Customer.class);
+        return CustomerMapper.toDto(customerE);
     }
 
 }
\ No newline at end of file
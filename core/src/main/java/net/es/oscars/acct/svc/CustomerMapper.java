@@ -0,0 +1,41 @@
+package net.es.oscars.acct.svc;
+
+import net.es.oscars.acct.ent.CustomerE;
+import net.es.oscars.dto.acct.Customer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/**
+ * Copies customers between their entity and DTO; see ConnectionMapper.
+ */
+public class CustomerMapper {
+
+    public static Customer toDto(CustomerE e) {
+        if (e == null) {
+            return null;
+        }
+        Customer c = new Customer();
+        if (e.getName() != null) {
+            c.setName(e.getName());
+        }
+        if (e.getProjects() != null) {
+            c.setProjects(new ArrayList<>(e.getProjects()));
+        }
+        return c;
+    }
+
+    public static CustomerE toEntity(Customer c) {
+        if (c == null) {
+            return null;
+        }
+        CustomerE e = new CustomerE();
+        if (c.getName() != null) {
+            e.setName(c.getName());
+        }
+        if (c.getProjects() != null) {
+            e.setProjects(new HashSet<>(c.getProjects()));
+        }
+        return e;
+    }
+}
@@ -3,9 +3,9 @@ package net.es.oscars.authnz.rest;
 import lombok.extern.slf4j.Slf4j;
 import net.es.oscars.authnz.dao.UserRepository;
 import net.es.oscars.authnz.ent.EUser;
+import net.es.oscars.authnz.svc.UserMapper;
 import net.es.oscars.dto.auth.Permissions;
 import net.es.oscars.dto.auth.User;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
@@ -27,8 +27,6 @@ public class UserController {
 
     private UserRepository userRepo;
 
-    private ModelMapper modelMapper = new ModelMapper();
-
 
     @ExceptionHandler(NoSuchElementException.class)
     @ResponseStatus(value = HttpStatus.NOT_FOUND)
@@ -131,12 +129,12 @@ public class UserController {
         if (dtoUser.getPermissions() == null) {
             dtoUser.setPermissions(new Permissions());
         }
-        EUser EUser = modelMapper.map(dtoUser, EUser.class);
+        EUser EUser = UserMapper.toEntity(dtoUser);
         return EUser;
     }
 
     private User convertToDto(EUser eUser) {
-        User dtoUser = modelMapper.map(eUser, User.class);
+        User dtoUser = UserMapper.toDto(eUser);
         return dtoUser;
     }
 }
\ No newline at end of file
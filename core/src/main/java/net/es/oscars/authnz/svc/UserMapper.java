@@ -0,0 +1,78 @@
+package net.es.oscars.authnz.svc;
+
+import net.es.oscars.authnz.ent.EPermissions;
+import net.es.oscars.authnz.ent.EUser;
+import net.es.oscars.dto.auth.Permissions;
+import net.es.oscars.dto.auth.User;
+
+/**
+ * Copies users and their permissions between their entities and DTOs; see ConnectionMapper.
+ */
+public class UserMapper {
+
+    public static User toDto(EUser e) {
+        if (e == null) {
+            return null;
+        }
+        User u = new User();
+        if (e.getUsername() != null) {
+            u.setUsername(e.getUsername());
+        }
+        if (e.getPassword() != null) {
+            u.setPassword(e.getPassword());
+        }
+        u.setCertIssuer(e.getCertIssuer());
+        u.setCertSubject(e.getCertSubject());
+        u.setFullName(e.getFullName());
+        u.setEmail(e.getEmail());
+        u.setInstitution(e.getInstitution());
+        u.setPermissions(toDto(e.getPermissions()));
+        return u;
+    }
+
+    public static EUser toEntity(User u) {
+        if (u == null) {
+            return null;
+        }
+        EUser e = new EUser();
+        if (u.getUsername() != null) {
+            e.setUsername(u.getUsername());
+        }
+        if (u.getPassword() != null) {
+            e.setPassword(u.getPassword());
+        }
+        e.setCertIssuer(u.getCertIssuer());
+        e.setCertSubject(u.getCertSubject());
+        e.setFullName(u.getFullName());
+        e.setEmail(u.getEmail());
+        e.setInstitution(u.getInstitution());
+        e.setPermissions(toEntity(u.getPermissions()));
+        return e;
+    }
+
+    private static Permissions toDto(EPermissions e) {
+        if (e == null) {
+            return null;
+        }
+        Permissions p = new Permissions();
+        p.setMaxMbpsPerReservation(e.getMaxMbpsPerReservation());
+        p.setMaxMinutesPerReservation(e.getMaxMinutesPerReservation());
+        p.setCallSoapAllowed(e.isCallSoapAllowed());
+        p.setPathSpecAllowed(e.isPathSpecAllowed());
+        p.setAdminAllowed(e.isAdminAllowed());
+        return p;
+    }
+
+    private static EPermissions toEntity(Permissions p) {
+        if (p == null) {
+            return null;
+        }
+        EPermissions e = new EPermissions();
+        e.setMaxMbpsPerReservation(p.getMaxMbpsPerReservation());
+        e.setMaxMinutesPerReservation(p.getMaxMinutesPerReservation());
+        e.setCallSoapAllowed(p.isCallSoapAllowed());
+        e.setPathSpecAllowed(p.isPathSpecAllowed());
+        e.setAdminAllowed(p.isAdminAllowed());
+        return e;
+    }
+}
@@ -1,8 +1,5 @@
 package net.es.oscars.bwavail.svc;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.es.oscars.dto.bwavail.BandwidthAvailabilityRequest;
 import net.es.oscars.dto.bwavail.BandwidthAvailabilityResponse;
@@ -19,12 +16,12 @@ import net.es.oscars.helpers.ReservedEntityDecomposer;
 import net.es.oscars.pce.*;
 import net.es.oscars.pce.exc.PCEException;
 import net.es.oscars.pss.PSSException;
-import net.es.oscars.resv.dao.ReservedBandwidthRepository;
 import net.es.oscars.resv.ent.*;
-import net.es.oscars.topo.dao.UrnRepository;
+import net.es.oscars.resv.svc.ReservedResourceIndex;
 import net.es.oscars.topo.ent.BidirectionalPathE;
 import net.es.oscars.topo.ent.UrnE;
 import net.es.oscars.topo.svc.TopoService;
+import net.es.oscars.topo.svc.TopoSnapshotService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -40,7 +37,7 @@ public class BandwidthAvailabilityService {
     private TopPCE topPCE;
 
     @Autowired
-    private ReservedBandwidthRepository bwRepo;
+    private ReservedResourceIndex resvIndex;
 
     @Autowired
     private RequestedEntityBuilder entityBuilder;
@@ -49,7 +46,7 @@ public class BandwidthAvailabilityService {
     private ReservedEntityDecomposer entityDecomposer;
 
     @Autowired
-    private UrnRepository urnRepo;
+    private TopoSnapshotService topoSnapshotService;
 
     @Autowired
     private TopoService topoService;
@@ -156,18 +153,14 @@ public class BandwidthAvailabilityService {
             String zaPathName = "Za" + pathNum;
             pathNum++;
 
-            // Retrieve the reserved bandwidths that overlap with the given start and end time
-            Optional<List<ReservedBandwidthE>> optRsvList = bwRepo.findOverlappingInterval(
-                    request.getStartDate().toInstant(), request.getEndDate().toInstant());
-
-            List<ReservedBandwidthE> rsvList = new ArrayList<>();
-
-            if (optRsvList.isPresent())
-                rsvList.addAll(optRsvList.get());
-            // Filter out the reservations that do not involve this request's URNs
+            // Retrieve the reserved bandwidths on this request's URNs that overlap with the given start and end time
             Set<String> allElements = new HashSet<>(azPath);
             allElements.addAll(zaPath);
-            rsvList = rsvList.stream().filter(rsv -> allElements.contains(rsv.getUrn())).collect(Collectors.toList());
+            List<ReservedBandwidthE> rsvList = new ArrayList<>();
+            for (String element : allElements) {
+                rsvList.addAll(resvIndex.overlappingBandwidths(element,
+                        request.getStartDate().toInstant(), request.getEndDate().toInstant()));
+            }
 
             // Build a map from those reservations
             Map<String, List<ReservedBandwidthE>> rsvMap = bwService.buildReservedBandwidthMap(rsvList);
@@ -404,19 +397,29 @@ public class BandwidthAvailabilityService {
         // All URNs used in the URN tables
         Set<String> urns = urnTables.values().stream().map(Map::keySet).flatMap(Collection::stream).collect(Collectors.toSet());
 
-        // Sorted list of bandwidth events.
-        List<BwEvent> bwEvents = abstractEvents(rsvMap);
+        // Bandwidth events: the begin and end of each reservation, in time order.
+        List<ReservedBandwidthE> rsvList = rsvMap.values().stream().flatMap(Collection::stream).collect(Collectors.toList());
+        int numRsv = rsvList.size();
+        long[] begins = new long[numRsv];
+        long[] ends = new long[numRsv];
+        for (int i = 0; i < numRsv; i++) {
+            begins[i] = BandwidthSweep.key(rsvList.get(i).getBeginning());
+            ends[i] = BandwidthSweep.key(rsvList.get(i).getEnding());
+        }
+        int[] bwEvents = BandwidthSweep.timeline(begins, ends, numRsv);
+        long startKey = BandwidthSweep.key(start);
+        long endKey = BandwidthSweep.key(end);
 
         // Initialize each URN's available bandwidth to max supported.
         for (String urn : urns) {
-            UrnE urn_e = urnRepo.findByUrn(urn).orElseThrow(NoSuchElementException::new);
+            UrnE urn_e = topoSnapshotService.current().getUrn(urn).orElseThrow(NoSuchElementException::new);
             curUrnBw.get(INGRESS).put(urn, urn_e.getReservableBandwidth().getIngressBw());
             curUrnBw.get(EGRESS).put(urn, urn_e.getReservableBandwidth().getEgressBw());
         }
 
         // Handle case with no bandwidth events.
         //log.info("BW Events: " + bwEvents);
-        if (bwEvents.isEmpty()) {
+        if (bwEvents.length == 0) {
             for (String path : bwMaps.keySet()) {
                 Integer min = findMin(urns, curUrnBw, urnTables, path);
                 // NOTE: puts a data point in for both the start and the end
@@ -427,20 +430,25 @@ public class BandwidthAvailabilityService {
 
         Instant previousTime = null;
         // Loop through bandwidth events.
-        for (Integer eventIndex = 0; eventIndex < bwEvents.size(); eventIndex++) {
-            BwEvent bwEvent = bwEvents.get(eventIndex);
-            Instant currentTime = bwEvent.getTime();
+        for (int eventIndex = 0; eventIndex < bwEvents.length; eventIndex++) {
+            int bwEvent = bwEvents[eventIndex];
+            boolean isBegin = bwEvent >= 0;
+            ReservedBandwidthE rsv = rsvList.get(isBegin ? bwEvent : ~bwEvent);
+            Instant currentTime = isBegin ? rsv.getBeginning() : rsv.getEnding();
+            long currentKey = eventTime(bwEvent, begins, ends);
+            boolean lastEvent = eventIndex == bwEvents.length - 1;
+            long nextKey = lastEvent ? Long.MAX_VALUE : eventTime(bwEvents[eventIndex + 1], begins, ends);
             // Event is before start of interval.
-            if (!currentTime.isAfter(start)) {
+            if (currentKey <= startKey) {
                 // Update available bandwidths.
-                updateAvailableBw(curUrnBw, bwEvent);
+                updateAvailableBw(curUrnBw, rsv, isBegin);
                 // If this is the last event, or if the next event is after the start time, update the bandwidth map
-                if (eventIndex == bwEvents.size() - 1 || bwEvents.get(eventIndex + 1).getTime().isAfter(start)) {
+                if (lastEvent || nextKey > startKey) {
                     for (String path : bwMaps.keySet()) {
                         Integer min = findMin(urns, curUrnBw, urnTables, path);
                         bwMaps.get(path).put(start, min);
                         // If this is the last event, add a point for the end
-                        if (eventIndex == bwEvents.size() - 1) {
+                        if (lastEvent) {
                             bwMaps.get(path).put(end, min);
                         }
                     }
@@ -448,7 +456,7 @@ public class BandwidthAvailabilityService {
             }
 
             // Event is in interval of interest.
-            else if (currentTime.isAfter(start) && !currentTime.isAfter(end)) {
+            else if (currentKey <= endKey) {
                 // If this is the first event, then create a starting point
                 if (eventIndex == 0) {
                     for (String path : bwMaps.keySet()) {
@@ -457,14 +465,14 @@ public class BandwidthAvailabilityService {
                     }
                 }
                 // Update available bandwidths.
-                updateAvailableBw(curUrnBw, bwEvent);
+                updateAvailableBw(curUrnBw, rsv, isBegin);
                 // If this is the last event, or if the next event is after the current time, update the bandwidth map
-                if (eventIndex == bwEvents.size() - 1 || bwEvents.get(eventIndex + 1).getTime().isAfter(currentTime)) {
+                if (lastEvent || nextKey > currentKey) {
                     for (String path : bwMaps.keySet()) {
                         Integer min = findMin(urns, curUrnBw, urnTables, path);
                         bwMaps.get(path).put(currentTime, min);
                         // If this is the last event, add a point for the end
-                        if (eventIndex == bwEvents.size() - 1 && currentTime.isBefore(end)) {
+                        if (lastEvent && currentKey < endKey) {
                             bwMaps.get(path).put(end, min);
                         }
                     }
@@ -492,14 +500,20 @@ public class BandwidthAvailabilityService {
     }
 
     /**
-     * Update the available bandwidth in the curUrnBw map at thr URN associated with the passed in BwEvent.
+     * Update the available bandwidth in the curUrnBw map at the URN of a reservation that begins or ends.
      *
      * @param curUrnBw - The map of currently available bandwidth at each URN
-     * @param bwEvent  - The bandwidth event (with associated URN and change in Ingress/Egress bandwidth).
+     * @param rsv      - The reservation
+     * @param isBegin  - True if the reservation begins (bandwidth is taken), false if it ends (bandwidth is returned)
      */
-    private void updateAvailableBw(Map<String, Map<String, Integer>> curUrnBw, BwEvent bwEvent) {
-        curUrnBw.get(INGRESS).put(bwEvent.getUrn(), curUrnBw.get(INGRESS).get(bwEvent.getUrn()) + bwEvent.getInBw());
-        curUrnBw.get(EGRESS).put(bwEvent.getUrn(), curUrnBw.get(EGRESS).get(bwEvent.getUrn()) + bwEvent.getEgBw());
+    private void updateAvailableBw(Map<String, Map<String, Integer>> curUrnBw, ReservedBandwidthE rsv, boolean isBegin) {
+        int sign = isBegin ? -1 : 1;
+        curUrnBw.get(INGRESS).put(rsv.getUrn(), curUrnBw.get(INGRESS).get(rsv.getUrn()) + sign * rsv.getInBandwidth());
+        curUrnBw.get(EGRESS).put(rsv.getUrn(), curUrnBw.get(EGRESS).get(rsv.getUrn()) + sign * rsv.getEgBandwidth());
+    }
+
+    private long eventTime(int bwEvent, long[] begins, long[] ends) {
+        return bwEvent >= 0 ? begins[bwEvent] : ends[~bwEvent];
     }
 
     /**
@@ -644,28 +658,6 @@ public class BandwidthAvailabilityService {
         return urnTables;
     }
 
-
-    /**
-     * Abstracts bandwidth events from a map of URNs to Reserved Bandwidths.
-     *
-     * @param rsvMap Map of URNs to Reserved Bandwidths.
-     * @return List of bandwidth events sorted chronologically.
-     */
-    private List<BwEvent> abstractEvents(Map<String, List<ReservedBandwidthE>> rsvMap) {
-        List<BwEvent> eventList = new ArrayList<>();
-
-        for (String urn : rsvMap.keySet()) {
-            for (ReservedBandwidthE rsv : rsvMap.get(urn)) {
-                eventList.add(new BwEvent(rsv.getUrn(), rsv.getBeginning(), (-1) * rsv.getInBandwidth(), (-1) * rsv.getEgBandwidth()));
-                eventList.add(new BwEvent(rsv.getUrn(), rsv.getEnding(), rsv.getInBandwidth(), rsv.getEgBandwidth()));
-            }
-        }
-
-        eventList.sort((t1, t2) -> t1.getTime().compareTo(t2.getTime()));
-
-        return eventList;
-    }
-
     /**
      * Pull out the maximum and minimum bandwidth values from the AZ and ZA directions of the input
      * bandwidth maps.
@@ -713,30 +705,16 @@ public class BandwidthAvailabilityService {
         Map<String, List<Integer>> urnAvailList = new HashMap<>();
         PortBandwidthAvailabilityResponse bwResponse = new PortBandwidthAvailabilityResponse();
 
-        Optional<List<ReservedBandwidthE>> allBwOpt = bwRepo.findOverlappingInterval(bwRequest.getStartDate().toInstant(), bwRequest.getEndDate().toInstant());
-        if(allBwOpt.isPresent()) {
-            List<ReservedBandwidthE> allBW = allBwOpt.get();
+        List<ReservedBandwidthE> allBW = resvIndex.overlappingBandwidths(bwRequest.getStartDate().toInstant(), bwRequest.getEndDate().toInstant());
 
-            Map<String, Map<String, Integer>> bwAvailabilityMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(allBW);
-            for(String urn : bwAvailabilityMap.keySet()){
-                Map<String, Integer> ingressEgressMap = bwAvailabilityMap.get(urn);
-                List<Integer> ingressEgress = Arrays.asList(ingressEgressMap.get("Ingress"), ingressEgressMap.get("Egress"));
-                urnAvailList.put(urn, ingressEgress);
-            }
+        BandwidthAvailabilityTable bwAvailability = bwService.buildBandwidthAvailabilityMapFromUrnRepo(allBW);
+        for(String urn : bwAvailability.urns()){
+            List<Integer> ingressEgress = Arrays.asList(bwAvailability.ingress(urn), bwAvailability.egress(urn));
+            urnAvailList.put(urn, ingressEgress);
         }
 
         bwResponse.setBwAvailabilityMap(urnAvailList);
 
         return bwResponse;
     }
-
-    @Data
-    @NoArgsConstructor
-    @AllArgsConstructor
-    private class BwEvent {
-        private String urn;
-        private Instant time;
-        private Integer inBw;
-        private Integer egBw;
-    }
-}
\ No newline at end of file
+}
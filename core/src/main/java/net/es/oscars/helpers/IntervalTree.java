@@ -0,0 +1,196 @@
+package net.es.oscars.helpers;
+
+import java.util.function.Consumer;
+
+/**
+ * Balanced (AVL) interval tree over closed intervals [start, end].
+ * Nodes are ordered by (start, id) and augmented with the largest end time in their subtree, so an overlap
+ * query visits O(log n + k) nodes for k results.
+ *
+ * Not thread-safe; callers are expected to guard concurrent access.
+ *
+ * @param <T> the value stored with each interval
+ */
+public class IntervalTree<T> {
+
+    private static class Node<T> {
+        long start;
+        long end;
+        long id;
+        T value;
+
+        long maxEnd;
+        int height = 1;
+        Node<T> left;
+        Node<T> right;
+
+        Node(long start, long end, long id, T value) {
+            this.start = start;
+            this.end = end;
+            this.id = id;
+            this.value = value;
+            this.maxEnd = end;
+        }
+    }
+
+    private Node<T> root;
+
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+    /**
+     * Add an interval. The (start, id) pair identifies the interval; adding the same pair twice replaces the
+     * previous end time and value.
+     */
+    public void insert(long start, long end, long id, T value) {
+        root = insert(root, new Node<>(start, end, id, value));
+    }
+
+    /**
+     * Remove the interval identified by (start, id).
+     *
+     * @return true if an interval was removed
+     */
+    public boolean remove(long start, long id) {
+        int before = size;
+        root = remove(root, start, id);
+        return size < before;
+    }
+
+    /**
+     * Pass every value whose interval overlaps the closed interval [start, end] to the consumer,
+     * in ascending order of interval start.
+     */
+    public void overlapping(long start, long end, Consumer<T> consumer) {
+        overlapping(root, start, end, consumer);
+    }
+
+    private void overlapping(Node<T> n, long start, long end, Consumer<T> consumer) {
+        if (n == null || n.maxEnd < start) {
+            return;
+        }
+        overlapping(n.left, start, end, consumer);
+        if (n.start <= end) {
+            if (n.end >= start) {
+                consumer.accept(n.value);
+            }
+            overlapping(n.right, start, end, consumer);
+        }
+    }
+
+    private static int compare(long startA, long idA, long startB, long idB) {
+        int c = Long.compare(startA, startB);
+        return c != 0 ? c : Long.compare(idA, idB);
+    }
+
+    private Node<T> insert(Node<T> n, Node<T> added) {
+        if (n == null) {
+            size++;
+            return added;
+        }
+        int c = compare(added.start, added.id, n.start, n.id);
+        if (c < 0) {
+            n.left = insert(n.left, added);
+        } else if (c > 0) {
+            n.right = insert(n.right, added);
+        } else {
+            n.end = added.end;
+            n.value = added.value;
+        }
+        return balance(n);
+    }
+
+    private Node<T> remove(Node<T> n, long start, long id) {
+        if (n == null) {
+            return null;
+        }
+        int c = compare(start, id, n.start, n.id);
+        if (c < 0) {
+            n.left = remove(n.left, start, id);
+        } else if (c > 0) {
+            n.right = remove(n.right, start, id);
+        } else {
+            size--;
+            if (n.left == null) {
+                return n.right;
+            } else if (n.right == null) {
+                return n.left;
+            }
+            Node<T> successor = n.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            n.start = successor.start;
+            n.end = successor.end;
+            n.id = successor.id;
+            n.value = successor.value;
+            // the successor is removed below; compensate for the double decrement
+            size++;
+            n.right = remove(n.right, successor.start, successor.id);
+        }
+        return balance(n);
+    }
+
+    private int height(Node<T> n) {
+        return n == null ? 0 : n.height;
+    }
+
+    private void update(Node<T> n) {
+        n.height = 1 + Math.max(height(n.left), height(n.right));
+        long maxEnd = n.end;
+        if (n.left != null && n.left.maxEnd > maxEnd) {
+            maxEnd = n.left.maxEnd;
+        }
+        if (n.right != null && n.right.maxEnd > maxEnd) {
+            maxEnd = n.right.maxEnd;
+        }
+        n.maxEnd = maxEnd;
+    }
+
+    private Node<T> balance(Node<T> n) {
+        update(n);
+        int skew = height(n.left) - height(n.right);
+        if (skew > 1) {
+            if (height(n.left.left) < height(n.left.right)) {
+                n.left = rotateLeft(n.left);
+            }
+            return rotateRight(n);
+        } else if (skew < -1) {
+            if (height(n.right.right) < height(n.right.left)) {
+                n.right = rotateRight(n.right);
+            }
+            return rotateLeft(n);
+        }
+        return n;
+    }
+
+    private Node<T> rotateRight(Node<T> n) {
+        Node<T> l = n.left;
+        n.left = l.right;
+        l.right = n;
+        update(n);
+        update(l);
+        return l;
+    }
+
+    private Node<T> rotateLeft(Node<T> n) {
+        Node<T> r = n.right;
+        n.right = r.left;
+        r.left = n;
+        update(n);
+        update(r);
+        return r;
+    }
+}
@@ -0,0 +1,96 @@
+package net.es.oscars.helpers;
+
+import java.util.*;
+
+/**
+ * Hashed timer wheel: keys are placed in the slot of the tick at which their deadline falls, so scheduling and
+ * cancelling are O(1) and each advance only looks at the slots of the ticks that passed. Deadlines more than one
+ * rotation away simply stay in their slot until a later pass finds them due.
+ *
+ * A key is scheduled at most once; scheduling it again moves it to the new deadline.
+ *
+ * Not thread-safe; callers are expected to guard concurrent access.
+ *
+ * @param <K> the key identifying each timeout
+ */
+public class TimerWheel<K> {
+    private final long tickMillis;
+
+    private final List<Map<K, Long>> slots;
+
+    private final Map<K, Integer> slotOf = new HashMap<>();
+
+    // the tick of the last advance; its slot is looked at again by the next one, which is where late keys go
+    private long tick;
+
+    /**
+     * @param tickMillis  - resolution of the wheel; timeouts fire at most this late
+     * @param slotCount   - number of slots in one rotation
+     * @param startMillis - the current time
+     */
+    public TimerWheel(long tickMillis, int slotCount, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slots.add(new HashMap<>());
+        }
+        this.tick = startMillis / tickMillis;
+    }
+
+    public int size() {
+        return slotOf.size();
+    }
+
+    public boolean contains(K key) {
+        return slotOf.containsKey(key);
+    }
+
+    /**
+     * Schedule a key to expire at the given time (epoch millis). A deadline in the past expires at the next advance.
+     */
+    public void schedule(K key, long deadline) {
+        cancel(key);
+        // the first tick that starts at or after the deadline
+        long due = Math.max((deadline + tickMillis - 1) / tickMillis, tick);
+        int slot = (int) (due % slots.size());
+        slots.get(slot).put(key, deadline);
+        slotOf.put(key, slot);
+    }
+
+    /**
+     * @return true if the key was scheduled
+     */
+    public boolean cancel(K key) {
+        Integer slot = slotOf.remove(key);
+        if (slot == null) {
+            return false;
+        }
+        slots.get(slot).remove(key);
+        return true;
+    }
+
+    /**
+     * Move the wheel forward to the given time and remove every key whose deadline has passed.
+     *
+     * @return the expired keys, in no particular order
+     */
+    public List<K> advance(long nowMillis) {
+        List<K> expired = new ArrayList<>();
+        long target = nowMillis / tickMillis;
+        // after a long pause every slot is due once; there is no point in going round more than once
+        long from = Math.max(tick, target - slots.size() + 1);
+        for (long t = from; t <= target; t++) {
+            Iterator<Map.Entry<K, Long>> it = slots.get((int) (t % slots.size())).entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<K, Long> entry = it.next();
+                if (entry.getValue() <= nowMillis) {
+                    expired.add(entry.getKey());
+                    slotOf.remove(entry.getKey());
+                    it.remove();
+                }
+            }
+        }
+        tick = Math.max(tick, target);
+        return expired;
+    }
+}
@@ -0,0 +1,230 @@
+package net.es.oscars.helpers;
+
+import net.es.oscars.dto.IntRange;
+
+import java.util.*;
+
+/**
+ * A set of VLAN IDs (0 - 4095) held as a 4096-bit bitmap in 64 longs.
+ * Values outside of the VLAN ID space are ignored when added and never contained.
+ *
+ * Mutable; and(), or() and andNot() modify this bitmap in place and return it, copy() first where the
+ * original must be kept.
+ */
+public final class VlanBitmap {
+    public static final int SIZE = 4096;
+
+    private static final int WORDS = SIZE / 64;
+
+    private final long[] words;
+
+    public VlanBitmap() {
+        this.words = new long[WORDS];
+    }
+
+    private VlanBitmap(long[] words) {
+        this.words = words;
+    }
+
+    public static VlanBitmap fromRanges(Collection<IntRange> ranges) {
+        VlanBitmap bitmap = new VlanBitmap();
+        if (ranges != null) {
+            for (IntRange range : ranges) {
+                bitmap.addRange(range.getFloor(), range.getCeiling());
+            }
+        }
+        return bitmap;
+    }
+
+    public static VlanBitmap fromIds(Collection<Integer> ids) {
+        VlanBitmap bitmap = new VlanBitmap();
+        if (ids != null) {
+            for (Integer id : ids) {
+                if (id != null) {
+                    bitmap.add(id);
+                }
+            }
+        }
+        return bitmap;
+    }
+
+    public VlanBitmap copy() {
+        return new VlanBitmap(words.clone());
+    }
+
+    public VlanBitmap add(int id) {
+        if (id >= 0 && id < SIZE) {
+            words[id >>> 6] |= 1L << id;
+        }
+        return this;
+    }
+
+    /**
+     * Add every ID in [floor, ceiling].
+     */
+    public VlanBitmap addRange(int floor, int ceiling) {
+        int from = Math.max(floor, 0);
+        int to = Math.min(ceiling, SIZE - 1);
+        if (from > to) {
+            return this;
+        }
+        int first = from >>> 6;
+        int last = to >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> (63 - (to & 63));
+        if (first == last) {
+            words[first] |= firstMask & lastMask;
+            return this;
+        }
+        words[first] |= firstMask;
+        for (int i = first + 1; i < last; i++) {
+            words[i] = -1L;
+        }
+        words[last] |= lastMask;
+        return this;
+    }
+
+    public VlanBitmap remove(int id) {
+        if (id >= 0 && id < SIZE) {
+            words[id >>> 6] &= ~(1L << id);
+        }
+        return this;
+    }
+
+    public boolean contains(int id) {
+        return id >= 0 && id < SIZE && (words[id >>> 6] & (1L << id)) != 0;
+    }
+
+    /**
+     * Intersect with another bitmap.
+     */
+    public VlanBitmap and(VlanBitmap other) {
+        for (int i = 0; i < WORDS; i++) {
+            words[i] &= other.words[i];
+        }
+        return this;
+    }
+
+    /**
+     * Union with another bitmap.
+     */
+    public VlanBitmap or(VlanBitmap other) {
+        for (int i = 0; i < WORDS; i++) {
+            words[i] |= other.words[i];
+        }
+        return this;
+    }
+
+    /**
+     * Remove every ID set in another bitmap.
+     */
+    public VlanBitmap andNot(VlanBitmap other) {
+        for (int i = 0; i < WORDS; i++) {
+            words[i] &= ~other.words[i];
+        }
+        return this;
+    }
+
+    public boolean intersects(VlanBitmap other) {
+        for (int i = 0; i < WORDS; i++) {
+            if ((words[i] & other.words[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int cardinality() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * @return the lowest ID >= from in this bitmap, or -1 if there is none
+     */
+    public int nextSetBit(int from) {
+        if (from < 0) {
+            from = 0;
+        }
+        if (from >= SIZE) {
+            return -1;
+        }
+        int i = from >>> 6;
+        long word = words[i] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (i << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++i == WORDS) {
+                return -1;
+            }
+            word = words[i];
+        }
+    }
+
+    /**
+     * @return the lowest ID in this bitmap, or -1 if it is empty
+     */
+    public int first() {
+        return nextSetBit(0);
+    }
+
+    public Set<Integer> toSet() {
+        Set<Integer> ids = new HashSet<>();
+        for (int id = nextSetBit(0); id >= 0; id = nextSetBit(id + 1)) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    public List<IntRange> toRanges() {
+        List<IntRange> ranges = new ArrayList<>();
+        int id = nextSetBit(0);
+        while (id >= 0) {
+            int end = id;
+            while (end + 1 < SIZE && contains(end + 1)) {
+                end++;
+            }
+            ranges.add(IntRange.builder().floor(id).ceiling(end).build());
+            id = nextSetBit(end + 1);
+        }
+        return ranges;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof VlanBitmap && Arrays.equals(words, ((VlanBitmap) o).words));
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (IntRange range : toRanges()) {
+            if (sb.length() > 1) {
+                sb.append(",");
+            }
+            sb.append(range.getFloor());
+            if (!range.getCeiling().equals(range.getFloor())) {
+                sb.append(":").append(range.getCeiling());
+            }
+        }
+        return sb.append("]").toString();
+    }
+}
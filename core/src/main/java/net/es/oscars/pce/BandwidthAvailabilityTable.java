@@ -0,0 +1,264 @@
+package net.es.oscars.pce;
+
+import lombok.Data;
+import net.es.oscars.topo.svc.TopoSnapshot;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Available Ingress / Egress bandwidth at each URN, stored in dense int arrays indexed by the URN ordinal of a
+ * topology snapshot. URNs unknown to the snapshot are given ordinals past the end of the snapshot on demand.
+ *
+ * Trial reservations are undone through checkpoints: every change is recorded in an undo log, checkpoint() marks
+ * the current position of that log and rollback() restores every entry written after it, in O(changes).
+ * copy() gives a fully independent table.
+ *
+ * Every state a table goes through is labelled with a stamp, unique across all tables: two tables (or one table at
+ * two points in time) with the same stamp hold the same availability. Rolling back restores the stamp of the
+ * checkpoint, so results computed from a table can be reused after a failed trial reservation.
+ *
+ * Stamps only ever match within one request. A table built from the committed reservations of a schedule range
+ * can also be given its Origin; while it holds the availability it was built with, state() is that Origin, equal
+ * for every table built from the same topology, reservations and range, so results are shared between requests.
+ *
+ * Not thread-safe.
+ */
+public class BandwidthAvailabilityTable {
+    private static final AtomicLong stamps = new AtomicLong(0L);
+
+    private final TopoSnapshot snapshot;
+
+    private Map<String, Integer> extraOrdinals;
+
+    private int[] ingress;
+    private int[] egress;
+    private boolean[] present;
+
+    // undo log: ordinal, previous ingress, previous egress, previous presence (1 / 0)
+    private int[] undo = new int[64];
+    private int undoSize = 0;
+
+    private long stamp = stamps.incrementAndGet();
+
+    // the stamp before each undo log entry
+    private long[] undoStamps = new long[16];
+
+    private Origin origin;
+
+    // the stamp at which the table held the availability of its origin
+    private long originStamp;
+
+    public BandwidthAvailabilityTable(TopoSnapshot snapshot) {
+        this.snapshot = snapshot;
+        this.ingress = new int[snapshot.size()];
+        this.egress = new int[snapshot.size()];
+        this.present = new boolean[snapshot.size()];
+    }
+
+    private BandwidthAvailabilityTable(BandwidthAvailabilityTable other) {
+        this.snapshot = other.snapshot;
+        this.extraOrdinals = other.extraOrdinals == null ? null : new HashMap<>(other.extraOrdinals);
+        this.ingress = other.ingress.clone();
+        this.egress = other.egress.clone();
+        this.present = other.present.clone();
+        this.stamp = other.stamp;
+        this.origin = other.origin;
+        this.originStamp = other.originStamp;
+    }
+
+    /**
+     * @return an independent copy of the current availability; the undo log is not carried over
+     */
+    public BandwidthAvailabilityTable copy() {
+        return new BandwidthAvailabilityTable(this);
+    }
+
+    /**
+     * @return the label of the current availability
+     */
+    public long stamp() {
+        return stamp;
+    }
+
+    /**
+     * Record what the current availability was built from.
+     */
+    public void setOrigin(Origin origin) {
+        this.origin = origin;
+        this.originStamp = stamp;
+    }
+
+    /**
+     * @return the Origin while the table holds the availability it was built from, the stamp otherwise
+     */
+    public Object state() {
+        return origin != null && stamp == originStamp ? origin : stamp;
+    }
+
+    public boolean contains(String urn) {
+        int idx = find(urn);
+        return idx >= 0 && present[idx];
+    }
+
+    /**
+     * @return the available Ingress bandwidth at the URN, or 0 if the URN is not in the table
+     */
+    public int ingress(String urn) {
+        int idx = find(urn);
+        return idx >= 0 && present[idx] ? ingress[idx] : 0;
+    }
+
+    /**
+     * @return the available Egress bandwidth at the URN, or 0 if the URN is not in the table
+     */
+    public int egress(String urn) {
+        int idx = find(urn);
+        return idx >= 0 && present[idx] ? egress[idx] : 0;
+    }
+
+    /**
+     * @return every URN in the table
+     */
+    public List<String> urns() {
+        List<String> urns = new ArrayList<>();
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (present[i]) {
+                urns.add(snapshot.urnAt(i));
+            }
+        }
+        if (extraOrdinals != null) {
+            extraOrdinals.forEach((urn, i) -> {
+                if (present[i]) {
+                    urns.add(urn);
+                }
+            });
+        }
+        return urns;
+    }
+
+    /**
+     * Set the available bandwidth at a URN, adding it to the table if needed.
+     */
+    public void put(String urn, int in, int eg) {
+        int idx = findOrAdd(urn);
+        record(idx);
+        ingress[idx] = in;
+        egress[idx] = eg;
+        present[idx] = true;
+    }
+
+    /**
+     * Take bandwidth at a URN, never going below zero. URNs not in the table have no reservable bandwidth
+     * and are left alone.
+     */
+    public void reserve(String urn, int in, int eg) {
+        int idx = find(urn);
+        if (idx < 0 || !present[idx]) {
+            return;
+        }
+        record(idx);
+        ingress[idx] = Math.max(ingress[idx] - in, 0);
+        egress[idx] = Math.max(egress[idx] - eg, 0);
+    }
+
+    /**
+     * @return a marker for the current state, to be passed to rollback()
+     */
+    public int checkpoint() {
+        return undoSize;
+    }
+
+    /**
+     * Undo every change made since the checkpoint was taken. Checkpoints nest: rolling back to an earlier
+     * checkpoint also discards any taken after it.
+     */
+    public void rollback(int checkpoint) {
+        if (checkpoint < 0 || checkpoint > undoSize) {
+            throw new IllegalArgumentException("invalid checkpoint " + checkpoint);
+        }
+        while (undoSize > checkpoint) {
+            undoSize -= 4;
+            int idx = undo[undoSize];
+            ingress[idx] = undo[undoSize + 1];
+            egress[idx] = undo[undoSize + 2];
+            present[idx] = undo[undoSize + 3] == 1;
+            stamp = undoStamps[undoSize / 4];
+        }
+    }
+
+    private void record(int idx) {
+        if (undoSize + 4 > undo.length) {
+            undo = Arrays.copyOf(undo, undo.length * 2);
+        }
+        undo[undoSize] = idx;
+        undo[undoSize + 1] = ingress[idx];
+        undo[undoSize + 2] = egress[idx];
+        undo[undoSize + 3] = present[idx] ? 1 : 0;
+        if (undoSize / 4 >= undoStamps.length) {
+            undoStamps = Arrays.copyOf(undoStamps, undoStamps.length * 2);
+        }
+        undoStamps[undoSize / 4] = stamp;
+        stamp = stamps.incrementAndGet();
+        undoSize += 4;
+    }
+
+    private int find(String urn) {
+        int idx = snapshot.ordinal(urn);
+        if (idx < 0 && extraOrdinals != null) {
+            Integer extra = extraOrdinals.get(urn);
+            if (extra != null) {
+                idx = extra;
+            }
+        }
+        return idx;
+    }
+
+    private int findOrAdd(String urn) {
+        int idx = find(urn);
+        if (idx >= 0) {
+            return idx;
+        }
+        if (extraOrdinals == null) {
+            extraOrdinals = new HashMap<>();
+        }
+        idx = snapshot.size() + extraOrdinals.size();
+        extraOrdinals.put(urn, idx);
+        if (idx >= ingress.length) {
+            int capacity = Math.max(idx + 1, ingress.length * 2);
+            ingress = Arrays.copyOf(ingress, capacity);
+            egress = Arrays.copyOf(egress, capacity);
+            present = Arrays.copyOf(present, capacity);
+        }
+        return idx;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (String urn : urns()) {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(urn).append("={Ingress=").append(ingress(urn)).append(", Egress=").append(egress(urn)).append("}");
+        }
+        return sb.append("}").toString();
+    }
+
+    /**
+     * Everything the availability of a table built from committed reservations depends on.
+     */
+    @Data
+    public static final class Origin {
+        // version of the topology snapshot the capacities come from
+        private final long topoVersion;
+
+        // ReservedResourceIndex.epoch() of the reservations
+        private final long reservationEpoch;
+
+        private final Instant start;
+
+        private final Instant end;
+    }
+}
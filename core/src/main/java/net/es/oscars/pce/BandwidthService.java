@@ -2,13 +2,14 @@ package net.es.oscars.pce;
 
 
 import lombok.extern.slf4j.Slf4j;
-import net.es.oscars.resv.dao.ReservedBandwidthRepository;
 import net.es.oscars.resv.ent.*;
+import net.es.oscars.resv.svc.ReservedResourceIndex;
 import net.es.oscars.dto.topo.TopoEdge;
 import net.es.oscars.dto.topo.TopoVertex;
-import net.es.oscars.topo.dao.UrnRepository;
 import net.es.oscars.topo.ent.ReservableBandwidthE;
 import net.es.oscars.topo.ent.UrnE;
+import net.es.oscars.topo.svc.TopoSnapshot;
+import net.es.oscars.topo.svc.TopoSnapshotService;
 import net.es.oscars.dto.topo.enums.VertexType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -24,10 +25,10 @@ import java.util.stream.Collectors;
 public class BandwidthService {
 
     @Autowired
-    private ReservedBandwidthRepository resvBwRepo;
+    private ReservedResourceIndex resvIndex;
 
     @Autowired
-    private UrnRepository urnRepository;
+    private TopoSnapshotService topoSnapshotService;
 
 
     /**~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
@@ -80,78 +81,83 @@ public class BandwidthService {
 
 
     /**
-     * Build a map of the available bandwidth at each URN. For each URN, there is a map of "Ingress" and "Egress"
-     * bandwidth available. Only port URNs can be found in this map. Retrieves URNs from the repository.
+     * Build a table of the available bandwidth at each URN, given the bandwidth reserved between start and end.
+     * Unless the current transaction has reservations of its own staged, the table is given its Origin, so pruning
+     * results computed from it can be shared with other requests for the same range.
+     *
+     * @param start - Start of the schedule range
+     * @param end - End of the schedule range
+     * @return A table of Ingress/Egress bandwidth availability per URN
+     */
+    public BandwidthAvailabilityTable buildBandwidthAvailabilityMap(Date start, Date end) {
+        TopoSnapshot snapshot = topoSnapshotService.current();
+        Optional<Long> epoch = resvIndex.epoch();
+        BandwidthAvailabilityTable availBw = buildBandwidthAvailabilityMapFromUrnList(
+                getReservedBandwidthFromRepo(start, end), snapshot.getUrns());
+
+        // only label the table if nothing was committed (and the topology did not change) while it was built
+        if (epoch.isPresent() && epoch.equals(resvIndex.epoch()) && snapshot == topoSnapshotService.current()) {
+            availBw.setOrigin(new BandwidthAvailabilityTable.Origin(snapshot.getVersion(), epoch.get(),
+                    start.toInstant(), end.toInstant()));
+        }
+        return availBw;
+    }
+
+    /**
+     * Build a table of the available bandwidth at each URN. For each URN, the table holds the "Ingress" and "Egress"
+     * bandwidth available. Only port URNs can be found in this table. Retrieves URNs from the topology snapshot.
      *
      * @param rsvBandwidths - A list of all bandwidth reserved so far
-     * @return A mapping of URN name to Ingress/Egress bandwidth availability {urn = {Ingress: num, Egress: num}}
+     * @return A table of Ingress/Egress bandwidth availability per URN
      */
-    public Map<String, Map<String, Integer>> buildBandwidthAvailabilityMapFromUrnRepo(List<ReservedBandwidthE> rsvBandwidths) {
-        List<UrnE> urns = urnRepository.findAll();
+    public BandwidthAvailabilityTable buildBandwidthAvailabilityMapFromUrnRepo(List<ReservedBandwidthE> rsvBandwidths) {
+        List<UrnE> urns = topoSnapshotService.current().getUrns();
         return buildBandwidthAvailabilityMapFromUrnList(rsvBandwidths, urns);
     }
 
     /**
-     * Build a map of the available bandwidth at each URN. For each URN, there is a map of "Ingress" and "Egress"
-     * bandwidth available. Only port URNs can be found in this map. URNs are passed in.
+     * Build a table of the available bandwidth at each URN. For each URN, the table holds the "Ingress" and "Egress"
+     * bandwidth available. Only port URNs can be found in this table. URNs are passed in.
      *
      * @param rsvBandwidths - A list of all bandwidth reserved so far
      * @param urns          - A list of UrnE objects
-     * @return A mapping of URN name to Ingress/Egress bandwidth availability {urn = {Ingress: num, Egress: num}}
+     * @return A table of Ingress/Egress bandwidth availability per URN
      */
-    public Map<String, Map<String, Integer>> buildBandwidthAvailabilityMapFromUrnList(List<ReservedBandwidthE> rsvBandwidths,
-                                                                                      List<UrnE> urns) {
+    public BandwidthAvailabilityTable buildBandwidthAvailabilityMapFromUrnList(List<ReservedBandwidthE> rsvBandwidths,
+                                                                               List<UrnE> urns) {
         // Build a map, allowing us to retrieve a list of ReservedBandwidth given the associated URN
         Map<String, List<ReservedBandwidthE>> resvBwMap = buildReservedBandwidthMap(rsvBandwidths);
 
-        // Build a map, allowing us to retrieve the available "Ingress" and "Egress" bandwidth at each associated URN
-        Map<String, Map<String, Integer>> availBwMap = new HashMap<>();
-        urns.stream()
-                .filter(urn -> urn.getReservableBandwidth() != null)
-                .forEach(urn -> availBwMap.put(urn.getUrn(), buildBandwidthAvailabilityMapForUrn(urn.getUrn(), urn.getReservableBandwidth(), resvBwMap)));
-
-        return availBwMap;
+        // Fill in the available "Ingress" and "Egress" bandwidth at each associated URN
+        BandwidthAvailabilityTable availBw = new BandwidthAvailabilityTable(topoSnapshotService.current());
+        for (UrnE urn : urns) {
+            if (urn.getReservableBandwidth() != null) {
+                int[] avail = availableBandwidth(urn.getReservableBandwidth(), resvBwMap.get(urn.getUrn()));
+                availBw.put(urn.getUrn(), avail[0], avail[1]);
+            }
+        }
+        return availBw;
     }
 
     /**
-     * Update a current bandwidth availability map with the new reserved bandwidth additions.
-     * @param availBwMap - Current map of "Ingress" and "Egress" bandwidth available for each/specific URNs
-     * @param newBandwidths - A list of reserved bandwidths that will be added to this map
-     * @return The updated map
+     * Update a current bandwidth availability table with the new reserved bandwidth additions.
+     * Take a checkpoint() on the table beforehand to be able to undo them.
+     *
+     * @param availBw - Current table of "Ingress" and "Egress" bandwidth available for each/specific URNs
+     * @param newBandwidths - A list of reserved bandwidths that will be subtracted from this table
+     * @return The updated table
      */
-    public Map<String, Map<String, Integer>> amendBandwidthAvailabilityMap(Map<String, Map<String, Integer>> availBwMap, List<ReservedBandwidthE> newBandwidths){
-
+    public BandwidthAvailabilityTable amendBandwidthAvailabilityMap(BandwidthAvailabilityTable availBw, List<ReservedBandwidthE> newBandwidths){
         for(ReservedBandwidthE rsvBw : newBandwidths){
-            String urn = rsvBw.getUrn();
-            Integer ingress = rsvBw.getInBandwidth();
-            Integer egress = rsvBw.getEgBandwidth();
-
-            Map<String, Integer> bwMap = new HashMap<>();
-            // Retrieve original values if it's already in the map
-            // Otherwise, store the reservable values for Ingress and Egress for this URN
-            if(availBwMap.containsKey(urn)){
-                bwMap = availBwMap.get(urn);
-            }
-            else{
-                Optional<UrnE> urnE = urnRepository.findByUrn(urn);
-                if(urnE.isPresent()){
-                    ReservableBandwidthE reservableBandwidth = urnE.get().getReservableBandwidth();
-                    bwMap.put("Ingress", reservableBandwidth.getIngressBw());
-                    bwMap.put("Egress", reservableBandwidth.getEgressBw());
-                }
-            }
-
-            // Update the values in the map
-            bwMap.put("Ingress", Math.max(bwMap.get("Ingress") - ingress, 0));
-            bwMap.put("Egress", Math.max(bwMap.get("Egress") - egress, 0));
+            availBw.reserve(rsvBw.getUrn(), rsvBw.getInBandwidth(), rsvBw.getEgBandwidth());
         }
-        return availBwMap;
+        return availBw;
     }
 
     /**
      * Determine how much Ingress/Egress bandwidth is still available at a URN. If the list of reserved bandwidths
      * is empty, then all of the Reservable Bandwidth at that URN is available. Otherwise,
-     * subtract the sum Ingress/Egress bandwidth from the maximum reservable bandwidth at that URN.
+     * subtract the peak concurrent Ingress/Egress bandwidth from the maximum reservable bandwidth at that URN.
      *
      * @param capacity - ReservableBandwidthE object, which contains the maximum Ingress/Egress bandwidth for a given URN
      * @param resvBwMap - A Mapping from a URN to a list of Reserved Bandwidths at that URN.
@@ -159,51 +165,37 @@ public class BandwidthService {
      */
     public Map<String, Integer> buildBandwidthAvailabilityMapForUrn(String urn, ReservableBandwidthE capacity,
                                                                     Map<String, List<ReservedBandwidthE>> resvBwMap) {
+        int[] avail = availableBandwidth(capacity, resvBwMap.get(urn));
         Map<String, Integer> availBw = new HashMap<>();
-        availBw.put("Ingress", capacity.getIngressBw());
-        availBw.put("Egress", capacity.getEgressBw());
-        if (resvBwMap.containsKey(urn)) {
-            // Sort Reserved bandwidth list by start, and then end
-            Comparator<ReservedBandwidthE> byStartTime = Comparator.comparing(ReservedBandwidthE::getBeginning);
-            Comparator<ReservedBandwidthE> byEndTime = Comparator.comparing(ReservedBandwidthE::getEnding);
-            List<ReservedBandwidthE> resvBwList = resvBwMap.get(urn).stream().sorted(byStartTime.thenComparing(byEndTime)).collect(Collectors.toList());
-
-            Integer maxIngress = 0;
-            Integer maxEgress = 0;
-            Integer ingress = 0;
-            Integer egress = 0;
-            List<ReservedBandwidthE> activeResvList = new ArrayList<>();
-            for(ReservedBandwidthE currBw : resvBwList){
-                Instant currStart = currBw.getBeginning();
-
-                // Add ingress and egress from new reservation
-                ingress += currBw.getInBandwidth();
-                egress += currBw.getEgBandwidth();
-
-                // For each previous reservation
-                for(int activeIndex = 0; activeIndex < activeResvList.size(); activeIndex++){
-                    ReservedBandwidthE activeBw = activeResvList.get(activeIndex);
-                    Instant activeEnd = activeBw.getEnding();
-                    // The active reservation has "expired"
-                    // Remove it from the ongoing total
-                    if(currStart.isAfter(activeEnd)){
-                        ingress -= activeBw.getInBandwidth();
-                        egress -= activeBw.getEgBandwidth();
-                        activeResvList.remove(activeIndex);
-                        activeIndex--;
-                    }
-                }
-                // If either metric is greater than the current max, it's the new max
-                maxIngress = Math.max(ingress, maxIngress);
-                maxEgress = Math.max(egress, maxEgress);
+        availBw.put("Ingress", avail[0]);
+        availBw.put("Egress", avail[1]);
+        return availBw;
+    }
 
-                // Add the current bandwidth to the active list
-                activeResvList.add(currBw);
+    /**
+     * @return {available Ingress, available Egress} given the capacity and the (possibly null) reservations at a URN
+     */
+    private int[] availableBandwidth(ReservableBandwidthE capacity, List<ReservedBandwidthE> resvBwList) {
+        int[] availBw = new int[]{capacity.getIngressBw(), capacity.getEgressBw()};
+        if (resvBwList != null) {
+            int n = resvBwList.size();
+            long[] begins = new long[n];
+            long[] ends = new long[n];
+            int[] ingress = new int[n];
+            int[] egress = new int[n];
+            for (int i = 0; i < n; i++) {
+                ReservedBandwidthE rsvBw = resvBwList.get(i);
+                begins[i] = BandwidthSweep.key(rsvBw.getBeginning());
+                ends[i] = BandwidthSweep.key(rsvBw.getEnding());
+                ingress[i] = rsvBw.getInBandwidth();
+                egress[i] = rsvBw.getEgBandwidth();
             }
+            // Peak concurrent ingress / egress over the reservations at this URN
+            int[] peak = BandwidthSweep.peakUsage(begins, ends, ingress, egress, n);
 
             // Remove the maximum reserved bandwidth from the available ingress/egress
-            availBw.put("Ingress", Math.max(capacity.getIngressBw() - maxIngress, 0));
-            availBw.put("Egress", Math.max(capacity.getEgressBw() - maxEgress, 0));
+            availBw[0] = Math.max(capacity.getIngressBw() - peak[0], 0);
+            availBw[1] = Math.max(capacity.getEgressBw() - peak[1], 0);
         }
         return availBw;
     }
@@ -343,8 +335,7 @@ public class BandwidthService {
      */
     public List<ReservedBandwidthE> getReservedBandwidthFromRepo(Date start, Date end) {
         // Get all Reserved Bandwidth between start and end
-        Optional<List<ReservedBandwidthE>> optResvBw = resvBwRepo.findOverlappingInterval(start.toInstant(), end.toInstant());
-        return optResvBw.isPresent() ? optResvBw.get() : new ArrayList<>();
+        return resvIndex.overlappingBandwidths(start.toInstant(), end.toInstant());
     }
 
     /**~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
@@ -362,7 +353,7 @@ public class BandwidthService {
      * @return True, if there is sufficient bandwidth across all edges. False, otherwise.
      */
     public boolean evaluateBandwidthEROBi(Map<String, UrnE> urnMap, Integer azMbps, Integer zaMbps, List<TopoEdge> azERO,
-                                          List<TopoEdge> zaERO, Map<String, Map<String, Integer>> availBwMap) {
+                                          List<TopoEdge> zaERO, BandwidthAvailabilityTable availBwMap) {
 
         // For the AZ direction, fail the test if there is insufficient bandwidth
         if (!evaluateBandwidthERO(azERO, urnMap, availBwMap, azMbps, zaMbps)) {
@@ -384,7 +375,7 @@ public class BandwidthService {
      * @return True, if the segment can support the requested bandwidth. False, otherwise.
      */
     private boolean evaluateBandwidthERO(List<TopoEdge> ERO, Map<String, UrnE> urnMap,
-                                         Map<String, Map<String, Integer>> availBwMap, Integer azMbps,
+                                         BandwidthAvailabilityTable availBwMap, Integer azMbps,
                                          Integer zaMbps) {
         // For each edge in that list
         for (TopoEdge edge : ERO) {
@@ -425,7 +416,7 @@ public class BandwidthService {
      * @return True, if the segment can support the requested bandwidth. False, otherwise.
      */
     public boolean evaluateBandwidthEROUni(List<TopoEdge> ERO, Map<String, UrnE> urnMap,
-                                           Map<String, Map<String, Integer>> availBwMap, Integer bwMbps) {
+                                           BandwidthAvailabilityTable availBwMap, Integer bwMbps) {
         // For each edge in that list
         for (TopoEdge edge : ERO) {
             Map<UrnE, Boolean> urnIngressDirectionMap = new HashMap<>();
@@ -486,17 +477,16 @@ public class BandwidthService {
      * @param egMbps     - Requested egress Mbps
      * @return True, if there is enough available bandwidth at the URN. False, otherwise
      */
-    public boolean evaluateBandwidthURN(String urn, Map<String, Map<String, Integer>> availBwMap,
+    public boolean evaluateBandwidthURN(String urn, BandwidthAvailabilityTable availBwMap,
                                         Integer inMbps, Integer egMbps) {
-        if (!availBwMap.keySet().contains(urn)) {
+        if (!availBwMap.contains(urn)) {
             log.error("could not locate available azbw map for urn " + urn);
             return false;
         }
-        Map<String, Integer> bwAvail = availBwMap.get(urn);
-        if (bwAvail.get("Ingress") < inMbps || bwAvail.get("Egress") < egMbps) {
+        if (availBwMap.ingress(urn) < inMbps || availBwMap.egress(urn) < egMbps) {
             log.error("Insufficient Bandwidth at " + urn + ". Requested: " +
-                    inMbps + " In and " + egMbps + " Out. Available: " + bwAvail.get("Ingress") +
-                    " In and " + bwAvail.get("Egress") + " Out.");
+                    inMbps + " In and " + egMbps + " Out. Available: " + availBwMap.ingress(urn) +
+                    " In and " + availBwMap.egress(urn) + " Out.");
             return false;
         }
         return true;
@@ -513,10 +503,9 @@ public class BandwidthService {
      * @param egMbpsZA   - Requested egress Mbps in the Z->A direction
      * @return True, if there is enough available bandwidth at the URN. False, otherwise
      */
-    public boolean evaluateBandwidthSharedURN(String urn, Map<String, Map<String, Integer>> availBwMap, Integer inMbpsAZ, Integer egMbpsAZ, Integer inMbpsZA, Integer egMbpsZA) {
-        Map<String, Integer> bwAvail = availBwMap.get(urn);
-        if ((bwAvail.get("Ingress") < (inMbpsAZ + inMbpsZA)) || (bwAvail.get("Egress") < (egMbpsAZ + egMbpsZA))) {
-            log.error("Insufficient Bandwidth at " + urn + ". Requested: " + (inMbpsAZ + inMbpsZA) + " In and " + (egMbpsAZ + egMbpsZA) + " Out. Available: " + bwAvail.get("Ingress") + " In and " + bwAvail.get("Egress") + " Out.");
+    public boolean evaluateBandwidthSharedURN(String urn, BandwidthAvailabilityTable availBwMap, Integer inMbpsAZ, Integer egMbpsAZ, Integer inMbpsZA, Integer egMbpsZA) {
+        if ((availBwMap.ingress(urn) < (inMbpsAZ + inMbpsZA)) || (availBwMap.egress(urn) < (egMbpsAZ + egMbpsZA))) {
+            log.error("Insufficient Bandwidth at " + urn + ". Requested: " + (inMbpsAZ + inMbpsZA) + " In and " + (egMbpsAZ + egMbpsZA) + " Out. Available: " + availBwMap.ingress(urn) + " In and " + availBwMap.egress(urn) + " Out.");
             return false;
         }
         return true;
@@ -531,18 +520,16 @@ public class BandwidthService {
      * @param ingressDirection - True if pruning is done based upon port ingress b/w, false if done by egress b/w
      * @return True, if there is enough available bandwidth at the URN. False, otherwise
      */
-    private boolean evaluateBandwidthURNUni(String  urn, Map<String, Map<String, Integer>> availBwMap,
+    private boolean evaluateBandwidthURNUni(String  urn, BandwidthAvailabilityTable availBwMap,
                                             Integer bwMbps, boolean ingressDirection) {
-        Map<String, Integer> bwAvail = availBwMap.get(urn);
-
-        Integer unidirectionalBW;
+        int unidirectionalBW;
         String direction = "";
 
         if (ingressDirection) {
-            unidirectionalBW = bwAvail.get("Ingress");
+            unidirectionalBW = availBwMap.ingress(urn);
             direction = " In.";
         } else {
-            unidirectionalBW = bwAvail.get("Egress");
+            unidirectionalBW = availBwMap.egress(urn);
             direction = " Out.";
         }
 
@@ -562,7 +549,7 @@ public class BandwidthService {
      * @param bwAvailMap         - Map of available bandwidth at each URN
      * @return True, if there is enough bandwidth at every fixture. False, otherwise.
      */
-    public boolean evaluateBandwidthJunction(RequestedVlanJunctionE req_j, Map<String, Map<String, Integer>> bwAvailMap) {
+    public boolean evaluateBandwidthJunction(RequestedVlanJunctionE req_j, BandwidthAvailabilityTable bwAvailMap) {
 
         // All requested fixtures on this junction
         Set<RequestedVlanFixtureE> reqFixtures = req_j.getFixtures();
@@ -594,7 +581,7 @@ public class BandwidthService {
      * @return True if there is sufficient reservable bandwidth, False otherwise.
      */
     public boolean evaluateBandwidthEdge(TopoEdge edge, Integer azBw, Integer zaBw, Map<String, UrnE> urnMap,
-                                         Map<String, Map<String, Integer>> availBwMap,
+                                         BandwidthAvailabilityTable availBwMap,
                                          Map<String, Map<String, Integer>> requestedFixtureBwMap) {
 
         // At least one of the two has reservable bandwidth, so check the valid nodes to determine
@@ -604,28 +591,30 @@ public class BandwidthService {
         boolean zPasses = true;
         String aUrn = edge.getA().getUrn();
         String zUrn = edge.getZ().getUrn();
-        if (availBwMap.containsKey(aUrn)) {
-            // Get a map of the available Ingress/Egress bandwidth for URN a
-            Map<String, Integer> aAvailBwMap = availBwMap.get(aUrn);
+        if (availBwMap.contains(aUrn)) {
+            // Get the available Ingress/Egress bandwidth for URN a
+            int aAvailIn = availBwMap.ingress(aUrn);
+            int aAvailEg = availBwMap.egress(aUrn);
             if(requestedFixtureBwMap.containsKey(aUrn)){
                 Map<String, Integer> aRequestedBwMap = requestedFixtureBwMap.get(aUrn);
-                aPasses = aAvailBwMap.get("Egress") >= aRequestedBwMap.get("Egress") &&
-                        aAvailBwMap.get("Ingress") >= aRequestedBwMap.get("Ingress");
+                aPasses = aAvailEg >= aRequestedBwMap.get("Egress") &&
+                        aAvailIn >= aRequestedBwMap.get("Ingress");
             }
             else{
-                aPasses = aAvailBwMap.get("Egress") >= azBw && aAvailBwMap.get("Ingress") >= zaBw;
+                aPasses = aAvailEg >= azBw && aAvailIn >= zaBw;
             }
         }
-        if (availBwMap.containsKey(zUrn)) {
-            // Get a map of the available Ingress/Egress bandwidth for URN z
-            Map<String, Integer> zAvailBwMap = availBwMap.get(zUrn);
+        if (availBwMap.contains(zUrn)) {
+            // Get the available Ingress/Egress bandwidth for URN z
+            int zAvailIn = availBwMap.ingress(zUrn);
+            int zAvailEg = availBwMap.egress(zUrn);
             if(requestedFixtureBwMap.containsKey(zUrn)){
                 Map<String, Integer> zRequestedBwMap = requestedFixtureBwMap.get(zUrn);
-                zPasses = zAvailBwMap.get("Egress") >= zRequestedBwMap.get("Egress") &&
-                        zAvailBwMap.get("Ingress") >= zRequestedBwMap.get("Ingress");
+                zPasses = zAvailEg >= zRequestedBwMap.get("Egress") &&
+                        zAvailIn >= zRequestedBwMap.get("Ingress");
             }
             else{
-                zPasses = zAvailBwMap.get("Ingress") >= azBw && zAvailBwMap.get("Egress") >= zaBw;
+                zPasses = zAvailIn >= azBw && zAvailEg >= zaBw;
             }
         }
 
@@ -647,7 +636,7 @@ public class BandwidthService {
      * @return True if there is sufficient reservable bandwidth, False otherwise.
      */
     public boolean evaluateBandwidthEdgeUni(TopoEdge edge, Integer theBw, Map<String, UrnE> urnMap,
-                                            Map<String, Map<String, Integer>> availBwMap,
+                                            BandwidthAvailabilityTable availBwMap,
                                             Map<String, Map<String, Integer>> requestedFixtureBwMap) {
 
         if (!edge.getA().getVertexType().equals(VertexType.PORT) || !edge.getZ().getVertexType().equals(VertexType.PORT))
@@ -660,33 +649,35 @@ public class BandwidthService {
         boolean zPasses = true;
         String aUrn = edge.getA().getUrn();
         String zUrn = edge.getZ().getUrn();
-        if (availBwMap.containsKey(aUrn)) {
-            // Get a map of the available Ingress/Egress bandwidth for URN a
-            Map<String, Integer> aAvailBwMap = availBwMap.get(aUrn);
+        if (availBwMap.contains(aUrn)) {
+            // Get the available Ingress/Egress bandwidth for URN a
+            int aAvailIn = availBwMap.ingress(aUrn);
+            int aAvailEg = availBwMap.egress(aUrn);
             if(requestedFixtureBwMap.containsKey(aUrn)){
                 Map<String, Integer> aRequestedBwMap = requestedFixtureBwMap.get(aUrn);
-                aPasses = aAvailBwMap.get("Egress") >= aRequestedBwMap.get("Egress");
+                aPasses = aAvailEg >= aRequestedBwMap.get("Egress");
             }
             else{
-                aPasses = aAvailBwMap.get("Egress") >= theBw;
+                aPasses = aAvailEg >= theBw;
             }
         }
-        if (availBwMap.containsKey(zUrn)) {
-            // Get a map of the available Ingress/Egress bandwidth for URN z
-            Map<String, Integer> zAvailBwMap = availBwMap.get(zUrn);
+        if (availBwMap.contains(zUrn)) {
+            // Get the available Ingress/Egress bandwidth for URN z
+            int zAvailIn = availBwMap.ingress(zUrn);
+            int zAvailEg = availBwMap.egress(zUrn);
             if(requestedFixtureBwMap.containsKey(zUrn)){
                 Map<String, Integer> zRequestedBwMap = requestedFixtureBwMap.get(zUrn);
-                zPasses = zAvailBwMap.get("Ingress") >= zRequestedBwMap.get("Ingress");
+                zPasses = zAvailIn >= zRequestedBwMap.get("Ingress");
             }
             else{
-                zPasses = zAvailBwMap.get("Ingress") >= theBw;
+                zPasses = zAvailIn >= theBw;
             }
         }
 
         return aPasses && zPasses;
     }
 
-    public boolean evaluateBandwidthFixtures(RequestedVlanPipeE reqPipe, Map<String, Map<String, Integer>> availBwMap) {
+    public boolean evaluateBandwidthFixtures(RequestedVlanPipeE reqPipe, BandwidthAvailabilityTable availBwMap) {
         Set<RequestedVlanFixtureE> aFixtures = reqPipe.getAJunction().getFixtures();
         Set<RequestedVlanFixtureE> zFixtures = reqPipe.getZJunction().getFixtures();
 
@@ -694,14 +685,14 @@ public class BandwidthService {
     }
 
     private boolean confirmSufficientBandwidthFixtures(Set<RequestedVlanFixtureE> fixtures,
-                                                       Map<String, Map<String, Integer>> availBwMap) {
+                                                       BandwidthAvailabilityTable availBwMap) {
         boolean allValid = true;
         for(RequestedVlanFixtureE fix : fixtures){
             String fixUrn = fix.getPortUrn();
             Integer ingressBw = fix.getInMbps();
             Integer egressBw = fix.getEgMbps();
             // If too much is requested for ingress or egress, then it is not a valid request
-            if(ingressBw > availBwMap.get(fixUrn).get("Ingress") || egressBw > availBwMap.get(fixUrn).get("Egress")){
+            if(ingressBw > availBwMap.ingress(fixUrn) || egressBw > availBwMap.egress(fixUrn)){
                 allValid = false;
             }
         }
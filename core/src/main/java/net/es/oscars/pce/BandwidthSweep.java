@@ -0,0 +1,128 @@
+package net.es.oscars.pce;
+
+import java.time.Instant;
+
+/**
+ * Sweep-line over reservation intervals, working on primitive arrays only.
+ *
+ * Reservations are described by parallel arrays of begin / end times (as produced by key(Instant)) and,
+ * for peak computations, ingress / egress amounts. Intervals are closed: a reservation ending at the same
+ * instant another one begins overlaps it.
+ */
+public final class BandwidthSweep {
+
+    private BandwidthSweep() {
+    }
+
+    /**
+     * Map an Instant to a sortable long (nanoseconds since the epoch). Instants outside the representable range
+     * (before 1677 or after 2262) saturate to Long.MIN_VALUE / Long.MAX_VALUE.
+     */
+    public static long key(Instant instant) {
+        try {
+            return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000_000L), instant.getNano());
+        } catch (ArithmeticException ex) {
+            return instant.getEpochSecond() < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Order the begin and end events of n reservations by time. At equal times begin events sort before end events.
+     *
+     * @param begins - begin time of each reservation
+     * @param ends   - end time of each reservation
+     * @param n      - number of reservations
+     * @return 2n event references in time order; a value r >= 0 is the begin of reservation r,
+     * a value r < 0 is the end of reservation ~r
+     */
+    public static int[] timeline(long[] begins, long[] ends, int n) {
+        int[] events = new int[2 * n];
+        long[] times = new long[2 * n];
+        for (int i = 0; i < n; i++) {
+            events[2 * i] = i;
+            times[2 * i] = begins[i];
+            events[2 * i + 1] = ~i;
+            times[2 * i + 1] = ends[i];
+        }
+        mergeSort(times, events, new long[2 * n], new int[2 * n], 0, 2 * n);
+        return events;
+    }
+
+    /**
+     * Exact peak concurrent usage over n reservations, in O(n log n).
+     *
+     * @return a two element array: {peak ingress, peak egress}
+     */
+    public static int[] peakUsage(long[] begins, long[] ends, int[] ingress, int[] egress, int n) {
+        int[] events = timeline(begins, ends, n);
+        long in = 0;
+        long eg = 0;
+        long peakIn = 0;
+        long peakEg = 0;
+        for (int event : events) {
+            if (event >= 0) {
+                in += ingress[event];
+                eg += egress[event];
+                if (in > peakIn) {
+                    peakIn = in;
+                }
+                if (eg > peakEg) {
+                    peakEg = eg;
+                }
+            } else {
+                in -= ingress[~event];
+                eg -= egress[~event];
+            }
+        }
+        return new int[]{(int) Math.min(peakIn, Integer.MAX_VALUE), (int) Math.min(peakEg, Integer.MAX_VALUE)};
+    }
+
+    private static boolean before(long timeA, int eventA, long timeB, int eventB) {
+        if (timeA != timeB) {
+            return timeA < timeB;
+        }
+        // begins (>= 0) before ends (< 0)
+        return eventA >= 0 && eventB < 0;
+    }
+
+    private static void mergeSort(long[] times, int[] events, long[] timeBuf, int[] eventBuf, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        if (to - from <= 16) {
+            // insertion sort for short runs
+            for (int i = from + 1; i < to; i++) {
+                long t = times[i];
+                int e = events[i];
+                int j = i - 1;
+                while (j >= from && before(t, e, times[j], events[j])) {
+                    times[j + 1] = times[j];
+                    events[j + 1] = events[j];
+                    j--;
+                }
+                times[j + 1] = t;
+                events[j + 1] = e;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(times, events, timeBuf, eventBuf, from, mid);
+        mergeSort(times, events, timeBuf, eventBuf, mid, to);
+        if (!before(times[mid], events[mid], times[mid - 1], events[mid - 1])) {
+            return;
+        }
+        System.arraycopy(times, from, timeBuf, from, to - from);
+        System.arraycopy(events, from, eventBuf, from, to - from);
+        int i = from;
+        int j = mid;
+        for (int k = from; k < to; k++) {
+            if (j >= to || (i < mid && !before(timeBuf[j], eventBuf[j], timeBuf[i], eventBuf[i]))) {
+                times[k] = timeBuf[i];
+                events[k] = eventBuf[i++];
+            } else {
+                times[k] = timeBuf[j];
+                events[k] = eventBuf[j++];
+            }
+        }
+    }
+}
@@ -19,7 +19,7 @@ import java.util.stream.Collectors;
 public class BhandariPCE {
 
     @Autowired
-    private BellmanFordPCE bellmanFordPCE;
+    private DijkstraPCE dijkstraPCE;
 
 
     public List<List<TopoEdge>> computeDisjointPaths(Topology topo, TopoVertex source, TopoVertex dest, Integer k){
@@ -27,13 +27,20 @@ public class BhandariPCE {
             return new ArrayList<>();
         }
 
-        return computePaths(topo, source, dest, k);
+        TopoGraph graph = dijkstraPCE.sharedGraph();
+        BitSet mask = graph.mask(topo.getEdges());
+        if(mask == null){
+            graph = TopoGraph.of(topo);
+            mask = graph.allEdges();
+        }
+        return computePaths(graph, mask, source, dest, k);
     }
 
     /** A specialized version of the BhandariPCE controller for supporting solutions requested by the SurvivableServiceLayerTopology.
      * The source and destination are ETHERNET-capable ports adjacent either to MPLS-capable ports OR adjacent to MPLS-capable devices.
      * Bhandari's algorithm would fail if the source and destination were to be port nodes because each can only be connected to one network link.
      * Therefore, this method identifies the nearest MPLS-capable devices to the incoming ETHERNET-capable ports, and passes them to the Bhandari algorithm code.
+     * The topology itself is not modified; the edges connecting the ports are only left out of the search.
      * @param topo Topology consisting ONLY of MPLS-layer ports/devices, and some adjacencies to the ETHERNET=layer source/dest ports
      * @param source Ethernet-capable source port
      * @param dest Ethernet-capable destination port
@@ -46,221 +53,135 @@ public class BhandariPCE {
         if(k == 0)
             return new ArrayList<>();
 
-        Set<TopoVertex> allTopoVertices = topo.getVertices();
-        Set<TopoEdge> allTopoEdges = topo.getEdges();
-        Set<TopoEdge> edgesRemoved = new HashSet<>();
+        TopoGraph graph = dijkstraPCE.sharedGraph();
+        BitSet mask = graph.mask(topo.getEdges());
+        if(mask == null){
+            graph = TopoGraph.of(topo);
+            mask = graph.allEdges();
+        }
         List<TopoEdge> initialEdges = new ArrayList<>();
         List<TopoEdge> terminalEdges = new ArrayList<>();
         TopoVertex newSrc = source;
         TopoVertex newDst = dest;
 
-        // Determine which edges connect source to topology and mark them for removal. Set newSrc equal to node adjacent to source.
+        // Leave out the edges connecting source and dest to the topology. Set newSrc/newDst equal to the nodes adjacent to them.
         for(TopoEdge ignoredEdge : edgesToIgnore)
         {
             if(ignoredEdge == null)
                 continue;
 
-            if(ignoredEdge.getA().equals(source) || ignoredEdge.getZ().equals(source))
+            if(ignoredEdge.getA().equals(source) || ignoredEdge.getZ().equals(source)
+                    || ignoredEdge.getA().equals(dest) || ignoredEdge.getZ().equals(dest))
             {
-                edgesRemoved.add(ignoredEdge);
-                if(ignoredEdge.getA().equals(source))
-                {
-                    newSrc = ignoredEdge.getZ();
-                    initialEdges.add(ignoredEdge);
-                }
+                clear(graph, mask, ignoredEdge);
             }
-        }
-
-        // Determine which edges connect dest to topology and mark them for removal. Set newDst equal to node adjacent to dest.
-        for(TopoEdge ignoredEdge : edgesToIgnore)
-        {
-            if(ignoredEdge == null)
-                continue;
-
-            if(ignoredEdge.getA().equals(dest) || ignoredEdge.getZ().equals(dest))
+            if(ignoredEdge.getA().equals(source))
             {
-                edgesRemoved.add(ignoredEdge);
-                if(ignoredEdge.getZ().equals(dest))
-                {
-                    newDst = ignoredEdge.getA();
-                    terminalEdges.add(ignoredEdge);
-                }
+                newSrc = ignoredEdge.getZ();
+                initialEdges.add(ignoredEdge);
+            }
+            if(ignoredEdge.getZ().equals(dest))
+            {
+                newDst = ignoredEdge.getA();
+                terminalEdges.add(ignoredEdge);
             }
         }
 
-        assert(allTopoVertices.contains(newSrc));
-        assert(allTopoVertices.contains(newDst));
-
-
-        // If the newSrc is a port, find adjacent device and mark relevant adjacencies for removal.
+        // If the newSrc is a port, step to the adjacent device and leave out the port's internal adjacencies.
         if(newSrc.getVertexType().equals(VertexType.PORT))
         {
-            Set<TopoEdge> portToDeviceEdges = new HashSet<>();
-
-            for(TopoEdge oneEdge : allTopoEdges)
+            TopoEdge toDevice = clearInternalEdges(graph, mask, newSrc, true);
+            if(toDevice != null)
             {
-                if(oneEdge.getLayer().equals(Layer.INTERNAL) && (oneEdge.getA().equals(newSrc) || oneEdge.getZ().equals(newSrc)))
-                    portToDeviceEdges.add(oneEdge);
+                newSrc = toDevice.getZ();
+                initialEdges.add(toDevice);
             }
-
-            for(TopoEdge oneRelevantEdge : portToDeviceEdges)
-            {
-                if(oneRelevantEdge.getA().equals(newSrc))
-                {
-                    newSrc = oneRelevantEdge.getZ();
-                    initialEdges.add(oneRelevantEdge);
-                    break;
-
-                }
-            }
-
-            edgesRemoved.addAll(portToDeviceEdges);
         }
 
-        // If the newDst is a port, find adjacent device and mark relevant adjacencies for removal.
+        // If the newDst is a port, step to the adjacent device and leave out the port's internal adjacencies.
         if(newDst.getVertexType().equals(VertexType.PORT))
         {
-            Set<TopoEdge> portToDeviceEdges = new HashSet<>();
-
-            for(TopoEdge oneEdge : allTopoEdges)
+            TopoEdge fromDevice = clearInternalEdges(graph, mask, newDst, false);
+            if(fromDevice != null)
             {
-                if(oneEdge.getLayer().equals(Layer.INTERNAL) && (oneEdge.getA().equals(newDst) || oneEdge.getZ().equals(newDst)))
-                    portToDeviceEdges.add(oneEdge);
+                newDst = fromDevice.getA();
+                terminalEdges.add(fromDevice);
             }
-
-            for(TopoEdge oneRelevantEdge : portToDeviceEdges)
-            {
-                if(oneRelevantEdge.getZ().equals(newDst))
-                {
-                    newDst = oneRelevantEdge.getA();
-                    terminalEdges.add(oneRelevantEdge);
-                    break;
-                }
-            }
-
-            edgesRemoved.addAll(portToDeviceEdges);
         }
 
-        assert(allTopoVertices.contains(newSrc));
-        assert(allTopoVertices.contains(newDst));
-
-        // Remove affected edges from topology so they aren't used in solution
-        allTopoEdges.removeAll(edgesRemoved);
-
         // Bhandari's algorithm
-        List<List<TopoEdge>> pathSet = computePaths(topo, newSrc, newDst, k);
+        List<List<TopoEdge>> pathSet = computePaths(graph, mask, newSrc, newDst, k);
 
-        // Put the removed edges (which are not survivable) back into the solution path set
+        // Put the left out edges (which are not survivable) back into the solution path set
         for(List<TopoEdge> onePath : pathSet)
         {
-            for(int edge = initialEdges.size()-1; edge >= 0; edge--)
-                onePath.add(0, initialEdges.get(edge));
-
-            for(int edge = terminalEdges.size()-1; edge >= 0; edge--)
-                onePath.add(terminalEdges.get(edge));
-
+            onePath.addAll(0, initialEdges);
+            onePath.addAll(terminalEdges);
         }
 
-        // Reset topology to original format
-        allTopoEdges.addAll(edgesRemoved);
-
         return pathSet;
     }
 
-    private List<List<TopoEdge>> computePaths(Topology topo, TopoVertex source, TopoVertex dest, Integer k){
-
-        // Find the first shortest path
-        List<TopoEdge> shortestPath = bellmanFordPCE.shortestPath(topo, source, dest);
-        if(shortestPath.isEmpty()){
+    /**
+     * Find k link-disjoint paths of least total cost, using Suurballe's algorithm over the masked graph.
+     */
+    private List<List<TopoEdge>> computePaths(TopoGraph graph, BitSet mask, TopoVertex source, TopoVertex dest, Integer k){
+        int src = graph.vertexId(source);
+        int dst = graph.vertexId(dest);
+        if(src == -1 || dst == -1){
             log.info("No shortest path from " + source.getUrn() + " to " + dest.getUrn() + " found");
             return new ArrayList<>();
         }
-        //logPath(shortestPath, "First Shortest Path");
 
-        List<List<TopoEdge>> paths = new ArrayList<>();
-        paths.add(shortestPath);
-
-        if(k == 1){
-            return paths;
+        List<List<TopoEdge>> paths = new DisjointPathSearch(graph, mask).paths(src, dst, k);
+        if(paths.isEmpty()){
+            log.info("No shortest path from " + source.getUrn() + " to " + dest.getUrn() + " found");
         }
-
-        List<List<TopoEdge>> tempPaths = new ArrayList<>(paths);
-        Map<TopoEdge, TopoEdge> reversedToOriginalMap = new HashMap<>();
-
-        // Modify the topology
-        Topology modifiedTopo = new Topology();
-        modifiedTopo.setLayer(topo.getLayer());
-        modifiedTopo.setVertices(topo.getVertices());
-        modifiedTopo.setEdges(new HashSet<>(topo.getEdges()));
-
-        for(Integer pIndex = 1; pIndex < k; pIndex++){
-
-            // Get the previous shortest path
-            List<TopoEdge> prevPath = tempPaths.get(pIndex-1);
-
-            // Reverse and give negative weight to edges in shortest path
-            for(TopoEdge pathEdge : prevPath){
-                Long reversedMetric = -1 * pathEdge.getMetric();
-                TopoEdge reversedEdge = new TopoEdge(pathEdge.getZ(), pathEdge.getA(), reversedMetric, pathEdge.getLayer());
-                reversedToOriginalMap.put(reversedEdge, pathEdge);
-                Set<TopoEdge> allBetweenPair = findAllBetweenPair(pathEdge.getA(), pathEdge.getZ(), modifiedTopo.getEdges());
-                modifiedTopo.getEdges().removeAll(allBetweenPair);
-                modifiedTopo.getEdges().add(reversedEdge);
-            }
-
-            // Find the new shortest path
-            List<TopoEdge> modShortestPath = bellmanFordPCE.shortestPath(modifiedTopo, source, dest);
-            //(modShortestPath, "SP on modified topology for (" + source.getUrn() + "," + dest.getUrn() + ")");
-            tempPaths.add(modShortestPath);
+        else if(paths.size() < k){
+            log.info("Couldn't find disjoint path from " + source.getUrn() + " to " + dest.getUrn());
+            log.info("Returning all found paths");
         }
-        return combine(shortestPath, tempPaths, reversedToOriginalMap, modifiedTopo, source, dest, k);
-
+        return paths;
     }
 
-    private Set<TopoEdge> findAllBetweenPair(TopoVertex src, TopoVertex dst, Set<TopoEdge> edges){
-        return edges.stream()
-                .filter(e -> e.getA().equals(src) && e.getZ().equals(dst) || e.getA().equals(dst) && e.getZ().equals(src))
-                .collect(Collectors.toSet());
+    private void clear(TopoGraph graph, BitSet mask, TopoEdge edge){
+        BitSet single = graph.mask(Collections.singletonList(edge));
+        if(single != null){
+            mask.andNot(single);
+        }
     }
 
-    private List<List<TopoEdge>> combine(List<TopoEdge> shortestPath, List<List<TopoEdge>> tempPaths,
-                                         Map<TopoEdge, TopoEdge> reversedToOriginalMap, Topology topo,
-                                         TopoVertex source, TopoVertex dest, Integer k) {
-
-        List<List<TopoEdge>> paths = new ArrayList<>();
-
-        // Remove all inverse edges taken in new shortest path (along with mapped edge in original shortest path)
-        Set<TopoEdge> combinedEdges = new HashSet<>();
-        for (Integer index = 1; index < tempPaths.size(); index++) {
-            List<TopoEdge> tempPath = tempPaths.get(index);
-            for (TopoEdge modSpEdge : tempPath) {
-                if (reversedToOriginalMap.containsKey(modSpEdge)) {
-                    TopoEdge origSpEdge = reversedToOriginalMap.get(modSpEdge);
-                    shortestPath.remove(origSpEdge);
-                } else {
-                    combinedEdges.add(modSpEdge);
+    /**
+     * Leave out the INTERNAL edges between a port and its device, in both directions.
+     * @param fromPort Whether to return the edge from the port to the device, or the one from the device to the port
+     * @return the requested edge, or null if there is none
+     */
+    private TopoEdge clearInternalEdges(TopoGraph graph, BitSet mask, TopoVertex port, boolean fromPort){
+        int p = graph.vertexId(port);
+        if(p == -1){
+            return null;
+        }
+        TopoEdge toDevice = null;
+        TopoEdge fromDevice = null;
+        for(int e = graph.firstEdge(p), end = graph.firstEdge(p + 1); e < end; e++){
+            if(!mask.get(e) || !graph.edge(e).getLayer().equals(Layer.INTERNAL)){
+                continue;
+            }
+            int device = graph.head(e);
+            for(int r = graph.firstEdge(device), rEnd = graph.firstEdge(device + 1); r < rEnd; r++){
+                if(mask.get(r) && graph.head(r) == p && graph.edge(r).getLayer().equals(Layer.INTERNAL)){
+                    if(fromDevice == null){
+                        fromDevice = graph.edge(r);
+                    }
+                    mask.clear(r);
                 }
             }
-        }
-        combinedEdges.addAll(shortestPath);
-
-        // Find the shortest paths given these combined edges
-        //logPath(new ArrayList<>(combinedEdges), "Combined Edges");
-        topo.setEdges(combinedEdges);
-
-        for(Integer pIndex = 0; pIndex < k; pIndex++){
-            List<TopoEdge> sp = bellmanFordPCE.shortestPath(topo, source, dest);
-            if(sp.isEmpty()){
-                log.info("Couldn't find disjoint path from " + source.getUrn() + " to " + dest.getUrn());
-                log.info("Returning all found paths");
-                return paths;
+            if(toDevice == null){
+                toDevice = graph.edge(e);
             }
-            paths.add(sp);
-            combinedEdges.removeAll(sp);
-            topo.setEdges(combinedEdges);
+            mask.clear(e);
         }
-
-        return paths;
+        return fromPort ? toDevice : fromDevice;
     }
 
     private void logPath(List<TopoEdge> path, String title){
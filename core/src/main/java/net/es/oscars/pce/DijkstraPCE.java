@@ -1,21 +1,17 @@
 package net.es.oscars.pce;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import edu.uci.ics.jung.algorithms.shortestpath.DijkstraShortestPath;
-import edu.uci.ics.jung.graph.DirectedSparseMultigraph;
-import edu.uci.ics.jung.graph.Graph;
-import edu.uci.ics.jung.graph.util.EdgeType;
 import lombok.extern.slf4j.Slf4j;
 import net.es.oscars.dto.topo.TopoEdge;
 import net.es.oscars.dto.topo.TopoVertex;
 import net.es.oscars.dto.topo.Topology;
 import net.es.oscars.topo.svc.TopoService;
-import org.apache.commons.collections15.Transformer;
+import net.es.oscars.topo.svc.TopoSnapshot;
+import net.es.oscars.topo.svc.TopoSnapshotService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 /**
@@ -27,44 +23,95 @@ public class DijkstraPCE {
     @Autowired
     private TopoService topoService;
 
+    @Autowired
+    private TopoSnapshotService topoSnapshotService;
+
+    private volatile SharedGraph sharedGraph;
+
+    // each thread's search over the shared graph; replaced when the shared graph is, so at most one graph is held per thread
+    private final ThreadLocal<ShortestPathSearch> sharedSearches = new ThreadLocal<>();
+
 
     /**
      * Computes Dijkstra's shortest path directed from srcVertex to dstVertex. Input topology is assumed to be pre-pruned based on bandwidth and vlan availability.
+     * Topologies pruned from the multi-layer topology are routed over the shared graph of the current topology snapshot,
+     * using their edges as a mask; any other topology is compiled into a graph of its own first.
      *
      * @param topology  - pruned topology
      * @param srcVertex - source URN
      * @param dstVertex - destination URN
-     * @return path as List of TopoEdge objects
+     * @return path as List of TopoEdge objects, empty if there is no path
      */
     public List<TopoEdge> computeShortestPathEdges(Topology topology, TopoVertex srcVertex, TopoVertex dstVertex) {
-
-        Graph<TopoVertex, TopoEdge> graph = new DirectedSparseMultigraph<>();
-
-         Transformer<TopoEdge, Double> wtTransformer = edge -> edge.getMetric().doubleValue();
-
-        this.addToGraph(topology, graph);
-
-        String pretty = null;
-        try {
-            pretty = new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(graph);
-        } catch (JsonProcessingException e) {
-            e.printStackTrace();
+        TopoGraph graph = sharedGraph();
+        BitSet mask = graph.mask(topology.getEdges());
+        if (mask == null) {
+            graph = TopoGraph.of(topology);
         }
-        // log.info(pretty);
-
-
-        DijkstraShortestPath<TopoVertex, TopoEdge> alg = new DijkstraShortestPath<>(graph, wtTransformer);
+        return computeShortestPathEdges(graph, mask, srcVertex, dstVertex);
+    }
 
-        List<TopoEdge> path = alg.getPath(srcVertex, dstVertex);
+    /**
+     * Computes Dijkstra's shortest path directed from srcVertex to dstVertex over the masked edges of a graph.
+     *
+     * @param graph     - graph to route over
+     * @param mask      - edges of the graph that may be used, or null for all of them
+     * @param srcVertex - source URN
+     * @param dstVertex - destination URN
+     * @return path as List of TopoEdge objects, empty if there is no path
+     */
+    public List<TopoEdge> computeShortestPathEdges(TopoGraph graph, BitSet mask, TopoVertex srcVertex, TopoVertex dstVertex) {
+        return computeShortestPathEdges(search(graph), mask, srcVertex, dstVertex);
+    }
 
-        //log.info("calculated path: ");
-        if (path.isEmpty()) {
-            //log.error("no path found");
+    /**
+     * Computes Dijkstra's shortest path directed from srcVertex to dstVertex over the masked edges of a graph, for callers
+     * that route over a graph of their own many times and keep the search state for it.
+     *
+     * @param search    - search state of the graph to route over, from TopoGraph.newSearch()
+     * @param mask      - edges of the graph that may be used, or null for all of them
+     * @param srcVertex - source URN
+     * @param dstVertex - destination URN
+     * @return path as List of TopoEdge objects, empty if there is no path
+     */
+    public List<TopoEdge> computeShortestPathEdges(ShortestPathSearch search, BitSet mask, TopoVertex srcVertex, TopoVertex dstVertex) {
+        TopoGraph graph = search.graph();
+        int src = graph.vertexId(srcVertex);
+        int dst = graph.vertexId(dstVertex);
+        if (src == -1 || dst == -1) {
+            log.error("no path found, vertex not in topology: " + (src == -1 ? srcVertex : dstVertex).getUrn());
+            return new ArrayList<>();
         }
+        return search.shortestPath(src, dst, mask);
+    }
 
-        //path.stream().forEach(h -> log.info(h.getA().getUrn() + " -- " + h.getLayer() + " -- " + h.getZ().getUrn()));
+    /**
+     * @return the graph of the current snapshot's multi-layer topology, built once per snapshot
+     */
+    public TopoGraph sharedGraph() {
+        TopoSnapshot snapshot = topoSnapshotService.current();
+        SharedGraph shared = sharedGraph;
+        if (shared == null || shared.snapshot != snapshot) {
+            shared = new SharedGraph(snapshot, TopoGraph.of(snapshot.multilayer()));
+            sharedGraph = shared;
+        }
+        return shared.graph;
+    }
 
-        return path;
+    /**
+     * @return the calling thread's search over the shared graph if that is the graph, otherwise a new search
+     */
+    private ShortestPathSearch search(TopoGraph graph) {
+        SharedGraph shared = sharedGraph;
+        if (shared == null || shared.graph != graph) {
+            return graph.newSearch();
+        }
+        ShortestPathSearch search = sharedSearches.get();
+        if (search == null || search.graph() != graph) {
+            search = graph.newSearch();
+            sharedSearches.set(search);
+        }
+        return search;
     }
 
 
@@ -99,26 +146,13 @@ public class DijkstraPCE {
         return pathStrings;
     }
 
-    private void addToGraph(Topology topo, Graph<TopoVertex, TopoEdge> g) {
-        topo.getVertices().stream()
-                .forEach(v -> {
-                            //log.info("adding vertex to Dijkstra graph: " + v.toString());
-                            g.addVertex(v);
-                        }
-                );
-
-        topo.getEdges().stream()
-                .forEach(e -> {
-                            TopoVertex nodeA = new TopoVertex(e.getA().getUrn(), e.getA().getVertexType(), e.getA().getPortLayer());
-                            TopoVertex nodeZ = new TopoVertex(e.getZ().getUrn(), e.getZ().getVertexType(), e.getZ().getPortLayer());
-                            TopoEdge az = TopoEdge.builder().a(nodeA).z(nodeZ).build();
-
-                            az.setMetric(e.getMetric());
-                            az.setLayer(e.getLayer());
-                            //log.info("adding edge to Dijkstra graph: (" + e.getA().getUrn() + "," + e.getZ().getUrn() + ")");
-
-                            g.addEdge(az, nodeA, nodeZ, EdgeType.DIRECTED);
-                        }
-                );
+    private static class SharedGraph {
+        private final TopoSnapshot snapshot;
+        private final TopoGraph graph;
+
+        private SharedGraph(TopoSnapshot snapshot, TopoGraph graph) {
+            this.snapshot = snapshot;
+            this.graph = graph;
+        }
     }
 }
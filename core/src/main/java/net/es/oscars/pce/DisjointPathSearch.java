@@ -0,0 +1,226 @@
+package net.es.oscars.pce;
+
+import net.es.oscars.dto.topo.TopoEdge;
+
+import java.util.*;
+
+/**
+ * Suurballe's algorithm over a TopoGraph: k link-disjoint paths of minimum total cost, found as k successive shortest
+ * augmenting paths in the residual graph.
+ *
+ * Each round searches on reduced costs w(u,v) + p(u) - p(v), where the potentials p are the distances of the previous
+ * rounds, so that the residual edges (the reversed edges of the paths found so far) are not negative and every round
+ * after the first is a plain Dijkstra search instead of a Bellman-Ford pass. Once a path uses an edge, no other edge
+ * between the same two vertices (in either direction) may be used, as in BhandariPCE's modified topology; those edges
+ * become usable again if a later round cancels the path edge. A cancelled link may come back with a negative reduced
+ * cost, so the search is label-correcting: a vertex is re-expanded whenever its distance improves.
+ *
+ * The graph and mask are never modified. Instances hold the state of one computation and are not thread-safe.
+ */
+public final class DisjointPathSearch {
+    private final TopoGraph graph;
+    private final BitSet mask;
+
+    private final long[] potential;
+    // edges carrying a path, the links (unordered vertex pairs) they occupy, and for each vertex the path edges into it
+    private final BitSet flow;
+    private final Set<Long> busyLinks = new HashSet<>();
+    private final Map<Integer, List<Integer>> flowInto = new HashMap<>();
+
+    private final long[] dist;
+    // edge used to reach a vertex: e for a graph edge, ~e for the reversal of path edge e, NONE for the source
+    private final int[] prev;
+    // edges on the current path to a vertex; reaching the vertex count means a negative cycle
+    private final int[] hops;
+    private final boolean[] reached;
+
+    private long[] heapDist = new long[16];
+    private int[] heapVertex = new int[16];
+    private int heapSize;
+
+    private static final int NONE = Integer.MIN_VALUE;
+
+    /**
+     * @param graph - graph to route over
+     * @param mask  - edges of the graph that may be used, or null for all of them
+     */
+    public DisjointPathSearch(TopoGraph graph, BitSet mask) {
+        this.graph = graph;
+        this.mask = mask;
+        int n = graph.vertexCount();
+        this.potential = new long[n];
+        this.flow = new BitSet(graph.edgeCount());
+        this.dist = new long[n];
+        this.prev = new int[n];
+        this.hops = new int[n];
+        this.reached = new boolean[n];
+    }
+
+    /**
+     * Find up to k link-disjoint paths from src to dst with the least total cost.
+     *
+     * @return the paths as graph edges, shortest first; fewer than k if the graph does not have k disjoint paths
+     */
+    public List<List<TopoEdge>> paths(int src, int dst, int k) {
+        int rounds = 0;
+        while (rounds < k && augment(src, dst)) {
+            rounds++;
+        }
+
+        // the path edges form the disjoint paths; take them apart shortest first
+        BitSet remaining = (BitSet) flow.clone();
+        List<List<TopoEdge>> paths = new ArrayList<>();
+        ShortestPathSearch search = graph.newSearch();
+        for (int i = 0; i < rounds; i++) {
+            search.run(src, dst, remaining);
+            int[] path = search.pathTo(dst);
+            if (path.length == 0) {
+                break;
+            }
+            List<TopoEdge> edges = new ArrayList<>(path.length);
+            for (int e : path) {
+                edges.add(graph.edge(e));
+                remaining.clear(e);
+            }
+            paths.add(edges);
+        }
+        return paths;
+    }
+
+    /**
+     * Run one round: find the shortest src-dst path in the residual graph, and move the path edges along it.
+     *
+     * @return false if dst can not be reached
+     */
+    private boolean augment(int src, int dst) {
+        if (!search(src, dst)) {
+            return false;
+        }
+
+        // potentials for the next round; vertices beyond dst are capped at its distance, which keeps them valid
+        long dstDist = dist[dst];
+        for (int v = 0; v < potential.length; v++) {
+            potential[v] += reached[v] ? Math.min(dist[v], dstDist) : dstDist;
+        }
+
+        for (int v = dst; v != src; ) {
+            int p = prev[v];
+            if (p >= 0) {
+                flow.set(p);
+                busyLinks.add(link(graph.tail(p), graph.head(p)));
+                flowInto.computeIfAbsent(graph.head(p), x -> new ArrayList<>()).add(p);
+                v = graph.tail(p);
+            } else {
+                int e = ~p;
+                flow.clear(e);
+                busyLinks.remove(link(graph.tail(e), graph.head(e)));
+                flowInto.get(graph.head(e)).remove(Integer.valueOf(e));
+                v = graph.head(e);
+            }
+        }
+        return true;
+    }
+
+    private boolean search(int src, int dst) {
+        Arrays.fill(dist, Long.MAX_VALUE);
+        Arrays.fill(reached, false);
+        heapSize = 0;
+        dist[src] = 0L;
+        prev[src] = NONE;
+        hops[src] = 0;
+        reached[src] = true;
+        push(0L, src);
+
+        while (heapSize > 0) {
+            long du = heapDist[0];
+            int u = pop();
+            if (du > dist[u]) {
+                continue;
+            }
+            if (hops[u] >= dist.length) {
+                // a cancelled link closed a negative cycle; give up rather than loop
+                return false;
+            }
+
+            for (int e = graph.firstEdge(u), end = graph.firstEdge(u + 1); e < end; e++) {
+                if ((mask != null && !mask.get(e)) || flow.get(e)) {
+                    continue;
+                }
+                int v = graph.head(e);
+                if (busyLinks.contains(link(u, v))) {
+                    continue;
+                }
+                relax(u, v, du + graph.weight(e) + potential[u] - potential[v], e);
+            }
+            List<Integer> into = flowInto.get(u);
+            if (into != null) {
+                for (int e : into) {
+                    int v = graph.tail(e);
+                    relax(u, v, du - graph.weight(e) + potential[u] - potential[v], ~e);
+                }
+            }
+        }
+        return reached[dst];
+    }
+
+    private void relax(int u, int v, long d, int via) {
+        // the source stays the root, even if a negative cycle leads back to it
+        if (!reached[v] || (d < dist[v] && prev[v] != NONE)) {
+            reached[v] = true;
+            dist[v] = d;
+            prev[v] = via;
+            hops[v] = hops[u] + 1;
+            push(d, v);
+        }
+    }
+
+    private long link(int u, int v) {
+        return u < v ? ((long) u << 32) | v : ((long) v << 32) | u;
+    }
+
+    // binary heap with lazy deletion: stale entries are skipped when popped
+
+    private void push(long d, int v) {
+        if (heapSize == heapDist.length) {
+            heapDist = Arrays.copyOf(heapDist, heapSize * 2);
+            heapVertex = Arrays.copyOf(heapVertex, heapSize * 2);
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heapDist[parent] <= d) {
+                break;
+            }
+            heapDist[i] = heapDist[parent];
+            heapVertex[i] = heapVertex[parent];
+            i = parent;
+        }
+        heapDist[i] = d;
+        heapVertex[i] = v;
+    }
+
+    private int pop() {
+        int top = heapVertex[0];
+        long d = heapDist[--heapSize];
+        int v = heapVertex[heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heapDist[child + 1] < heapDist[child]) {
+                child++;
+            }
+            if (heapDist[child] >= d) {
+                break;
+            }
+            heapDist[i] = heapDist[child];
+            heapVertex[i] = heapVertex[child];
+            i = child;
+        }
+        heapDist[i] = d;
+        heapVertex[i] = v;
+        return top;
+    }
+}
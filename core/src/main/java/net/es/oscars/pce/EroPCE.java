@@ -38,7 +38,7 @@ public class EroPCE {
      * @throws PCEException
      */
     public Map<String, List<TopoEdge>> computeSpecifiedERO(RequestedVlanPipeE requestPipe,
-                                                           Map<String, Map<String, Integer>> bwAvailMap,
+                                                           BandwidthAvailabilityTable bwAvailMap,
                                                            List<ReservedVlanE> rsvVlanList) throws PCEException {
         log.info("Entering EroPCE.");
 
@@ -156,7 +156,7 @@ public class EroPCE {
     }
 
     private Map<String, List<TopoEdge>> handlePartialERO(Topology topo, RequestedVlanPipeE reqPipe,
-                                                         Map<String, Map<String, Integer>> bwAvailMap, List<ReservedVlanE> rsvVlanList,
+                                                         BandwidthAvailabilityTable bwAvailMap, List<ReservedVlanE> rsvVlanList,
                                                          List<String> azERO, List<String> zaERO) throws PCEException {
 
         // Find the shortest AZ path from the source to each intermediate "destination" before reaching the final
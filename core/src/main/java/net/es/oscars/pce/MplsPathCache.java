@@ -0,0 +1,140 @@
+package net.es.oscars.pce;
+
+import net.es.oscars.dto.topo.TopoEdge;
+import net.es.oscars.pce.prop.PceProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Cache of the MPLS-layer paths computed for service-layer logical links, shared between requests.
+ *
+ * Entries belong to a Base: the exact set of MPLS-layer edges logical links are routed over. Within a base, a path is
+ * keyed by its endpoints and a power-of-two bucket of the requested bandwidth, and stored together with the
+ * adaptation edges of its endpoints and the edges that were pruned when it was computed.
+ *
+ * An entry is not tied to a reservation epoch. Instead it is validated against the pruning result of the request
+ * looking it up: the path is still the shortest one as long as all of its edges are still available and none of
+ * the edges pruned back then became available since. A reservation therefore only invalidates the entries that
+ * route over, or were blocked by, the ports it changes.
+ */
+@Component
+public class MplsPathCache {
+    private static final int MAX_BASES = 32;
+
+    @Autowired
+    private PceProperties pceProperties;
+
+    private final Map<Set<TopoEdge>, Base> bases = new LinkedHashMap<Set<TopoEdge>, Base>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Set<TopoEdge>, Base> eldest) {
+            return size() > MAX_BASES;
+        }
+    };
+
+    private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > pceProperties.getMplsPathCacheSize();
+        }
+    };
+
+    /**
+     * @param edges - The MPLS-layer edges logical links are routed over; must not be modified afterwards
+     * @return The base for this edge set, or null if caching is disabled
+     */
+    public synchronized Base base(Set<TopoEdge> edges) {
+        if (pceProperties.getMplsPathCacheSize() <= 0) {
+            return null;
+        }
+        return bases.computeIfAbsent(edges, e -> new Base());
+    }
+
+    /**
+     * Look up the path between two ports.
+     *
+     * @param base - The base of the requesting topology
+     * @param srcUrn - Logical link source
+     * @param dstUrn - Logical link destination
+     * @param bandwidth - Requested bandwidth, in the direction of the path
+     * @param adaptation - The adaptation edges of both endpoints
+     * @param available - The edges left after pruning for this request
+     * @return The cached path (empty if there is no path), or null if there is no valid entry
+     */
+    public synchronized List<TopoEdge> lookup(Base base, String srcUrn, String dstUrn, Integer bandwidth,
+                                              Set<TopoEdge> adaptation, Set<TopoEdge> available) {
+        Key key = new Key(base, srcUrn, dstUrn, bucket(bandwidth));
+        Entry entry = entries.get(key);
+        if (entry == null || !entry.adaptation.equals(adaptation)) {
+            return null;
+        }
+        if (!available.containsAll(entry.path) || entry.blocked.stream().anyMatch(available::contains)) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.path;
+    }
+
+    public synchronized void store(Base base, String srcUrn, String dstUrn, Integer bandwidth,
+                                   Set<TopoEdge> adaptation, List<TopoEdge> path, List<TopoEdge> blocked) {
+        entries.put(new Key(base, srcUrn, dstUrn, bucket(bandwidth)), new Entry(adaptation, path, blocked));
+    }
+
+    public synchronized void clear() {
+        bases.clear();
+        entries.clear();
+    }
+
+    private static int bucket(Integer bandwidth) {
+        return bandwidth == null || bandwidth <= 0 ? 0 : Integer.highestOneBit(bandwidth);
+    }
+
+    /**
+     * Identity of an edge set; entries of different bases never match.
+     */
+    public static final class Base {
+        private Base() {
+        }
+    }
+
+    private static final class Key {
+        private final Base base;
+        private final String srcUrn;
+        private final String dstUrn;
+        private final int bucket;
+
+        private Key(Base base, String srcUrn, String dstUrn, int bucket) {
+            this.base = base;
+            this.srcUrn = srcUrn;
+            this.dstUrn = dstUrn;
+            this.bucket = bucket;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return base == k.base && bucket == k.bucket && srcUrn.equals(k.srcUrn) && dstUrn.equals(k.dstUrn);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(base), srcUrn, dstUrn, bucket);
+        }
+    }
+
+    private static final class Entry {
+        private final Set<TopoEdge> adaptation;
+        private final List<TopoEdge> path;
+        private final List<TopoEdge> blocked;
+
+        private Entry(Set<TopoEdge> adaptation, List<TopoEdge> path, List<TopoEdge> blocked) {
+            this.adaptation = adaptation;
+            this.path = Collections.unmodifiableList(new ArrayList<>(path));
+            this.blocked = blocked;
+        }
+    }
+}
@@ -12,9 +12,10 @@ import net.es.oscars.resv.ent.RequestedVlanFixtureE;
 import net.es.oscars.resv.ent.RequestedVlanPipeE;
 import net.es.oscars.resv.ent.ReservedVlanE;
 import net.es.oscars.servicetopo.ServiceLayerTopology;
-import net.es.oscars.topo.dao.UrnRepository;
 import net.es.oscars.topo.ent.UrnE;
 import net.es.oscars.topo.svc.TopoService;
+import net.es.oscars.topo.svc.TopoSnapshotService;
+import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -37,10 +38,11 @@ public class NonPalindromicalPCE {
     private DijkstraPCE dijkstraPCE;
 
     @Autowired
-    private UrnRepository urnRepo;
+    private TopoSnapshotService topoSnapshotService;
 
+    // prototype-scoped: every call builds its own service-layer topology, so pipes can be routed concurrently
     @Autowired
-    private ServiceLayerTopology serviceLayerTopology;
+    private ObjectFactory<ServiceLayerTopology> serviceLayerTopologies;
 
     /**
      * Depends on DijkstraPCE and ServiceLayerTopology to construct and build the Service-Layer EROs, and then map them to Physical-Layer EROs
@@ -49,8 +51,9 @@ public class NonPalindromicalPCE {
      * @return A two-element Map containing both the forward-direction (A->Z) ERO and the reverse-direction (Z->A) ERO
      * @throws PCEException
      */
-    public Map<String, List<TopoEdge>> computeNonPalindromicERO(RequestedVlanPipeE requestPipe, Map<String, Map<String, Integer>> bwAvailMap, List<ReservedVlanE> rsvVlanList) throws PCEException
+    public Map<String, List<TopoEdge>> computeNonPalindromicERO(RequestedVlanPipeE requestPipe, BandwidthAvailabilityTable bwAvailMap, List<ReservedVlanE> rsvVlanList) throws PCEException
     {
+        ServiceLayerTopology serviceLayerTopology = serviceLayerTopologies.getObject();
         Topology ethTopo = topoService.layer(Layer.ETHERNET);
         Topology intTopo = topoService.layer(Layer.INTERNAL);
         Topology mplsTopo = topoService.layer(Layer.MPLS);
@@ -161,7 +164,7 @@ public class NonPalindromicalPCE {
         serviceLayerTopology.buildLogicalLayerDstNodes(dstDevice, dstPort);
 
         // Performs shortest path routing on MPLS-layer to properly assign weights to each logical link on Service-Layer
-        serviceLayerTopology.calculateLogicalLinkWeights(requestPipe, urnRepo.findAll(), bwAvailMap, rsvVlanList);
+        serviceLayerTopology.calculateLogicalLinkWeights(requestPipe, topoSnapshotService.current().getUrns(), bwAvailMap, rsvVlanList);
 
         Topology slTopo = serviceLayerTopology.getSLTopology();
         Topology prunedSlTopo = pruningService.pruneWithPipe(slTopo, requestPipe, bwAvailMap, rsvVlanList);
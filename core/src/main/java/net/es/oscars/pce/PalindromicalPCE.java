@@ -36,7 +36,7 @@ public class PalindromicalPCE {
      * @throws PCEException
      */
     public Map<String, List<TopoEdge>> computePalindromicERO(RequestedVlanPipeE requestPipe,
-                                                             Map<String, Map<String, Integer>> bwAvailMap,
+                                                             BandwidthAvailabilityTable bwAvailMap,
                                                              List<ReservedVlanE> rsvVlanList) throws PCEException {
         Topology multiLayerTopo = topoService.getMultilayerTopology();
 
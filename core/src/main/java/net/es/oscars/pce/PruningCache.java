@@ -0,0 +1,168 @@
+package net.es.oscars.pce;
+
+import net.es.oscars.dto.topo.enums.Layer;
+import net.es.oscars.helpers.VlanBitmap;
+import net.es.oscars.pce.prop.PceProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Cache of PruningService results, shared between requests.
+ *
+ * Topologies are handled as edge masks: bit i stands for edge i of the topology snapshot (see
+ * TopoSnapshot.edgeOrdinal()). An entry maps everything a pruning result depends on to the mask of the edges left
+ * over, so that pruning again for the same pipe (in the other direction, for the hop count of manycast requests,
+ * or when retrying pipes in reverse order) only has to look the mask up.
+ *
+ * Reservations enter the key through the state of the bandwidth availability table and the reserved VLAN ids of
+ * each port. A table fresh from the committed reservations is in the state of its Origin (topology version,
+ * reservation epoch and schedule range), which is the same for every request over the same range until the next
+ * commit, so requests share entries. A trial reservation changes both; rolling it back brings back the state, and
+ * an equal set of reserved VLANs gives an equal map, so the entries computed before are found again. Equal maps are
+ * shared between entries (see intern()), as most requests only go through a handful of them.
+ */
+@Component
+public class PruningCache {
+    private static final int MAX_RESERVED_VLAN_MAPS = 64;
+
+    @Autowired
+    private PceProperties pceProperties;
+
+    private final Map<Key, BitSet> entries = new LinkedHashMap<Key, BitSet>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, BitSet> eldest) {
+            return size() > pceProperties.getPruningCacheSize();
+        }
+    };
+
+    private final Map<Map<String, VlanBitmap>, Map<String, VlanBitmap>> reservedVlanMaps =
+            new LinkedHashMap<Map<String, VlanBitmap>, Map<String, VlanBitmap>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Map<String, VlanBitmap>, Map<String, VlanBitmap>> eldest) {
+                    return size() > MAX_RESERVED_VLAN_MAPS;
+                }
+            };
+
+    private long hits = 0L;
+
+    private long misses = 0L;
+
+    public boolean isEnabled() {
+        return pceProperties.getPruningCacheSize() > 0;
+    }
+
+    /**
+     * @return The mask of the edges left after pruning, or null if there is no entry; must not be modified
+     */
+    public synchronized BitSet lookup(Key key) {
+        BitSet mask = entries.get(key);
+        if (mask == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return mask;
+    }
+
+    public synchronized void store(Key key, BitSet mask) {
+        if (isEnabled()) {
+            entries.put(key, (BitSet) mask.clone());
+        }
+    }
+
+    /**
+     * @param reservedVlans - Reserved VLAN ids of each port
+     * @return An equal map already used by the cache, or the given one; must not be modified
+     */
+    public synchronized Map<String, VlanBitmap> intern(Map<String, VlanBitmap> reservedVlans) {
+        return reservedVlanMaps.computeIfAbsent(reservedVlans, m -> m);
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        reservedVlanMaps.clear();
+    }
+
+    /**
+     * Everything a pruning result depends on. The maps, sets and masks are held on to and must not be modified
+     * after the key is made.
+     */
+    public static final class Key {
+        private final long topoVersion;
+        private final Object bandwidthState;
+        private final Layer layer;
+        private final boolean bidirectional;
+        private final Integer azMbps;
+        private final Integer zaMbps;
+        private final VlanBitmap requestedVlans;
+        private final Map<String, VlanBitmap> reservedVlans;
+        private final Set<String> blacklist;
+        private final Map<String, Map<String, Integer>> fixtureMbps;
+        private final BitSet edges;
+        private final int hash;
+
+        /**
+         * @param topoVersion - Version of the topology snapshot the edge masks refer to
+         * @param bandwidthState - BandwidthAvailabilityTable.state() of the available bandwidth
+         * @param layer - Layer of the pruned topology
+         * @param bidirectional - True if both azMbps and zaMbps are checked on each edge; false if only azMbps is
+         * @param azMbps - Requested bandwidth in one direction
+         * @param zaMbps - Requested bandwidth in the other direction; ignored unless bidirectional
+         * @param requestedVlans - Requested VLAN ids
+         * @param reservedVlans - Reserved VLAN ids of each port
+         * @param blacklist - URNs pruned regardless of availability
+         * @param fixtureMbps - Requested Ingress / Egress bandwidth of each fixture
+         * @param edges - The edges of the topology before pruning
+         */
+        public Key(long topoVersion, Object bandwidthState, Layer layer, boolean bidirectional,
+                   Integer azMbps, Integer zaMbps, VlanBitmap requestedVlans, Map<String, VlanBitmap> reservedVlans,
+                   Set<String> blacklist, Map<String, Map<String, Integer>> fixtureMbps, BitSet edges) {
+            this.topoVersion = topoVersion;
+            this.bandwidthState = bandwidthState;
+            this.layer = layer;
+            this.bidirectional = bidirectional;
+            this.azMbps = azMbps;
+            this.zaMbps = bidirectional ? zaMbps : null;
+            this.requestedVlans = requestedVlans;
+            this.reservedVlans = reservedVlans;
+            this.blacklist = blacklist == null ? Collections.emptySet() : blacklist;
+            this.fixtureMbps = fixtureMbps;
+            this.edges = edges;
+            this.hash = Objects.hash(topoVersion, bandwidthState, layer, bidirectional, this.azMbps, this.zaMbps,
+                    requestedVlans, reservedVlans, this.blacklist, fixtureMbps, edges);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return hash == k.hash && topoVersion == k.topoVersion
+                    && bandwidthState.equals(k.bandwidthState)
+                    && layer == k.layer && bidirectional == k.bidirectional
+                    && Objects.equals(azMbps, k.azMbps) && Objects.equals(zaMbps, k.zaMbps)
+                    && edges.equals(k.edges) && requestedVlans.equals(k.requestedVlans)
+                    && blacklist.equals(k.blacklist) && fixtureMbps.equals(k.fixtureMbps)
+                    && reservedVlans.equals(k.reservedVlans);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -6,11 +6,13 @@ import net.es.oscars.resv.ent.*;
 import net.es.oscars.dto.topo.TopoEdge;
 import net.es.oscars.dto.topo.TopoVertex;
 import net.es.oscars.dto.topo.Topology;
-import net.es.oscars.topo.dao.UrnRepository;
 import net.es.oscars.topo.ent.UrnE;
 import net.es.oscars.dto.topo.enums.Layer;
 import net.es.oscars.dto.topo.enums.VertexType;
+import net.es.oscars.helpers.VlanBitmap;
 import net.es.oscars.topo.svc.TopoService;
+import net.es.oscars.topo.svc.TopoSnapshot;
+import net.es.oscars.topo.svc.TopoSnapshotService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Service;
@@ -31,7 +33,7 @@ import java.util.stream.Collectors;
 public class PruningService {
 
     @Autowired
-    private UrnRepository urnRepo;
+    private TopoSnapshotService topoSnapshotService;
 
     @Autowired
     private VlanService vlanSvc;
@@ -42,10 +44,13 @@ public class PruningService {
     @Autowired
     private TopoService topoService;
 
+    @Autowired
+    private PruningCache pruningCache;
+
 
     /**
      * Prune the topology using a logical pipe. The pipe contains the requested bandwidth and VLANs (through
-     * querying the attached junctions/fixtures). The URNs are pulled from the URN repository.
+     * querying the attached junctions/fixtures). The URNs are pulled from the current topology snapshot.
      * @param topo - The topology to be pruned.
      * @param pipe - The logical pipe, from which the requested bandwidth and VLANs are retrieved.
      * @param bwAvailMap - A map of available "Ingress" and 'Egress" bandwidth for each URN
@@ -53,14 +58,14 @@ public class PruningService {
      * @return The topology with ineligible edges removed.
      */
     public Topology pruneWithPipe(Topology topo, RequestedVlanPipeE pipe,
-                                  Map<String, Map<String, Integer>> bwAvailMap, List<ReservedVlanE> rsvVlanList){
-        return pruneWithPipe(topo, pipe, urnRepo.findAll(),
+                                  BandwidthAvailabilityTable bwAvailMap, List<ReservedVlanE> rsvVlanList){
+        return pruneWithPipe(topo, pipe, topoSnapshotService.current().getUrns(),
                 bwAvailMap, rsvVlanList);
     }
 
     /**
      * Prune the topology based on A->Z bandwidth using a logical pipe. The pipe contains the requested bandwidth and VLANs (through
-     * querying the attached junctions/fixtures). The URNs are pulled from the URN repository.
+     * querying the attached junctions/fixtures). The URNs are pulled from the current topology snapshot.
      * @param topo - The topology to be pruned.
      * @param pipe - The logical pipe, from which the requested bandwidth and VLANs are retrieved.
      * @param bwAvailMap - A map of available "Ingress" and 'Egress" bandwidth for each URN.
@@ -68,13 +73,13 @@ public class PruningService {
      * @return The topology with ineligible edges removed.
      */
     public Topology pruneWithPipeAZ(Topology topo, RequestedVlanPipeE pipe,
-                                    Map<String, Map<String, Integer>> bwAvailMap, List<ReservedVlanE> rsvVlanList){
-        return pruneWithPipeAZ(topo, pipe, urnRepo.findAll(), bwAvailMap, rsvVlanList);
+                                    BandwidthAvailabilityTable bwAvailMap, List<ReservedVlanE> rsvVlanList){
+        return pruneWithPipeAZ(topo, pipe, topoSnapshotService.current().getUrns(), bwAvailMap, rsvVlanList);
     }
 
     /**
      * Prune the topology based on Z->A bandwidth using a logical pipe. The pipe contains the requested bandwidth and VLANs (through
-     * querying the attached junctions/fixtures). The URNs are pulled from the URN repository.
+     * querying the attached junctions/fixtures). The URNs are pulled from the current topology snapshot.
      * @param topo - The topology to be pruned.
      * @param pipe - The logical pipe, from which the requested bandwidth and VLANs are retrieved.
      * @param bwAvailMap - A map of available "Ingress" and 'Egress" bandwidth for each URN.
@@ -82,8 +87,8 @@ public class PruningService {
      * @return The topology with ineligible edges removed.
      */
     public Topology pruneWithPipeZA(Topology topo, RequestedVlanPipeE pipe,
-                                    Map<String, Map<String, Integer>> bwAvailMap, List<ReservedVlanE> rsvVlanList){
-        return pruneWithPipeZA(topo, pipe, urnRepo.findAll(), bwAvailMap, rsvVlanList);
+                                    BandwidthAvailabilityTable bwAvailMap, List<ReservedVlanE> rsvVlanList){
+        return pruneWithPipeZA(topo, pipe, topoSnapshotService.current().getUrns(), bwAvailMap, rsvVlanList);
     }
 
     /**
@@ -96,7 +101,7 @@ public class PruningService {
      * @return The topology with ineligible edges removed.
      */
     public Topology pruneWithPipe(Topology topo, RequestedVlanPipeE pipe, List<UrnE> urns,
-                                  Map<String, Map<String, Integer>> bwAvailMap, List<ReservedVlanE> rsvVlanList){
+                                  BandwidthAvailabilityTable bwAvailMap, List<ReservedVlanE> rsvVlanList){
         Integer azBw = pipe.getAzMbps();
         Integer zaBw = pipe.getZaMbps();
         List<IntRange> vlans = new ArrayList<>();
@@ -122,7 +127,7 @@ public class PruningService {
      * @return The topology with ineligible edges removed.
      */
     public Topology pruneWithPipeAZ(Topology topo, RequestedVlanPipeE pipe, List<UrnE> urns,
-                                  Map<String, Map<String, Integer>> bwAvailMap, List<ReservedVlanE> rsvVlanList){
+                                  BandwidthAvailabilityTable bwAvailMap, List<ReservedVlanE> rsvVlanList){
         Integer azBw = pipe.getAzMbps();
         List<IntRange> vlans = new ArrayList<>();
         vlans.addAll(vlanSvc.getVlansFromJunction(pipe.getAJunction()));
@@ -148,7 +153,7 @@ public class PruningService {
      * @return The topology with ineligible edges removed.
      */
     public Topology  pruneWithPipeZA(Topology topo, RequestedVlanPipeE pipe, List<UrnE> urns,
-                                     Map<String, Map<String, Integer>> bwAvailMap, List<ReservedVlanE> rsvVlanList){
+                                     BandwidthAvailabilityTable bwAvailMap, List<ReservedVlanE> rsvVlanList){
         Integer zaBw = pipe.getZaMbps();
         List<IntRange> vlans = new ArrayList<>();
         vlans.addAll(vlanSvc.getVlansFromJunction(pipe.getAJunction()));
@@ -178,48 +183,11 @@ public class PruningService {
      * @return The topology with ineligible edges removed.
      */
     private Topology pruneTopology(Topology topo, Integer azBw, Integer zaBw, List<IntRange> vlans,
-                                   List<UrnE> urns, Map<String, Map<String, Integer>> bwAvailMap,
+                                   List<UrnE> urns, BandwidthAvailabilityTable bwAvailMap,
                                    List<ReservedVlanE> rsvVlanList, Set<String> urnBlacklist,
                                    Set<RequestedVlanFixtureE> fixtures)
     {
-        //Build map of URN name to UrnE
-        Map<String, UrnE> urnMap = buildUrnMap(urns);
-
-        // Get map of parent device vertex -> set of port vertices
-        Map<String, Set<String>> deviceToPortMap = topoService.buildDeviceToPortMap().getMap();
-        Map<String, String> portToDeviceMap = topoService.buildPortToDeviceMap(deviceToPortMap);
-
-        // Build map of URN to resvVlan
-        Map<String, Set<Integer>> availVlanMap = vlanSvc.buildAvailableVlanIdMap(urnMap, rsvVlanList, portToDeviceMap);
-
-        // Requested bandwidth map for fixtures
-        Map<String, Map<String, Integer>> fixtureRequestedBwMap = bwSvc.buildRequestedFixtureBandwidthMap(fixtures);
-
-        // Copy the original topology's layer and set of vertices.
-        Topology pruned = new Topology();
-        pruned.setLayer(topo.getLayer());
-        pruned.setVertices(topo.getVertices());
-        // Filter out edges from the topology that do not have sufficient bandwidth available on both terminating nodes.
-        // Also filters out all edges where either terminating node is not present in the URN map.
-        Set<TopoEdge> availableEdges = topo.getEdges().stream()
-                .filter(e -> bwSvc.evaluateBandwidthEdge(e, azBw, zaBw, urnMap, bwAvailMap, fixtureRequestedBwMap))
-                .collect(Collectors.toSet());
-        // If this is an MPLS topology, or there are no edges left, just take the bandwidth-pruned set of edges.
-        // Otherwise, find all the remaining edges that can support the requested VLAN(s).
-        if(pruned.getLayer() != Layer.MPLS && pruned.getLayer() != null && !availableEdges.isEmpty()){
-            availableEdges = vlanSvc.findMaxValidEdgeSet(availableEdges, urnMap, vlans, availVlanMap);
-        }
-
-        // Prune out blacklisted edges
-        if(urnBlacklist != null && !urnBlacklist.isEmpty() && !availableEdges.isEmpty())
-        {
-            Set<TopoEdge> blacklistedEdges = pruneBlacklist(topo, urnBlacklist);
-            availableEdges.removeAll(blacklistedEdges);
-        }
-
-        pruned.setEdges(availableEdges);
-
-        return pruned;
+        return prune(topo, true, azBw, zaBw, vlans, urns, bwAvailMap, rsvVlanList, urnBlacklist, fixtures);
     }
 
 
@@ -235,55 +203,104 @@ public class PruningService {
      * @param urnBlacklist - URNs which are to be explicitly pruned out of the topology, regardless of availability.
      */
     private Topology pruneTopologyUni(Topology topo, Integer theBw, List<IntRange> vlans, List<UrnE> urns,
-                                      Map<String, Map<String, Integer>> bwAvailMap, List<ReservedVlanE> rsvVlanList,
+                                      BandwidthAvailabilityTable bwAvailMap, List<ReservedVlanE> rsvVlanList,
                                       Set<String> urnBlacklist, Set<RequestedVlanFixtureE> fixtures)
     {
-        //Build map of URN name to UrnE
-        Map<String, UrnE> urnMap = buildUrnMap(urns);
+        return prune(topo, false, theBw, null, vlans, urns, bwAvailMap, rsvVlanList, urnBlacklist, fixtures);
+    }
 
-        // Get map of parent device vertex -> set of port vertices
-        Map<String, Set<String>> deviceToPortMap = topoService.buildDeviceToPortMap().getMap();
-        Map<String, String> portToDeviceMap = topoService.buildPortToDeviceMap(deviceToPortMap);
+    /**
+     * Shared by pruneTopology() and pruneTopologyUni(). When the topology and the URNs come from the current topology
+     * snapshot, the result is looked up in (and stored to) the PruningCache.
+     * @param bidirectional - True to check azBw and zaBw on each edge, false to only check azBw in one direction.
+     */
+    private Topology prune(Topology topo, boolean bidirectional, Integer azBw, Integer zaBw, List<IntRange> vlans,
+                           List<UrnE> urns, BandwidthAvailabilityTable bwAvailMap,
+                           List<ReservedVlanE> rsvVlanList, Set<String> urnBlacklist,
+                           Set<RequestedVlanFixtureE> fixtures)
+    {
+        TopoSnapshot snapshot = topoSnapshotService.current();
+        boolean fromSnapshot = urns == snapshot.getUrns();
+
+        //Build map of URN name to UrnE; the snapshot keeps one already
+        Map<String, UrnE> urnMap = fromSnapshot ? snapshot.getUrnMap() : buildUrnMap(urns);
 
-        // Build map of URN to resvVlan
-        Map<String, Set<Integer>> availVlanMap = vlanSvc.buildAvailableVlanIdMap(urnMap, rsvVlanList, portToDeviceMap);
+        // Build map of URN to reserved VLAN IDs
+        Map<String, VlanBitmap> rsvVlanMap = vlanSvc.buildReservedVlanIdMap(urnMap, rsvVlanList);
 
         // Requested bandwidth map for fixtures
         Map<String, Map<String, Integer>> fixtureRequestedBwMap = bwSvc.buildRequestedFixtureBandwidthMap(fixtures);
 
-        // Copy the original topology's layer and set of vertices.
-        Topology pruned = new Topology();
-        pruned.setLayer(topo.getLayer());
-        pruned.setVertices(topo.getVertices());
+        PruningCache.Key key = null;
+        BitSet edgeMask = fromSnapshot && pruningCache.isEnabled() ? edgeMask(snapshot, topo.getEdges()) : null;
+        if (edgeMask != null) {
+            key = new PruningCache.Key(snapshot.getVersion(), bwAvailMap.state(), topo.getLayer(), bidirectional,
+                    azBw, zaBw, VlanBitmap.fromRanges(vlans), pruningCache.intern(rsvVlanMap),
+                    urnBlacklist == null ? null : new HashSet<>(urnBlacklist), fixtureRequestedBwMap, edgeMask);
+            BitSet prunedMask = pruningCache.lookup(key);
+            if (prunedMask != null) {
+                Set<TopoEdge> availableEdges = new HashSet<>();
+                prunedMask.stream().forEach(i -> availableEdges.add(snapshot.edgeAt(i)));
+                return pruned(topo, availableEdges);
+            }
+        }
+
+        // Get map of port vertex -> parent device vertex
+        Map<String, String> portToDeviceMap = snapshot.getPortToDeviceMap();
+
+        // Build map of URN to available VLANs
+        Map<String, VlanBitmap> availVlanMap = vlanSvc.buildAvailableVlanIdMap(urnMap, rsvVlanMap, portToDeviceMap);
+
         // Filter out edges from the topology that do not have sufficient bandwidth available on both terminating nodes.
         // Also filters out all edges where either terminating node is not present in the URN map.
         Set<TopoEdge> availableEdges = topo.getEdges().stream()
-                .filter(e -> bwSvc.evaluateBandwidthEdgeUni(e, theBw, urnMap, bwAvailMap, fixtureRequestedBwMap))
+                .filter(e -> bidirectional
+                        ? bwSvc.evaluateBandwidthEdge(e, azBw, zaBw, urnMap, bwAvailMap, fixtureRequestedBwMap)
+                        : bwSvc.evaluateBandwidthEdgeUni(e, azBw, urnMap, bwAvailMap, fixtureRequestedBwMap))
                 .collect(Collectors.toSet());
         // If this is an MPLS topology, or there are no edges left, just take the bandwidth-pruned set of edges.
         // Otherwise, find all the remaining edges that can support the requested VLAN(s).
-        if(pruned.getLayer() == Layer.MPLS || pruned.getLayer() == null || availableEdges.isEmpty())
-        {
-            pruned.setEdges(availableEdges);
-        }
-        else
-        {
-            pruned.setEdges(vlanSvc.findMaxValidEdgeSet(availableEdges, urnMap, vlans, availVlanMap));
+        if(topo.getLayer() != Layer.MPLS && topo.getLayer() != null && !availableEdges.isEmpty()){
+            availableEdges = vlanSvc.findMaxValidEdgeSet(availableEdges, urnMap, vlans, availVlanMap);
         }
 
         // Prune out blacklisted edges
-        if(urnBlacklist != null)
+        if(urnBlacklist != null && !urnBlacklist.isEmpty() && !availableEdges.isEmpty())
         {
-            if(!urnBlacklist.isEmpty())
-            {
-                Set<TopoEdge> blacklistedEdges = pruneBlacklist(topo, urnBlacklist);
-                pruned.getEdges().removeAll(blacklistedEdges);
-            }
+            Set<TopoEdge> blacklistedEdges = pruneBlacklist(topo, urnBlacklist);
+            availableEdges.removeAll(blacklistedEdges);
+        }
+
+        if (key != null) {
+            pruningCache.store(key, edgeMask(snapshot, availableEdges));
         }
+        return pruned(topo, availableEdges);
+    }
 
+    // Copy the original topology's layer and set of vertices.
+    private Topology pruned(Topology topo, Set<TopoEdge> availableEdges) {
+        Topology pruned = new Topology();
+        pruned.setLayer(topo.getLayer());
+        pruned.setVertices(topo.getVertices());
+        pruned.setEdges(availableEdges);
         return pruned;
     }
 
+    /**
+     * @return The edges as a mask over the edges of the snapshot, or null if any of them is not from the snapshot.
+     */
+    private BitSet edgeMask(TopoSnapshot snapshot, Set<TopoEdge> edges) {
+        BitSet mask = new BitSet();
+        for (TopoEdge edge : edges) {
+            int idx = snapshot.edgeOrdinal(edge);
+            if (idx < 0) {
+                return null;
+            }
+            mask.set(idx);
+        }
+        return mask;
+    }
+
     /***
      * Build a mapping of URN names to UrnE objects.
      * @param urns - A list of URNs, used to create the name -> UrnE map.
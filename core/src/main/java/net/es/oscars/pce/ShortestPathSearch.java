@@ -0,0 +1,193 @@
+package net.es.oscars.pce;
+
+import net.es.oscars.dto.topo.TopoEdge;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Dijkstra's algorithm over a TopoGraph, using an indexed binary heap with decrease-key.
+ *
+ * All working arrays are sized to the graph once and reused: a search only touches the vertices it reaches, and
+ * per-vertex state is invalidated by bumping a generation counter instead of clearing the arrays. Instances are
+ * therefore not thread-safe; get one from TopoGraph.newSearch() for each thread that routes over the graph.
+ */
+public final class ShortestPathSearch {
+    private final TopoGraph graph;
+
+    private final long[] dist;
+    private final int[] prevEdge;
+    // generation in which a vertex was last reached; older values mean "not reached"
+    private final int[] seen;
+    private final boolean[] settled;
+    private int generation;
+
+    // heap[0..heapSize-1] holds vertex ids; heapPos[v] is the position of v in the heap, or -1
+    private final int[] heap;
+    private final int[] heapPos;
+    private int heapSize;
+
+    ShortestPathSearch(TopoGraph graph) {
+        this.graph = graph;
+        int n = graph.vertexCount();
+        this.dist = new long[n];
+        this.prevEdge = new int[n];
+        this.seen = new int[n];
+        this.settled = new boolean[n];
+        this.heap = new int[n];
+        this.heapPos = new int[n];
+    }
+
+    public TopoGraph graph() {
+        return graph;
+    }
+
+    /**
+     * Run the search from src, over the edges in the mask (every edge if the mask is null). The search stops as soon
+     * as dst is settled; pass -1 as dst to compute the whole shortest path tree.
+     */
+    public void run(int src, int dst, BitSet mask) {
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(seen, 0);
+            generation = 1;
+        }
+        heapSize = 0;
+        reach(src, 0L, -1);
+
+        while (heapSize > 0) {
+            int u = pop();
+            settled[u] = true;
+            if (u == dst) {
+                return;
+            }
+            long du = dist[u];
+            for (int e = graph.firstEdge(u), end = graph.firstEdge(u + 1); e < end; e++) {
+                if (mask != null && !mask.get(e)) {
+                    continue;
+                }
+                int v = graph.head(e);
+                long dv = du + graph.weight(e);
+                if (seen[v] != generation) {
+                    reach(v, dv, e);
+                } else if (!settled[v] && dv < dist[v]) {
+                    dist[v] = dv;
+                    prevEdge[v] = e;
+                    siftUp(heapPos[v]);
+                }
+            }
+        }
+    }
+
+    public boolean reached(int vertex) {
+        return seen[vertex] == generation;
+    }
+
+    /**
+     * @return the distance from the source of the last run, or Long.MAX_VALUE if the vertex was not reached
+     */
+    public long distance(int vertex) {
+        return reached(vertex) ? dist[vertex] : Long.MAX_VALUE;
+    }
+
+    /**
+     * @return the last edge on the shortest path to the vertex, or -1 for the source and unreached vertices
+     */
+    public int predecessorEdge(int vertex) {
+        return reached(vertex) ? prevEdge[vertex] : -1;
+    }
+
+    /**
+     * @return the edge ids of the shortest path found by the last run, empty if dst was not reached
+     */
+    public int[] pathTo(int dst) {
+        if (!reached(dst)) {
+            return new int[0];
+        }
+        int hops = 0;
+        for (int e = prevEdge[dst]; e != -1; e = prevEdge[graph.tail(e)]) {
+            hops++;
+        }
+        int[] path = new int[hops];
+        for (int e = prevEdge[dst]; e != -1; e = prevEdge[graph.tail(e)]) {
+            path[--hops] = e;
+        }
+        return path;
+    }
+
+    /**
+     * Run the search and return the shortest path from src to dst as graph edges, empty if there is none.
+     */
+    public List<TopoEdge> shortestPath(int src, int dst, BitSet mask) {
+        run(src, dst, mask);
+        int[] path = pathTo(dst);
+        List<TopoEdge> edges = new ArrayList<>(path.length);
+        for (int e : path) {
+            edges.add(graph.edge(e));
+        }
+        return edges;
+    }
+
+    private void reach(int v, long d, int edge) {
+        seen[v] = generation;
+        settled[v] = false;
+        dist[v] = d;
+        prevEdge[v] = edge;
+        heap[heapSize] = v;
+        heapPos[v] = heapSize;
+        siftUp(heapSize++);
+    }
+
+    private int pop() {
+        int top = heap[0];
+        heapPos[top] = -1;
+        int last = heap[--heapSize];
+        if (heapSize > 0) {
+            heap[0] = last;
+            heapPos[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int i) {
+        int v = heap[i];
+        long d = dist[v];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            int p = heap[parent];
+            if (dist[p] <= d) {
+                break;
+            }
+            heap[i] = p;
+            heapPos[p] = i;
+            i = parent;
+        }
+        heap[i] = v;
+        heapPos[v] = i;
+    }
+
+    private void siftDown(int i) {
+        int v = heap[i];
+        long d = dist[v];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && dist[heap[child + 1]] < dist[heap[child]]) {
+                child++;
+            }
+            int c = heap[child];
+            if (dist[c] >= d) {
+                break;
+            }
+            heap[i] = c;
+            heapPos[c] = i;
+            i = child;
+        }
+        heap[i] = v;
+        heapPos[v] = i;
+    }
+}
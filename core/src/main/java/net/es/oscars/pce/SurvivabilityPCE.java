@@ -9,11 +9,12 @@ import net.es.oscars.servicetopo.SurvivableServiceLayerTopology;
 import net.es.oscars.dto.topo.TopoEdge;
 import net.es.oscars.dto.topo.TopoVertex;
 import net.es.oscars.dto.topo.Topology;
-import net.es.oscars.topo.dao.UrnRepository;
 import net.es.oscars.topo.ent.UrnE;
 import net.es.oscars.dto.topo.enums.Layer;
 import net.es.oscars.dto.topo.enums.VertexType;
 import net.es.oscars.topo.svc.TopoService;
+import net.es.oscars.topo.svc.TopoSnapshotService;
+import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -34,10 +35,11 @@ public class SurvivabilityPCE
     private PruningService pruningService;
 
     @Autowired
-    private UrnRepository urnRepo;
+    private TopoSnapshotService topoSnapshotService;
 
+    // prototype-scoped: every call builds its own service-layer topology, so requests can be routed concurrently
     @Autowired
-    private SurvivableServiceLayerTopology serviceLayerTopology;
+    private ObjectFactory<SurvivableServiceLayerTopology> serviceLayerTopologies;
 
     @Autowired
     private DijkstraPCE dijkstraPCE;
@@ -54,7 +56,7 @@ public class SurvivabilityPCE
      * @throws PCEException
      */
     public Map<String, List<TopoEdge>> computeSurvivableERO(RequestedVlanPipeE requestPipe,
-                                                            Map<String, Map<String, Integer>> bwAvailMap,
+                                                            BandwidthAvailabilityTable bwAvailMap,
                                                             List<ReservedVlanE> rsvVlanList) throws PCEException
     {
         if(requestPipe.getEroSurvivability().equals(SurvivabilityType.SURVIVABILITY_TOTAL))
@@ -73,14 +75,14 @@ public class SurvivabilityPCE
 
 
     private Map<String, List<TopoEdge>> computeSurvivableEroComplete(RequestedVlanPipeE requestPipe,
-                                                                     Map<String, Map<String, Integer>> bwAvailMap,
+                                                                     BandwidthAvailabilityTable bwAvailMap,
                                                                      List<ReservedVlanE> rsvVlanList) throws PCEException
     {
         String srcDeviceURN = requestPipe.getAJunction().getDeviceUrn();
         String dstDeviceURN = requestPipe.getZJunction().getDeviceUrn();
 
-        UrnE srcDeviceURN_e = urnRepo.findByUrn(requestPipe.getAJunction().getDeviceUrn()).orElseThrow(NoSuchElementException::new);
-        UrnE dstDeviceURN_e = urnRepo.findByUrn(requestPipe.getZJunction().getDeviceUrn()).orElseThrow(NoSuchElementException::new);
+        UrnE srcDeviceURN_e = topoSnapshotService.current().getUrn(requestPipe.getAJunction().getDeviceUrn()).orElseThrow(NoSuchElementException::new);
+        UrnE dstDeviceURN_e = topoSnapshotService.current().getUrn(requestPipe.getZJunction().getDeviceUrn()).orElseThrow(NoSuchElementException::new);
 
 
         VertexType srcType = topoService.getVertexTypeFromDeviceType(srcDeviceURN_e.getDeviceType());
@@ -169,8 +171,9 @@ public class SurvivabilityPCE
 
 
     // Number of disjoint paths requested specified in the requestPipe
-    private Map<String, List<TopoEdge>> computeSurvivableEroPartial(RequestedVlanPipeE requestPipe, Map<String, Map<String, Integer>> bwAvailMap, List<ReservedVlanE> rsvVlanList) throws PCEException
+    private Map<String, List<TopoEdge>> computeSurvivableEroPartial(RequestedVlanPipeE requestPipe, BandwidthAvailabilityTable bwAvailMap, List<ReservedVlanE> rsvVlanList) throws PCEException
     {
+        SurvivableServiceLayerTopology serviceLayerTopology = serviceLayerTopologies.getObject();
         Topology ethTopo = topoService.layer(Layer.ETHERNET);
         Topology intTopo = topoService.layer(Layer.INTERNAL);
         Topology mplsTopo = topoService.layer(Layer.MPLS);
@@ -282,7 +285,7 @@ public class SurvivabilityPCE
         serviceLayerTopology.buildLogicalLayerDstNodes(dstDevice, dstPort);
 
         // Performs shortest path routing on MPLS-layer to properly assign weights to each logical link on Service-Layer
-        serviceLayerTopology.calculateLogicalLinkWeights(requestPipe, urnRepo.findAll(), bwAvailMap, rsvVlanList, requestPipe.getNumPaths());
+        serviceLayerTopology.calculateLogicalLinkWeights(requestPipe, topoSnapshotService.current().getUrns(), bwAvailMap, rsvVlanList, requestPipe.getNumPaths());
 
         Topology slTopo = serviceLayerTopology.getSLTopology();
         Topology prunedSlTopo = pruningService.pruneWithPipe(slTopo, requestPipe, bwAvailMap, rsvVlanList);
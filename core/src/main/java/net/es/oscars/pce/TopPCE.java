@@ -8,22 +8,30 @@ import net.es.oscars.dto.topo.enums.Layer;
 import net.es.oscars.dto.topo.enums.VertexType;
 import net.es.oscars.pce.exc.InvalidUrnException;
 import net.es.oscars.pce.exc.PCEException;
+import net.es.oscars.pce.prop.PceProperties;
 import net.es.oscars.pss.PSSException;
 import net.es.oscars.resv.ent.*;
+import net.es.oscars.resv.svc.ReservedResourceIndex;
 import net.es.oscars.dto.topo.TopoEdge;
 import net.es.oscars.dto.spec.PalindromicType;
-import net.es.oscars.topo.dao.UrnRepository;
 import net.es.oscars.topo.ent.BidirectionalPathE;
 import net.es.oscars.topo.ent.EdgeE;
 import net.es.oscars.topo.ent.ReservableVlanE;
 import net.es.oscars.topo.ent.UrnE;
 import net.es.oscars.topo.svc.TopoService;
+import net.es.oscars.topo.svc.TopoSnapshotService;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.method.P;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -61,7 +69,35 @@ public class TopPCE {
     private BandwidthService bwService;
 
     @Autowired
-    private UrnRepository urnRepo;
+    private TopoSnapshotService topoSnapshotService;
+
+    @Autowired
+    private ReservedResourceIndex resvIndex;
+
+    @Autowired
+    private PceProperties pceProperties;
+
+    // Evaluates candidate schedule ranges concurrently; null when ranges are evaluated one after another
+    private ForkJoinPool rangePool;
+
+    @PostConstruct
+    public void startRangePool() {
+        int parallelism = pceProperties.getRangeParallelism() == null ? 1 : pceProperties.getRangeParallelism();
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        if (parallelism > 1) {
+            rangePool = new ForkJoinPool(parallelism);
+            log.info("evaluating schedule ranges on " + parallelism + " threads");
+        }
+    }
+
+    @PreDestroy
+    public void stopRangePool() {
+        if (rangePool != null) {
+            rangePool.shutdownNow();
+        }
+    }
 
 
     /**
@@ -124,25 +160,27 @@ public class TopPCE {
         List<Set<BidirectionalPathE>> allPathsPerRange = validRanges.stream().map(v -> new HashSet<BidirectionalPathE>())
                 .collect(Collectors.toList());
 
-        Integer chosenRangeIndex = -1;
-
-        for(Integer rangeIndex = 0; rangeIndex < ranges.size(); rangeIndex++) {
-
-            // Skip ranges where it is less than the minimum duration
-            if(schedSpec.getMinimumDuration() != null && durations.get(rangeIndex) < schedSpec.getMinimumDuration()){
-                continue;
-            }
-            // Otherwise, test if the request can be satisfied in this duration
-            Boolean isValid = handleRequestForRange(req_f.getJunctions(), req_f.getPipes(), minPipes, maxPipes, connId, ranges,
-                    mplsPipesPerRange, ethPipesPerRange, junctionsPerRange, allPathsPerRange, rangeIndex);
+        Integer chosenRangeIndex;
+        if (rangePool != null && ranges.size() > 1) {
+            chosenRangeIndex = evaluateRangesInParallel(req_f, schedSpec, ranges, durations, mplsPipesPerRange,
+                    ethPipesPerRange, junctionsPerRange, allPathsPerRange);
+        } else {
+            chosenRangeIndex = -1;
+            for (Integer rangeIndex = 0; rangeIndex < ranges.size(); rangeIndex++) {
+
+                // Skip ranges where it is less than the minimum duration
+                if (isBelowMinimumDuration(schedSpec, durations.get(rangeIndex))) {
+                    continue;
+                }
+                // Otherwise, test if the request can be satisfied in this duration
+                Boolean isValid = handleRequestForRange(req_f.getJunctions(), req_f.getPipes(), minPipes, maxPipes, connId, ranges,
+                        mplsPipesPerRange, ethPipesPerRange, junctionsPerRange, allPathsPerRange, rangeIndex);
 
-            validRanges.set(rangeIndex, isValid);
+                validRanges.set(rangeIndex, isValid);
 
-            // If valid, mark this as the next chosen index
-            // If we reached the minimum duration threshold, break
-            if(isValid){
-                chosenRangeIndex = rangeIndex;
-                if(schedSpec.getMinimumDuration() == null || durations.get(rangeIndex) >= schedSpec.getMinimumDuration()){
+                // If valid, mark this as the chosen index; every range evaluated meets the minimum duration
+                if (isValid) {
+                    chosenRangeIndex = rangeIndex;
                     break;
                 }
             }
@@ -175,8 +213,121 @@ public class TopPCE {
         return reserved;
     }
 
+    private boolean isBelowMinimumDuration(ScheduleSpecificationE schedSpec, Long duration) {
+        return schedSpec.getMinimumDuration() != null && duration < schedSpec.getMinimumDuration();
+    }
+
+    /**
+     * Evaluate the candidate ranges concurrently on the range pool, and choose the same range the serial loop in
+     * makeReserved would: the first valid range in sorted order. Ranges after a range already found to be valid
+     * are not evaluated, and neither is any range once the chosen range is known. Failures are reported in sorted
+     * order too, so an exception from a range is only thrown if no earlier range is valid.
+     *
+     * The evaluations read the reservations staged by the caller's transaction, so this does not return before every
+     * evaluation that was submitted has finished: cancelling a ForkJoinPool task does not stop it once it is running.
+     *
+     * @return the index of the chosen range, or -1 if none is valid
+     */
+    private Integer evaluateRangesInParallel(RequestedVlanFlowE req_f, ScheduleSpecificationE schedSpec,
+                                             List<List<Date>> ranges, List<Long> durations,
+                                             List<Set<ReservedMplsPipeE>> mplsPipesPerRange,
+                                             List<Set<ReservedEthPipeE>> ethPipesPerRange,
+                                             List<Set<ReservedVlanJunctionE>> junctionsPerRange,
+                                             List<Set<BidirectionalPathE>> allPathsPerRange) throws PCEException, PSSException {
+        // The requested entities are read from the pool threads; load them here, in the caller's session
+        req_f.getJunctions().forEach(j -> Hibernate.initialize(j.getFixtures()));
+        req_f.getPipes().forEach(p -> {
+            Hibernate.initialize(p.getAJunction().getFixtures());
+            Hibernate.initialize(p.getZJunction().getFixtures());
+            Hibernate.initialize(p.getAzERO());
+            Hibernate.initialize(p.getZaERO());
+            Hibernate.initialize(p.getUrnBlacklist());
+        });
+
+        // Lowest index of a range known to be valid; ranges after it need not be evaluated
+        AtomicInteger firstValid = new AtomicInteger(Integer.MAX_VALUE);
+        // Set once the outcome is known; evaluations that have not started by then are skipped
+        AtomicBoolean abandoned = new AtomicBoolean(false);
+        // One party for this thread, and one for each submitted evaluation until it has finished
+        Phaser running = new Phaser(1);
+
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < ranges.size(); i++) {
+            if (isBelowMinimumDuration(schedSpec, durations.get(i))) {
+                results.add(null);
+                continue;
+            }
+            final int rangeIndex = i;
+            Callable<Boolean> evaluation = resvIndex.inCurrentView(() -> {
+                if (abandoned.get() || rangeIndex > firstValid.get()) {
+                    return false;
+                }
+                Boolean isValid = handleRequestForRange(req_f.getJunctions(), req_f.getPipes(), req_f.getMinPipes(),
+                        req_f.getMaxPipes(), req_f.getContainerConnectionId(), ranges, mplsPipesPerRange,
+                        ethPipesPerRange, junctionsPerRange, allPathsPerRange, rangeIndex);
+                if (isValid) {
+                    firstValid.accumulateAndGet(rangeIndex, Math::min);
+                }
+                return isValid;
+            });
+            running.register();
+            try {
+                results.add(rangePool.submit(() -> {
+                    try {
+                        return evaluation.call();
+                    } finally {
+                        running.arriveAndDeregister();
+                    }
+                }));
+            } catch (RejectedExecutionException ex) {
+                running.arriveAndDeregister();
+                abandoned.set(true);
+                running.arriveAndAwaitAdvance();
+                throw new PCEException("Could not evaluate schedule ranges: " + ex.getMessage());
+            }
+        }
+
+        Integer chosenRangeIndex = -1;
+        try {
+            for (int i = 0; i < results.size() && chosenRangeIndex == -1; i++) {
+                if (results.get(i) != null && getRangeResult(results.get(i))) {
+                    chosenRangeIndex = i;
+                }
+            }
+        } finally {
+            abandoned.set(true);
+            // uninterruptible; the caller goes on to write reservations the evaluations may still be reading
+            running.arriveAndAwaitAdvance();
+        }
+        return chosenRangeIndex;
+    }
+
+    private Boolean getRangeResult(Future<Boolean> result) throws PCEException, PSSException {
+        try {
+            return result.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new PCEException("Interrupted while evaluating schedule ranges");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof PCEException) {
+                throw (PCEException) cause;
+            }
+            if (cause instanceof PSSException) {
+                throw (PSSException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new PCEException(cause.getMessage());
+        }
+    }
+
     private List<RequestedVlanPipeE> sortPipes(Set<RequestedVlanPipeE> pipes, Integer minPipes,
-                                               Map<String, Map<String, Integer>> bwAvailMap, List<ReservedVlanE> repoVlans) {
+                                               BandwidthAvailabilityTable bwAvailMap, List<ReservedVlanE> repoVlans) {
 
         // Sort any pipes with priority less than MAX_INT
         Set<RequestedVlanPipeE> priorityPipes = pipes.stream()
@@ -223,7 +374,7 @@ public class TopPCE {
     }
 
     private Map<RequestedVlanPipeE, Integer> buildPathHopCountMap(Set<RequestedVlanPipeE> pipes,
-                                                               Map<String, Map<String, Integer>> bwAvailMap,
+                                                               BandwidthAvailabilityTable bwAvailMap,
                                                                List<ReservedVlanE> rsvVlans) {
 
         Map<RequestedVlanPipeE, Integer> pathLengthMap = new HashMap<>();
@@ -264,8 +415,7 @@ public class TopPCE {
         Map<String, String> portToDeviceMap = topoService.buildPortToDeviceMap(deviceToPortMap);
 
         // Initialize the bandwidth availability map
-        List<ReservedBandwidthE> reservedBandwidths = bwService.getReservedBandwidthFromRepo(start, end);
-        Map<String, Map<String, Integer>> bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(reservedBandwidths);
+        BandwidthAvailabilityTable bwAvailMap = bwService.buildBandwidthAvailabilityMap(start, end);
 
         List<ReservedVlanE> repoVlans = vlanService.getReservedVlansFromRepo(start, end);
 
@@ -286,14 +436,14 @@ public class TopPCE {
             return false;
         }
 
-        // Clone the bandwidth availability map: multiple attempts at reserving pipes won't affect the original
-        Map<String, Map<String, Integer>> clonedAvailMap = new HashMap<>(bwAvailMap);
+        // Checkpoint the bandwidth availability: a failed attempt at reserving pipes can be undone
+        int junctionsReserved = bwAvailMap.checkpoint();
 
         // Keep track of the number of successfully reserved pipes (numReserved)
         // Attempt to reserve all requested pipes
         log.info("Starting to handle pipes");
         Integer numReserved = handleRequestedPipes(reqPipes, start, end, simpleJunctions, reservedMplsPipes, reservedEthPipes,
-                deviceToPortMap, portToDeviceMap, allPaths, connId, clonedAvailMap, repoVlans, maxPipes);
+                deviceToPortMap, portToDeviceMap, allPaths, connId, bwAvailMap, repoVlans, maxPipes);
 
         // If pipes were not able to be reserved in the original order, try reversing the order pipes are attempted
         if (numReserved < minPipes && (reqPipes.size() > 1)) {
@@ -304,9 +454,9 @@ public class TopPCE {
             reservedMplsPipes = new HashSet<>();
             reservedEthJunctions = new HashSet<>();
             allPaths = new HashSet<>();
-            clonedAvailMap = new HashMap<>(bwAvailMap);
+            bwAvailMap.rollback(junctionsReserved);
             numReserved = handleRequestedPipes(reqPipes, start, end, simpleJunctions, reservedMplsPipes, reservedEthPipes,
-                    deviceToPortMap, portToDeviceMap, allPaths, connId, clonedAvailMap, repoVlans, maxPipes);
+                    deviceToPortMap, portToDeviceMap, allPaths, connId, bwAvailMap, repoVlans, maxPipes);
         }
 
         // If the pipes still cannot be reserved, no later range can work
@@ -340,7 +490,7 @@ public class TopPCE {
     private Set<ReservedVlanJunctionE> handleRequestedJunctions(List<RequestedVlanJunctionE> reqJunctions, Date start, Date end,
                                                                 Map<String, Set<String>> deviceToPortMap,
                                                                 Map<String, String> portToDeviceMap, String connId,
-                                                                Map<String, Map<String, Integer>> bwAvailMap,
+                                                                BandwidthAvailabilityTable bwAvailMap,
                                                                 List<ReservedVlanE> repoVlans) throws PCEException, PSSException {
 
         Set<ReservedVlanJunctionE> simpleJunctions = new HashSet<>();
@@ -381,7 +531,7 @@ public class TopPCE {
      * @param deviceToPortMap   - Map of matching ports for each device
      * @param portToDeviceMap   - Map of matching device for each port
      * @param connectionId      - The unique ID of the connection containing the requested pipes
-     * @param bwAvailMap        - Mapping of Ingress and Egress bandwidth available at each URN
+     * @param bwAvailMap        - Ingress and Egress bandwidth available at each URN, updated with every reserved pipe
      * @param maxPipes          - The maximum number of pipes that need to be reserved
      * @return The number of requested pipes which were able to be reserved
      */
@@ -389,7 +539,7 @@ public class TopPCE {
                                          Set<ReservedVlanJunctionE> simpleJunctions, Set<ReservedMplsPipeE> reservedMplsPipes,
                                          Set<ReservedEthPipeE> reservedEthPipes, Map<String, Set<String>> deviceToPortMap,
                                          Map<String, String> portToDeviceMap, Set<BidirectionalPathE> allPaths,
-                                         String connectionId, Map<String, Map<String, Integer>> bwAvailMap,
+                                         String connectionId, BandwidthAvailabilityTable bwAvailMap,
                                          List<ReservedVlanE> repoVlans, Integer maxPipes) {
         // The number of requested pipes successfully reserved
         Integer numReserved = 0;
@@ -403,15 +553,15 @@ public class TopPCE {
                 break;
             }
 
-            // Clone the initial map, each pipe will use an updated version of the previous pipe's BW map
-            Map<String, Map<String, Integer>> pipeBwAvailMap = new HashMap<>(bwAvailMap);
+            // Each pipe sees the bandwidth taken by the previous pipes; undo this pipe's changes if it fails
+            int beforePipe = bwAvailMap.checkpoint();
 
             // Update list of reserved VLAN IDs
             List<ReservedVlanE> rsvVlans = vlanService.createReservedVlanList(simpleJunctions, reservedEthPipes);
             rsvVlans.addAll(repoVlans);
 
             // Find the shortest path(s) for the pipe, build a map for the AZ and ZA path(s)
-            Map<String, List<TopoEdge>> eroMapForPipe = findShortestConstrainedPath(pipe, pipeBwAvailMap, rsvVlans);
+            Map<String, List<TopoEdge>> eroMapForPipe = findShortestConstrainedPath(pipe, bwAvailMap, rsvVlans);
 
             // If the paths are valid, attempt to reserve the resources
             if (verifyEros(eroMapForPipe)) {
@@ -437,7 +587,7 @@ public class TopPCE {
 
                     // Try to get the reserved resources
                     try {
-                        transPceResponse = transPCE.reserveRequestedPipe(pipe, azERO, zaERO, pipeBwAvailMap, rsvVlans,
+                        transPceResponse = transPCE.reserveRequestedPipe(pipe, azERO, zaERO, bwAvailMap, rsvVlans,
                                 deviceToPortMap, portToDeviceMap, start, end, connectionId);
                         // Check if
                         if(transPceResponse != null){
@@ -447,7 +597,7 @@ public class TopPCE {
                             // Update the pipe's bandwidth availability map
                             List<ReservedBandwidthE> newBandwidths = bwService.getReservedBandwidthsFromEthPipes(newEthPipes);
                             newBandwidths.addAll(bwService.getReservedBandwidthsFromMplsPipes(newMplsPipes));
-                            bwService.amendBandwidthAvailabilityMap(pipeBwAvailMap, newBandwidths);
+                            bwService.amendBandwidthAvailabilityMap(bwAvailMap, newBandwidths);
                         }
                         else{
                             successful = false;
@@ -467,9 +617,6 @@ public class TopPCE {
 
                 // If you successfully reserved all paths for the requested pipe
                 if(successful){
-                    // Update the bandwidth availability map for subsequent pipes
-                    bwAvailMap = new HashMap<>(pipeBwAvailMap);
-
                     // Store the new reserved pipes
                     reservedEthPipes.addAll(newEthPipes);
                     reservedMplsPipes.addAll(newMplsPipes);
@@ -477,6 +624,10 @@ public class TopPCE {
                     // Update the number of reserved pipes
                     numReserved++;
                 }
+                else{
+                    // Give back the bandwidth taken by the failed attempt
+                    bwAvailMap.rollback(beforePipe);
+                }
             }
 
 
@@ -494,7 +645,7 @@ public class TopPCE {
      * @return A map containing the AZ and ZA shortest paths
      */
     private Map<String, List<TopoEdge>> findShortestConstrainedPath(RequestedVlanPipeE pipe,
-                                                                    Map<String, Map<String, Integer>> bwAvailMap,
+                                                                    BandwidthAvailabilityTable bwAvailMap,
                                                                     List<ReservedVlanE> rsvVlans) {
         //log.info("Computing Shortest Constrained Path");
         Map<String, List<TopoEdge>> eroMap = null;
@@ -598,7 +749,7 @@ public class TopPCE {
         // Either: Junction is a router, and the fixtures must have reservable VLANs
         // Or:     Junction is a switch, and there must be reservable VLANs on the switch
         String juncUrnString = junction.getDeviceUrn();
-        Optional<UrnE> urnOpt = urnRepo.findByUrn(juncUrnString);
+        Optional<UrnE> urnOpt = topoSnapshotService.current().getUrn(juncUrnString);
         if(urnOpt.isPresent()){
             UrnE urn = urnOpt.get();
             if(urn.getDeviceType().equals(DeviceType.SWITCH)){
@@ -620,7 +771,7 @@ public class TopPCE {
     private void validateFixtures(RequestedVlanJunctionE junction) throws PCEException{
         Set<RequestedVlanFixtureE> fixtures = junction.getFixtures();
         for(RequestedVlanFixtureE fix : fixtures){
-            Optional<UrnE> fixUrnOpt = urnRepo.findByUrn(fix.getPortUrn());
+            Optional<UrnE> fixUrnOpt = topoSnapshotService.current().getUrn(fix.getPortUrn());
             if(fixUrnOpt.isPresent()){
                 UrnE fixtureUrn = fixUrnOpt.get();
                 ReservableVlanE resvVlan = fixtureUrn.getReservableVlans();
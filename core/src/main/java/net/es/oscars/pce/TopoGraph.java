@@ -0,0 +1,156 @@
+package net.es.oscars.pce;
+
+import net.es.oscars.dto.topo.TopoEdge;
+import net.es.oscars.dto.topo.TopoVertex;
+import net.es.oscars.dto.topo.Topology;
+
+import java.util.*;
+
+/**
+ * A Topology compiled into compressed sparse row form: vertices are numbered 0..vertexCount()-1, and the outgoing
+ * edges of vertex v are the edge indices offsets[v] .. offsets[v+1]-1, with their heads and metrics held in flat
+ * int[] / long[] arrays.
+ *
+ * Pruning is expressed as an edge mask (a BitSet over edge indices) instead of a new graph, so that one graph can be
+ * shared by every request routed over the same topology. The graph itself is immutable; searches over it keep their
+ * state in a ShortestPathSearch from newSearch(), which the caller holds on to for as long as it wants to reuse it.
+ */
+public final class TopoGraph {
+    private final TopoVertex[] vertices;
+    private final Map<TopoVertex, Integer> vertexIds;
+
+    private final int[] offsets;
+    private final int[] tails;
+    private final int[] heads;
+    private final long[] weights;
+    private final TopoEdge[] edges;
+    private final Map<TopoEdge, Integer> edgeIds;
+
+    private TopoGraph(Collection<TopoVertex> topoVertices, Collection<TopoEdge> topoEdges) {
+        vertexIds = new HashMap<>();
+        List<TopoVertex> vertexList = new ArrayList<>();
+        for (TopoVertex v : topoVertices) {
+            addVertex(v, vertexList);
+        }
+        // edge endpoints that are not in the vertex set still become vertices
+        for (TopoEdge e : topoEdges) {
+            addVertex(e.getA(), vertexList);
+            addVertex(e.getZ(), vertexList);
+        }
+        vertices = vertexList.toArray(new TopoVertex[vertexList.size()]);
+
+        int n = vertices.length;
+        int m = topoEdges.size();
+        offsets = new int[n + 1];
+        tails = new int[m];
+        heads = new int[m];
+        weights = new long[m];
+        edges = new TopoEdge[m];
+        edgeIds = new IdentityHashMap<>(m);
+
+        for (TopoEdge e : topoEdges) {
+            offsets[vertexIds.get(e.getA()) + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] next = Arrays.copyOf(offsets, n);
+        for (TopoEdge e : topoEdges) {
+            int tail = vertexIds.get(e.getA());
+            int id = next[tail]++;
+            tails[id] = tail;
+            heads[id] = vertexIds.get(e.getZ());
+            weights[id] = e.getMetric();
+            edges[id] = e;
+            edgeIds.put(e, id);
+        }
+    }
+
+    private void addVertex(TopoVertex v, List<TopoVertex> vertexList) {
+        if (!vertexIds.containsKey(v)) {
+            vertexIds.put(v, vertexList.size());
+            vertexList.add(v);
+        }
+    }
+
+    public static TopoGraph of(Topology topology) {
+        return new TopoGraph(topology.getVertices(), topology.getEdges());
+    }
+
+    public int vertexCount() {
+        return vertices.length;
+    }
+
+    public int edgeCount() {
+        return edges.length;
+    }
+
+    /**
+     * @return the id of the vertex, or -1 if it is not in this graph
+     */
+    public int vertexId(TopoVertex vertex) {
+        return vertexIds.getOrDefault(vertex, -1);
+    }
+
+    public TopoVertex vertex(int id) {
+        return vertices[id];
+    }
+
+    public TopoEdge edge(int id) {
+        return edges[id];
+    }
+
+    /**
+     * Edge ids are grouped by tail: the outgoing edges of a vertex are firstEdge(v) .. firstEdge(v+1)-1.
+     */
+    public int firstEdge(int vertex) {
+        return offsets[vertex];
+    }
+
+    public int tail(int edge) {
+        return tails[edge];
+    }
+
+    public int head(int edge) {
+        return heads[edge];
+    }
+
+    public long weight(int edge) {
+        return weights[edge];
+    }
+
+    /**
+     * @return a mask holding every edge of the graph
+     */
+    public BitSet allEdges() {
+        BitSet mask = new BitSet(edges.length);
+        mask.set(0, edges.length);
+        return mask;
+    }
+
+    /**
+     * Build the mask of a subset of this graph's edges. Edges are matched by identity, so this only succeeds for
+     * edges taken from the topology the graph was built from (e.g. the output of PruningService).
+     *
+     * @param subset - edges of the graph
+     * @return the mask, or null if any of the edges is not an edge of this graph
+     */
+    public BitSet mask(Collection<TopoEdge> subset) {
+        BitSet mask = new BitSet(edges.length);
+        for (TopoEdge e : subset) {
+            Integer id = edgeIds.get(e);
+            if (id == null) {
+                return null;
+            }
+            mask.set(id);
+        }
+        return mask;
+    }
+
+    /**
+     * @return new search state for this graph, to be used by one thread at a time
+     */
+    public ShortestPathSearch newSearch() {
+        return new ShortestPathSearch(this);
+    }
+}
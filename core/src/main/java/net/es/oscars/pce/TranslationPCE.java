@@ -15,9 +15,9 @@ import net.es.oscars.pss.PSSException;
 import net.es.oscars.resv.ent.*;
 import net.es.oscars.dto.topo.TopoEdge;
 import net.es.oscars.dto.topo.TopoVertex;
-import net.es.oscars.topo.dao.UrnRepository;
 import net.es.oscars.topo.ent.UrnE;
 import net.es.oscars.topo.svc.TopoService;
+import net.es.oscars.topo.svc.TopoSnapshotService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -34,7 +34,7 @@ public class TranslationPCE {
     private TopoService topoService;
 
     @Autowired
-    private UrnRepository urnRepository;
+    private TopoSnapshotService topoSnapshotService;
 
     @Autowired
     private VlanService vlanService;
@@ -56,7 +56,7 @@ public class TranslationPCE {
      * @throws PSSException
      */
     public ReservedVlanJunctionE reserveSimpleJunction(RequestedVlanJunctionE req_j,
-                                                       Map<String, Map<String, Integer>> bwAvailMap,
+                                                       BandwidthAvailabilityTable bwAvailMap,
                                                        List<ReservedVlanE> reservedVlans,
                                                        Map<String, Set<String>> deviceToPortMap,
                                                        Map<String, String> portToDeviceMap, Date start, Date end, String connectionId)
@@ -64,7 +64,7 @@ public class TranslationPCE {
 
         // Retrieve the URN of the requested junction, if it is in the repository
         String deviceUrnString = req_j.getDeviceUrn();
-        Map<String, UrnE> urnMap = urnRepository.findAll().stream().collect(Collectors.toMap(UrnE::getUrn, u -> u));
+        Map<String, UrnE> urnMap = topoSnapshotService.current().getUrnMap();
         UrnE deviceUrn = urnMap.get(deviceUrnString);
 
         // Create a reserved junction with an empty set of fixtures / PSS resources
@@ -144,17 +144,14 @@ public class TranslationPCE {
     public TranslationPCEResponse reserveRequestedPipe(RequestedVlanPipeE reqPipe,
                                                        List<TopoEdge> azERO,
                                                        List<TopoEdge> zaERO,
-                                                       Map<String, Map<String, Integer>> bwAvailMap,
+                                                       BandwidthAvailabilityTable bwAvailMap,
                                                        List<ReservedVlanE> reservedVlans,
                                                        Map<String, Set<String>> deviceToPortMap,
                                                        Map<String, String> portToDeviceMap, Date start, Date end, String connectionId)
             throws PCEException, PSSException {
 
         // Build a urn map
-        Map<String, UrnE> urnMap = new HashMap<>();
-        urnRepository.findAll().forEach(u -> {
-            urnMap.put(u.getUrn(), u);
-        });
+        Map<String, UrnE> urnMap = topoSnapshotService.current().getUrnMap();
 
         Map<TopoVertex, Map<String, Integer>> requestedBandwidthMap = evaluateRequestedBandwidth(bwAvailMap, azERO, zaERO, reqPipe, urnMap);
 
@@ -226,7 +223,7 @@ public class TranslationPCE {
         return parentHasVlans;
     }
 
-    private Map<TopoVertex, Map<String, Integer>> evaluateRequestedBandwidth(Map<String, Map<String, Integer>> bwAvailMap,
+    private Map<TopoVertex, Map<String, Integer>> evaluateRequestedBandwidth(BandwidthAvailabilityTable bwAvailMap,
                                                                              List<TopoEdge> azERO, List<TopoEdge> zaERO,
                                                                              RequestedVlanPipeE reqPipe,
                                                                              Map<String, UrnE> urnMap) throws PCEException {
@@ -602,7 +599,7 @@ public class TranslationPCE {
 
     public void testBandwidthRequirements(RequestedVlanPipeE reqPipe, List<TopoEdge> azERO, List<TopoEdge> zaERO,
                                           Map<String, UrnE> urnMap, Integer azMbps, Integer zaMbps,
-                                          Map<String, Map<String, Integer>> availBwMap,
+                                          BandwidthAvailabilityTable availBwMap,
                                           Map<TopoVertex, Map<String, Integer>> requestedBandwidthMap) throws PCEException {
         // Confirm that there is sufficient bandwidth to meet the request (given what has been reserved so far)
 
@@ -4,12 +4,14 @@ import lombok.extern.slf4j.Slf4j;
 import net.es.oscars.dto.IntRange;
 import net.es.oscars.dto.topo.enums.VertexType;
 import net.es.oscars.helpers.IntRangeParsing;
-import net.es.oscars.resv.dao.ReservedVlanRepository;
+import net.es.oscars.helpers.VlanBitmap;
 import net.es.oscars.resv.ent.*;
+import net.es.oscars.resv.svc.ReservedResourceIndex;
 import net.es.oscars.dto.topo.TopoEdge;
-import net.es.oscars.topo.dao.UrnRepository;
 import net.es.oscars.topo.ent.IntRangeE;
 import net.es.oscars.topo.ent.UrnE;
+import net.es.oscars.topo.svc.TopoSnapshot;
+import net.es.oscars.topo.svc.TopoSnapshotService;
 import net.es.oscars.dto.topo.enums.DeviceType;
 import net.es.oscars.dto.topo.enums.Layer;
 import net.es.oscars.dto.topo.enums.UrnType;
@@ -25,10 +27,10 @@ import java.util.stream.Collectors;
 @Component
 public class VlanService {
     @Autowired
-    private UrnRepository urnRepository;
+    private ReservedResourceIndex resvIndex;
 
     @Autowired
-    private ReservedVlanRepository resvVlanRepo;
+    private TopoSnapshotService topoSnapshotService;
 
     /*~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
       BUILD RESERVED/AVAILABLE/REQUESTED VLAN COLLECTIONS/MAPS
@@ -72,18 +74,18 @@ public class VlanService {
         return rsvVlans;
     }
 
-    private Map<String, Set<Integer>> buildRequestedVlanIdMap(RequestedVlanPipeE reqPipe,
-                                                              Map<String, Set<Integer>> availableVlanMap) {
-        Map<String, Set<Integer>> requestedVlanIdMap = new HashMap<>();
+    private Map<String, VlanBitmap> buildRequestedVlanIdMap(RequestedVlanPipeE reqPipe,
+                                                            Map<String, VlanBitmap> availableVlanMap) {
+        Map<String, VlanBitmap> requestedVlanIdMap = new HashMap<>();
 
         Set<RequestedVlanFixtureE> fixtures = new HashSet<>(reqPipe.getAJunction().getFixtures());
         fixtures.addAll(reqPipe.getZJunction().getFixtures());
 
         for (RequestedVlanFixtureE fix : fixtures) {
             String urn_s = fix.getPortUrn();
-            Set<Integer> requestedVlans = getIntegersFromRanges(getIntRangesFromString(fix.getVlanExpression()));
+            VlanBitmap requestedVlans = VlanBitmap.fromRanges(getIntRangesFromString(fix.getVlanExpression()));
             if (requestedVlans.isEmpty()) {
-                requestedVlanIdMap.put(urn_s, availableVlanMap.getOrDefault(urn_s, new HashSet<>()));
+                requestedVlanIdMap.put(urn_s, availableVlanMap.getOrDefault(urn_s, new VlanBitmap()));
             } else {
                 requestedVlanIdMap.put(urn_s, requestedVlans);
             }
@@ -92,14 +94,14 @@ public class VlanService {
         return requestedVlanIdMap;
     }
 
-    private Map<String, Set<Integer>> buildRequestedVlanIdMap(Set<RequestedVlanFixtureE> fixtures,
-                                                              Map<String, Set<Integer>> availableVlanMap) {
-        Map<String, Set<Integer>> requestedVlanIdMap = new HashMap<>();
+    private Map<String, VlanBitmap> buildRequestedVlanIdMap(Set<RequestedVlanFixtureE> fixtures,
+                                                            Map<String, VlanBitmap> availableVlanMap) {
+        Map<String, VlanBitmap> requestedVlanIdMap = new HashMap<>();
 
         for (RequestedVlanFixtureE fix : fixtures) {
-            Set<Integer> requestedVlans = getIntegersFromRanges(getIntRangesFromString(fix.getVlanExpression()));
+            VlanBitmap requestedVlans = VlanBitmap.fromRanges(getIntRangesFromString(fix.getVlanExpression()));
             if (requestedVlans.isEmpty()) {
-                requestedVlanIdMap.put(fix.getPortUrn(), availableVlanMap.get(fix.getPortUrn()));
+                requestedVlanIdMap.put(fix.getPortUrn(), availableVlanMap.getOrDefault(fix.getPortUrn(), new VlanBitmap()));
             } else {
                 requestedVlanIdMap.put(fix.getPortUrn(), requestedVlans);
             }
@@ -107,32 +109,58 @@ public class VlanService {
         return requestedVlanIdMap;
     }
 
-    public Map<String, Set<Integer>> buildAvailableVlanIdMap(Map<String, UrnE> urnMap,
-                                                             List<ReservedVlanE> reservedVlans,
-                                                             Map<String, String> portToDeviceMap) {
+    /**
+     * Build a map of the VLAN IDs available at each port: the reservable VLANs of the port (or of its device, if the
+     * port has none of its own) minus the reserved ones. Ports that use their device's VLANs share them, so a VLAN
+     * reserved on one of those ports is unavailable on all of them.
+     *
+     * The bitmaps in the returned map may be shared between ports and must not be modified.
+     *
+     * @param urnMap          - Map of URN name to UrnE object.
+     * @param reservedVlans   - List of reserved VLANs.
+     * @param portToDeviceMap - Map of port URN to device URN.
+     * @return Map of port URN to available VLAN IDs.
+     */
+    public Map<String, VlanBitmap> buildAvailableVlanIdMap(Map<String, UrnE> urnMap,
+                                                           List<ReservedVlanE> reservedVlans,
+                                                           Map<String, String> portToDeviceMap) {
+        if (urnMap == null) {
+            log.error("null URN map!");
+            return new HashMap<>();
 
-        // Build empty map of available VLAN IDs per URN
-        Map<String, Set<Integer>> availableVlanIdMap = new HashMap<>();
+        }
 
         // Get map of all reserved VLAN IDs per URN
-        Map<String, Set<Integer>> reservedVlanIdMap = buildReservedVlanIdMap(urnMap, reservedVlans);
-        String stringifyVlanMap = stringifyVlanMap(reservedVlanIdMap);
-        //log.info("Reserved VLAN ID Map: " + stringifyVlanMap);
+        Map<String, VlanBitmap> reservedVlanIdMap = buildReservedVlanIdMap(urnMap, reservedVlans);
+        //log.info("Reserved VLAN ID Map: " + stringifyVlanMap(reservedVlanIdMap));
 
-        // Get map of all reservable VLAN IDs per URN
-        Map<String, Set<Integer>> reservableVlanIdMap = buildReservableVlanIdMap(urnMap);
-        stringifyVlanMap = stringifyVlanMap(reservableVlanIdMap);
-        //log.info("Reservable VLAN ID Map: " + stringifyVlanMap);
+        return buildAvailableVlanIdMap(urnMap, reservedVlanIdMap, portToDeviceMap);
+    }
 
-        if (urnMap == null) {
-            log.error("null URN map!");
-            return availableVlanIdMap;
+    /**
+     * Same as above, starting from the reserved VLAN IDs of each port (see buildReservedVlanIdMap()).
+     *
+     * @param urnMap            - Map of URN name to UrnE object.
+     * @param reservedVlanIdMap - Map of port URN to reserved VLAN IDs.
+     * @param portToDeviceMap   - Map of port URN to device URN.
+     * @return Map of port URN to available VLAN IDs.
+     */
+    public Map<String, VlanBitmap> buildAvailableVlanIdMap(Map<String, UrnE> urnMap,
+                                                           Map<String, VlanBitmap> reservedVlanIdMap,
+                                                           Map<String, String> portToDeviceMap) {
 
-        }
+        // Build empty map of available VLAN IDs per URN
+        Map<String, VlanBitmap> availableVlanIdMap = new HashMap<>();
+
+        TopoSnapshot snapshot = topoSnapshotService.current();
+        VlanBitmap noneReserved = new VlanBitmap();
+        // Available VLANs of each device, shared by the ports that have no VLANs of their own
+        Map<String, VlanBitmap> deviceVlanIdMap = new HashMap<>();
 
         urnMap.values().stream()
                 .filter(urn -> urn.getUrnType().equals(UrnType.IFCE))
                 .forEach(urn -> {
+                    VlanBitmap reservedIds = reservedVlanIdMap.getOrDefault(urn.getUrn(), noneReserved);
                     // if we don't get any vlans from the ifce urn,
                     if (urn.getReservableVlans() == null) {
                         // check on the device
@@ -142,109 +170,87 @@ public class VlanService {
                         } else {
                             if (deviceUrn.getReservableVlans() == null) {
                                 // there aren't any on the device :(
-                                availableVlanIdMap.put(urn.getUrn(), new HashSet<>());
+                                availableVlanIdMap.put(urn.getUrn(), new VlanBitmap());
                             } else {
                                 // there are some on the device :)
-                                Set<Integer> availableIds = reservableVlanIdMap.get(deviceUrn.getUrn());
-                                availableIds.removeAll(reservedVlanIdMap.get(urn.getUrn()));
+                                VlanBitmap availableIds = deviceVlanIdMap.computeIfAbsent(deviceUrn.getUrn(),
+                                        d -> reservableVlanMask(snapshot, deviceUrn).copy());
+                                availableIds.andNot(reservedIds);
                                 availableVlanIdMap.put(urn.getUrn(), availableIds);
                             }
                         }
                     } else {
                         // grab them from the ifce URN
-                        Set<Integer> availableIds = reservableVlanIdMap.get(urn.getUrn());
-                        availableIds.removeAll(reservedVlanIdMap.get(urn.getUrn()));
+                        VlanBitmap availableIds = reservableVlanMask(snapshot, urn).copy();
+                        availableIds.andNot(reservedIds);
                         availableVlanIdMap.put(urn.getUrn(), availableIds);
                     }
                 });
 
-        stringifyVlanMap = stringifyVlanMap(availableVlanIdMap);
-        //log.info("Available VLAN ID Map: " + stringifyVlanMap);
+        //log.info("Available VLAN ID Map: " + stringifyVlanMap(availableVlanIdMap));
 
         return availableVlanIdMap;
     }
 
-    public String stringifyVlanMap(Map<String, Set<Integer>> input) {
+    public String stringifyVlanMap(Map<String, VlanBitmap> input) {
         Map<String, String> output = new HashMap<>();
-        input.keySet().forEach(urn -> {
-            List<Integer> availVlans = new ArrayList<>();
-            availVlans.addAll(input.get(urn));
-            Collections.sort(availVlans);
-            Set<IntRange> ranges = new HashSet<>();
-
-            IntRange range = IntRange.builder().floor(0).ceiling(0).build();
-            for (Integer idx = 0; idx < availVlans.size(); idx++) {
-                Integer vlan = availVlans.get(idx);
-                if (range.getCeiling() == 0) {
-                    range.setFloor(vlan);
-                    range.setCeiling(vlan);
-                }
-                if (idx == availVlans.size() - 1) {
-                    range.setCeiling(vlan);
-                    ranges.add(range);
-                } else {
-                    if (range.getCeiling() + 1 == vlan) {
-                        range.setCeiling(vlan);
-                    } else {
-                        ranges.add(range);
-                        range = IntRange.builder().floor(vlan).ceiling(vlan).build();
-                    }
-                }
-            }
-
-            String row = ranges.toString();
-
-
-            output.put(urn, row);
-        });
-
+        input.forEach((urn, vlans) -> output.put(urn, vlans.toString()));
         return output.toString();
-
     }
 
-
-    private Map<String, Set<Integer>> buildReservableVlanIdMap(Map<String, UrnE> urnMap) {
-        Map<String, Set<Integer>> reservableVlanIdMap = new HashMap<>();
-
-        urnMap.values().stream()
-                .filter(urn_e -> urn_e.getReservableVlans() != null)
-                .forEach(urn_e -> {
-                    List<IntRange> ranges = urn_e.getReservableVlans().getVlanRanges().stream().map(IntRangeE::toDtoIntRange).collect(Collectors.toList());
-                    reservableVlanIdMap.put(urn_e.getUrn(), getIntegersFromRanges(ranges));
-                });
-        return reservableVlanIdMap;
+    /**
+     * Reservable VLAN IDs of a URN, which must have reservable VLANs. Uses the mask cached in the topology snapshot
+     * when the URN comes from it. The returned bitmap may be shared and must not be modified.
+     *
+     * @param snapshot - The current topology snapshot
+     * @param urn_e    - The URN
+     * @return The reservable VLAN IDs
+     */
+    private VlanBitmap reservableVlanMask(TopoSnapshot snapshot, UrnE urn_e) {
+        if (snapshot.getUrnMap().get(urn_e.getUrn()) == urn_e) {
+            VlanBitmap cached = snapshot.reservableVlans(urn_e.getUrn());
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Set<IntRangeE> ranges = urn_e.getReservableVlans().getVlanRanges();
+        return VlanBitmap.fromRanges(ranges == null ? null : ranges.stream()
+                .map(IntRangeE::toDtoIntRange)
+                .collect(Collectors.toList()));
     }
 
-    private Map<String, Set<Integer>> buildReservedVlanIdMap(Map<String, UrnE> urnMap, List<ReservedVlanE> reservedVlans) {
-        Map<String, Set<Integer>> reservedVlanIdMap = new HashMap<>();
-        urnMap.values().stream()
-                .filter(urn_e -> urn_e.getUrnType().equals(UrnType.IFCE))
-                .forEach(urn_e -> reservedVlanIdMap.put(urn_e.getUrn(), new HashSet<>()));
-
+    /**
+     * Collect the reserved VLAN IDs of each port. Reservations on URNs that are not known ports are left out, so two
+     * lists of reservations with equal maps leave the same VLANs available.
+     *
+     * @param urnMap        - Map of URN name to UrnE object.
+     * @param reservedVlans - List of reserved VLANs.
+     * @return Map of port URN to reserved VLAN IDs.
+     */
+    public Map<String, VlanBitmap> buildReservedVlanIdMap(Map<String, UrnE> urnMap, List<ReservedVlanE> reservedVlans) {
+        Map<String, VlanBitmap> reservedVlanIdMap = new HashMap<>();
         for (ReservedVlanE rsvVlan : reservedVlans) {
             Integer vlanId = rsvVlan.getVlan();
-            String urn = rsvVlan.getUrn();
-            reservedVlanIdMap.get(urn).add(vlanId);
+            UrnE urn_e = urnMap.get(rsvVlan.getUrn());
+            if (vlanId != null && urn_e != null && urn_e.getUrnType().equals(UrnType.IFCE)) {
+                reservedVlanIdMap.computeIfAbsent(rsvVlan.getUrn(), u -> new VlanBitmap()).add(vlanId);
+            }
         }
         return reservedVlanIdMap;
     }
 
-    private Map<String, Set<Integer>> buildValidVlanIdMap(Map<String, Set<Integer>> requestedVlanMap,
-                                                        Map<String, Set<Integer>> availableVlanMap) {
+    private Map<String, VlanBitmap> buildValidVlanIdMap(Map<String, VlanBitmap> requestedVlanMap,
+                                                        Map<String, VlanBitmap> availableVlanMap) {
 
-        Map<String, Set<Integer>> validVlanIdMap = new HashMap<>();
+        Map<String, VlanBitmap> validVlanIdMap = new HashMap<>();
 
 
         for (String urn_s : requestedVlanMap.keySet()) {
 
-            Set<Integer> availableVlans = availableVlanMap.get(urn_s);
-            Set<Integer> requestedVlans = requestedVlanMap.get(urn_s);
-
+            VlanBitmap availableVlans = availableVlanMap.getOrDefault(urn_s, new VlanBitmap());
+            VlanBitmap requestedVlans = requestedVlanMap.get(urn_s);
 
-            Set<Integer> validVlans = new HashSet<>();
-            validVlans.addAll(requestedVlans);
-            validVlans.retainAll(availableVlans);
-            validVlanIdMap.put(urn_s, validVlans);
+            validVlanIdMap.put(urn_s, requestedVlans.copy().and(availableVlans));
         }
         return validVlanIdMap;
     }
@@ -264,8 +270,7 @@ public class VlanService {
      */
     public List<ReservedVlanE> getReservedVlansFromRepo(Date start, Date end) {
         //Get all Reserved VLan between start and end
-        Optional<List<ReservedVlanE>> optResvVlan = resvVlanRepo.findOverlappingInterval(start.toInstant(), end.toInstant());
-        return optResvVlan.isPresent() ? optResvVlan.get() : new ArrayList<>();
+        return resvIndex.overlappingVlans(start.toInstant(), end.toInstant());
     }
 
     /**
@@ -308,16 +313,16 @@ public class VlanService {
      *
      * @param urn         - The currently considered URN string
      * @param resvVlanMap - A mapping representing the Reserved VLANs at a URN
-     * @return Set of VLAN IDs that are both supported and not reserved at a URN
+     * @return VLAN IDs that are both supported and not reserved at a URN
      */
-    public Set<Integer> getAvailableVlanIds(String urn, Map<String, Set<ReservedVlanE>> resvVlanMap,
-                                            Map<String, Set<String>> deviceToPortMap, Map<String, UrnE> urnMap) {
+    public VlanBitmap getAvailableVlanIds(String urn, Map<String, Set<ReservedVlanE>> resvVlanMap,
+                                          Map<String, Set<String>> deviceToPortMap, Map<String, UrnE> urnMap) {
         // Get the supported reservable VLAN IDs
-        Set<Integer> reservableVlanIds = new HashSet<>();
+        VlanBitmap reservableVlanIds = new VlanBitmap();
         UrnE topoUrn = urnMap.get(urn);
 
         if (topoUrn.getReservableVlans() != null) {
-            reservableVlanIds = getIntegersFromRanges(topoUrn.getReservableVlans().getVlanRanges().stream().map(IntRangeE::toDtoIntRange).collect(Collectors.toList()));
+            reservableVlanIds = reservableVlanMask(topoSnapshotService.current(), topoUrn).copy();
         }
 
         // Get reserved VLANs (if any) from URN
@@ -326,20 +331,16 @@ public class VlanService {
         deviceToPortMap.getOrDefault(urn, new HashSet<>()).stream().filter(urnMap::containsKey).forEach(portName -> {
             reservedVlans.addAll(resvVlanMap.getOrDefault(urnMap.get(portName), new HashSet<>()));
         });
-        // If nothing's reserved, return reservable
-        if (reservedVlans.isEmpty()) {
-            return reservableVlanIds;
-        }
-        // Otherwise, return the reservable IDs that are not reserved
-        else {
-            Set<Integer> reservedVlanIds = reservedVlans.stream().map(ReservedVlanE::getVlan).collect(Collectors.toSet());
-            return reservableVlanIds
-                    .stream()
-                    .filter(id -> !reservedVlanIds.contains(id))
-                    .collect(Collectors.toSet());
+        // Return the reservable IDs that are not reserved
+        for (ReservedVlanE reservedVlan : reservedVlans) {
+            if (reservedVlan.getVlan() != null) {
+                reservableVlanIds.remove(reservedVlan.getVlan());
+            }
         }
+        return reservableVlanIds;
     }
 
+
     /**
      * Using the list of URNs and the URN string, find the matching UrnE object and retrieve all of its
      * reservable IntRanges.
@@ -379,6 +380,7 @@ public class VlanService {
      * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
      */
 
+
     /**
      * Select a VLAN ID for a junction. All fixtures on the junction must use their requested VLAN tag.
      *
@@ -405,9 +407,9 @@ public class VlanService {
 
         // All requested fixtures/ports
         Set<RequestedVlanFixtureE> reqFixtures = req_j.getFixtures();
-        Map<String, Set<Integer>> reqVlanMap = new HashMap<>();
+        Map<String, VlanBitmap> reqVlanMap = new HashMap<>();
 
-        Map<String, Set<Integer>> validVlanMap = new HashMap<>();
+        Map<String, VlanBitmap> validVlanMap = new HashMap<>();
 
 
         // Use the device's available VLANs
@@ -417,27 +419,27 @@ public class VlanService {
             String deviceUrn = req_j.getDeviceUrn();
             Set<String> devicePortUrns = deviceToPortMap.get(req_j.getDeviceUrn()).stream().collect(Collectors.toSet());
 
-            Set<Integer> availableVlans = getAvailableVlanIds(deviceUrn, rsvVlanMap, deviceToPortMap, urnMap);
-            Map<String, Set<Integer>> availableVlanMap = devicePortUrns.stream().collect(Collectors.toMap(urn -> urn, urn -> availableVlans));
+            VlanBitmap availableVlans = getAvailableVlanIds(deviceUrn, rsvVlanMap, deviceToPortMap, urnMap);
+            Map<String, VlanBitmap> availableVlanMap = devicePortUrns.stream().collect(Collectors.toMap(urn -> urn, urn -> availableVlans));
 
             reqVlanMap = buildRequestedVlanIdMap(reqFixtures, availableVlanMap);
 
             for (String devicePortUrn : devicePortUrns) {
-                reqVlanMap.putIfAbsent(devicePortUrn, new HashSet<>());
+                reqVlanMap.putIfAbsent(devicePortUrn, new VlanBitmap());
             }
 
             // Get all of the requested VLANs per URN that are available
             for (String urn : reqVlanMap.keySet()) {
-                Set<Integer> validVlans = reqVlanMap.get(urn);
+                VlanBitmap validVlans = reqVlanMap.get(urn);
                 if (validVlans.isEmpty()) {
                     validVlans = availableVlans;
                 } else {
-                    validVlans.retainAll(availableVlans);
+                    validVlans = validVlans.copy().and(availableVlans);
                 }
                 validVlanMap.put(urn, validVlans);
             }
             // First: Check if any URN does not have any valid VLANs - return an invalid map
-            if (validVlanMap.values().stream().anyMatch(Set::isEmpty)) {
+            if (validVlanMap.values().stream().anyMatch(VlanBitmap::isEmpty)) {
                 return devicePortUrns.stream().collect(Collectors.toMap(urn -> urn, urn -> new HashSet<>()));
             }
             Set<Integer> chosenVlans = findSetCover(validVlanMap);
@@ -446,13 +448,13 @@ public class VlanService {
         // Use the ports' available vlans
         else {
             Map<String, Set<Integer>> vlanIdPerPort = new HashMap<>();
-            Map<String, Set<Integer>> availableVlanMap = reqFixtures.stream()
+            Map<String, VlanBitmap> availableVlanMap = reqFixtures.stream()
                     .map(RequestedVlanFixtureE::getPortUrn)
                     .collect(Collectors.toMap(urn -> urn, urn -> getAvailableVlanIds(urn, rsvVlanMap, deviceToPortMap, urnMap)));
             reqVlanMap = buildRequestedVlanIdMap(reqFixtures, availableVlanMap);
             // Get all of the requested VLANs per URN that are available
             for (String urn : reqVlanMap.keySet()) {
-                Set<Integer> validVlans = reqVlanMap.get(urn);
+                VlanBitmap validVlans = reqVlanMap.get(urn);
                 // There are no requested VLANs
                 if (validVlans.isEmpty()) {
                     validVlans = availableVlanMap.get(urn);
@@ -461,7 +463,7 @@ public class VlanService {
                         return reqVlanMap.keySet().stream().collect(Collectors.toMap(u -> u, u -> new HashSet<>()));
                     }
                 } else {
-                    validVlans.retainAll(availableVlanMap.get(urn));
+                    validVlans = validVlans.copy().and(availableVlanMap.get(urn));
                 }
                 validVlanMap.put(urn, validVlans);
             }
@@ -471,7 +473,7 @@ public class VlanService {
             for (Integer vlan : chosenVlans) {
                 for (String urn : reqVlanMap.keySet()) {
                     vlanIdPerPort.putIfAbsent(urn, new HashSet<>());
-                    if (reqVlanMap.get(urn).contains(vlan) && vlanIdPerPort.get(urn).isEmpty()) {
+                    if (validVlanMap.get(urn).contains(vlan) && vlanIdPerPort.get(urn).isEmpty()) {
                         vlanIdPerPort.get(urn).add(vlan);
                     }
                 }
@@ -482,40 +484,35 @@ public class VlanService {
 
     }
 
-    public Set<Integer> findSetCover(Map<String, Set<Integer>> validVlanMap) {
-        // Build a map from each VLAN ID to the set of URNs that it covers
-        Map<Integer, Set<String>> coverMap = new HashMap<>();
-        for (String urn : validVlanMap.keySet()) {
-            Set<Integer> vlans = validVlanMap.get(urn);
-            for (Integer vlan : vlans) {
-                coverMap.putIfAbsent(vlan, new HashSet<>());
-                coverMap.get(vlan).add(urn);
+    /**
+     * Choose the VLAN ID that is valid at the largest number of URNs (the lowest such ID on ties).
+     *
+     * @param validVlanMap - Map of URN to valid VLAN IDs
+     * @return A set holding the chosen VLAN ID, or an empty set if no URN has a valid VLAN ID
+     */
+    public Set<Integer> findSetCover(Map<String, VlanBitmap> validVlanMap) {
+        // Count the URNs covered by each VLAN ID
+        int[] coverCounts = new int[VlanBitmap.SIZE];
+        for (VlanBitmap vlans : validVlanMap.values()) {
+            for (int vlan = vlans.first(); vlan >= 0; vlan = vlans.nextSetBit(vlan + 1)) {
+                coverCounts[vlan]++;
             }
         }
 
-        Long numCovered = 0L;
-        Map<String, Boolean> isCoveredMap = validVlanMap.keySet().stream().collect(Collectors.toMap(urn -> urn, urn -> false));
-        Set<Integer> chosenVlans = new HashSet<>();
-        while (numCovered < validVlanMap.keySet().size()) {
-            Integer bestVlan = -1;
-            Long largestNewCovers = 0L;
-            for (Integer vlan : coverMap.keySet()) {
-                Set<String> thisVlanUrns = coverMap.get(vlan);
-                Long numUncovered = thisVlanUrns.stream().filter(urn -> !isCoveredMap.get(urn)).count();
-                if (numUncovered > largestNewCovers) {
-                    bestVlan = vlan;
-                    largestNewCovers = numUncovered;
-                }
-            }
-            // No VLAN chosen, there was no way to increase the number of covered URNs
-            if (bestVlan == -1) {
-                return new HashSet<>();
-            } else {
-                chosenVlans.add(bestVlan);
-                numCovered += largestNewCovers;
+        int bestVlan = -1;
+        int largestCover = 0;
+        for (int vlan = 0; vlan < VlanBitmap.SIZE; vlan++) {
+            if (coverCounts[vlan] > largestCover) {
+                bestVlan = vlan;
+                largestCover = coverCounts[vlan];
             }
         }
 
+        Set<Integer> chosenVlans = new HashSet<>();
+        // No VLAN chosen, there was no way to cover any URN
+        if (bestVlan != -1) {
+            chosenVlans.add(bestVlan);
+        }
         return chosenVlans;
     }
 
@@ -541,14 +538,14 @@ public class VlanService {
 
         // Confirm that there is at least one VLAN ID that can support every segment (given what has been reserved so far)
         // Get the available VLANs at all URNs
-        Map<String, Set<Integer>> availableVlanMap = buildAvailableVlanIdMap(urnMap, reservedVlans, portToDeviceMap);
+        Map<String, VlanBitmap> availableVlanMap = buildAvailableVlanIdMap(urnMap, reservedVlans, portToDeviceMap);
 
         // Get the requested VLANs per Fixture URN & Any Ports at Individual URNs
-        Map<String, Set<Integer>> requestedVlanMap = buildRequestedVlanIdMap(reqPipe, availableVlanMap);
+        Map<String, VlanBitmap> requestedVlanMap = buildRequestedVlanIdMap(reqPipe, availableVlanMap);
         //log.info("Requested Vlan Map: " + stringifyVlanMap(requestedVlanMap));
 
         // Get the "valid" VLANs per Fixture URN
-        Map<String, Set<Integer>> validVlanMap = buildValidVlanIdMap(requestedVlanMap, availableVlanMap);
+        Map<String, VlanBitmap> validVlanMap = buildValidVlanIdMap(requestedVlanMap, availableVlanMap);
         //log.info("Valid Vlan Map: " + stringifyVlanMap(validVlanMap));
         // Create a map of URNs to chosen VLAN IDs
         return selectVlansForPath(azERO, zaERO, urnMap, availableVlanMap, validVlanMap, deviceToPortMap, portToDeviceMap, reqPipe);
@@ -573,8 +570,8 @@ public class VlanService {
     private Map<String, Set<Integer>> selectVlansForPath(List<TopoEdge> azERO,
                                                          List<TopoEdge> zaERO,
                                                          Map<String, UrnE> urnMap,
-                                                         Map<String, Set<Integer>> availableVlanMap,
-                                                         Map<String, Set<Integer>> validVlanMap,
+                                                         Map<String, VlanBitmap> availableVlanMap,
+                                                         Map<String, VlanBitmap> validVlanMap,
                                                          Map<String, Set<String>> deviceToPortMap,
                                                          Map<String, String> portToDeviceMap,
                                                          RequestedVlanPipeE reqPipe) {
@@ -593,17 +590,14 @@ public class VlanService {
         pipeUrns.remove(zJunctionUrn);
 
         // Get the VLANs available across the AZ/ZA path
-        Set<Integer> availableVlansAcrossPath = findAvailableVlansBidirectional(pipeUrns, availableVlanMap);
-        if (availableVlansAcrossPath == null) {
-            availableVlansAcrossPath = new HashSet<>();
-        }
+        VlanBitmap availableVlansAcrossPath = findAvailableVlansBidirectional(pipeUrns, availableVlanMap);
 
         // Get the valid VLANs across the fixtures
-        Set<Integer> availableVlansAcrossFixtures = getVlanOverlapAcrossMap(validVlanMap);
+        VlanBitmap availableVlansAcrossFixtures = getVlanOverlapAcrossMap(validVlanMap);
 
         // Get the VLANs available across non-fixture ports at both junctions
         Map<String, Set<String>> nonFixPortUrnMap = new HashMap<>();
-        Map<String, Set<Integer>> nonFixPortVlansMap = new HashMap<>();
+        Map<String, VlanBitmap> nonFixPortVlansMap = new HashMap<>();
         populateDeviceVlanMaps(deviceToPortMap, aJunctionUrn, zJunctionUrn, urnMap, validVlanMap, availableVlanMap, nonFixPortUrnMap, nonFixPortVlansMap);
 
         //Initialize chosen VLAN map
@@ -613,18 +607,17 @@ public class VlanService {
 
 
         // If there is any overlap between these sets, use this ID for everything
-        Set<Integer> availableEverywhere = availableVlansAcrossFixtures != null ? new HashSet<>(availableVlansAcrossFixtures) : new HashSet<>();
-        availableEverywhere.retainAll(availableVlansAcrossPath);
+        VlanBitmap availableEverywhere = availableVlansAcrossFixtures != null ? availableVlansAcrossFixtures.copy() : new VlanBitmap();
+        availableEverywhere.and(availableVlansAcrossPath);
         if (isSwitch(aJunctionUrn_e)) {
-            availableEverywhere.retainAll(nonFixPortVlansMap.get(aJunctionUrn));
+            availableEverywhere.and(nonFixPortVlansMap.get(aJunctionUrn));
         }
         if (isSwitch(zJunctionUrn_e)) {
-            availableEverywhere.retainAll(nonFixPortVlansMap.get(zJunctionUrn));
+            availableEverywhere.and(nonFixPortVlansMap.get(zJunctionUrn));
         }
         // If there is at least one VLAN available everywhere, reserve it at each URN
         if (!availableEverywhere.isEmpty()) {
-            List<Integer> options = availableEverywhere.stream().sorted().collect(Collectors.toList());
-            Integer chosenVlan = options.get(0);
+            Integer chosenVlan = availableEverywhere.first();
             chosenVlanMap = pipeUrns.stream().collect(Collectors.toMap(u -> u, u -> Collections.singleton(chosenVlan)));
             for (String fixUrn : validVlanMap.keySet()) {
                 chosenVlanMap.putIfAbsent(fixUrn, Collections.singleton(chosenVlan));
@@ -663,22 +656,20 @@ public class VlanService {
             for (String fixUrn : sortedFixtureUrns) {
                 UrnE parentDeviceUrn_e = urnMap.get(portToDeviceMap.get(fixUrn));
 
-                Set<Integer> overlappingVlans = new HashSet<>();
-                overlappingVlans.addAll(validVlanMap.get(fixUrn));
+                VlanBitmap overlappingVlans = validVlanMap.get(fixUrn).copy();
 
-                overlappingVlans.retainAll(availableVlansAcrossPath);
+                overlappingVlans.and(availableVlansAcrossPath);
                 // If the parent device is a switch, add the available VLANs for that device to the overlap
                 if (isSwitch(parentDeviceUrn_e)) {
-                    Set<Integer> nfpvm = nonFixPortVlansMap.getOrDefault(parentDeviceUrn_e.getUrn(), new HashSet<>());
-                    overlappingVlans.retainAll(nfpvm);
+                    VlanBitmap nfpvm = nonFixPortVlansMap.getOrDefault(parentDeviceUrn_e.getUrn(), new VlanBitmap());
+                    overlappingVlans.and(nfpvm);
                 }
                 // If there is at least one VLAN ID in common between this fixture and the other ports in the path
                 // AND the other ports on the switch (if this fixture is on a switch)
                 if (!overlappingVlans.isEmpty() && !pipeVlansAssigned) {
                     pipeVlansAssigned = true;
                     // Choose VLAN ID
-                    List<Integer> options = overlappingVlans.stream().sorted().collect(Collectors.toList());
-                    Integer chosenVlan = options.get(0);
+                    Integer chosenVlan = overlappingVlans.first();
                     // Assign this VLAN to every URN in the pipe
                     for (String pipeUrn : pipeUrns) {
                         chosenVlanMap.get(pipeUrn).add(chosenVlan);
@@ -697,15 +688,15 @@ public class VlanService {
                 // If there's at least one VLAN that can work for this fixture, reserve it
                 // (ONLY if it is also available on the other ports on the device, if the device is a switch)
                 if (!validVlanMap.get(fixUrn).isEmpty()) {
-                    List<Integer> options = validVlanMap.get(fixUrn).stream().sorted().collect(Collectors.toList());
+                    VlanBitmap options = validVlanMap.get(fixUrn).copy();
                     // Retain only the VLANs that are also available at other ports on the device (if it is a switch)
                     if (isSwitch(parentDeviceUrn_e)) {
-                        Set<Integer> nfpvm = nonFixPortVlansMap.getOrDefault(parentDeviceUrn_e.getUrn(), new HashSet<>());
-                        options.retainAll(nfpvm);
+                        VlanBitmap nfpvm = nonFixPortVlansMap.getOrDefault(parentDeviceUrn_e.getUrn(), new VlanBitmap());
+                        options.and(nfpvm);
                     }
                     // If available options, choose a VLAN and assign it to the fixture and the port URNs (if device is a switch)
                     if (!options.isEmpty()) {
-                        Integer chosenVlan = options.get(0);
+                        Integer chosenVlan = options.first();
                         chosenVlanMap.get(fixUrn).add(chosenVlan);
                         if (isSwitch(parentDeviceUrn_e)) {
                             vlansAssignedJunctionMap.get(parentDeviceUrn_e.getUrn()).add(chosenVlan);
@@ -725,8 +716,7 @@ public class VlanService {
                 // If there's at least one VLAN ID available across the path
                 if (!availableVlansAcrossPath.isEmpty()) {
                     // Choose VLAN ID
-                    List<Integer> options = availableVlansAcrossPath.stream().sorted().collect(Collectors.toList());
-                    Integer chosenVlan = options.get(0);
+                    Integer chosenVlan = availableVlansAcrossPath.first();
                     // Assign this VLAN to every URN in the pipe
                     for (String pipeUrn : pipeUrns) {
                         // Assign this VLAN to other ports on the switch (if this URN is on switch junction A)
@@ -783,10 +773,10 @@ public class VlanService {
                                         String aJunctionUrn,
                                         String zJunctionUrn,
                                         Map<String, UrnE> urnMap,
-                                        Map<String, Set<Integer>> validVlanMap,
-                                        Map<String, Set<Integer>> availableVlanMap,
+                                        Map<String, VlanBitmap> validVlanMap,
+                                        Map<String, VlanBitmap> availableVlanMap,
                                         Map<String, Set<String>> nonFixPortUrnMap,
-                                        Map<String, Set<Integer>> nonFixPortVlansMap) {
+                                        Map<String, VlanBitmap> nonFixPortVlansMap) {
 
         Set<String> aNonFixJunctionPortUrns = deviceToPortMap.get(aJunctionUrn)
                 .stream()
@@ -800,8 +790,8 @@ public class VlanService {
                 .filter(urn -> !validVlanMap.containsKey(urn))
                 .collect(Collectors.toSet());
 
-        Set<Integer> aAvailableVlansNonFix = findAvailableVlansBidirectional(aNonFixJunctionPortUrns, availableVlanMap);
-        Set<Integer> zAvailableVlansNonFix = findAvailableVlansBidirectional(zNonFixJunctionPortUrns, availableVlanMap);
+        VlanBitmap aAvailableVlansNonFix = findAvailableVlansBidirectional(aNonFixJunctionPortUrns, availableVlanMap);
+        VlanBitmap zAvailableVlansNonFix = findAvailableVlansBidirectional(zNonFixJunctionPortUrns, availableVlanMap);
 
         nonFixPortUrnMap.put(aJunctionUrn, aNonFixJunctionPortUrns);
         nonFixPortUrnMap.put(zJunctionUrn, zNonFixJunctionPortUrns);
@@ -815,118 +805,113 @@ public class VlanService {
      * Check both AZ and ZA paths, determine which VLAN IDs are available across both.
      *
      * @param availableVlanMap - Map of available VLAN IDs
-     * @return Set of VLAN IDs available across both path edges
+     * @return VLAN IDs available across both path edges
      */
-    private Set<Integer> findAvailableVlansBidirectional(Set<String> urns, Map<String, Set<Integer>> availableVlanMap) {
+    private VlanBitmap findAvailableVlansBidirectional(Set<String> urns, Map<String, VlanBitmap> availableVlanMap) {
         // Ignore the first and last edges of each ERO
         // These edges connect to fixtures
-        Set<Integer> availableVlans = null;
+        VlanBitmap availableVlans = null;
 
         // Loop through all edges in the AZ / ZA combined path
         // Ignore MPLS edges
         for (String urn : urns) {
-            Set<Integer> vlans = availableVlanMap.getOrDefault(urn, new HashSet<>());
+            VlanBitmap vlans = availableVlanMap.get(urn);
+            if (vlans == null) {
+                return new VlanBitmap();
+            }
             if (availableVlans == null) {
-                availableVlans = new HashSet<>(vlans);
+                availableVlans = vlans.copy();
             } else {
-                availableVlans.retainAll(vlans);
+                availableVlans.and(vlans);
             }
         }
-        return availableVlans != null ? availableVlans : new HashSet<>();
+        return availableVlans != null ? availableVlans : new VlanBitmap();
     }
 
 
     /**
      * Return a pruned set of edges where the nodes on either end of the edge support at least one of the specified VLANs.
-     * A map of URNs are used to retrive the reservable VLAN sets from nodes (where applicable). Builds a mapping from
-     * each available VLAN id to the set of edges that support that ID. Using this mapping, the largest set of edges
+     * The available VLANs at each end of an edge are intersected to find the VLAN IDs the edge supports, and the
+     * number of edges supporting each VLAN ID is counted. Using these counts, the largest set of edges
      * that supports a requested VLAN id (or any VLAN id if none are specified) is returned.
      *
      * @param availableEdges - The set of currently available edges, which will be pruned further using VLAN tags.
      * @param urnMap         - Map of URN name to UrnE object.
      * @param vlans          - Requested VLAN ranges. Any VLAN ID within those ranges can be accepted.
-     * @param availVlanMap   - Map of UrnE objects to a List<> of available VLAN tags.
+     * @param availVlanMap   - Map of URN name to available VLAN tags.
      * @return The input edges, pruned using the input set of VLAN tags.
      */
     public Set<TopoEdge> findMaxValidEdgeSet(Set<TopoEdge> availableEdges,
                                              Map<String, UrnE> urnMap,
                                              List<IntRange> vlans,
-                                             Map<String, Set<Integer>> availVlanMap) {
+                                             Map<String, VlanBitmap> availVlanMap) {
 
+        // Get the requested VLAN ids
+        VlanBitmap requestedIds = VlanBitmap.fromRanges(vlans);
+        boolean anyId = requestedIds.isEmpty();
 
-        // Find a set of matching edges for each available VLAN id
-        Map<Integer, Set<TopoEdge>> edgesPerId = findEdgeSetPerVlanID(availableEdges, urnMap, availVlanMap);
-        // Get a set of the requested VLAN ids
-        Set<Integer> idsInRanges = getIntegersFromRanges(vlans);
-        // Find the largest set of TopoEdges that meet the request
+        // Edges where neither terminating node has reservable VLAN attributes; these are always kept
         Set<TopoEdge> bestSet = new HashSet<>();
-        for (Integer id : edgesPerId.keySet()) {
-            // Ignore the set of edges where both terminating nodes do not have reservable VLAN fields
-            // Add them to the best set of edges after this loop
-            if (id == -1) {
-                continue;
+        // The other edges, with the VLAN ids available across both of their ends
+        List<TopoEdge> vlanEdges = new ArrayList<>();
+        List<VlanBitmap> vlanEdgeIds = new ArrayList<>();
+        // Number of edges supporting each VLAN id
+        int[] edgesPerId = new int[VlanBitmap.SIZE];
+
+        for (TopoEdge edge : availableEdges) {
+            // Get all VLAN ids available at the a and z ends of the edge
+            VlanBitmap aAvailVlans = availVlanMap.get(edge.getA().getUrn());
+            VlanBitmap zAvailVlans = availVlanMap.get(edge.getZ().getUrn());
+
+            // If either end has no reservable VLAN fields, the edge does not need to be pruned
+            boolean safeA = edge.getA().getVertexType().equals(VertexType.VIRTUAL) || aAvailVlans == null;
+            boolean safeZ = edge.getZ().getVertexType().equals(VertexType.VIRTUAL) || zAvailVlans == null;
+            if (safeA || safeZ) {
+                bestSet.add(edge);
             }
-            // If the currently considered ID matches the request (or there are no VLANs requested)
-            // and the set of edges supporting this ID are larger than the current best
-            // choose this set of edges
-            if ((idsInRanges.contains(id) || idsInRanges.isEmpty()) && edgesPerId.get(id).size() > bestSet.size()) {
-                bestSet = edgesPerId.get(id);
+            // Otherwise, find the intersection between the VLAN ids (if any) and count the edge for each of them
+            else {
+                VlanBitmap overlap = edgeVlanOverlap(aAvailVlans, zAvailVlans);
+                for (int id = overlap.first(); id >= 0; id = overlap.nextSetBit(id + 1)) {
+                    edgesPerId[id]++;
+                }
+                vlanEdges.add(edge);
+                vlanEdgeIds.add(overlap);
+            }
+        }
+
+        // Find the requested VLAN id (or any id if none are requested) supported by the most edges
+        int bestId = -1;
+        int bestCount = 0;
+        for (int id = 0; id < VlanBitmap.SIZE; id++) {
+            if ((anyId || requestedIds.contains(id)) && edgesPerId[id] > bestCount) {
+                bestId = id;
+                bestCount = edgesPerId[id];
+            }
+        }
+        if (bestId != -1) {
+            for (int i = 0; i < vlanEdges.size(); i++) {
+                if (vlanEdgeIds.get(i).contains(bestId)) {
+                    bestSet.add(vlanEdges.get(i));
+                }
             }
         }
-        // Add all edges where neither terminating node has reservable VLAN attributes
-        bestSet.addAll(edgesPerId.get(-1));
         return bestSet;
     }
 
-
     /**
-     * Traverse the set of edges, and create a map of VLAN ID to the edges where that ID is available
+     * The VLAN ids usable across an edge. An end without any available VLAN ids does not restrict the other end.
      *
-     * @param edges  - The set of edges.
-     * @param urnMap - Map of URN name to UrnE object.
-     * @return A (possibly empty) set of VLAN tags that are available across every edge.
+     * @return The overlap; may be one of the arguments, and must not be modified.
      */
-    public Map<Integer, Set<TopoEdge>> findEdgeSetPerVlanID(Set<TopoEdge> edges, Map<String, UrnE> urnMap,
-                                                            Map<String, Set<Integer>> availVlanMap) {
-        // Overlap is used to track all VLAN tags that are available across every edge.
-        Map<Integer, Set<TopoEdge>> edgesPerId = new HashMap<>();
-        edgesPerId.put(-1, new HashSet<>());
-        for (TopoEdge edge : edges) {
-            // Overlap is used to track all VLAN tags that are available across both endpoints of an edge
-            Set<Integer> overlap = new HashSet<>();
-            // Get all possible VLAN ranges reservable at the a and z ends of the edge
-            Set<Integer> aAvailVlans = availVlanMap.getOrDefault(edge.getA().getUrn(), null);
-            Set<Integer> zAvailVlans = availVlanMap.getOrDefault(edge.getZ().getUrn(), null);
-
-            // If neither edge has reservable VLAN fields, add the edge to the "-1" VLAN tag list.
-            // These edges do not need to be pruned, and will be added at the end to the best set of edges
-            Boolean safeA = edge.getA().getVertexType().equals(VertexType.VIRTUAL) || aAvailVlans == null;
-            Boolean safeZ = edge.getZ().getVertexType().equals(VertexType.VIRTUAL) || zAvailVlans == null;
-            if (safeA || safeZ) {
-                edgesPerId.get(-1).add(edge);
-            }
-            // Otherwise, find the intersection between the VLAN ranges (if any), and add the edge to the list
-            // matching each overlapping VLAN ID.
-            else {
-                // Find what VLAN ids are actually available at A and Z
-                if (aAvailVlans.size() > 0) {
-                    addToSetOverlap(overlap, aAvailVlans);
-                }
-                if (zAvailVlans.size() > 0) {
-                    addToSetOverlap(overlap, zAvailVlans);
-                }
-
-                // For overlapping IDs, put that edge into the map
-                for (Integer id : overlap) {
-                    if (!edgesPerId.containsKey(id)) {
-                        edgesPerId.put(id, new HashSet<>());
-                    }
-                    edgesPerId.get(id).add(edge);
-                }
-            }
-
+    private VlanBitmap edgeVlanOverlap(VlanBitmap aAvailVlans, VlanBitmap zAvailVlans) {
+        if (aAvailVlans.isEmpty()) {
+            return zAvailVlans;
+        }
+        if (zAvailVlans.isEmpty()) {
+            return aAvailVlans;
         }
-        return edgesPerId;
+        return aAvailVlans.copy().and(zAvailVlans);
     }
 
     /**~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
@@ -953,70 +938,18 @@ public class VlanService {
     }
 
     /**
-     * Return all of the VLAN ids contained within the list of VLAN ranges.
-     *
-     * @param vlans - Requested VLAN ranges. Any VLAN ID within those ranges can be accepted.
-     * @return The set of VLAN ids making up the input ranges.
-     */
-    public Set<Integer> getIntegersFromRanges(List<IntRange> vlans) {
-        return vlans
-                .stream()
-                .map(this::getSetOfNumbersInRange)
-                .flatMap(Collection::stream)
-                .collect(Collectors.toSet());
-    }
-
-    /**
-     * Retrieve a set of all Integers that fall within the specified IntRange.
-     *
-     * @param aRange - The specified IntRange
-     * @return The set of Integers contained within the range.
-     */
-    public Set<Integer> getSetOfNumbersInRange(IntRange aRange) {
-        Set<Integer> numbers = new HashSet<>();
-        for (Integer num = aRange.getFloor(); num <= aRange.getCeiling(); num++) {
-            numbers.add(num);
-        }
-        return numbers;
-    }
-
-    /**
-     * Iterate through the set of overlapping VLAN tags, keep the elements in that set which are also
-     * contained in every IntRange passed in.
-     *
-     * @param overlap - The set of overlapping VLAN tags.
-     * @param other   - Another set of VLAN tags, to be overlapped with the current overlapping set.
-     * @return The (possibly reduced) set of overlapping VLAN tags.
-     */
-    public Set<Integer> addToSetOverlap(Set<Integer> overlap, Set<Integer> other) {
-        // If there are no ranges available, just return the current overlap set
-        if (other == null || other.isEmpty()) {
-            return overlap;
-        }
-        // If the overlap does not already have elements, add all of the tags retrieved from this range
-        if (overlap.isEmpty()) {
-            overlap.addAll(other);
-        } else {
-            // Otherwise, find the intersection between the current overlap and the tags retrieved from this range
-            overlap.retainAll(other);
-        }
-        return overlap;
-    }
-
-    /**
-     * Given a map of Urn Entity -> Sets of Integers (VLANs), find the overlap across the keyset
+     * Given a map of Urn Entity -> VLAN IDs, find the overlap across the keyset
      *
      * @param vlanMap - Map of URNs to VLANs
-     * @return The intersection across the keyset of the map
+     * @return The intersection across the keyset of the map, or null if the map is empty
      */
-    private Set<Integer> getVlanOverlapAcrossMap(Map<String, Set<Integer>> vlanMap) {
-        Set<Integer> overlappingVlans = null;
-        for (String urn : vlanMap.keySet()) {
-            Set<Integer> vlans = vlanMap.get(urn);
+    private VlanBitmap getVlanOverlapAcrossMap(Map<String, VlanBitmap> vlanMap) {
+        VlanBitmap overlappingVlans = null;
+        for (VlanBitmap vlans : vlanMap.values()) {
             if (overlappingVlans == null) {
-                overlappingVlans = new HashSet<>(vlans);
+                overlappingVlans = vlans.copy();
             } else {
-                overlappingVlans.retainAll(vlans);
+                overlappingVlans.and(vlans);
             }
         }
         return overlappingVlans;
@@ -1056,4 +989,4 @@ public class VlanService {
         return urns;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,28 @@
+package net.es.oscars.pce.prop;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "pce")
+@NoArgsConstructor
+public class PceProperties {
+    /**
+     * Number of candidate schedule ranges evaluated at once by TopPCE; 1 evaluates them one after another,
+     * 0 or less uses one thread per available processor.
+     */
+    private Integer rangeParallelism = 1;
+
+    /**
+     * Maximum number of MPLS-layer logical link paths kept by MplsPathCache; 0 or less disables the cache.
+     */
+    private Integer mplsPathCacheSize = 100000;
+
+    /**
+     * Maximum number of pruning results kept by PruningCache; 0 or less disables the cache.
+     */
+    private Integer pruningCacheSize = 1024;
+}
@@ -27,4 +27,15 @@ public class PssConfig {
     @NonNull
     private String aluQosidRange;
 
+    /**
+     * Maximum number of calls to the PSS in flight at once, and of connections kept open to it.
+     */
+    private Integer maxConnections = 16;
+
+    /**
+     * Deadline for a call to the PSS, including the time spent waiting for a free connection.
+     * Must be longer than the long-poll for command completions (30 s).
+     */
+    private Integer timeoutSec = 60;
+
 }
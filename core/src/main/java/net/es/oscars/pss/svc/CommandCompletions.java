@@ -0,0 +1,140 @@
+package net.es.oscars.pss.svc;
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.dto.pss.cmd.CommandCompletion;
+import net.es.oscars.dto.pss.cmd.CommandStatus;
+import net.es.oscars.dto.pss.cmd.CompletionBatch;
+import net.es.oscars.dto.pss.st.LifecycleStatus;
+import net.es.oscars.pss.PSSException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Completes a future for each PSS command as soon as the PSS reports it done.
+ *
+ * A single listener thread long-polls the PSS for completed commands (see PSSProxy.completions()) while there are
+ * commands to wait for. Completions that arrive before anyone asks for them are kept for a while, since a command
+ * may complete before the caller who submitted it gets around to track() it.
+ */
+@Slf4j
+@Component
+public class CommandCompletions {
+    private static final int AWAIT_SEC = 30;
+    private static final long RETRY_MS = 1000L;
+    private static final int MAX_UNTRACKED = 1000;
+
+    private PSSProxy pssProxy;
+
+    private final Map<String, CompletableFuture<CommandStatus>> tracked = new HashMap<>();
+
+    private final Map<String, CommandStatus> untracked = new LinkedHashMap<String, CommandStatus>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CommandStatus> eldest) {
+            return size() > MAX_UNTRACKED;
+        }
+    };
+
+    private final Thread listener;
+
+    @Autowired
+    public CommandCompletions(PSSProxy pssProxy) {
+        this.pssProxy = pssProxy;
+        this.listener = new Thread(this::listen, "pss-completions");
+        this.listener.setDaemon(true);
+        this.listener.start();
+    }
+
+    /**
+     * @return a future completed with the status of the command once it is done
+     */
+    public synchronized CompletableFuture<CommandStatus> track(String commandId) {
+        CompletableFuture<CommandStatus> future = tracked.computeIfAbsent(commandId, k -> new CompletableFuture<>());
+        CommandStatus done = untracked.remove(commandId);
+        if (done != null) {
+            complete(commandId, done);
+        }
+        notifyAll();
+        return future;
+    }
+
+    /**
+     * Stop waiting for a command.
+     */
+    public synchronized void forget(String commandId) {
+        tracked.remove(commandId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        listener.interrupt();
+    }
+
+    private void listen() {
+        long after = -1L;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                synchronized (this) {
+                    while (tracked.isEmpty()) {
+                        wait();
+                    }
+                }
+                CompletionBatch batch = pssProxy.completions(after, AWAIT_SEC);
+                synchronized (this) {
+                    for (CommandCompletion completion : batch.getCompletions()) {
+                        if (tracked.containsKey(completion.getCommandId())) {
+                            complete(completion.getCommandId(), completion.getStatus());
+                        } else {
+                            untracked.put(completion.getCommandId(), completion.getStatus());
+                        }
+                    }
+                }
+                after = batch.getNext();
+                if (batch.getMissed()) {
+                    recheck();
+                }
+
+            } catch (InterruptedException ex) {
+                return;
+            } catch (PSSException | RestClientException ex) {
+                log.error("could not get command completions from PSS, retrying", ex);
+                try {
+                    Thread.sleep(RETRY_MS);
+                } catch (InterruptedException iex) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // some completions were missed; ask for the status of every tracked command instead
+    private void recheck() {
+        List<String> commandIds;
+        synchronized (this) {
+            commandIds = new ArrayList<>(tracked.keySet());
+        }
+        for (String commandId : commandIds) {
+            try {
+                CommandStatus status = pssProxy.status(commandId);
+                if (status != null && status.getLifecycleStatus().equals(LifecycleStatus.DONE)) {
+                    synchronized (this) {
+                        complete(commandId, status);
+                    }
+                }
+            } catch (PSSException | RestClientException ex) {
+                log.error("could not get status of command " + commandId, ex);
+            }
+        }
+    }
+
+    private void complete(String commandId, CommandStatus status) {
+        CompletableFuture<CommandStatus> future = tracked.remove(commandId);
+        if (future != null) {
+            future.complete(status);
+        }
+    }
+}
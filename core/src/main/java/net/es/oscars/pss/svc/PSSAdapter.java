@@ -3,7 +3,6 @@ package net.es.oscars.pss.svc;
 import lombok.extern.slf4j.Slf4j;
 import net.es.oscars.dto.pss.cmd.*;
 import net.es.oscars.dto.pss.st.ConfigStatus;
-import net.es.oscars.dto.pss.st.LifecycleStatus;
 import net.es.oscars.pss.PSSException;
 import net.es.oscars.pss.dao.RouterCommandsRepository;
 import net.es.oscars.pss.ent.RouterCommandsE;
@@ -21,18 +20,32 @@ import java.util.stream.Collectors;
 @Component
 @Slf4j
 public class PSSAdapter {
+    private static final int STABLE_TIMEOUT_SEC = 60;
+    private static final int GENERATE_BATCH_SIZE = 10;
+
     private PSSProxy pssProxy;
     private RouterCommandsRepository rcr;
     private PSSParamsAdapter paramsAdapter;
+    private CommandCompletions completions;
+    private PSSAsyncClient asyncClient;
 
     @Autowired
-    public PSSAdapter(PSSProxy pssProxy, RouterCommandsRepository rcr, PSSParamsAdapter paramsAdapter) {
+    public PSSAdapter(PSSProxy pssProxy, RouterCommandsRepository rcr, PSSParamsAdapter paramsAdapter,
+                      CommandCompletions completions, PSSAsyncClient asyncClient) {
         this.pssProxy = pssProxy;
         this.rcr = rcr;
         this.paramsAdapter = paramsAdapter;
+        this.completions = completions;
+        this.asyncClient = asyncClient;
     }
 
 
+    /**
+     * Generate the config of all the build and dismantle commands of a connection and store it.
+     *
+     * Commands are sent to the PSS in batches of GENERATE_BATCH_SIZE, all batches at once; the PSSAsyncClient
+     * bounds how many are in flight. The generated configs are saved together once every batch is back.
+     */
     public void generateConfig(ConnectionE conn) throws PSSException {
         log.info("generating config");
 
@@ -40,18 +53,36 @@ public class PSSAdapter {
         List<Command> commands = new ArrayList<>();
         commands.addAll(this.buildCommands(conn));
         commands.addAll(this.dismantleCommands(conn));
-        for (Command cmd : commands) {
-            log.info("asking PSS to gen config for device " + cmd.getDevice());
-            GenerateResponse resp = pssProxy.generate(cmd);
-            log.info(resp.getGenerated());
-            RouterCommandsE rce = RouterCommandsE.builder()
-                    .connectionId(conn.getConnectionId())
-                    .deviceUrn(cmd.getDevice())
-                    .contents(resp.getGenerated())
-                    .type(resp.getCommandType())
-                    .build();
-            rcr.save(rce);
+
+        List<CompletableFuture<List<GenerateResponse>>> futures = new ArrayList<>();
+        for (int i = 0; i < commands.size(); i += GENERATE_BATCH_SIZE) {
+            List<Command> batch = commands.subList(i, Math.min(i + GENERATE_BATCH_SIZE, commands.size()));
+            log.info("asking PSS to gen config for " + batch.size() + " commands");
+            futures.add(asyncClient.generateBatch(new ArrayList<>(batch)));
+        }
+
+        List<RouterCommandsE> generated = new ArrayList<>();
+        try {
+            for (CompletableFuture<List<GenerateResponse>> future : futures) {
+                for (GenerateResponse resp : future.get()) {
+                    log.info(resp.getGenerated());
+                    generated.add(RouterCommandsE.builder()
+                            .connectionId(conn.getConnectionId())
+                            .deviceUrn(resp.getDevice())
+                            .contents(resp.getGenerated())
+                            .type(resp.getCommandType())
+                            .build());
+                }
+            }
+        } catch (ExecutionException ex) {
+            futures.forEach(f -> f.cancel(true));
+            log.error("config generation failed", ex.getCause());
+            throw new PSSException("config generation failed: " + ex.getCause().getMessage());
+        } catch (InterruptedException ex) {
+            futures.forEach(f -> f.cancel(true));
+            throw new PSSException("interrupted");
         }
+        rcr.save(generated);
     }
 
     public ProvState build(ConnectionE conn) throws PSSException {
@@ -87,104 +118,54 @@ public class PSSAdapter {
             List<String> commandIds = responses.stream()
                     .map(CommandResponse::getCommandId)
                     .collect(Collectors.toList());
-            return pollUntilStable(commandIds);
+            return awaitStable(commandIds);
 
         } catch (InterruptedException | ExecutionException ex) {
             throw new PSSException("interrupted");
         }
     }
 
-    public List<CommandStatus> pollUntilStable(List<String> commandIds)
-            throws PSSException {
-
-        boolean allDone = false;
-        boolean timedOut = false;
-        Integer timeoutMillis = 60000;
-        Integer elapsed = 0;
-        List<CommandStatus> statuses = new ArrayList<>();
-
+    /**
+     * Wait for the PSS to report all the commands done.
+     */
+    public List<CommandStatus> awaitStable(List<String> commandIds) throws PSSException {
+        List<CompletableFuture<CommandStatus>> futures = commandIds.stream()
+                .map(completions::track)
+                .collect(Collectors.toList());
         try {
-            while (!allDone && !timedOut) {
-                log.info("polling PSS.. ");
-                statuses = pollStatuses(commandIds);
-                allDone = areAllDone(statuses);
-
-                if (!allDone) {
-                    Thread.sleep(1000);
-                    elapsed = elapsed + 1000;
-                    if (elapsed > timeoutMillis) {
-                        timedOut = true;
-                    }
-                }
-            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]))
+                    .get(STABLE_TIMEOUT_SEC, TimeUnit.SECONDS);
+        } catch (TimeoutException ex) {
+            commandIds.forEach(completions::forget);
+            throw new PSSException("timed out waiting for all routers to be stable");
         } catch (InterruptedException | ExecutionException ex) {
+            commandIds.forEach(completions::forget);
             log.error("interrupted!", ex);
             throw new PSSException("PSS thread interrupted");
         }
 
-        if (timedOut) {
-            throw new PSSException("timed out waiting for all routers to be stable");
-        }
-
-        return statuses;
-    }
-
-    private boolean areAllDone(List<CommandStatus> statuses) {
-        boolean allDone = true;
-        for (CommandStatus st : statuses) {
-            if (!st.getLifecycleStatus().equals(LifecycleStatus.DONE)) {
-                allDone = false;
-            }
-        }
-        return allDone;
+        return futures.stream()
+                .map(CompletableFuture::join)
+                .collect(Collectors.toList());
     }
 
 
     public List<CommandResponse> parallelSubmit(List<Command> commands)
             throws InterruptedException, ExecutionException {
-        List<CommandResponse> responses = new ArrayList<>();
-
-        int threadNum = commands.size();
-        ExecutorService executor = Executors.newFixedThreadPool(threadNum);
+        List<CompletableFuture<CommandResponse>> futures = commands.stream()
+                .map(asyncClient::submitCommand)
+                .collect(Collectors.toList());
 
-        List<FutureTask<CommandResponse>> taskList = new ArrayList<>();
-        for (Command cmd : commands) {
-            FutureTask<CommandResponse> task = new FutureTask<>(() -> pssProxy.submitCommand(cmd));
-            taskList.add(task);
-            executor.execute(task);
-        }
-        for (int j = 0; j < threadNum; j++) {
-            FutureTask<CommandResponse> futureTask = taskList.get(j);
-            responses.add(taskList.get(j).get());
-            log.info("got response " + futureTask.get().getCommandId());
+        List<CommandResponse> responses = new ArrayList<>();
+        for (CompletableFuture<CommandResponse> future : futures) {
+            CommandResponse response = future.get();
+            log.info("got response " + response.getCommandId());
+            responses.add(response);
         }
-        executor.shutdown();
         return responses;
     }
 
 
-    public List<CommandStatus> pollStatuses(List<String> commandIds)
-            throws InterruptedException, ExecutionException {
-        List<CommandStatus> statuses = new ArrayList<>();
-        int threadNum = commandIds.size();
-        ExecutorService executor = Executors.newFixedThreadPool(threadNum);
-
-        List<FutureTask<CommandStatus>> taskList = new ArrayList<>();
-        for (String commandId : commandIds) {
-            FutureTask<CommandStatus> task = new FutureTask<>(() -> pssProxy.status(commandId));
-            taskList.add(task);
-            executor.execute(task);
-        }
-
-        for (int j = 0; j < threadNum; j++) {
-            FutureTask<CommandStatus> futureTask = taskList.get(j);
-            statuses.add(taskList.get(j).get());
-        }
-        executor.shutdown();
-        return statuses;
-    }
-
-
     public List<Command> buildCommands(ConnectionE conn) throws PSSException {
         log.info("gathering build commands for " + conn.getConnectionId());
         List<Command> commands = new ArrayList<>();
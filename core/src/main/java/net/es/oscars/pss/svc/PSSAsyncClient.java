@@ -0,0 +1,94 @@
+package net.es.oscars.pss.svc;
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.dto.pss.cmd.Command;
+import net.es.oscars.dto.pss.cmd.CommandResponse;
+import net.es.oscars.dto.pss.cmd.GenerateResponse;
+import net.es.oscars.pss.PSSException;
+import net.es.oscars.pss.prop.PssConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Makes calls to the PSS without blocking the caller.
+ *
+ * Calls run on a fixed pool of pss.max-connections threads shared by the whole application, so that at most that
+ * many are in flight (each on a kept-alive connection of the RestPssServer) however many routers a connection
+ * touches; the rest wait their turn. A call that has not completed within pss.timeout-sec of being made, waiting
+ * included, completes exceptionally with a TimeoutException.
+ */
+@Slf4j
+@Component
+public class PSSAsyncClient {
+    private PSSProxy pssProxy;
+    private PssConfig pssConfig;
+
+    private ExecutorService callers;
+
+    private ScheduledExecutorService deadlines;
+
+    @Autowired
+    public PSSAsyncClient(PSSProxy pssProxy, PssConfig pssConfig) {
+        this.pssProxy = pssProxy;
+        this.pssConfig = pssConfig;
+        AtomicInteger threadNum = new AtomicInteger(0);
+        this.callers = Executors.newFixedThreadPool(pssConfig.getMaxConnections(), r -> {
+            Thread t = new Thread(r, "pss-client-" + threadNum.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.deadlines = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pss-client-deadlines");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public CompletableFuture<CommandResponse> submitCommand(Command cmd) {
+        return call(() -> pssProxy.submitCommand(cmd));
+    }
+
+    public CompletableFuture<GenerateResponse> generate(Command cmd) {
+        return call(() -> pssProxy.generate(cmd));
+    }
+
+    public CompletableFuture<List<GenerateResponse>> generateBatch(List<Command> cmds) {
+        return call(() -> pssProxy.generateBatch(cmds));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        callers.shutdownNow();
+        deadlines.shutdownNow();
+    }
+
+    private <T> CompletableFuture<T> call(PssCall<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> running = callers.submit(() -> {
+            try {
+                result.complete(call.call());
+            } catch (PSSException | RuntimeException ex) {
+                result.completeExceptionally(ex);
+            }
+        });
+
+        ScheduledFuture<?> deadline = deadlines.schedule(() -> {
+            if (result.completeExceptionally(new TimeoutException("PSS call timed out"))) {
+                log.error("PSS call timed out after " + pssConfig.getTimeoutSec() + " sec");
+                running.cancel(true);
+            }
+        }, pssConfig.getTimeoutSec(), TimeUnit.SECONDS);
+        result.whenComplete((r, ex) -> deadline.cancel(false));
+        return result;
+    }
+
+    @FunctionalInterface
+    private interface PssCall<T> {
+        T call() throws PSSException;
+    }
+}
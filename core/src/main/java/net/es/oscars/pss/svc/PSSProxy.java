@@ -4,15 +4,31 @@ package net.es.oscars.pss.svc;
 import net.es.oscars.dto.pss.cmd.Command;
 import net.es.oscars.dto.pss.cmd.CommandResponse;
 import net.es.oscars.dto.pss.cmd.CommandStatus;
+import net.es.oscars.dto.pss.cmd.CompletionBatch;
 import net.es.oscars.dto.pss.cmd.GenerateResponse;
 import net.es.oscars.pss.PSSException;
 
+import java.util.List;
+
 public interface PSSProxy {
 
     CommandResponse submitCommand(Command cmd) throws PSSException;
 
     GenerateResponse generate(Command cmd) throws PSSException;
 
+    /**
+     * @return the generated config of each command, in the same order
+     */
+    List<GenerateResponse> generateBatch(List<Command> cmds) throws PSSException;
+
     CommandStatus status(String commandId) throws PSSException;
 
+    /**
+     * Wait for commands to complete.
+     *
+     * @param after      the 'next' sequence number of the previous batch, or -1 for the first call
+     * @param timeoutSec how long to wait for a completion before returning an empty batch
+     */
+    CompletionBatch completions(Long after, Integer timeoutSec) throws PSSException;
+
 }
@@ -9,8 +9,8 @@ import net.es.oscars.helpers.IntRangeParsing;
 import net.es.oscars.helpers.ResourceChooser;
 import net.es.oscars.pss.PSSException;
 import net.es.oscars.pss.prop.PssConfig;
-import net.es.oscars.resv.dao.ReservedPssResourceRepository;
 import net.es.oscars.resv.ent.*;
+import net.es.oscars.resv.svc.ReservedResourceIndex;
 import net.es.oscars.topo.ent.UrnE;
 import net.es.oscars.topo.svc.TopoService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,18 +32,18 @@ public class PssResourceService {
 
     private TopoService topoService;
 
-    private ReservedPssResourceRepository pssResRepo;
+    private ReservedResourceIndex resvIndex;
 
     private PssConfig pssConfig;
 
     @Autowired
     public PssResourceService(ResourceChooser chooser,
                               TopoService topoService,
-                              ReservedPssResourceRepository pssResRepo,
+                              ReservedResourceIndex resvIndex,
                               PssConfig pssConfig) {
         this.chooser = chooser;
         this.topoService = topoService;
-        this.pssResRepo = pssResRepo;
+        this.resvIndex = resvIndex;
         this.pssConfig = pssConfig;
     }
 
@@ -168,15 +168,9 @@ public class PssResourceService {
     }
 
     private Optional<Integer> aluSvcId(String deviceUrn, Instant beginning, Instant ending) {
-        Optional<List<ReservedPssResourceE>> maybeResvResources = pssResRepo.findOverlappingInterval(beginning, ending);
-        if (maybeResvResources.isPresent()) {
-            for (ReservedPssResourceE res : maybeResvResources.get()) {
-                if (res.getUrn().equals(deviceUrn) && res.getResourceType().equals(ResourceType.ALU_SVC_ID)) {
-                    return Optional.of(res.getResource());
-                }
-            }
-        }
-        return Optional.empty();
+        return resvIndex.overlappingPssResources(deviceUrn, ResourceType.ALU_SVC_ID, beginning, ending).stream()
+                .map(ReservedPssResourceE::getResource)
+                .findFirst();
 
     }
 
@@ -196,7 +190,7 @@ public class PssResourceService {
 
         Set<Integer> reserved = alreadySelected;
 
-        Set<ReservedPssResourceE> reservedQosIds = this.findOverlappingReservedIds(beginning, ending, rt);
+        Set<ReservedPssResourceE> reservedQosIds = this.findOverlappingReservedIds(deviceUrn, beginning, ending, rt);
         // can double-book qos ids as long as they are on different devices
         for (ReservedPssResourceE resQosId : reservedQosIds) {
             if (resQosId.getResourceType().equals(rt) && resQosId.getUrn().equals(deviceUrn)) {
@@ -248,7 +242,7 @@ public class PssResourceService {
 
         Set<Integer> reserved = new HashSet<>();
 
-        Set<ReservedPssResourceE> reservedSvcIds = this.findOverlappingReservedIds(beginning, ending, ResourceType.ALU_SVC_ID);
+        Set<ReservedPssResourceE> reservedSvcIds = this.findOverlappingReservedIds(deviceUrn, beginning, ending, ResourceType.ALU_SVC_ID);
         // SVC ids are unique to each router
         for (ReservedPssResourceE resSvcId : reservedSvcIds) {
             if (resSvcId.getUrn().equals(deviceUrn))
@@ -276,15 +270,12 @@ public class PssResourceService {
 
     // returns all overlapping resources of defined type
     private Set<ReservedPssResourceE> findOverlappingReservedIds(Instant beginning, Instant ending, ResourceType rt) {
-        Set<ReservedPssResourceE> reservedResources = new HashSet<>();
-
-        Optional<List<ReservedPssResourceE>> maybeResvResources = pssResRepo.findOverlappingInterval(beginning, ending);
-
-        maybeResvResources.ifPresent(rprEs ->
-                rprEs.stream().filter(r -> r.getResourceType().equals(rt)).forEach(reservedResources::add)
-        );
+        return new HashSet<>(resvIndex.overlappingPssResources(rt, beginning, ending));
+    }
 
-        return reservedResources;
+    // returns overlapping resources of defined type on one device
+    private Set<ReservedPssResourceE> findOverlappingReservedIds(String deviceUrn, Instant beginning, Instant ending, ResourceType rt) {
+        return new HashSet<>(resvIndex.overlappingPssResources(deviceUrn, rt, beginning, ending));
     }
 
 
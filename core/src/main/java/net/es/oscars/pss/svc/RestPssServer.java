@@ -4,10 +4,13 @@ import lombok.extern.slf4j.Slf4j;
 import net.es.oscars.dto.pss.cmd.Command;
 import net.es.oscars.dto.pss.cmd.CommandResponse;
 import net.es.oscars.dto.pss.cmd.CommandStatus;
+import net.es.oscars.dto.pss.cmd.CompletionBatch;
 import net.es.oscars.dto.pss.cmd.GenerateResponse;
 import net.es.oscars.dto.resv.Connection;
 import net.es.oscars.dto.resv.ConnectionFilter;
 import net.es.oscars.pss.prop.PssConfig;
+import net.es.oscars.rest.RestProperties;
+import net.es.oscars.rest.RestTemplateBuilder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
@@ -16,6 +19,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -27,10 +32,12 @@ public class RestPssServer implements PSSProxy {
     private RestTemplate restTemplate;
 
     @Autowired
-    public RestPssServer(PssConfig pssConfig, RestTemplate restTemplate) {
+    public RestPssServer(PssConfig pssConfig, RestProperties restProperties) throws Exception {
 
         this.pssConfig = pssConfig;
-        this.restTemplate = restTemplate;
+        // one more connection than PSSAsyncClient calls, for the CommandCompletions long-poll
+        this.restTemplate = new RestTemplateBuilder().build(restProperties,
+                pssConfig.getMaxConnections() + 1, pssConfig.getTimeoutSec() * 1000);
         log.info("PSS server URL: "+pssConfig.getUrl());
     }
 
@@ -51,6 +58,14 @@ public class RestPssServer implements PSSProxy {
         return restTemplate.postForObject(restPath, cmd, GenerateResponse.class);
     }
 
+    public List<GenerateResponse> generateBatch(List<Command> cmds) {
+        log.info("generate batch - " + cmds.size() + " commands");
+        String pssUrl = pssConfig.getUrl();
+        String submitUrl = "/generate/batch";
+        String restPath = pssUrl + submitUrl;
+        return Arrays.asList(restTemplate.postForObject(restPath, cmds, GenerateResponse[].class));
+    }
+
     public CommandStatus status(String commandId) {
         log.info("status - cmd id "+commandId);
         String pssUrl = pssConfig.getUrl();
@@ -59,4 +74,11 @@ public class RestPssServer implements PSSProxy {
         return restTemplate.getForObject(restPath, CommandStatus.class);
     }
 
+    public CompletionBatch completions(Long after, Integer timeoutSec) {
+        String pssUrl = pssConfig.getUrl();
+        String submitUrl = "/status/completions?after=" + after + "&timeoutSec=" + timeoutSec;
+        String restPath = pssUrl + submitUrl;
+        return restTemplate.getForObject(restPath, CompletionBatch.class);
+    }
+
 }
@@ -1,9 +1,15 @@
 package net.es.oscars.resv.dao;
 
 import net.es.oscars.resv.ent.ConnectionE;
+import net.es.oscars.st.prov.ProvState;
+import net.es.oscars.st.resv.ResvState;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,6 +19,47 @@ public interface ConnectionRepository extends CrudRepository<ConnectionE, Long>
 
     List<ConnectionE> findAll();
     Optional<ConnectionE> findByConnectionId(String connectionId);
+    List<ConnectionE> findByConnectionIdIn(Collection<String> connectionIds);
 
+    List<ConnectionE> findByStatesResv(ResvState resv);
+    List<ConnectionE> findByStatesProv(ProvState prov);
+    List<ConnectionE> findByStatesResvAndScheduleSubmittedBefore(ResvState resv, Date submitted);
 
-}
\ No newline at end of file
+    @Query("select new net.es.oscars.resv.dao.ConnectionStateRow(c.connectionId, c.states.resv, c.states.prov, " +
+            "c.states.oper, c.schedule.submitted) from ConnectionE c")
+    List<ConnectionStateRow> findAllStates();
+
+    // rows of connectionId, username, earliest start, latest end
+    @Query("select c.connectionId, s.username, min(sd), max(ed) from ConnectionE c join c.specification s " +
+            "left join s.scheduleSpec.startDates sd left join s.scheduleSpec.endDates ed " +
+            "group by c.connectionId, s.username")
+    List<Object[]> findAllScheduleSummaries();
+
+    // rows of connectionId, smallest and largest requested pipe bandwidth (either direction)
+    @Query("select c.connectionId, min(p.azMbps), max(p.azMbps), min(p.zaMbps), max(p.zaMbps) from ConnectionE c " +
+            "join c.specification.requested.vlanFlow.pipes p group by c.connectionId")
+    List<Object[]> findAllPipeBandwidthBounds();
+
+    // rows of connectionId, smallest and largest requested fixture bandwidth (either direction)
+    @Query("select c.connectionId, min(f.inMbps), max(f.inMbps), min(f.egMbps), max(f.egMbps) from ConnectionE c " +
+            "join c.specification.requested.vlanFlow.junctions j join j.fixtures f group by c.connectionId")
+    List<Object[]> findAllFixtureBandwidthBounds();
+
+    // the same, for some connections only
+
+    @Query("select c.connectionId, s.username, min(sd), max(ed) from ConnectionE c join c.specification s " +
+            "left join s.scheduleSpec.startDates sd left join s.scheduleSpec.endDates ed " +
+            "where c.connectionId in :connectionIds group by c.connectionId, s.username")
+    List<Object[]> findScheduleSummaries(@Param("connectionIds") Collection<String> connectionIds);
+
+    @Query("select c.connectionId, min(p.azMbps), max(p.azMbps), min(p.zaMbps), max(p.zaMbps) from ConnectionE c " +
+            "join c.specification.requested.vlanFlow.pipes p where c.connectionId in :connectionIds " +
+            "group by c.connectionId")
+    List<Object[]> findPipeBandwidthBounds(@Param("connectionIds") Collection<String> connectionIds);
+
+    @Query("select c.connectionId, min(f.inMbps), max(f.inMbps), min(f.egMbps), max(f.egMbps) from ConnectionE c " +
+            "join c.specification.requested.vlanFlow.junctions j join j.fixtures f " +
+            "where c.connectionId in :connectionIds group by c.connectionId")
+    List<Object[]> findFixtureBandwidthBounds(@Param("connectionIds") Collection<String> connectionIds);
+
+}
@@ -0,0 +1,45 @@
+package net.es.oscars.resv.dao;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import net.es.oscars.st.oper.OperState;
+import net.es.oscars.st.prov.ProvState;
+import net.es.oscars.st.resv.ResvState;
+
+import java.util.Date;
+
+/**
+ * The states of a connection and the parts of its request that connections are filtered and sorted on, read
+ * without loading the connection's specification and blueprints.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ConnectionStateRow {
+    private String connectionId;
+
+    private ResvState resv;
+
+    private ProvState prov;
+
+    private OperState oper;
+
+    private Date submitted;
+
+    private String username;
+
+    // earliest requested start and latest requested end
+    private Date start;
+
+    private Date end;
+
+    // smallest and largest bandwidth requested by any pipe or fixture, in either direction
+    private Integer minMbps;
+
+    private Integer maxMbps;
+
+    public ConnectionStateRow(String connectionId, ResvState resv, ProvState prov, OperState oper, Date submitted) {
+        this(connectionId, resv, prov, oper, submitted, null, null, null, null, null);
+    }
+}
@@ -1,6 +1,7 @@
 package net.es.oscars.resv.ent;
 
 import lombok.*;
+import net.es.oscars.resv.svc.ConnectionStateListener;
 
 import javax.persistence.*;
 import java.util.Date;
@@ -8,6 +9,8 @@ import java.util.List;
 
 @Data
 @Entity
+@EntityListeners(ConnectionStateListener.class)
+@Table(indexes = {@Index(columnList = "resv"), @Index(columnList = "prov"), @Index(columnList = "oper")})
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
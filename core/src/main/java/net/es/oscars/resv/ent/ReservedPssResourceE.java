@@ -1,6 +1,7 @@
 package net.es.oscars.resv.ent;
 
 import lombok.*;
+import net.es.oscars.resv.svc.ReservedResourceListener;
 import net.es.oscars.dto.resv.ResourceType;
 
 import javax.persistence.*;
@@ -11,6 +12,7 @@ import java.time.Instant;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@EntityListeners(ReservedResourceListener.class)
 public class ReservedPssResourceE {
 
     @Id
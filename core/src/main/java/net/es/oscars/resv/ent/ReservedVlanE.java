@@ -1,6 +1,7 @@
 package net.es.oscars.resv.ent;
 
 import lombok.*;
+import net.es.oscars.resv.svc.ReservedResourceListener;
 
 import javax.persistence.*;
 import java.time.Instant;
@@ -10,6 +11,7 @@ import java.time.Instant;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@EntityListeners(ReservedResourceListener.class)
 public class ReservedVlanE {
 
     @Id
@@ -0,0 +1,43 @@
+package net.es.oscars.resv.prop;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "resv")
+@NoArgsConstructor
+public class ResvProperties {
+    public enum BatchOrder {
+        /**
+         * As submitted.
+         */
+        SUBMITTED,
+        /**
+         * Lowest pipe priority value first, then largest requested bandwidth first.
+         */
+        PRIORITY,
+        /**
+         * Largest requested bandwidth first.
+         */
+        BANDWIDTH
+    }
+
+    /**
+     * Order in which ResvService.holdBatch places the connections of a batch; earlier connections get first pick
+     * of the available resources.
+     */
+    private BatchOrder batchOrder = BatchOrder.PRIORITY;
+
+    /**
+     * Connections per page of /resv/filter and /resv/all when the request does not say.
+     */
+    private Integer filterPageSize = 100;
+
+    /**
+     * Upper bound on the page size a request may ask for.
+     */
+    private Integer filterMaxPageSize = 1000;
+}
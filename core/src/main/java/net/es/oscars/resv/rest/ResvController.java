@@ -2,8 +2,10 @@ package net.es.oscars.resv.rest;
 
 import lombok.extern.slf4j.Slf4j;
 import net.es.oscars.dto.pss.EthPipeType;
+import net.es.oscars.dto.resv.BatchHoldResult;
 import net.es.oscars.dto.resv.Connection;
 import net.es.oscars.dto.resv.ConnectionFilter;
+import net.es.oscars.dto.resv.ConnectionPage;
 import net.es.oscars.dto.spec.PalindromicType;
 import net.es.oscars.dto.spec.RequestedVlanFlow;
 import net.es.oscars.dto.spec.RequestedVlanPipe;
@@ -14,34 +16,33 @@ import net.es.oscars.pce.exc.PCEException;
 import net.es.oscars.pce.exc.VlanNotFoundException;
 import net.es.oscars.pss.PSSException;
 import net.es.oscars.resv.ent.ConnectionE;
-import net.es.oscars.resv.ent.RequestedVlanFixtureE;
-import net.es.oscars.resv.ent.RequestedVlanJunctionE;
-import net.es.oscars.resv.ent.RequestedVlanPipeE;
+import net.es.oscars.resv.svc.ConnectionMapper;
+import net.es.oscars.resv.svc.ConnectionQueryService;
 import net.es.oscars.resv.svc.ResvService;
 import net.es.oscars.st.resv.ResvState;
 import org.apache.commons.lang3.StringUtils;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Slf4j
 @Controller
 public class ResvController {
-    private ModelMapper modelMapper = new ModelMapper();
 
     @Autowired
-    public ResvController(ResvService resvService) {
+    public ResvController(ResvService resvService, ConnectionQueryService queryService) {
         this.resvService = resvService;
+        this.queryService = queryService;
     }
 
 
     private ResvService resvService;
 
+    private ConnectionQueryService queryService;
+
 
     @ExceptionHandler(NoSuchElementException.class)
     @ResponseStatus(value = HttpStatus.NOT_FOUND)
@@ -104,212 +105,34 @@ public class ResvController {
 
     }
 
-    // TODO: make better
     @RequestMapping(value = "/resv/all", method = RequestMethod.GET)
     @ResponseBody
-    public List<Connection> allResvs() {
+    public ConnectionPage allResvs(@RequestParam(value = "cursor", required = false) String cursor,
+                                   @RequestParam(value = "size", required = false) Integer size) {
 
         log.info("listing all resvs");
-        List<Connection> dtoItems = new ArrayList<>();
-
-        for (ConnectionE eItem : resvService.findAll()) {
-            Connection dtoItem = convertConnToDto(eItem);
-            dtoItems.add(dtoItem);
-        }
-        return dtoItems;
-
+        return resvFilter(ConnectionFilter.builder()
+                .numFilters(0)
+                .cursor(cursor)
+                .pageSize(size)
+                .build());
     }
 
 
     @RequestMapping(value = "/resv/filter", method = RequestMethod.POST)
     @ResponseBody
-    public Set<Connection> resvFilter(@RequestBody ConnectionFilter filter) {
+    public ConnectionPage resvFilter(@RequestBody ConnectionFilter filter) {
+        ConnectionQueryService.Page page = queryService.page(filter);
 
-        List<ConnectionE> allConnections = resvService.findAll();
-        Set<Connection> result = new HashSet<>();;
-
-        // No Filters specified
-        if(filter.getNumFilters() == 0)
-        {
-            ;
+        List<Connection> connections = new ArrayList<>();
+        for (ConnectionE c : page.getConnections()) {
+            connections.add(convertConnToDto(c));
         }
-        else
-        {
-            /* Filter by exact matches */
-            // User Name
-            if(!filter.getUserNames().isEmpty())
-            {
-                allConnections = allConnections.stream()
-                        .filter(c -> filter.getUserNames().contains(c.getSpecification().getUsername()))
-                        .collect(Collectors.toList());
-            }
-
-            // Resv State
-            if(!filter.getResvStates().isEmpty())
-            {
-                allConnections = allConnections.stream()
-                        .filter(c -> filter.getResvStates().contains(c.getStates().getResv()))
-                        .collect(Collectors.toList());
-            }
-
-            // Oper State
-            if(!filter.getOperStates().isEmpty())
-            {
-                allConnections = allConnections.stream()
-                        .filter(c -> filter.getOperStates().contains(c.getStates().getOper()))
-                        .collect(Collectors.toList());
-            }
-
-            // Prov State
-            if(!filter.getProvStates().isEmpty())
-            {
-                allConnections = allConnections.stream()
-                        .filter(c -> filter.getProvStates().contains(c.getStates().getProv()))
-                        .collect(Collectors.toList());
-            }
-
-            // Connection ID
-            if(!filter.getConnectionIds().isEmpty())
-            {
-                allConnections = allConnections.stream()
-                        .filter(c -> filter.getConnectionIds().contains(c.getConnectionId()))
-                        .collect(Collectors.toList());
-            }
-
-
-            /* Filter by range values */
-            Set<Date> allStartDates = filter.getStartDates();
-            Set<Date> allEndDates = filter.getEndDates();
-            Set<Integer> allMinBWs = filter.getMinBandwidths();
-            Set<Integer> allMaxBWs = filter.getMaxBandwidths();
-
-            List<ConnectionE> connstoRemove = new ArrayList<>();
-
-            // Start Dates
-            if(!allStartDates.isEmpty())
-            {
-                Date earliestStart = allStartDates.stream().findFirst().get();
-
-                for(Date oneStartDate : allStartDates)
-                {
-                    if(oneStartDate.before(earliestStart))
-                        earliestStart = oneStartDate;
-                }
-
-                for(ConnectionE c : allConnections)
-                {
-                    if(earliestStart.after(c.getSpecification().getScheduleSpec().getStartDates().get(0)))  // Only checks the first requested Start Date.
-                        connstoRemove.add(c);
-                }
-            }
-
-            // End Dates
-            if(!allEndDates.isEmpty())
-            {
-                Date latestEnd = allEndDates.stream().findFirst().get();
-
-                for(Date oneEndDate : allEndDates)
-                {
-                    if(oneEndDate.after(latestEnd))
-                        latestEnd = oneEndDate;
-                }
-
-                for(ConnectionE c : allConnections)
-                {
-                    if(latestEnd.before(c.getSpecification().getScheduleSpec().getStartDates().get(0)))  // Only checks the first requested End Date.
-                        connstoRemove.add(c);
-                }
-            }
-
-            // Min/Max Bandwidth
-            Integer smallestMin = Integer.MAX_VALUE;
-            Integer largestMax = Integer.MIN_VALUE;
-
-            if(!allMinBWs.isEmpty())
-            {
-                for(Integer oneMin : allMinBWs)
-                {
-                    if(oneMin < smallestMin)
-                        smallestMin = oneMin;
-                }
-            }
-
-            if(!allMaxBWs.isEmpty())
-            {
-                for(Integer oneMax : allMaxBWs)
-                {
-                    if(oneMax > largestMax)
-                        largestMax = oneMax;
-                }
-            }
-
-            for(ConnectionE c : allConnections)
-            {
-                Set<RequestedVlanPipeE> allRequestedPipes = c.getSpecification().getRequested().getVlanFlow().getPipes();
-                Set<RequestedVlanJunctionE> allRequestedJunctions = c.getSpecification().getRequested().getVlanFlow().getJunctions();
-
-                Integer largestRequested = 0;
-                Integer smallestRequested = Integer.MAX_VALUE;
-
-                for(RequestedVlanPipeE onePipe : allRequestedPipes)
-                {
-                    if(onePipe.getAzMbps() > largestRequested)
-                        largestRequested = onePipe.getAzMbps();
-
-                    if(onePipe.getZaMbps() > largestRequested)
-                        largestRequested = onePipe.getZaMbps();
-
-                    if(onePipe.getAzMbps() < smallestRequested)
-                        smallestRequested = onePipe.getAzMbps();
-
-                    if(onePipe.getZaMbps() < smallestRequested)
-                        smallestRequested = onePipe.getZaMbps();
-                }
-
-                for(RequestedVlanJunctionE oneJunc : allRequestedJunctions)
-                {
-                    Set<RequestedVlanFixtureE> theRequestedFixtures = oneJunc.getFixtures();
-
-                    for(RequestedVlanFixtureE oneFix : theRequestedFixtures)
-                    {
-                        if(oneFix.getInMbps() > largestRequested)
-                            largestRequested = oneFix.getInMbps();
-
-                        if(oneFix.getEgMbps() > largestRequested)
-                            largestRequested = oneFix.getEgMbps();
-
-                        if(oneFix.getInMbps() < smallestRequested)
-                            smallestRequested = oneFix.getInMbps();
-
-                        if(oneFix.getEgMbps() < smallestRequested)
-                            smallestRequested = oneFix.getEgMbps();
-
-                    }
-                }
-
-                Integer correctedMin = smallestMin;
-                Integer correctedMax = largestMax;
-
-                if(smallestMin == Integer.MAX_VALUE)
-                    correctedMin = Integer.MIN_VALUE;
-
-                if(largestMax == Integer.MIN_VALUE)
-                    correctedMax = Integer.MAX_VALUE;
-
-                if(!(correctedMin <= largestRequested && correctedMax >= smallestRequested))
-                    connstoRemove.add(c);
-            }
-
-            allConnections.removeAll(connstoRemove);
-        }
-
-        for(ConnectionE oneConnectionE : allConnections)
-        {
-            Connection oneConnDTO = convertConnToDto(oneConnectionE);
-            result.add(oneConnDTO);
-        }
-
-        return result;
+        return ConnectionPage.builder()
+                .connections(connections)
+                .nextCursor(page.getNextCursor())
+                .total(page.getTotal())
+                .build();
     }
 
     // Default endpoint for holding a new connection
@@ -322,6 +145,32 @@ public class ResvController {
         return holdConnection(connection);
     }
 
+    // Hold many connections in one PCE pass and one transaction; one result per connection, in submitted order
+    @RequestMapping(value = "/resv/connection/batch", method = RequestMethod.POST)
+    @ResponseBody
+    public List<BatchHoldResult> submitConnectionBatch(@RequestBody List<Connection> connections) {
+        log.info("Submitting a batch of " + connections.size() + " connection requests");
+
+        List<ConnectionE> connEs = new ArrayList<>();
+        for (Connection connection : connections) {
+            connEs.add(ConnectionMapper.toEntity(defineDefaults(connection)));
+        }
+
+        Map<ConnectionE, String> errors = resvService.holdBatch(connEs);
+
+        List<BatchHoldResult> results = new ArrayList<>();
+        for (ConnectionE connE : connEs) {
+            String error = errors.get(connE);
+            results.add(BatchHoldResult.builder()
+                    .connectionId(connE.getConnectionId())
+                    .held(error == null && ResvState.HELD.equals(connE.getStates().getResv()))
+                    .error(error)
+                    .connection(error == null ? convertConnToDto(connE) : null)
+                    .build());
+        }
+        return results;
+    }
+
     // Endpoint for pre-check on a connection
     @RequestMapping(value = "/resv/connection/precheck", method = RequestMethod.POST)
     @ResponseBody
@@ -362,7 +211,7 @@ public class ResvController {
 
     private Connection holdConnection(Connection connection) throws PCEException, PSSException {
         connection = defineDefaults(connection);
-        ConnectionE connE = modelMapper.map(connection, ConnectionE.class);
+        ConnectionE connE = ConnectionMapper.toEntity(connection);
 
         resvService.hold(connE);
 
@@ -370,7 +219,7 @@ public class ResvController {
         log.info(connE.toString());
 
 
-        Connection conn = modelMapper.map(connE, Connection.class);
+        Connection conn = ConnectionMapper.toDto(connE);
         log.info(conn.toString());
 
 
@@ -428,11 +277,11 @@ public class ResvController {
     private Connection preCheckConnection(Connection connection) throws PCEException, PSSException {
         log.info("Pre-checking ConnectionID: " + connection.getConnectionId());
         connection = defineDefaults(connection);
-        ConnectionE connE = modelMapper.map(connection, ConnectionE.class);
+        ConnectionE connE = ConnectionMapper.toEntity(connection);
 
         Boolean successful = resvService.preCheck(connE);
 
-        Connection conn = modelMapper.map(connE, Connection.class);
+        Connection conn = ConnectionMapper.toDto(connE);
 
         if (successful) {
             log.info("Pre-check result: SUCCESS");
@@ -444,7 +293,7 @@ public class ResvController {
     }
 
     private Connection convertConnToDto(ConnectionE connectionE) {
-        return modelMapper.map(connectionE, Connection.class);
+        return ConnectionMapper.toDto(connectionE);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,916 @@
+package net.es.oscars.resv.svc;
+
+import net.es.oscars.dto.resv.Connection;
+import net.es.oscars.dto.resv.Schedule;
+import net.es.oscars.dto.resv.States;
+import net.es.oscars.dto.spec.*;
+import net.es.oscars.dto.topo.BidirectionalPath;
+import net.es.oscars.dto.topo.Edge;
+import net.es.oscars.resv.ent.*;
+import net.es.oscars.topo.ent.BidirectionalPathE;
+import net.es.oscars.topo.ent.EdgeE;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Copies connections between their entities and DTOs, and reserved blueprints into archived ones, field by field.
+ *
+ * The results are the same as those of ModelMapper's name matching, which this replaces: collections are copied
+ * into new HashSets and ArrayLists, nulls are left null, fields without a counterpart are left unset, and ids are
+ * carried over, so an archived entity keeps the id of the reserved one it was made from.
+ */
+public class ConnectionMapper {
+
+    /*
+        ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+        Entities to DTOs
+        ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    */
+
+    public static Connection toDto(ConnectionE e) {
+        if (e == null) {
+            return null;
+        }
+        Connection c = new Connection();
+        set(e.getId(), c::setId);
+        set(e.getConnectionId(), c::setConnectionId);
+        set(toDto(e.getStates()), c::setStates);
+        set(toDto(e.getSchedule()), c::setSchedule);
+        set(copyList(e.getReservedSchedule()), c::setReservedSchedule);
+        set(toDto(e.getSpecification()), c::setSpecification);
+        set(toDto(e.getReserved()), c::setReserved);
+        return c;
+    }
+
+    public static ReservedBandwidth toDto(ReservedBandwidthE e) {
+        if (e == null) {
+            return null;
+        }
+        ReservedBandwidth b = new ReservedBandwidth();
+        set(e.getUrn(), b::setUrn);
+        set(e.getContainerConnectionId(), b::setContainerConnectionId);
+        set(e.getInBandwidth(), b::setInBandwidth);
+        set(e.getEgBandwidth(), b::setEgBandwidth);
+        set(e.getBeginning(), b::setBeginning);
+        set(e.getEnding(), b::setEnding);
+        return b;
+    }
+
+    private static States toDto(StatesE e) {
+        if (e == null) {
+            return null;
+        }
+        States s = new States();
+        set(e.getResv(), s::setResv);
+        set(e.getProv(), s::setProv);
+        set(e.getOper(), s::setOper);
+        return s;
+    }
+
+    private static Schedule toDto(ScheduleE e) {
+        if (e == null) {
+            return null;
+        }
+        Schedule s = new Schedule();
+        set(e.getSubmitted(), s::setSubmitted);
+        set(e.getSetup(), s::setSetup);
+        set(e.getTeardown(), s::setTeardown);
+        return s;
+    }
+
+    private static Specification toDto(SpecificationE e) {
+        if (e == null) {
+            return null;
+        }
+        Specification s = new Specification();
+        set(e.getId(), s::setId);
+        set(e.getVersion(), s::setVersion);
+        set(e.getUsername(), s::setUsername);
+        set(e.getDescription(), s::setDescription);
+        set(e.getContainerConnectionId(), s::setContainerConnectionId);
+        set(toDto(e.getScheduleSpec()), s::setScheduleSpec);
+        set(toDto(e.getRequested()), s::setRequested);
+        return s;
+    }
+
+    private static ScheduleSpecification toDto(ScheduleSpecificationE e) {
+        if (e == null) {
+            return null;
+        }
+        ScheduleSpecification s = new ScheduleSpecification();
+        set(copyList(e.getStartDates()), s::setStartDates);
+        set(copyList(e.getEndDates()), s::setEndDates);
+        set(e.getMinimumDuration(), s::setMinimumDuration);
+        return s;
+    }
+
+    private static RequestedBlueprint toDto(RequestedBlueprintE e) {
+        if (e == null) {
+            return null;
+        }
+        RequestedBlueprint b = new RequestedBlueprint();
+        set(e.getId(), b::setId);
+        set(toDto(e.getVlanFlow()), b::setVlanFlow);
+        set(toDto(e.getLayer3Flow()), b::setLayer3Flow);
+        set(e.getContainerConnectionId(), b::setContainerConnectionId);
+        return b;
+    }
+
+    private static RequestedVlanFlow toDto(RequestedVlanFlowE e) {
+        if (e == null) {
+            return null;
+        }
+        RequestedVlanFlow f = new RequestedVlanFlow();
+        set(e.getId(), f::setId);
+        set(mapSet(e.getJunctions(), ConnectionMapper::toDto), f::setJunctions);
+        set(mapSet(e.getPipes(), ConnectionMapper::toDto), f::setPipes);
+        set(e.getMinPipes(), f::setMinPipes);
+        set(e.getMaxPipes(), f::setMaxPipes);
+        set(e.getContainerConnectionId(), f::setContainerConnectionId);
+        return f;
+    }
+
+    private static RequestedVlanJunction toDto(RequestedVlanJunctionE e) {
+        if (e == null) {
+            return null;
+        }
+        RequestedVlanJunction j = new RequestedVlanJunction();
+        set(e.getId(), j::setId);
+        set(e.getDeviceUrn(), j::setDeviceUrn);
+        set(e.getJunctionType(), j::setJunctionType);
+        set(mapSet(e.getFixtures(), ConnectionMapper::toDto), j::setFixtures);
+        return j;
+    }
+
+    private static RequestedVlanFixture toDto(RequestedVlanFixtureE e) {
+        if (e == null) {
+            return null;
+        }
+        RequestedVlanFixture f = new RequestedVlanFixture();
+        set(e.getId(), f::setId);
+        set(e.getPortUrn(), f::setPortUrn);
+        set(e.getVlanExpression(), f::setVlanExpression);
+        set(e.getFixtureType(), f::setFixtureType);
+        set(e.getInMbps(), f::setInMbps);
+        set(e.getEgMbps(), f::setEgMbps);
+        return f;
+    }
+
+    private static RequestedVlanPipe toDto(RequestedVlanPipeE e) {
+        if (e == null) {
+            return null;
+        }
+        RequestedVlanPipe p = new RequestedVlanPipe();
+        set(e.getId(), p::setId);
+        set(toDto(e.getAJunction()), p::setAJunction);
+        set(toDto(e.getZJunction()), p::setZJunction);
+        set(e.getAzMbps(), p::setAzMbps);
+        set(e.getZaMbps(), p::setZaMbps);
+        set(copyList(e.getAzERO()), p::setAzERO);
+        set(copyList(e.getZaERO()), p::setZaERO);
+        set(copySet(e.getUrnBlacklist()), p::setUrnBlacklist);
+        set(e.getPipeType(), p::setPipeType);
+        set(e.getEroPalindromic(), p::setEroPalindromic);
+        set(e.getEroSurvivability(), p::setEroSurvivability);
+        set(e.getNumPaths(), p::setNumPaths);
+        set(e.getPriority(), p::setPriority);
+        return p;
+    }
+
+    private static Layer3Flow toDto(Layer3FlowE e) {
+        if (e == null) {
+            return null;
+        }
+        Layer3Flow f = new Layer3Flow();
+        set(e.getId(), f::setId);
+        set(mapSet(e.getJunctions(), ConnectionMapper::toDto), f::setJunctions);
+        set(mapSet(e.getPipes(), ConnectionMapper::toDto), f::setPipes);
+        return f;
+    }
+
+    private static Layer3Junction toDto(Layer3JunctionE e) {
+        if (e == null) {
+            return null;
+        }
+        Layer3Junction j = new Layer3Junction();
+        set(e.getId(), j::setId);
+        set(e.getDeviceUrn(), j::setDeviceUrn);
+        set(e.getJunctionType(), j::setJunctionType);
+        set(mapSet(e.getFixtures(), ConnectionMapper::toDto), j::setFixtures);
+        set(copySet(e.getResourceIds()), j::setResourceIds);
+        return j;
+    }
+
+    private static Layer3Fixture toDto(Layer3FixtureE e) {
+        if (e == null) {
+            return null;
+        }
+        Layer3Fixture f = new Layer3Fixture();
+        set(e.getId(), f::setId);
+        set(e.getPortUrn(), f::setPortUrn);
+        set(e.getVlanId(), f::setVlanId);
+        set(e.getVlanExpression(), f::setVlanExpression);
+        set(e.getFixtureType(), f::setFixtureType);
+        set(e.getInMbps(), f::setInMbps);
+        set(e.getEgMbps(), f::setEgMbps);
+        return f;
+    }
+
+    private static Layer3Pipe toDto(Layer3PipeE e) {
+        if (e == null) {
+            return null;
+        }
+        Layer3Pipe p = new Layer3Pipe();
+        set(e.getId(), p::setId);
+        set(toDto(e.getAJunction()), p::setAJunction);
+        set(toDto(e.getZJunction()), p::setZJunction);
+        set(e.getAzMbps(), p::setAzMbps);
+        set(copyList(e.getAzERO()), p::setAzERO);
+        set(e.getPipeType(), p::setPipeType);
+        set(copySet(e.getResourceIds()), p::setResourceIds);
+        return p;
+    }
+
+    private static ReservedBlueprint toDto(ReservedBlueprintE e) {
+        if (e == null) {
+            return null;
+        }
+        ReservedBlueprint b = new ReservedBlueprint();
+        set(e.getId(), b::setId);
+        set(toDto(e.getVlanFlow()), b::setVlanFlow);
+        set(e.getContainerConnectionId(), b::setContainerConnectionId);
+        return b;
+    }
+
+    private static ReservedVlanFlow toDto(ReservedVlanFlowE e) {
+        if (e == null) {
+            return null;
+        }
+        ReservedVlanFlow f = new ReservedVlanFlow();
+        set(e.getId(), f::setId);
+        set(mapSet(e.getJunctions(), ConnectionMapper::toDto), f::setJunctions);
+        set(mapSet(e.getEthPipes(), ConnectionMapper::toDto), f::setEthPipes);
+        set(mapSet(e.getMplsPipes(), ConnectionMapper::toDto), f::setMplsPipes);
+        set(mapSet(e.getAllPaths(), ConnectionMapper::toDto), f::setAllPaths);
+        set(e.getContainerConnectionId(), f::setContainerConnectionId);
+        return f;
+    }
+
+    private static ReservedVlanJunction toDto(ReservedVlanJunctionE e) {
+        if (e == null) {
+            return null;
+        }
+        ReservedVlanJunction j = new ReservedVlanJunction();
+        set(e.getId(), j::setId);
+        set(e.getDeviceUrn(), j::setDeviceUrn);
+        set(e.getJunctionType(), j::setJunctionType);
+        set(mapSet(e.getFixtures(), ConnectionMapper::toDto), j::setFixtures);
+        set(mapSet(e.getReservedPssResources(), ConnectionMapper::toDto), j::setReservedPssResources);
+        set(mapSet(e.getReservedVlans(), ConnectionMapper::toDto), j::setReservedVlans);
+        return j;
+    }
+
+    private static ReservedVlanFixture toDto(ReservedVlanFixtureE e) {
+        if (e == null) {
+            return null;
+        }
+        ReservedVlanFixture f = new ReservedVlanFixture();
+        set(e.getId(), f::setId);
+        set(e.getIfceUrn(), f::setIfceUrn);
+        set(mapSet(e.getReservedVlans(), ConnectionMapper::toDto), f::setReservedVlans);
+        set(toDto(e.getReservedBandwidth()), f::setReservedBandwidth);
+        set(mapSet(e.getReservedPssResources(), ConnectionMapper::toDto), f::setReservedPssResources);
+        set(e.getFixtureType(), f::setFixtureType);
+        return f;
+    }
+
+    private static ReservedEthPipe toDto(ReservedEthPipeE e) {
+        if (e == null) {
+            return null;
+        }
+        ReservedEthPipe p = new ReservedEthPipe();
+        set(e.getId(), p::setId);
+        set(toDto(e.getAJunction()), p::setAJunction);
+        set(toDto(e.getZJunction()), p::setZJunction);
+        set(mapSet(e.getReservedBandwidths(), ConnectionMapper::toDto), p::setReservedBandwidths);
+        set(mapSet(e.getReservedVlans(), ConnectionMapper::toDto), p::setReservedVlans);
+        set(mapSet(e.getReservedPssResources(), ConnectionMapper::toDto), p::setReservedPssResources);
+        set(copyList(e.getAzERO()), p::setAzERO);
+        set(copyList(e.getZaERO()), p::setZaERO);
+        set(e.getPipeType(), p::setPipeType);
+        return p;
+    }
+
+    private static ReservedMplsPipe toDto(ReservedMplsPipeE e) {
+        if (e == null) {
+            return null;
+        }
+        ReservedMplsPipe p = new ReservedMplsPipe();
+        set(e.getId(), p::setId);
+        set(toDto(e.getAJunction()), p::setAJunction);
+        set(toDto(e.getZJunction()), p::setZJunction);
+        set(mapSet(e.getReservedBandwidths(), ConnectionMapper::toDto), p::setReservedBandwidths);
+        set(mapSet(e.getReservedPssResources(), ConnectionMapper::toDto), p::setReservedPssResources);
+        set(copyList(e.getAzERO()), p::setAzERO);
+        set(copyList(e.getZaERO()), p::setZaERO);
+        set(e.getPipeType(), p::setPipeType);
+        return p;
+    }
+
+    private static ReservedVlan toDto(ReservedVlanE e) {
+        if (e == null) {
+            return null;
+        }
+        ReservedVlan v = new ReservedVlan();
+        set(e.getUrn(), v::setUrn);
+        set(e.getVlan(), v::setVlan);
+        set(e.getBeginning(), v::setBeginning);
+        set(e.getEnding(), v::setEnding);
+        return v;
+    }
+
+    private static ReservedPssResource toDto(ReservedPssResourceE e) {
+        if (e == null) {
+            return null;
+        }
+        ReservedPssResource r = new ReservedPssResource();
+        set(e.getId(), r::setId);
+        set(e.getUrn(), r::setUrn);
+        set(e.getResourceType(), r::setResourceType);
+        set(e.getResource(), r::setResource);
+        set(e.getBeginning(), r::setBeginning);
+        set(e.getEnding(), r::setEnding);
+        return r;
+    }
+
+    private static BidirectionalPath toDto(BidirectionalPathE e) {
+        if (e == null) {
+            return null;
+        }
+        BidirectionalPath p = new BidirectionalPath();
+        set(mapList(e.getAzPath(), ConnectionMapper::toDto), p::setAzPath);
+        set(mapList(e.getZaPath(), ConnectionMapper::toDto), p::setZaPath);
+        return p;
+    }
+
+    private static Edge toDto(EdgeE e) {
+        if (e == null) {
+            return null;
+        }
+        Edge edge = new Edge();
+        set(e.getOrigin(), edge::setOrigin);
+        set(e.getOriginType(), edge::setOriginType);
+        set(e.getTarget(), edge::setTarget);
+        set(e.getTargetType(), edge::setTargetType);
+        return edge;
+    }
+
+    /*
+        ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+        DTOs to entities
+        ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    */
+
+    public static ConnectionE toEntity(Connection c) {
+        if (c == null) {
+            return null;
+        }
+        ConnectionE e = new ConnectionE();
+        set(c.getId(), e::setId);
+        set(c.getConnectionId(), e::setConnectionId);
+        set(toEntity(c.getStates()), e::setStates);
+        set(toEntity(c.getSchedule()), e::setSchedule);
+        set(copyList(c.getReservedSchedule()), e::setReservedSchedule);
+        set(toEntity(c.getSpecification()), e::setSpecification);
+        set(toEntity(c.getReserved()), e::setReserved);
+        return e;
+    }
+
+    private static StatesE toEntity(States s) {
+        if (s == null) {
+            return null;
+        }
+        StatesE e = new StatesE();
+        set(s.getResv(), e::setResv);
+        set(s.getProv(), e::setProv);
+        set(s.getOper(), e::setOper);
+        return e;
+    }
+
+    private static ScheduleE toEntity(Schedule s) {
+        if (s == null) {
+            return null;
+        }
+        ScheduleE e = new ScheduleE();
+        set(s.getSubmitted(), e::setSubmitted);
+        set(s.getSetup(), e::setSetup);
+        set(s.getTeardown(), e::setTeardown);
+        return e;
+    }
+
+    private static SpecificationE toEntity(Specification s) {
+        if (s == null) {
+            return null;
+        }
+        SpecificationE e = new SpecificationE();
+        set(s.getId(), e::setId);
+        set(s.getVersion(), e::setVersion);
+        set(s.getUsername(), e::setUsername);
+        set(s.getDescription(), e::setDescription);
+        set(s.getContainerConnectionId(), e::setContainerConnectionId);
+        set(toEntity(s.getScheduleSpec()), e::setScheduleSpec);
+        set(toEntity(s.getRequested()), e::setRequested);
+        return e;
+    }
+
+    private static ScheduleSpecificationE toEntity(ScheduleSpecification s) {
+        if (s == null) {
+            return null;
+        }
+        ScheduleSpecificationE e = new ScheduleSpecificationE();
+        set(copyList(s.getStartDates()), e::setStartDates);
+        set(copyList(s.getEndDates()), e::setEndDates);
+        set(s.getMinimumDuration(), e::setMinimumDuration);
+        return e;
+    }
+
+    private static RequestedBlueprintE toEntity(RequestedBlueprint b) {
+        if (b == null) {
+            return null;
+        }
+        RequestedBlueprintE e = new RequestedBlueprintE();
+        set(b.getId(), e::setId);
+        set(toEntity(b.getVlanFlow()), e::setVlanFlow);
+        set(toEntity(b.getLayer3Flow()), e::setLayer3Flow);
+        set(b.getContainerConnectionId(), e::setContainerConnectionId);
+        return e;
+    }
+
+    private static RequestedVlanFlowE toEntity(RequestedVlanFlow f) {
+        if (f == null) {
+            return null;
+        }
+        RequestedVlanFlowE e = new RequestedVlanFlowE();
+        set(f.getId(), e::setId);
+        set(mapSet(f.getJunctions(), ConnectionMapper::toEntity), e::setJunctions);
+        set(mapSet(f.getPipes(), ConnectionMapper::toEntity), e::setPipes);
+        set(f.getMinPipes(), e::setMinPipes);
+        set(f.getMaxPipes(), e::setMaxPipes);
+        set(f.getContainerConnectionId(), e::setContainerConnectionId);
+        return e;
+    }
+
+    private static RequestedVlanJunctionE toEntity(RequestedVlanJunction j) {
+        if (j == null) {
+            return null;
+        }
+        RequestedVlanJunctionE e = new RequestedVlanJunctionE();
+        set(j.getId(), e::setId);
+        set(j.getDeviceUrn(), e::setDeviceUrn);
+        set(j.getJunctionType(), e::setJunctionType);
+        set(mapSet(j.getFixtures(), ConnectionMapper::toEntity), e::setFixtures);
+        return e;
+    }
+
+    private static RequestedVlanFixtureE toEntity(RequestedVlanFixture f) {
+        if (f == null) {
+            return null;
+        }
+        RequestedVlanFixtureE e = new RequestedVlanFixtureE();
+        set(f.getId(), e::setId);
+        set(f.getPortUrn(), e::setPortUrn);
+        set(f.getVlanExpression(), e::setVlanExpression);
+        set(f.getFixtureType(), e::setFixtureType);
+        set(f.getInMbps(), e::setInMbps);
+        set(f.getEgMbps(), e::setEgMbps);
+        return e;
+    }
+
+    private static RequestedVlanPipeE toEntity(RequestedVlanPipe p) {
+        if (p == null) {
+            return null;
+        }
+        RequestedVlanPipeE e = new RequestedVlanPipeE();
+        set(p.getId(), e::setId);
+        set(toEntity(p.getAJunction()), e::setAJunction);
+        set(toEntity(p.getZJunction()), e::setZJunction);
+        set(p.getAzMbps(), e::setAzMbps);
+        set(p.getZaMbps(), e::setZaMbps);
+        set(copyList(p.getAzERO()), e::setAzERO);
+        set(copyList(p.getZaERO()), e::setZaERO);
+        set(copySet(p.getUrnBlacklist()), e::setUrnBlacklist);
+        set(p.getPipeType(), e::setPipeType);
+        set(p.getEroPalindromic(), e::setEroPalindromic);
+        set(p.getEroSurvivability(), e::setEroSurvivability);
+        set(p.getNumPaths(), e::setNumPaths);
+        set(p.getPriority(), e::setPriority);
+        return e;
+    }
+
+    private static Layer3FlowE toEntity(Layer3Flow f) {
+        if (f == null) {
+            return null;
+        }
+        Layer3FlowE e = new Layer3FlowE();
+        set(f.getId(), e::setId);
+        set(mapSet(f.getJunctions(), ConnectionMapper::toEntity), e::setJunctions);
+        set(mapSet(f.getPipes(), ConnectionMapper::toEntity), e::setPipes);
+        return e;
+    }
+
+    private static Layer3JunctionE toEntity(Layer3Junction j) {
+        if (j == null) {
+            return null;
+        }
+        Layer3JunctionE e = new Layer3JunctionE();
+        set(j.getId(), e::setId);
+        set(j.getDeviceUrn(), e::setDeviceUrn);
+        set(j.getJunctionType(), e::setJunctionType);
+        set(mapSet(j.getFixtures(), ConnectionMapper::toEntity), e::setFixtures);
+        set(copySet(j.getResourceIds()), e::setResourceIds);
+        return e;
+    }
+
+    private static Layer3FixtureE toEntity(Layer3Fixture f) {
+        if (f == null) {
+            return null;
+        }
+        Layer3FixtureE e = new Layer3FixtureE();
+        set(f.getId(), e::setId);
+        set(f.getPortUrn(), e::setPortUrn);
+        set(f.getVlanId(), e::setVlanId);
+        set(f.getVlanExpression(), e::setVlanExpression);
+        set(f.getFixtureType(), e::setFixtureType);
+        set(f.getInMbps(), e::setInMbps);
+        set(f.getEgMbps(), e::setEgMbps);
+        return e;
+    }
+
+    private static Layer3PipeE toEntity(Layer3Pipe p) {
+        if (p == null) {
+            return null;
+        }
+        Layer3PipeE e = new Layer3PipeE();
+        set(p.getId(), e::setId);
+        set(toEntity(p.getAJunction()), e::setAJunction);
+        set(toEntity(p.getZJunction()), e::setZJunction);
+        set(p.getAzMbps(), e::setAzMbps);
+        set(copyList(p.getAzERO()), e::setAzERO);
+        set(p.getPipeType(), e::setPipeType);
+        set(copySet(p.getResourceIds()), e::setResourceIds);
+        return e;
+    }
+
+    private static ReservedBlueprintE toEntity(ReservedBlueprint b) {
+        if (b == null) {
+            return null;
+        }
+        ReservedBlueprintE e = new ReservedBlueprintE();
+        set(b.getId(), e::setId);
+        set(toEntity(b.getVlanFlow()), e::setVlanFlow);
+        set(b.getContainerConnectionId(), e::setContainerConnectionId);
+        return e;
+    }
+
+    private static ReservedVlanFlowE toEntity(ReservedVlanFlow f) {
+        if (f == null) {
+            return null;
+        }
+        ReservedVlanFlowE e = new ReservedVlanFlowE();
+        set(f.getId(), e::setId);
+        set(mapSet(f.getJunctions(), ConnectionMapper::toEntity), e::setJunctions);
+        set(mapSet(f.getEthPipes(), ConnectionMapper::toEntity), e::setEthPipes);
+        set(mapSet(f.getMplsPipes(), ConnectionMapper::toEntity), e::setMplsPipes);
+        set(mapSet(f.getAllPaths(), ConnectionMapper::toEntity), e::setAllPaths);
+        set(f.getContainerConnectionId(), e::setContainerConnectionId);
+        return e;
+    }
+
+    private static ReservedVlanJunctionE toEntity(ReservedVlanJunction j) {
+        if (j == null) {
+            return null;
+        }
+        ReservedVlanJunctionE e = new ReservedVlanJunctionE();
+        set(j.getId(), e::setId);
+        set(j.getDeviceUrn(), e::setDeviceUrn);
+        set(j.getJunctionType(), e::setJunctionType);
+        set(mapSet(j.getFixtures(), ConnectionMapper::toEntity), e::setFixtures);
+        set(mapSet(j.getReservedPssResources(), ConnectionMapper::toEntity), e::setReservedPssResources);
+        set(mapSet(j.getReservedVlans(), ConnectionMapper::toEntity), e::setReservedVlans);
+        return e;
+    }
+
+    private static ReservedVlanFixtureE toEntity(ReservedVlanFixture f) {
+        if (f == null) {
+            return null;
+        }
+        ReservedVlanFixtureE e = new ReservedVlanFixtureE();
+        set(f.getId(), e::setId);
+        set(f.getIfceUrn(), e::setIfceUrn);
+        set(mapSet(f.getReservedVlans(), ConnectionMapper::toEntity), e::setReservedVlans);
+        set(toEntity(f.getReservedBandwidth()), e::setReservedBandwidth);
+        set(mapSet(f.getReservedPssResources(), ConnectionMapper::toEntity), e::setReservedPssResources);
+        set(f.getFixtureType(), e::setFixtureType);
+        return e;
+    }
+
+    private static ReservedEthPipeE toEntity(ReservedEthPipe p) {
+        if (p == null) {
+            return null;
+        }
+        ReservedEthPipeE e = new ReservedEthPipeE();
+        set(p.getId(), e::setId);
+        set(toEntity(p.getAJunction()), e::setAJunction);
+        set(toEntity(p.getZJunction()), e::setZJunction);
+        set(mapSet(p.getReservedBandwidths(), ConnectionMapper::toEntity), e::setReservedBandwidths);
+        set(mapSet(p.getReservedVlans(), ConnectionMapper::toEntity), e::setReservedVlans);
+        set(mapSet(p.getReservedPssResources(), ConnectionMapper::toEntity), e::setReservedPssResources);
+        set(copyList(p.getAzERO()), e::setAzERO);
+        set(copyList(p.getZaERO()), e::setZaERO);
+        set(p.getPipeType(), e::setPipeType);
+        return e;
+    }
+
+    private static ReservedMplsPipeE toEntity(ReservedMplsPipe p) {
+        if (p == null) {
+            return null;
+        }
+        ReservedMplsPipeE e = new ReservedMplsPipeE();
+        set(p.getId(), e::setId);
+        set(toEntity(p.getAJunction()), e::setAJunction);
+        set(toEntity(p.getZJunction()), e::setZJunction);
+        set(mapSet(p.getReservedBandwidths(), ConnectionMapper::toEntity), e::setReservedBandwidths);
+        set(mapSet(p.getReservedPssResources(), ConnectionMapper::toEntity), e::setReservedPssResources);
+        set(copyList(p.getAzERO()), e::setAzERO);
+        set(copyList(p.getZaERO()), e::setZaERO);
+        set(p.getPipeType(), e::setPipeType);
+        return e;
+    }
+
+    private static ReservedBandwidthE toEntity(ReservedBandwidth b) {
+        if (b == null) {
+            return null;
+        }
+        ReservedBandwidthE e = new ReservedBandwidthE();
+        set(b.getUrn(), e::setUrn);
+        set(b.getContainerConnectionId(), e::setContainerConnectionId);
+        set(b.getInBandwidth(), e::setInBandwidth);
+        set(b.getEgBandwidth(), e::setEgBandwidth);
+        set(b.getBeginning(), e::setBeginning);
+        set(b.getEnding(), e::setEnding);
+        return e;
+    }
+
+    private static ReservedVlanE toEntity(ReservedVlan v) {
+        if (v == null) {
+            return null;
+        }
+        ReservedVlanE e = new ReservedVlanE();
+        set(v.getUrn(), e::setUrn);
+        set(v.getVlan(), e::setVlan);
+        set(v.getBeginning(), e::setBeginning);
+        set(v.getEnding(), e::setEnding);
+        return e;
+    }
+
+    private static ReservedPssResourceE toEntity(ReservedPssResource r) {
+        if (r == null) {
+            return null;
+        }
+        ReservedPssResourceE e = new ReservedPssResourceE();
+        set(r.getId(), e::setId);
+        set(r.getUrn(), e::setUrn);
+        set(r.getResourceType(), e::setResourceType);
+        set(r.getResource(), e::setResource);
+        set(r.getBeginning(), e::setBeginning);
+        set(r.getEnding(), e::setEnding);
+        return e;
+    }
+
+    private static BidirectionalPathE toEntity(BidirectionalPath p) {
+        if (p == null) {
+            return null;
+        }
+        BidirectionalPathE e = new BidirectionalPathE();
+        set(mapList(p.getAzPath(), ConnectionMapper::toEntity), e::setAzPath);
+        set(mapList(p.getZaPath(), ConnectionMapper::toEntity), e::setZaPath);
+        return e;
+    }
+
+    private static EdgeE toEntity(Edge edge) {
+        if (edge == null) {
+            return null;
+        }
+        EdgeE e = new EdgeE();
+        set(edge.getOrigin(), e::setOrigin);
+        set(edge.getOriginType(), e::setOriginType);
+        set(edge.getTarget(), e::setTarget);
+        set(edge.getTargetType(), e::setTargetType);
+        return e;
+    }
+
+    /*
+        ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+        Reserved to archived entities
+        ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    */
+
+    public static ArchivedBlueprintE archive(ReservedBlueprintE r) {
+        if (r == null) {
+            return null;
+        }
+        ArchivedBlueprintE a = new ArchivedBlueprintE();
+        set(r.getId(), a::setId);
+        set(archive(r.getVlanFlow()), a::setVlanFlow);
+        set(r.getContainerConnectionId(), a::setContainerConnectionId);
+        return a;
+    }
+
+    private static ArchivedVlanFlowE archive(ReservedVlanFlowE r) {
+        if (r == null) {
+            return null;
+        }
+        ArchivedVlanFlowE a = new ArchivedVlanFlowE();
+        set(r.getId(), a::setId);
+        set(mapSet(r.getJunctions(), ConnectionMapper::archive), a::setJunctions);
+        set(mapSet(r.getEthPipes(), ConnectionMapper::archive), a::setEthPipes);
+        set(mapSet(r.getMplsPipes(), ConnectionMapper::archive), a::setMplsPipes);
+        set(mapSet(r.getAllPaths(), ConnectionMapper::archive), a::setAllPaths);
+        set(r.getContainerConnectionId(), a::setContainerConnectionId);
+        return a;
+    }
+
+    private static ArchivedVlanJunctionE archive(ReservedVlanJunctionE r) {
+        if (r == null) {
+            return null;
+        }
+        ArchivedVlanJunctionE a = new ArchivedVlanJunctionE();
+        set(r.getId(), a::setId);
+        set(r.getDeviceUrn(), a::setDeviceUrn);
+        set(r.getJunctionType(), a::setJunctionType);
+        set(mapSet(r.getFixtures(), ConnectionMapper::archive), a::setFixtures);
+        set(mapSet(r.getReservedPssResources(), ConnectionMapper::archive), a::setReservedPssResources);
+        set(mapSet(r.getReservedVlans(), ConnectionMapper::archive), a::setReservedVlans);
+        return a;
+    }
+
+    private static ArchivedVlanFixtureE archive(ReservedVlanFixtureE r) {
+        if (r == null) {
+            return null;
+        }
+        ArchivedVlanFixtureE a = new ArchivedVlanFixtureE();
+        set(r.getId(), a::setId);
+        set(r.getIfceUrn(), a::setIfceUrn);
+        set(mapSet(r.getReservedVlans(), ConnectionMapper::archive), a::setReservedVlans);
+        set(archive(r.getReservedBandwidth()), a::setReservedBandwidth);
+        set(mapSet(r.getReservedPssResources(), ConnectionMapper::archive), a::setReservedPssResources);
+        set(r.getFixtureType(), a::setFixtureType);
+        return a;
+    }
+
+    private static ArchivedEthPipeE archive(ReservedEthPipeE r) {
+        if (r == null) {
+            return null;
+        }
+        ArchivedEthPipeE a = new ArchivedEthPipeE();
+        set(r.getId(), a::setId);
+        set(archive(r.getAJunction()), a::setAJunction);
+        set(archive(r.getZJunction()), a::setZJunction);
+        set(mapSet(r.getReservedBandwidths(), ConnectionMapper::archive), a::setReservedBandwidths);
+        set(mapSet(r.getReservedVlans(), ConnectionMapper::archive), a::setReservedVlans);
+        set(mapSet(r.getReservedPssResources(), ConnectionMapper::archive), a::setReservedPssResources);
+        set(copyList(r.getAzERO()), a::setAzERO);
+        set(copyList(r.getZaERO()), a::setZaERO);
+        set(r.getPipeType(), a::setPipeType);
+        set(r.getUniqueID(), a::setUniqueID);
+        return a;
+    }
+
+    private static ArchivedMplsPipeE archive(ReservedMplsPipeE r) {
+        if (r == null) {
+            return null;
+        }
+        ArchivedMplsPipeE a = new ArchivedMplsPipeE();
+        set(r.getId(), a::setId);
+        set(archive(r.getAJunction()), a::setAJunction);
+        set(archive(r.getZJunction()), a::setZJunction);
+        set(mapSet(r.getReservedBandwidths(), ConnectionMapper::archive), a::setReservedBandwidths);
+        set(mapSet(r.getReservedPssResources(), ConnectionMapper::archive), a::setReservedPssResources);
+        set(copyList(r.getAzERO()), a::setAzERO);
+        set(copyList(r.getZaERO()), a::setZaERO);
+        set(r.getPipeType(), a::setPipeType);
+        set(r.getUniqueID(), a::setUniqueID);
+        return a;
+    }
+
+    private static ArchivedBandwidthE archive(ReservedBandwidthE r) {
+        if (r == null) {
+            return null;
+        }
+        ArchivedBandwidthE a = new ArchivedBandwidthE();
+        set(r.getId(), a::setId);
+        set(r.getUrn(), a::setUrn);
+        set(r.getContainerConnectionId(), a::setContainerConnectionId);
+        set(r.getInBandwidth(), a::setInBandwidth);
+        set(r.getEgBandwidth(), a::setEgBandwidth);
+        set(r.getBeginning(), a::setBeginning);
+        set(r.getEnding(), a::setEnding);
+        return a;
+    }
+
+    private static ArchivedVlanE archive(ReservedVlanE r) {
+        if (r == null) {
+            return null;
+        }
+        ArchivedVlanE a = new ArchivedVlanE();
+        set(r.getId(), a::setId);
+        set(r.getUrn(), a::setUrn);
+        set(r.getVlan(), a::setVlan);
+        set(r.getBeginning(), a::setBeginning);
+        set(r.getEnding(), a::setEnding);
+        return a;
+    }
+
+    private static ArchivedPssResourceE archive(ReservedPssResourceE r) {
+        if (r == null) {
+            return null;
+        }
+        ArchivedPssResourceE a = new ArchivedPssResourceE();
+        set(r.getId(), a::setId);
+        set(r.getUrn(), a::setUrn);
+        set(r.getResourceType(), a::setResourceType);
+        set(r.getResource(), a::setResource);
+        set(r.getBeginning(), a::setBeginning);
+        set(r.getEnding(), a::setEnding);
+        return a;
+    }
+
+    // the archive gets its own copy of each path, so freeing the reserved blueprint does not take it along
+    private static BidirectionalPathE archive(BidirectionalPathE r) {
+        if (r == null) {
+            return null;
+        }
+        BidirectionalPathE a = new BidirectionalPathE();
+        set(r.getId(), a::setId);
+        set(mapList(r.getAzPath(), ConnectionMapper::copy), a::setAzPath);
+        set(mapList(r.getZaPath(), ConnectionMapper::copy), a::setZaPath);
+        return a;
+    }
+
+    private static EdgeE copy(EdgeE r) {
+        if (r == null) {
+            return null;
+        }
+        EdgeE e = new EdgeE();
+        set(r.getOrigin(), e::setOrigin);
+        set(r.getOriginType(), e::setOriginType);
+        set(r.getTarget(), e::setTarget);
+        set(r.getTargetType(), e::setTargetType);
+        return e;
+    }
+
+    /*
+        ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+        Helpers
+        ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    */
+
+    // several DTO and entity setters reject nulls, so a null is left as the unset default instead
+    private static <T> void set(T value, Consumer<T> setter) {
+        if (value != null) {
+            setter.accept(value);
+        }
+    }
+
+    private static <T> List<T> copyList(List<T> from) {
+        return from == null ? null : new ArrayList<>(from);
+    }
+
+    private static <T> Set<T> copySet(Set<T> from) {
+        return from == null ? null : new HashSet<>(from);
+    }
+
+    private static <S, T> List<T> mapList(List<S> from, Function<S, T> mapping) {
+        if (from == null) {
+            return null;
+        }
+        List<T> result = new ArrayList<>(from.size());
+        for (S s : from) {
+            result.add(mapping.apply(s));
+        }
+        return result;
+    }
+
+    private static <S, T> Set<T> mapSet(Set<S> from, Function<S, T> mapping) {
+        if (from == null) {
+            return null;
+        }
+        Set<T> result = new HashSet<>();
+        for (S s : from) {
+            result.add(mapping.apply(s));
+        }
+        return result;
+    }
+}
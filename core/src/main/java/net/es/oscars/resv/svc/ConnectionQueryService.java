@@ -0,0 +1,240 @@
+package net.es.oscars.resv.svc;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.dto.resv.ConnectionFilter;
+import net.es.oscars.dto.resv.ConnectionSort;
+import net.es.oscars.resv.dao.ConnectionRepository;
+import net.es.oscars.resv.dao.ConnectionStateRow;
+import net.es.oscars.resv.ent.ConnectionE;
+import net.es.oscars.resv.prop.ResvProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Answers ConnectionFilter queries one page at a time.
+ *
+ * Matching and sorting run on the rows of the ConnectionStateIndex: the filter with the fewest candidates picks
+ * the rows to look at, the others are checked on those rows. Only the connections on the requested page are loaded.
+ *
+ * Pages are cut with a cursor, the id of the last connection of the previous page: the next page starts after
+ * that connection in the sort order, so connections added or changed between requests do not shift the pages.
+ */
+@Service
+@Transactional
+@Slf4j
+public class ConnectionQueryService {
+
+    @Autowired
+    public ConnectionQueryService(ConnectionStateIndex stateIndex, ConnectionRepository connRepo,
+                                  ResvProperties resvProperties) {
+        this.stateIndex = stateIndex;
+        this.connRepo = connRepo;
+        this.resvProperties = resvProperties;
+    }
+
+    private ConnectionStateIndex stateIndex;
+
+    private ConnectionRepository connRepo;
+
+    private ResvProperties resvProperties;
+
+    @Data
+    @AllArgsConstructor
+    public static class Page {
+        private List<ConnectionE> connections;
+
+        // null on the last page
+        private String nextCursor;
+
+        private Integer total;
+    }
+
+    /**
+     * @param filter - what to match; numFilters == 0 matches every connection. Unset paging fields take the
+     *               defaults: sorted by connection id, ascending, resv.filter-page-size per page, from the start.
+     * @return one page of the matching connections
+     * @throws NoSuchElementException if the cursor is not a known connection id
+     */
+    public Page page(ConnectionFilter filter) {
+        Map<String, ConnectionStateRow> byId = new HashMap<>();
+        List<ConnectionStateRow> matching = matching(filter, byId);
+
+        Comparator<ConnectionStateRow> order = order(filter);
+        matching.sort(order);
+
+        int from = 0;
+        if (filter.getCursor() != null) {
+            ConnectionStateRow after = byId.get(filter.getCursor());
+            if (after == null) {
+                after = stateIndex.withConnectionIds(Collections.singleton(filter.getCursor())).stream()
+                        .findFirst()
+                        .orElseThrow(() -> new NoSuchElementException("Unknown cursor " + filter.getCursor()));
+            }
+            int pos = Collections.binarySearch(matching, after, order);
+            from = pos >= 0 ? pos + 1 : -pos - 1;
+        }
+
+        int size = filter.getPageSize() == null ? resvProperties.getFilterPageSize()
+                : Math.max(1, Math.min(filter.getPageSize(), resvProperties.getFilterMaxPageSize()));
+        int to = Math.min(matching.size(), from + size);
+
+        List<String> pageIds = matching.subList(from, to).stream()
+                .map(ConnectionStateRow::getConnectionId)
+                .collect(Collectors.toList());
+        String nextCursor = to < matching.size() ? pageIds.get(pageIds.size() - 1) : null;
+
+        return new Page(load(pageIds), nextCursor, matching.size());
+    }
+
+    private List<ConnectionStateRow> matching(ConnectionFilter filter, Map<String, ConnectionStateRow> byId) {
+        if (!stateIndex.isLoaded()) {
+            // no index: every connection has to be looked at
+            connRepo.findAll().forEach(c -> byId.put(c.getConnectionId(), ConnectionStateIndex.rowOf(c)));
+            List<ConnectionStateRow> all = new ArrayList<>(byId.values());
+            if (filter.getNumFilters() != null && filter.getNumFilters() > 0) {
+                all.removeIf(predicate(filter).negate());
+            }
+            return all;
+        }
+        if (filter.getNumFilters() == null || filter.getNumFilters() == 0) {
+            return stateIndex.all();
+        }
+
+        // the candidates for each filter that is set; start from the smallest set
+        List<List<ConnectionStateRow>> candidates = new ArrayList<>();
+        if (!empty(filter.getConnectionIds())) {
+            candidates.add(stateIndex.withConnectionIds(filter.getConnectionIds()));
+        }
+        if (!empty(filter.getUserNames())) {
+            candidates.add(union(filter.getUserNames(), stateIndex::withUsername));
+        }
+        if (!empty(filter.getResvStates())) {
+            candidates.add(union(filter.getResvStates(), stateIndex::withResvState));
+        }
+        if (!empty(filter.getProvStates())) {
+            candidates.add(union(filter.getProvStates(), stateIndex::withProvState));
+        }
+        if (!empty(filter.getOperStates())) {
+            candidates.add(union(filter.getOperStates(), stateIndex::withOperState));
+        }
+        if (!empty(filter.getStartDates())) {
+            candidates.add(stateIndex.startingFrom(Collections.min(filter.getStartDates())));
+        }
+        if (!empty(filter.getEndDates())) {
+            candidates.add(stateIndex.endingBy(Collections.max(filter.getEndDates())));
+        }
+        if (!empty(filter.getMinBandwidths())) {
+            candidates.add(stateIndex.withMaxMbpsAtLeast(Collections.min(filter.getMinBandwidths())));
+        }
+        if (!empty(filter.getMaxBandwidths())) {
+            candidates.add(stateIndex.withMinMbpsAtMost(Collections.max(filter.getMaxBandwidths())));
+        }
+        if (candidates.isEmpty()) {
+            return stateIndex.all();
+        }
+
+        List<ConnectionStateRow> smallest = candidates.stream().min(Comparator.comparing(List::size)).get();
+        Predicate<ConnectionStateRow> matches = predicate(filter);
+        List<ConnectionStateRow> result = new ArrayList<>();
+        for (ConnectionStateRow row : smallest) {
+            if (matches.test(row)) {
+                result.add(row);
+                byId.put(row.getConnectionId(), row);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Every filter that is set must match. Within one filter, any of the values may match; for the ranges, the
+     * widest of the given bounds applies.
+     */
+    private Predicate<ConnectionStateRow> predicate(ConnectionFilter filter) {
+        List<Predicate<ConnectionStateRow>> all = new ArrayList<>();
+        if (!empty(filter.getConnectionIds())) {
+            all.add(row -> filter.getConnectionIds().contains(row.getConnectionId()));
+        }
+        if (!empty(filter.getUserNames())) {
+            all.add(row -> filter.getUserNames().contains(row.getUsername()));
+        }
+        if (!empty(filter.getResvStates())) {
+            all.add(row -> filter.getResvStates().contains(row.getResv()));
+        }
+        if (!empty(filter.getProvStates())) {
+            all.add(row -> filter.getProvStates().contains(row.getProv()));
+        }
+        if (!empty(filter.getOperStates())) {
+            all.add(row -> filter.getOperStates().contains(row.getOper()));
+        }
+        if (!empty(filter.getStartDates())) {
+            Date earliest = Collections.min(filter.getStartDates());
+            all.add(row -> row.getStart() != null && !row.getStart().before(earliest));
+        }
+        if (!empty(filter.getEndDates())) {
+            Date latest = Collections.max(filter.getEndDates());
+            all.add(row -> row.getEnd() != null && !row.getEnd().after(latest));
+        }
+        if (!empty(filter.getMinBandwidths())) {
+            Integer min = Collections.min(filter.getMinBandwidths());
+            all.add(row -> row.getMaxMbps() != null && row.getMaxMbps() >= min);
+        }
+        if (!empty(filter.getMaxBandwidths())) {
+            Integer max = Collections.max(filter.getMaxBandwidths());
+            all.add(row -> row.getMinMbps() != null && row.getMinMbps() <= max);
+        }
+        return all.stream().reduce(row -> true, Predicate::and);
+    }
+
+    private Comparator<ConnectionStateRow> order(ConnectionFilter filter) {
+        ConnectionSort sortBy = filter.getSortBy() == null ? ConnectionSort.CONNECTION_ID : filter.getSortBy();
+        Comparator<ConnectionStateRow> byId = Comparator.comparing(ConnectionStateRow::getConnectionId);
+        Comparator<ConnectionStateRow> order;
+        switch (sortBy) {
+            case SUBMITTED:
+                order = Comparator.comparing(ConnectionStateRow::getSubmitted, Comparator.nullsFirst(Date::compareTo));
+                break;
+            case START:
+                order = Comparator.comparing(ConnectionStateRow::getStart, Comparator.nullsFirst(Date::compareTo));
+                break;
+            case END:
+                order = Comparator.comparing(ConnectionStateRow::getEnd, Comparator.nullsFirst(Date::compareTo));
+                break;
+            default:
+                order = byId;
+                break;
+        }
+        order = order.thenComparing(byId);
+        return Boolean.TRUE.equals(filter.getDescending()) ? order.reversed() : order;
+    }
+
+    private <T> List<ConnectionStateRow> union(Set<T> values, Function<T, List<ConnectionStateRow>> lookup) {
+        List<ConnectionStateRow> result = new ArrayList<>();
+        values.forEach(v -> result.addAll(lookup.apply(v)));
+        return result;
+    }
+
+    // the connections with these ids, in the same order
+    private List<ConnectionE> load(List<String> connectionIds) {
+        if (connectionIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<String, ConnectionE> loaded = connRepo.findByConnectionIdIn(connectionIds).stream()
+                .collect(Collectors.toMap(ConnectionE::getConnectionId, c -> c));
+        return connectionIds.stream()
+                .map(loaded::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private static boolean empty(Collection<?> values) {
+        return values == null || values.isEmpty();
+    }
+}
@@ -0,0 +1,534 @@
+package net.es.oscars.resv.svc;
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.resv.dao.ConnectionRepository;
+import net.es.oscars.resv.dao.ConnectionStateRow;
+import net.es.oscars.resv.ent.*;
+import net.es.oscars.st.oper.OperState;
+import net.es.oscars.st.prov.ProvState;
+import net.es.oscars.st.resv.ResvState;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * In-memory index of connection ids by reservation, provisioning and operational state, and by the request fields
+ * connections are filtered on (user, requested start and end, requested bandwidth), so that finding the matching
+ * connections costs as much as there are matches rather than a scan of every connection ever made.
+ *
+ * The index is loaded once at startup, from projections that do not touch specifications or blueprints, and kept
+ * current through ConnectionStateListener. As with the ReservedResourceIndex, changes made inside a transaction are
+ * staged: the writing transaction sees them right away, other threads once it commits. Observers are told about
+ * every committed change, after the index has been updated.
+ *
+ * The listener runs while the session is flushing and only hands over the connection's state columns. The request
+ * fields of a connection never change once it is saved: they are kept from the row already indexed, and for a new
+ * connection read with the same projection queries used at startup, either by the writing transaction when it
+ * queries the index or in a transaction of their own after the commit.
+ */
+@Slf4j
+@Service
+public class ConnectionStateIndex {
+    private ConnectionRepository connRepo;
+
+    private TransactionTemplate loadTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, ConnectionStateRow> rows = new HashMap<>();
+
+    private final Map<ResvState, Set<String>> byResv = new EnumMap<>(ResvState.class);
+
+    private final Map<ProvState, Set<String>> byProv = new EnumMap<>(ProvState.class);
+
+    private final Map<OperState, Set<String>> byOper = new EnumMap<>(OperState.class);
+
+    private final Map<String, Set<String>> byUser = new HashMap<>();
+
+    private final NavigableMap<Date, Set<String>> byStart = new TreeMap<>();
+
+    private final NavigableMap<Date, Set<String>> byEnd = new TreeMap<>();
+
+    private final NavigableMap<Integer, Set<String>> byMinMbps = new TreeMap<>();
+
+    private final NavigableMap<Integer, Set<String>> byMaxMbps = new TreeMap<>();
+
+    private final List<Consumer<ConnectionStateRow>> observers = new CopyOnWriteArrayList<>();
+
+    private final Object pendingKey = new Object();
+
+    private volatile boolean loaded = false;
+
+    @Autowired
+    public ConnectionStateIndex(ConnectionRepository connRepo, PlatformTransactionManager transactionManager) {
+        this.connRepo = connRepo;
+        this.loadTemplate = new TransactionTemplate(transactionManager);
+        this.loadTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.loadTemplate.setReadOnly(true);
+        ConnectionStateListener.register(this);
+    }
+
+    @PostConstruct
+    public void startup() {
+        try {
+            reload();
+        } catch (RuntimeException ex) {
+            log.error("Could not load connection state index; falling back to repository queries", ex);
+        }
+    }
+
+    /**
+     * (Re)load the whole index from the repository. Must not be called from inside a transaction that has saved
+     * connections, since those rows are not visible to the (separate) loading transaction.
+     */
+    public void reload() {
+        lock.writeLock().lock();
+        try {
+            loadTemplate.execute(status -> {
+                rows.clear();
+                Arrays.asList(byResv, byProv, byOper, byUser, byStart, byEnd, byMinMbps, byMaxMbps)
+                        .forEach(Map::clear);
+
+                Map<String, ConnectionStateRow> loading = new HashMap<>();
+                connRepo.findAllStates().forEach(row -> loading.put(row.getConnectionId(), row));
+                describe(loading, connRepo.findAllScheduleSummaries(), connRepo.findAllPipeBandwidthBounds(),
+                        connRepo.findAllFixtureBandwidthBounds());
+                loading.values().forEach(this::put);
+                return null;
+            });
+            loaded = true;
+            log.info("connection state index loaded: " + rows.size() + " connections");
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Be told about the states of every connection saved by a committed transaction.
+     */
+    public void addObserver(Consumer<ConnectionStateRow> observer) {
+        observers.add(observer);
+    }
+
+
+    /**~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+     * QUERIES
+     * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+     */
+
+    public List<ConnectionStateRow> withResvState(ResvState resv) {
+        return query(() -> ids(byResv.get(resv)), row -> resv == row.getResv());
+    }
+
+    public List<ConnectionStateRow> withProvState(ProvState prov) {
+        return query(() -> ids(byProv.get(prov)), row -> prov == row.getProv());
+    }
+
+    public List<ConnectionStateRow> withOperState(OperState oper) {
+        return query(() -> ids(byOper.get(oper)), row -> oper == row.getOper());
+    }
+
+    public List<ConnectionStateRow> withConnectionIds(Collection<String> connectionIds) {
+        return query(() -> connectionIds.stream().filter(rows::containsKey),
+                row -> connectionIds.contains(row.getConnectionId()));
+    }
+
+    public List<ConnectionStateRow> withUsername(String username) {
+        return query(() -> ids(byUser.get(username)), row -> username.equals(row.getUsername()));
+    }
+
+    /**
+     * @return the connections requested to start at or after the given time
+     */
+    public List<ConnectionStateRow> startingFrom(Date earliest) {
+        return query(() -> ids(byStart.tailMap(earliest, true)),
+                row -> row.getStart() != null && !row.getStart().before(earliest));
+    }
+
+    /**
+     * @return the connections requested to end at or before the given time
+     */
+    public List<ConnectionStateRow> endingBy(Date latest) {
+        return query(() -> ids(byEnd.headMap(latest, true)),
+                row -> row.getEnd() != null && !row.getEnd().after(latest));
+    }
+
+    /**
+     * @return the connections requesting at least this much bandwidth on some pipe or fixture
+     */
+    public List<ConnectionStateRow> withMaxMbpsAtLeast(Integer mbps) {
+        return query(() -> ids(byMaxMbps.tailMap(mbps, true)),
+                row -> row.getMaxMbps() != null && row.getMaxMbps() >= mbps);
+    }
+
+    /**
+     * @return the connections requesting at most this much bandwidth on some pipe or fixture
+     */
+    public List<ConnectionStateRow> withMinMbpsAtMost(Integer mbps) {
+        return query(() -> ids(byMinMbps.headMap(mbps, true)),
+                row -> row.getMinMbps() != null && row.getMinMbps() <= mbps);
+    }
+
+    public List<ConnectionStateRow> all() {
+        return query(() -> rows.keySet().stream(), row -> true);
+    }
+
+    /**
+     * Visit the committed states of every connection.
+     */
+    public void forEach(Consumer<ConnectionStateRow> consumer) {
+        List<ConnectionStateRow> all;
+        lock.readLock().lock();
+        try {
+            all = new ArrayList<>(rows.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+        all.forEach(consumer);
+    }
+
+    /**
+     * The row for a connection as the index would hold it, for callers that have the entity at hand. Walks the
+     * connection's specification, so it must not be called while the session is flushing.
+     */
+    public static ConnectionStateRow rowOf(ConnectionE c) {
+        ConnectionStateRow row = new ConnectionStateRow(c.getConnectionId(), c.getStates().getResv(),
+                c.getStates().getProv(), c.getStates().getOper(),
+                c.getSchedule() == null ? null : c.getSchedule().getSubmitted());
+        SpecificationE spec = c.getSpecification();
+        if (spec == null) {
+            return row;
+        }
+        row.setUsername(spec.getUsername());
+        if (spec.getScheduleSpec() != null) {
+            row.setStart(spec.getScheduleSpec().getStartDates().stream().min(Date::compareTo).orElse(null));
+            row.setEnd(spec.getScheduleSpec().getEndDates().stream().max(Date::compareTo).orElse(null));
+        }
+        if (spec.getRequested() != null && spec.getRequested().getVlanFlow() != null) {
+            RequestedVlanFlowE flow = spec.getRequested().getVlanFlow();
+            for (RequestedVlanPipeE pipe : flow.getPipes()) {
+                includeMbps(row, pipe.getAzMbps());
+                includeMbps(row, pipe.getZaMbps());
+            }
+            for (RequestedVlanJunctionE junction : flow.getJunctions()) {
+                for (RequestedVlanFixtureE fixture : junction.getFixtures()) {
+                    includeMbps(row, fixture.getInMbps());
+                    includeMbps(row, fixture.getEgMbps());
+                }
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Fill in the request fields of the given rows from the rows of the schedule summary and bandwidth bounds
+     * projections of ConnectionRepository.
+     */
+    private static void describe(Map<String, ConnectionStateRow> byId, List<Object[]> scheduleSummaries,
+                                 List<Object[]> pipeBounds, List<Object[]> fixtureBounds) {
+        for (Object[] s : scheduleSummaries) {
+            ConnectionStateRow row = byId.get((String) s[0]);
+            if (row != null) {
+                row.setUsername((String) s[1]);
+                row.setStart((Date) s[2]);
+                row.setEnd((Date) s[3]);
+            }
+        }
+        List<Object[]> bounds = new ArrayList<>(pipeBounds);
+        bounds.addAll(fixtureBounds);
+        for (Object[] b : bounds) {
+            ConnectionStateRow row = byId.get((String) b[0]);
+            for (int i = 1; row != null && i < b.length; i++) {
+                includeMbps(row, (Integer) b[i]);
+            }
+        }
+    }
+
+    /**
+     * Read the request fields of the given rows in the current transaction.
+     */
+    private void describe(Map<String, ConnectionStateRow> byId) {
+        if (byId.isEmpty()) {
+            return;
+        }
+        Set<String> connectionIds = byId.keySet();
+        describe(byId, connRepo.findScheduleSummaries(connectionIds), connRepo.findPipeBandwidthBounds(connectionIds),
+                connRepo.findFixtureBandwidthBounds(connectionIds));
+    }
+
+    private static void copyRequest(ConnectionStateRow from, ConnectionStateRow to) {
+        to.setUsername(from.getUsername());
+        to.setStart(from.getStart());
+        to.setEnd(from.getEnd());
+        to.setMinMbps(from.getMinMbps());
+        to.setMaxMbps(from.getMaxMbps());
+    }
+
+    private static void includeMbps(ConnectionStateRow row, Integer mbps) {
+        if (mbps == null) {
+            return;
+        }
+        if (row.getMinMbps() == null || mbps < row.getMinMbps()) {
+            row.setMinMbps(mbps);
+        }
+        if (row.getMaxMbps() == null || mbps > row.getMaxMbps()) {
+            row.setMaxMbps(mbps);
+        }
+    }
+
+    /**
+     * @param committed - the ids of the committed connections that match; called under the read lock
+     * @param matches   - whether a row matches, for the rows staged by the current transaction
+     */
+    private List<ConnectionStateRow> query(Supplier<Stream<String>> committed, Predicate<ConnectionStateRow> matches) {
+        flushSession();
+        describeStaged();
+        Map<String, ConnectionStateRow> staged = staged();
+
+        List<ConnectionStateRow> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            committed.get()
+                    .filter(connectionId -> !staged.containsKey(connectionId))
+                    .forEach(connectionId -> result.add(rows.get(connectionId)));
+        } finally {
+            lock.readLock().unlock();
+        }
+        staged.values().stream()
+                .filter(row -> row != null && matches.test(row))
+                .forEach(result::add);
+        return result;
+    }
+
+    private static Stream<String> ids(Set<String> ids) {
+        return ids == null ? Stream.empty() : ids.stream();
+    }
+
+    private static Stream<String> ids(NavigableMap<?, Set<String>> range) {
+        return range.values().stream().flatMap(Set::stream);
+    }
+
+    private Map<String, ConnectionStateRow> staged() {
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(pendingKey);
+        return pending == null ? Collections.emptyMap() : pending.rows;
+    }
+
+    // the new connections staged by the current transaction are flushed, so their requests can be read now
+    private void describeStaged() {
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(pendingKey);
+        if (pending != null && !pending.undescribed.isEmpty()) {
+            describe(undescribed(pending.rows, pending.undescribed));
+            pending.undescribed.clear();
+        }
+    }
+
+    private static Map<String, ConnectionStateRow> undescribed(Map<String, ConnectionStateRow> rows,
+                                                               Set<String> undescribed) {
+        Map<String, ConnectionStateRow> byId = new HashMap<>();
+        undescribed.forEach(connectionId -> {
+            ConnectionStateRow row = rows.get(connectionId);
+            if (row != null) {
+                byId.put(connectionId, row);
+            }
+        });
+        return byId;
+    }
+
+    /**
+     * Flush the current session so that connections saved (or modified) but not yet written in this transaction
+     * reach the listener before we answer.
+     */
+    private void flushSession() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            entityManager.flush();
+        }
+    }
+
+
+    /**~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+     * UPDATES (called from ConnectionStateListener)
+     * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+     */
+
+    // only reads the connection's own columns; the session is flushing
+    void saved(ConnectionE c) {
+        if (c.getStates() == null) {
+            return;
+        }
+        stage(c.getConnectionId(), new ConnectionStateRow(c.getConnectionId(), c.getStates().getResv(),
+                c.getStates().getProv(), c.getStates().getOper(),
+                c.getSchedule() == null ? null : c.getSchedule().getSubmitted()));
+    }
+
+    void removed(ConnectionE c) {
+        stage(c.getConnectionId(), null);
+    }
+
+    private void stage(String connectionId, ConnectionStateRow row) {
+        Pending pending = currentPending();
+        Map<String, ConnectionStateRow> rows = pending == null ? new HashMap<>() : pending.rows;
+        Set<String> undescribed = pending == null ? new HashSet<>() : pending.undescribed;
+
+        if (row != null) {
+            ConnectionStateRow known = rows.get(connectionId);
+            if (known == null || undescribed.contains(connectionId)) {
+                lock.readLock().lock();
+                try {
+                    known = this.rows.get(connectionId);
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+            if (known != null) {
+                copyRequest(known, row);
+                undescribed.remove(connectionId);
+            } else {
+                undescribed.add(connectionId);
+            }
+        } else {
+            undescribed.remove(connectionId);
+        }
+        rows.put(connectionId, row);
+
+        if (pending == null) {
+            // no transaction: the write is already committed
+            commit(rows, undescribed);
+        }
+    }
+
+    private void commit(Map<String, ConnectionStateRow> changes, Set<String> undescribed) {
+        if (!undescribed.isEmpty()) {
+            // the new connections are committed now; read their requests in a transaction of our own
+            loadTemplate.execute(status -> {
+                describe(undescribed(changes, undescribed));
+                return null;
+            });
+        }
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                changes.forEach((connectionId, row) -> {
+                    remove(connectionId);
+                    if (row != null) {
+                        put(row);
+                    }
+                });
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        changes.values().stream()
+                .filter(Objects::nonNull)
+                .forEach(row -> observers.forEach(o -> o.accept(row)));
+    }
+
+    private void put(ConnectionStateRow row) {
+        rows.put(row.getConnectionId(), row);
+        index(byResv, row.getResv(), row.getConnectionId());
+        index(byProv, row.getProv(), row.getConnectionId());
+        index(byOper, row.getOper(), row.getConnectionId());
+        index(byUser, row.getUsername(), row.getConnectionId());
+        index(byStart, row.getStart(), row.getConnectionId());
+        index(byEnd, row.getEnd(), row.getConnectionId());
+        index(byMinMbps, row.getMinMbps(), row.getConnectionId());
+        index(byMaxMbps, row.getMaxMbps(), row.getConnectionId());
+    }
+
+    private void remove(String connectionId) {
+        ConnectionStateRow old = rows.remove(connectionId);
+        if (old != null) {
+            unindex(byResv, old.getResv(), connectionId);
+            unindex(byProv, old.getProv(), connectionId);
+            unindex(byOper, old.getOper(), connectionId);
+            unindex(byUser, old.getUsername(), connectionId);
+            unindex(byStart, old.getStart(), connectionId);
+            unindex(byEnd, old.getEnd(), connectionId);
+            unindex(byMinMbps, old.getMinMbps(), connectionId);
+            unindex(byMaxMbps, old.getMaxMbps(), connectionId);
+        }
+    }
+
+    private static <S> void index(Map<S, Set<String>> byState, S state, String connectionId) {
+        if (state != null) {
+            byState.computeIfAbsent(state, s -> new HashSet<>()).add(connectionId);
+        }
+    }
+
+    private static <S> void unindex(Map<S, Set<String>> byState, S state, String connectionId) {
+        if (state != null) {
+            Set<String> ids = byState.get(state);
+            if (ids != null) {
+                ids.remove(connectionId);
+                if (ids.isEmpty()) {
+                    byState.remove(state);
+                }
+            }
+        }
+    }
+
+    private Pending currentPending() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(pendingKey);
+        if (pending == null) {
+            Pending created = new Pending();
+            TransactionSynchronizationManager.bindResource(pendingKey, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void suspend() {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(pendingKey);
+                }
+
+                @Override
+                public void resume() {
+                    TransactionSynchronizationManager.bindResource(pendingKey, created);
+                }
+
+                @Override
+                public void afterCommit() {
+                    commit(created.rows, created.undescribed);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(pendingKey);
+                }
+            });
+            pending = created;
+        }
+        return pending;
+    }
+
+    // changes staged by one transaction; the last one per connection wins, null for a removed connection
+    private static class Pending {
+        final Map<String, ConnectionStateRow> rows = new LinkedHashMap<>();
+
+        // new connections whose request fields have not been read yet
+        final Set<String> undescribed = new HashSet<>();
+    }
+}
@@ -0,0 +1,38 @@
+package net.es.oscars.resv.svc;
+
+import net.es.oscars.resv.ent.ConnectionE;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * JPA entity listener attached to ConnectionE; forwards every write to the ConnectionStateIndex so that it stays
+ * in step with the database.
+ *
+ * Hibernate instantiates entity listeners itself, so the index registers itself here when it is created.
+ */
+public class ConnectionStateListener {
+    private static volatile ConnectionStateIndex index;
+
+    static void register(ConnectionStateIndex stateIndex) {
+        index = stateIndex;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(ConnectionE c) {
+        ConnectionStateIndex current = index;
+        if (current != null) {
+            current.saved(c);
+        }
+    }
+
+    @PostRemove
+    public void onRemove(ConnectionE c) {
+        ConnectionStateIndex current = index;
+        if (current != null) {
+            current.removed(c);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package net.es.oscars.resv.svc;
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.pce.BandwidthSweep;
+import net.es.oscars.resv.ent.*;
+import net.es.oscars.topo.ent.ReservableBandwidthE;
+import net.es.oscars.topo.ent.UrnE;
+import net.es.oscars.topo.svc.TopoSnapshot;
+import net.es.oscars.topo.svc.TopoSnapshotService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Validates a PCE result against the reservations currently in the ReservedResourceIndex. The PCE runs without
+ * holding any lock, so another hold may have committed resources it picked in the meantime; this is checked under
+ * the index commit lock, right before the result is saved.
+ */
+@Slf4j
+@Service
+public class HoldValidator {
+    @Autowired
+    private ReservedResourceIndex resvIndex;
+
+    @Autowired
+    private TopoSnapshotService topoSnapshotService;
+
+    /**
+     * @param reserved - The reserved blueprint computed by the PCE, not saved yet
+     * @return A description of each conflict with existing reservations, empty if the blueprint can still be saved
+     */
+    public List<String> conflicts(ReservedBlueprintE reserved) {
+        Set<ReservedBandwidthE> bandwidths = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<ReservedVlanE> vlans = Collections.newSetFromMap(new IdentityHashMap<>());
+        collect(reserved.getVlanFlow(), bandwidths, vlans);
+
+        List<String> conflicts = new ArrayList<>();
+        conflicts.addAll(bandwidthConflicts(bandwidths));
+        conflicts.addAll(vlanConflicts(vlans));
+        return conflicts;
+    }
+
+    private List<String> bandwidthConflicts(Set<ReservedBandwidthE> bandwidths) {
+        TopoSnapshot snapshot = topoSnapshotService.current();
+        Map<String, List<ReservedBandwidthE>> byUrn = new HashMap<>();
+        for (ReservedBandwidthE rb : bandwidths) {
+            byUrn.computeIfAbsent(rb.getUrn(), urn -> new ArrayList<>()).add(rb);
+        }
+
+        List<String> conflicts = new ArrayList<>();
+        byUrn.forEach((urn, added) -> {
+            ReservableBandwidthE capacity = snapshot.getUrn(urn).map(UrnE::getReservableBandwidth).orElse(null);
+            if (capacity == null) {
+                return;
+            }
+            int[] peak = peakUsage(added);
+            if (peak[0] > capacity.getIngressBw() || peak[1] > capacity.getEgressBw()) {
+                conflicts.add("bandwidth on " + urn);
+            }
+        });
+        return conflicts;
+    }
+
+    /**
+     * Peak ingress / egress usage of a URN while the new reservations are in place: the new ones plus every existing
+     * one overlapping them, clipped to the window of the new ones so that usage at other times does not count.
+     */
+    private int[] peakUsage(List<ReservedBandwidthE> added) {
+        Instant start = added.get(0).getBeginning();
+        Instant end = added.get(0).getEnding();
+        for (ReservedBandwidthE rb : added) {
+            start = rb.getBeginning().isBefore(start) ? rb.getBeginning() : start;
+            end = rb.getEnding().isAfter(end) ? rb.getEnding() : end;
+        }
+
+        List<ReservedBandwidthE> combined = new ArrayList<>(added);
+        combined.addAll(resvIndex.overlappingBandwidths(added.get(0).getUrn(), start, end));
+        long startKey = BandwidthSweep.key(start);
+        long endKey = BandwidthSweep.key(end);
+        int n = combined.size();
+        long[] begins = new long[n];
+        long[] ends = new long[n];
+        int[] ingress = new int[n];
+        int[] egress = new int[n];
+        for (int i = 0; i < n; i++) {
+            ReservedBandwidthE rb = combined.get(i);
+            begins[i] = Math.max(BandwidthSweep.key(rb.getBeginning()), startKey);
+            ends[i] = Math.min(BandwidthSweep.key(rb.getEnding()), endKey);
+            ingress[i] = rb.getInBandwidth() == null ? 0 : rb.getInBandwidth();
+            egress[i] = rb.getEgBandwidth() == null ? 0 : rb.getEgBandwidth();
+        }
+        return BandwidthSweep.peakUsage(begins, ends, ingress, egress, n);
+    }
+
+    private List<String> vlanConflicts(Set<ReservedVlanE> vlans) {
+        List<String> conflicts = new ArrayList<>();
+        for (ReservedVlanE rv : vlans) {
+            if (rv.getVlan() == null || rv.getVlan() < 0) {
+                continue;
+            }
+            if (resvIndex.vlansInUse(rv.getUrn(), rv.getBeginning(), rv.getEnding()).contains(rv.getVlan())) {
+                conflicts.add("VLAN " + rv.getVlan() + " on " + rv.getUrn());
+            }
+        }
+        return conflicts;
+    }
+
+    private void collect(ReservedVlanFlowE flow, Set<ReservedBandwidthE> bandwidths, Set<ReservedVlanE> vlans) {
+        if (flow == null) {
+            return;
+        }
+        Set<ReservedVlanJunctionE> junctions = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (flow.getJunctions() != null) {
+            junctions.addAll(flow.getJunctions());
+        }
+        if (flow.getEthPipes() != null) {
+            for (ReservedEthPipeE pipe : flow.getEthPipes()) {
+                addAll(pipe.getReservedBandwidths(), bandwidths);
+                addAll(pipe.getReservedVlans(), vlans);
+                junctions.add(pipe.getAJunction());
+                junctions.add(pipe.getZJunction());
+            }
+        }
+        if (flow.getMplsPipes() != null) {
+            for (ReservedMplsPipeE pipe : flow.getMplsPipes()) {
+                addAll(pipe.getReservedBandwidths(), bandwidths);
+                junctions.add(pipe.getAJunction());
+                junctions.add(pipe.getZJunction());
+            }
+        }
+        for (ReservedVlanJunctionE junction : junctions) {
+            if (junction == null) {
+                continue;
+            }
+            addAll(junction.getReservedVlans(), vlans);
+            if (junction.getFixtures() != null) {
+                for (ReservedVlanFixtureE fixture : junction.getFixtures()) {
+                    addAll(fixture.getReservedVlans(), vlans);
+                    if (fixture.getReservedBandwidth() != null) {
+                        bandwidths.add(fixture.getReservedBandwidth());
+                    }
+                }
+            }
+        }
+        bandwidths.removeIf(rb -> rb.getBeginning() == null || rb.getEnding() == null);
+        vlans.removeIf(rv -> rv.getBeginning() == null || rv.getEnding() == null);
+    }
+
+    private static <T> void addAll(Collection<T> from, Set<T> to) {
+        if (from != null) {
+            from.forEach(to::add);
+        }
+    }
+}
@@ -0,0 +1,600 @@
+package net.es.oscars.resv.svc;
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.dto.resv.ResourceType;
+import net.es.oscars.helpers.IntervalTree;
+import net.es.oscars.pce.BandwidthSweep;
+import net.es.oscars.resv.dao.ReservedBandwidthRepository;
+import net.es.oscars.resv.dao.ReservedPssResourceRepository;
+import net.es.oscars.resv.dao.ReservedVlanRepository;
+import net.es.oscars.resv.ent.ReservedBandwidthE;
+import net.es.oscars.resv.ent.ReservedPssResourceE;
+import net.es.oscars.resv.ent.ReservedVlanE;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * In-memory interval index over reserved bandwidth, VLANs and PSS resources, keyed by URN (and resource type
+ * for PSS resources). Replaces the findOverlappingInterval() round trips made for every schedule range the PCE tries.
+ *
+ * The index is loaded once at startup and kept current through ReservedResourceListener. Writes made inside a
+ * transaction are staged and only become visible to other threads when that transaction commits; the writing
+ * transaction itself sees its own staged changes. Values handed out by the query methods are detached copies
+ * shared between callers and must not be modified.
+ */
+@Slf4j
+@Service
+public class ReservedResourceIndex {
+    private ReservedBandwidthRepository bwRepo;
+
+    private ReservedVlanRepository vlanRepo;
+
+    private ReservedPssResourceRepository pssResRepo;
+
+    private TransactionTemplate loadTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Bucket<ReservedBandwidthE> bandwidths = new Bucket<>(ReservedBandwidthE::getId,
+            ReservedBandwidthE::getUrn, ReservedBandwidthE::getBeginning, ReservedBandwidthE::getEnding);
+
+    private final Bucket<ReservedVlanE> vlans = new Bucket<>(ReservedVlanE::getId,
+            ReservedVlanE::getUrn, ReservedVlanE::getBeginning, ReservedVlanE::getEnding);
+
+    private final Bucket<ReservedPssResourceE> pssResources = new Bucket<>(ReservedPssResourceE::getId,
+            r -> pssKey(r.getUrn(), r.getResourceType()), ReservedPssResourceE::getBeginning, ReservedPssResourceE::getEnding);
+
+    private final Object pendingKey = new Object();
+
+    private final ReentrantLock commitLock = new ReentrantLock();
+
+    private volatile boolean loaded = false;
+
+    // number of committed changes to the index; guarded by lock
+    private long epoch = 0L;
+
+    @Autowired
+    public ReservedResourceIndex(ReservedBandwidthRepository bwRepo, ReservedVlanRepository vlanRepo,
+                                 ReservedPssResourceRepository pssResRepo, PlatformTransactionManager transactionManager) {
+        this.bwRepo = bwRepo;
+        this.vlanRepo = vlanRepo;
+        this.pssResRepo = pssResRepo;
+        this.loadTemplate = new TransactionTemplate(transactionManager);
+        this.loadTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.loadTemplate.setReadOnly(true);
+        ReservedResourceListener.register(this);
+    }
+
+    @PostConstruct
+    public void startup() {
+        try {
+            reload();
+        } catch (RuntimeException ex) {
+            log.error("Could not load reserved resource index; falling back to repository queries", ex);
+        }
+    }
+
+    /**
+     * (Re)load the whole index from the repositories. Must not be called from inside a transaction that has
+     * written reservations, since those rows are not visible to the (separate) loading transaction.
+     */
+    public void reload() {
+        lock.writeLock().lock();
+        try {
+            loadTemplate.execute(status -> {
+                bandwidths.clear();
+                vlans.clear();
+                pssResources.clear();
+                bwRepo.findAll().forEach(b -> bandwidths.put(copy(b)));
+                vlanRepo.findAll().forEach(v -> vlans.put(copy(v)));
+                pssResRepo.findAll().forEach(r -> pssResources.put(copy(r)));
+                return null;
+            });
+            epoch++;
+            loaded = true;
+            log.info("reserved resource index loaded: " + bandwidths.size() + " bandwidths, "
+                    + vlans.size() + " vlans, " + pssResources.size() + " pss resources");
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+     * QUERIES
+     * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+     */
+
+    /**
+     * @return all reserved bandwidth overlapping [start, end], on any URN
+     */
+    public List<ReservedBandwidthE> overlappingBandwidths(Instant start, Instant end) {
+        if (!loaded) {
+            return bwRepo.findOverlappingInterval(start, end).orElse(new ArrayList<>());
+        }
+        return query(bandwidths, p -> p.bandwidths, null, start, end);
+    }
+
+    /**
+     * @return reserved bandwidth on this URN overlapping [start, end]
+     */
+    public List<ReservedBandwidthE> overlappingBandwidths(String urn, Instant start, Instant end) {
+        if (!loaded) {
+            List<ReservedBandwidthE> all = bwRepo.findOverlappingInterval(start, end).orElse(new ArrayList<>());
+            all.removeIf(b -> !b.getUrn().equals(urn));
+            return all;
+        }
+        return query(bandwidths, p -> p.bandwidths, urn, start, end);
+    }
+
+    /**
+     * @return all reserved VLANs overlapping [start, end], on any URN
+     */
+    public List<ReservedVlanE> overlappingVlans(Instant start, Instant end) {
+        if (!loaded) {
+            return vlanRepo.findOverlappingInterval(start, end).orElse(new ArrayList<>());
+        }
+        return query(vlans, p -> p.vlans, null, start, end);
+    }
+
+    /**
+     * @return reserved VLANs on this URN overlapping [start, end]
+     */
+    public List<ReservedVlanE> overlappingVlans(String urn, Instant start, Instant end) {
+        if (!loaded) {
+            List<ReservedVlanE> all = vlanRepo.findOverlappingInterval(start, end).orElse(new ArrayList<>());
+            all.removeIf(v -> !v.getUrn().equals(urn));
+            return all;
+        }
+        return query(vlans, p -> p.vlans, urn, start, end);
+    }
+
+    /**
+     * @return reserved PSS resources of this type overlapping [start, end], on any URN
+     */
+    public List<ReservedPssResourceE> overlappingPssResources(ResourceType rt, Instant start, Instant end) {
+        List<ReservedPssResourceE> result;
+        if (!loaded) {
+            result = pssResRepo.findOverlappingInterval(start, end).orElse(new ArrayList<>());
+        } else {
+            result = query(pssResources, p -> p.pssResources, null, start, end);
+        }
+        result.removeIf(r -> !r.getResourceType().equals(rt));
+        return result;
+    }
+
+    /**
+     * @return reserved PSS resources of this type on this URN overlapping [start, end]
+     */
+    public List<ReservedPssResourceE> overlappingPssResources(String urn, ResourceType rt, Instant start, Instant end) {
+        if (!loaded) {
+            List<ReservedPssResourceE> all = pssResRepo.findOverlappingInterval(start, end).orElse(new ArrayList<>());
+            all.removeIf(r -> !r.getUrn().equals(urn) || !r.getResourceType().equals(rt));
+            return all;
+        }
+        return query(pssResources, p -> p.pssResources, pssKey(urn, rt), start, end);
+    }
+
+    /**
+     * Peak bandwidth reserved on a URN at any single instant within [start, end].
+     *
+     * @return a map of "Ingress" and "Egress" to the peak reserved value in each direction
+     */
+    public Map<String, Integer> peakBandwidth(String urn, Instant start, Instant end) {
+        List<ReservedBandwidthE> overlapping = overlappingBandwidths(urn, start, end);
+        int n = overlapping.size();
+        long[] begins = new long[n];
+        long[] ends = new long[n];
+        int[] ingress = new int[n];
+        int[] egress = new int[n];
+        for (int i = 0; i < n; i++) {
+            ReservedBandwidthE rb = overlapping.get(i);
+            begins[i] = BandwidthSweep.key(rb.getBeginning());
+            ends[i] = BandwidthSweep.key(rb.getEnding());
+            ingress[i] = rb.getInBandwidth() == null ? 0 : rb.getInBandwidth();
+            egress[i] = rb.getEgBandwidth() == null ? 0 : rb.getEgBandwidth();
+        }
+        // every reservation here overlaps [start, end], so the unclipped peak is the peak within the window
+        int[] peakUsage = BandwidthSweep.peakUsage(begins, ends, ingress, egress, n);
+
+        Map<String, Integer> peak = new HashMap<>();
+        peak.put("Ingress", peakUsage[0]);
+        peak.put("Egress", peakUsage[1]);
+        return peak;
+    }
+
+    /**
+     * @return every VLAN id reserved on this URN at some point within [start, end]
+     */
+    public Set<Integer> vlansInUse(String urn, Instant start, Instant end) {
+        Set<Integer> inUse = new HashSet<>();
+        overlappingVlans(urn, start, end).stream()
+                .map(ReservedVlanE::getVlan)
+                .filter(v -> v != null && v >= 0)
+                .forEach(inUse::add);
+        return inUse;
+    }
+
+    /**
+     * @return every resource id of this type reserved on this URN at some point within [start, end]
+     */
+    public Set<Integer> pssResourcesInUse(String urn, ResourceType rt, Instant start, Instant end) {
+        Set<Integer> inUse = new HashSet<>();
+        overlappingPssResources(urn, rt, start, end).forEach(r -> inUse.add(r.getResource()));
+        return inUse;
+    }
+
+    /**
+     * The reservation epoch: a counter bumped by every commit that changes the index. Two views with the same epoch
+     * hold the same reservations, so results computed from one can be reused for the other.
+     *
+     * @return the epoch of the committed reservations, or empty if the current transaction has staged changes of
+     * its own (no other view holds the same reservations) or the index is not loaded
+     */
+    public Optional<Long> epoch() {
+        flushSession();
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(pendingKey);
+        if (!loaded || (pending != null && !pending.isEmpty())) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            return Optional.of(epoch);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Wrap a task so that it sees the index as the calling thread sees it right now, i.e. including the changes
+     * staged by the caller's transaction, when it runs on another thread. The caller must not write reservations
+     * until the task has finished.
+     *
+     * @param task - the task to run elsewhere
+     * @return the wrapped task
+     */
+    public <T> Callable<T> inCurrentView(Callable<T> task) {
+        flushSession();
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(pendingKey);
+        if (pending == null) {
+            return task;
+        }
+        return () -> {
+            if (TransactionSynchronizationManager.hasResource(pendingKey)) {
+                return task.call();
+            }
+            TransactionSynchronizationManager.bindResource(pendingKey, pending);
+            try {
+                return task.call();
+            } finally {
+                TransactionSynchronizationManager.unbindResourceIfPossible(pendingKey);
+            }
+        };
+    }
+
+    /**
+     * Take the commit lock and keep it until the current transaction completes, by which time the reservations it
+     * wrote are visible in the index. Holds compute their paths without it and only validate and save under it, so
+     * a validation sees every reservation committed before it. Reentrant, for several holds in one transaction.
+     */
+    public void lockCommitsUntilCompletion() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("The commit lock can only be taken inside a transaction");
+        }
+        commitLock.lock();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                commitLock.unlock();
+            }
+        });
+    }
+
+    private <T> List<T> query(Bucket<T> bucket, Function<Pending, Map<Long, T>> pendingOf,
+                              String key, Instant start, Instant end) {
+        flushSession();
+        long s = start.toEpochMilli();
+        long e = end.toEpochMilli();
+
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(pendingKey);
+        Map<Long, T> staged = pending == null ? Collections.emptyMap() : pendingOf.apply(pending);
+
+        List<T> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            bucket.overlapping(key, s, e, t -> {
+                if (!staged.containsKey(bucket.idOf.apply(t))) {
+                    result.add(t);
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        staged.values().stream()
+                .filter(t -> t != null && bucket.matches(t, key, s, e))
+                .forEach(result::add);
+        return result;
+    }
+
+    /**
+     * Flush the current session so that reservations saved (or modified) but not yet written in this transaction
+     * reach the listener before we answer; the repository queries this replaces got the same effect from auto-flush.
+     * Only transactions that have written reservations have anything to flush, so the others are left alone.
+     */
+    private void flushSession() {
+        if (TransactionSynchronizationManager.hasResource(pendingKey)
+                && TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            entityManager.flush();
+        }
+    }
+
+
+    /**~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+     * UPDATES (called from ReservedResourceListener)
+     * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+     */
+
+    /**
+     * A reservation is about to be saved or removed; make sure the transaction has somewhere to stage it, so that
+     * the next query flushes the session.
+     */
+    void writing(Object entity) {
+        if (entity instanceof ReservedBandwidthE || entity instanceof ReservedVlanE
+                || entity instanceof ReservedPssResourceE) {
+            currentPending();
+        }
+    }
+
+    void saved(Object entity) {
+        if (entity instanceof ReservedBandwidthE) {
+            ReservedBandwidthE rb = (ReservedBandwidthE) entity;
+            stage(bandwidths, p -> p.bandwidths, rb.getId(), copy(rb));
+        } else if (entity instanceof ReservedVlanE) {
+            ReservedVlanE rv = (ReservedVlanE) entity;
+            stage(vlans, p -> p.vlans, rv.getId(), copy(rv));
+        } else if (entity instanceof ReservedPssResourceE) {
+            ReservedPssResourceE rr = (ReservedPssResourceE) entity;
+            stage(pssResources, p -> p.pssResources, rr.getId(), copy(rr));
+        }
+    }
+
+    void removed(Object entity) {
+        if (entity instanceof ReservedBandwidthE) {
+            stage(bandwidths, p -> p.bandwidths, ((ReservedBandwidthE) entity).getId(), null);
+        } else if (entity instanceof ReservedVlanE) {
+            stage(vlans, p -> p.vlans, ((ReservedVlanE) entity).getId(), null);
+        } else if (entity instanceof ReservedPssResourceE) {
+            stage(pssResources, p -> p.pssResources, ((ReservedPssResourceE) entity).getId(), null);
+        }
+    }
+
+    private <T> void stage(Bucket<T> bucket, Function<Pending, Map<Long, T>> pendingOf, Long id, T value) {
+        if (id == null) {
+            return;
+        }
+        Pending pending = currentPending();
+        if (pending != null) {
+            pendingOf.apply(pending).put(id, value);
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                bucket.replace(id, value);
+                epoch++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void commit(Pending pending) {
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                pending.bandwidths.forEach(bandwidths::replace);
+                pending.vlans.forEach(vlans::replace);
+                pending.pssResources.forEach(pssResources::replace);
+                if (!pending.isEmpty()) {
+                    epoch++;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Pending currentPending() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(pendingKey);
+        if (pending == null) {
+            Pending created = new Pending();
+            TransactionSynchronizationManager.bindResource(pendingKey, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void suspend() {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(pendingKey);
+                }
+
+                @Override
+                public void resume() {
+                    TransactionSynchronizationManager.bindResource(pendingKey, created);
+                }
+
+                @Override
+                public void afterCommit() {
+                    commit(created);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(pendingKey);
+                }
+            });
+            pending = created;
+        }
+        return pending;
+    }
+
+    private static String pssKey(String urn, ResourceType rt) {
+        return urn + "|" + rt;
+    }
+
+    private static ReservedBandwidthE copy(ReservedBandwidthE rb) {
+        return ReservedBandwidthE.builder()
+                .id(rb.getId())
+                .urn(rb.getUrn())
+                .containerConnectionId(rb.getContainerConnectionId())
+                .inBandwidth(rb.getInBandwidth())
+                .egBandwidth(rb.getEgBandwidth())
+                .beginning(rb.getBeginning())
+                .ending(rb.getEnding())
+                .build();
+    }
+
+    private static ReservedVlanE copy(ReservedVlanE rv) {
+        return ReservedVlanE.builder()
+                .id(rv.getId())
+                .urn(rv.getUrn())
+                .vlan(rv.getVlan())
+                .beginning(rv.getBeginning())
+                .ending(rv.getEnding())
+                .build();
+    }
+
+    private static ReservedPssResourceE copy(ReservedPssResourceE rr) {
+        return ReservedPssResourceE.builder()
+                .id(rr.getId())
+                .urn(rr.getUrn())
+                .resourceType(rr.getResourceType())
+                .resource(rr.getResource())
+                .beginning(rr.getBeginning())
+                .ending(rr.getEnding())
+                .build();
+    }
+
+    /**
+     * Changes made by one transaction, by entity id; a null value marks a removal.
+     */
+    private static class Pending {
+        final Map<Long, ReservedBandwidthE> bandwidths = new HashMap<>();
+        final Map<Long, ReservedVlanE> vlans = new HashMap<>();
+        final Map<Long, ReservedPssResourceE> pssResources = new HashMap<>();
+
+        boolean isEmpty() {
+            return bandwidths.isEmpty() && vlans.isEmpty() && pssResources.isEmpty();
+        }
+    }
+
+    /**
+     * One kind of reserved resource: an interval tree over everything, plus one per key (URN).
+     */
+    private static class Bucket<T> {
+        final Function<T, Long> idOf;
+        final Function<T, String> keyOf;
+        final Function<T, Instant> startOf;
+        final Function<T, Instant> endOf;
+
+        final Map<Long, T> byId = new HashMap<>();
+        final IntervalTree<T> all = new IntervalTree<>();
+        final Map<String, IntervalTree<T>> byKey = new HashMap<>();
+
+        Bucket(Function<T, Long> idOf, Function<T, String> keyOf,
+               Function<T, Instant> startOf, Function<T, Instant> endOf) {
+            this.idOf = idOf;
+            this.keyOf = keyOf;
+            this.startOf = startOf;
+            this.endOf = endOf;
+        }
+
+        int size() {
+            return byId.size();
+        }
+
+        void clear() {
+            byId.clear();
+            all.clear();
+            byKey.clear();
+        }
+
+        void put(T value) {
+            Long id = idOf.apply(value);
+            remove(id);
+            byId.put(id, value);
+            Instant start = startOf.apply(value);
+            Instant end = endOf.apply(value);
+            if (start == null || end == null) {
+                return;
+            }
+            all.insert(start.toEpochMilli(), end.toEpochMilli(), id, value);
+            byKey.computeIfAbsent(keyOf.apply(value), k -> new IntervalTree<>())
+                    .insert(start.toEpochMilli(), end.toEpochMilli(), id, value);
+        }
+
+        void remove(Long id) {
+            T existing = byId.remove(id);
+            if (existing == null) {
+                return;
+            }
+            Instant start = startOf.apply(existing);
+            if (start == null || endOf.apply(existing) == null) {
+                return;
+            }
+            all.remove(start.toEpochMilli(), id);
+            String key = keyOf.apply(existing);
+            IntervalTree<T> tree = byKey.get(key);
+            if (tree != null) {
+                tree.remove(start.toEpochMilli(), id);
+                if (tree.isEmpty()) {
+                    byKey.remove(key);
+                }
+            }
+        }
+
+        void replace(Long id, T value) {
+            if (value == null) {
+                remove(id);
+            } else {
+                put(value);
+            }
+        }
+
+        void overlapping(String key, long start, long end, Consumer<T> consumer) {
+            IntervalTree<T> tree = key == null ? all : byKey.get(key);
+            if (tree != null) {
+                tree.overlapping(start, end, consumer);
+            }
+        }
+
+        boolean matches(T value, String key, long start, long end) {
+            Instant s = startOf.apply(value);
+            Instant e = endOf.apply(value);
+            return s != null && e != null
+                    && (key == null || key.equals(keyOf.apply(value)))
+                    && s.toEpochMilli() <= end && e.toEpochMilli() >= start;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package net.es.oscars.resv.svc;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import javax.persistence.PrePersist;
+import javax.persistence.PreRemove;
+
+/**
+ * JPA entity listener attached to reserved bandwidth, VLAN and PSS resource entities; forwards every write
+ * to the ReservedResourceIndex so that it stays in step with the database.
+ *
+ * Hibernate instantiates entity listeners itself, so the index registers itself here when it is created.
+ */
+public class ReservedResourceListener {
+    private static volatile ReservedResourceIndex index;
+
+    static void register(ReservedResourceIndex resourceIndex) {
+        index = resourceIndex;
+    }
+
+    @PrePersist
+    @PreRemove
+    public void onWrite(Object entity) {
+        ReservedResourceIndex current = index;
+        if (current != null) {
+            current.writing(entity);
+        }
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(Object entity) {
+        ReservedResourceIndex current = index;
+        if (current != null) {
+            current.saved(entity);
+        }
+    }
+
+    @PostRemove
+    public void onRemove(Object entity) {
+        ReservedResourceIndex current = index;
+        if (current != null) {
+            current.removed(entity);
+        }
+    }
+}
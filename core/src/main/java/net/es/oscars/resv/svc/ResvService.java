@@ -1,7 +1,5 @@
 package net.es.oscars.resv.svc;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import net.es.oscars.pce.exc.DuplicateConnectionIdException;
 import net.es.oscars.pce.exc.PCEException;
@@ -9,10 +7,11 @@ import net.es.oscars.pce.TopPCE;
 import net.es.oscars.pss.PSSException;
 import net.es.oscars.pss.svc.PssResourceService;
 import net.es.oscars.resv.dao.ConnectionRepository;
+import net.es.oscars.resv.dao.ConnectionStateRow;
 import net.es.oscars.resv.ent.*;
+import net.es.oscars.resv.prop.ResvProperties;
 import net.es.oscars.st.prov.ProvState;
 import net.es.oscars.st.resv.ResvState;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -27,10 +26,16 @@ import java.util.stream.Stream;
 public class ResvService {
 
     @Autowired
-    public ResvService(TopPCE topPCE, ConnectionRepository connRepo, PssResourceService pssResourceService) {
+    public ResvService(TopPCE topPCE, ConnectionRepository connRepo, PssResourceService pssResourceService,
+                       ReservedResourceIndex resvIndex, HoldValidator holdValidator, ResvProperties resvProperties,
+                       ConnectionStateIndex stateIndex) {
         this.topPCE = topPCE;
         this.connRepo = connRepo;
         this.pssResourceService = pssResourceService;
+        this.resvIndex = resvIndex;
+        this.holdValidator = holdValidator;
+        this.resvProperties = resvProperties;
+        this.stateIndex = stateIndex;
     }
 
     private TopPCE topPCE;
@@ -39,6 +44,14 @@ public class ResvService {
 
     private PssResourceService pssResourceService;
 
+    private ReservedResourceIndex resvIndex;
+
+    private HoldValidator holdValidator;
+
+    private ResvProperties resvProperties;
+
+    private ConnectionStateIndex stateIndex;
+
 
     // basically DB stuff
 
@@ -59,18 +72,34 @@ public class ResvService {
     }
 
     public Stream<ConnectionE> ofResvState(ResvState resvState) {
-        return connRepo.findAll().stream().filter(c -> c.getStates().getResv().equals(resvState));
-
+        if (!stateIndex.isLoaded()) {
+            return connRepo.findByStatesResv(resvState).stream();
+        }
+        return load(stateIndex.withResvState(resvState).stream());
     }
-    public Stream<ConnectionE> ofHeldTimeout(Integer timeoutMs) {
-        return connRepo.findAll().stream()
-                .filter(c -> c.getStates().getResv().equals(ResvState.HELD))
-                .filter(c -> (c.getSchedule().getSubmitted().getTime() + timeoutMs < new Date().getTime()));
 
+    public Stream<ConnectionE> ofHeldTimeout(Integer timeoutMs) {
+        Date heldBefore = new Date(new Date().getTime() - timeoutMs);
+        if (!stateIndex.isLoaded()) {
+            return connRepo.findByStatesResvAndScheduleSubmittedBefore(ResvState.HELD, heldBefore).stream();
+        }
+        return load(stateIndex.withResvState(ResvState.HELD).stream()
+                .filter(row -> row.getSubmitted() != null && row.getSubmitted().before(heldBefore)));
     }
+
     public Stream<ConnectionE> ofProvState(ProvState provState) {
-        return connRepo.findAll().stream().filter(c -> c.getStates().getProv().equals(provState));
+        if (!stateIndex.isLoaded()) {
+            return connRepo.findByStatesProv(provState).stream();
+        }
+        return load(stateIndex.withProvState(provState).stream());
+    }
 
+    private Stream<ConnectionE> load(Stream<ConnectionStateRow> rows) {
+        Set<String> connectionIds = rows.map(ConnectionStateRow::getConnectionId).collect(Collectors.toSet());
+        if (connectionIds.isEmpty()) {
+            return Stream.empty();
+        }
+        return connRepo.findByConnectionIdIn(connectionIds).stream();
     }
 
 
@@ -119,8 +148,9 @@ public class ResvService {
 
     public void hold(ConnectionE c) throws PSSException, PCEException {
 
+        // a SUBMITTED connection from the reservation pipeline is already saved; only other connections clash
         Optional<ConnectionE> maybeDuplicate = connRepo.findByConnectionId(c.getConnectionId());
-        if (maybeDuplicate.isPresent()) {
+        if (maybeDuplicate.isPresent() && (c.getId() == null || !c.getId().equals(maybeDuplicate.get().getId()))) {
             throw new DuplicateConnectionIdException("Duplicate connection id "+c.getConnectionId());
         }
 
@@ -129,6 +159,117 @@ public class ResvService {
         List<Date> reservedSched = new ArrayList<>();
         Optional<ReservedBlueprintE> res = topPCE.makeReserved(req, c.getSpecification().getScheduleSpec(), reservedSched);
 
+        // The PCE ran without any lock, so concurrent holds compute their paths in parallel; only validating and
+        // saving is serialized. If a hold that committed meanwhile took resources we picked, compute again under
+        // the lock, where nothing else can commit and the new result needs no further validation.
+        resvIndex.lockCommitsUntilCompletion();
+        if (res.isPresent()) {
+            List<String> conflicts = holdValidator.conflicts(res.get());
+            if (!conflicts.isEmpty()) {
+                log.info("Hold of " + c.getConnectionId() + " conflicts with committed reservations: " + conflicts + ", recomputing");
+                reservedSched.clear();
+                res = topPCE.makeReserved(req, c.getSpecification().getScheduleSpec(), reservedSched);
+            }
+        }
+
+        saveHold(c, res, reservedSched);
+    }
+
+    /**
+     * Give up on holding a connection: it is left without reserved resources and moved to ABORTING, just like a
+     * hold for which the PCE found no path.
+     */
+    public void abandonHold(ConnectionE c) {
+        saveHold(c, Optional.empty(), new ArrayList<>());
+    }
+
+    /**
+     * Hold several connections in one transaction, in the order configured by resv.batch-order. Each connection
+     * sees the resources held by the ones placed before it.
+     *
+     * The commit lock is taken once, up front, and kept for the whole batch: nothing else can commit while the
+     * batch is placed, so its results need no validation against concurrent holds.
+     *
+     * @param connections - The connections to hold
+     * @return The error for each connection that could not be considered at all (duplicate connection id, invalid
+     * request); every other connection is either HELD or ABORTING, as after hold(). Keyed by identity, since the
+     * batch itself may contain duplicates.
+     */
+    public Map<ConnectionE, String> holdBatch(List<ConnectionE> connections) {
+        if (connections.isEmpty()) {
+            return new IdentityHashMap<>();
+        }
+        resvIndex.lockCommitsUntilCompletion();
+
+        Set<String> connectionIds = connections.stream().map(ConnectionE::getConnectionId).collect(Collectors.toSet());
+        Set<String> taken = connRepo.findByConnectionIdIn(connectionIds).stream()
+                .map(ConnectionE::getConnectionId)
+                .collect(Collectors.toSet());
+
+        Map<ConnectionE, String> errors = new IdentityHashMap<>();
+        for (ConnectionE c : orderBatch(connections)) {
+            if (!taken.add(c.getConnectionId())) {
+                errors.put(c, "Duplicate connection id " + c.getConnectionId());
+                continue;
+            }
+            try {
+                List<Date> reservedSched = new ArrayList<>();
+                Optional<ReservedBlueprintE> res = topPCE.makeReserved(c.getSpecification().getRequested(),
+                        c.getSpecification().getScheduleSpec(), reservedSched);
+                saveHold(c, res, reservedSched);
+            } catch (PCEException | PSSException ex) {
+                log.error("Batch hold of " + c.getConnectionId() + " failed: " + ex.getMessage());
+                errors.put(c, ex.getMessage());
+            }
+        }
+        return errors;
+    }
+
+    private List<ConnectionE> orderBatch(List<ConnectionE> connections) {
+        List<ConnectionE> ordered = new ArrayList<>(connections);
+        Comparator<ConnectionE> byBandwidth = Comparator.comparing(this::requestedMbps).reversed();
+        switch (resvProperties.getBatchOrder()) {
+            case PRIORITY:
+                ordered.sort(Comparator.comparing(this::priority).thenComparing(byBandwidth));
+                break;
+            case BANDWIDTH:
+                ordered.sort(byBandwidth);
+                break;
+            default:
+                break;
+        }
+        return ordered;
+    }
+
+    // lowest (i.e. most important) priority of the connection's pipes
+    private Integer priority(ConnectionE c) {
+        return c.getSpecification().getRequested().getVlanFlow().getPipes().stream()
+                .map(RequestedVlanPipeE::getPriority)
+                .filter(Objects::nonNull)
+                .min(Integer::compare)
+                .orElse(Integer.MAX_VALUE);
+    }
+
+    // total bandwidth requested by the connection's pipes and junction fixtures, in both directions
+    private Long requestedMbps(ConnectionE c) {
+        RequestedVlanFlowE flow = c.getSpecification().getRequested().getVlanFlow();
+        long mbps = 0L;
+        for (RequestedVlanPipeE pipe : flow.getPipes()) {
+            mbps += zeroIfNull(pipe.getAzMbps()) + zeroIfNull(pipe.getZaMbps());
+        }
+        for (RequestedVlanJunctionE junction : flow.getJunctions()) {
+            for (RequestedVlanFixtureE fixture : junction.getFixtures()) {
+                mbps += zeroIfNull(fixture.getInMbps()) + zeroIfNull(fixture.getEgMbps());
+            }
+        }
+        return mbps;
+    }
+
+    private long zeroIfNull(Integer mbps) {
+        return mbps == null ? 0L : mbps;
+    }
+
+    private void saveHold(ConnectionE c, Optional<ReservedBlueprintE> res, List<Date> reservedSched) {
         // Reserved schedule list will contain [startDate, endDate]
         // Will be empty if the reservation failed
         c.setReservedSchedule(reservedSched);
@@ -136,14 +277,7 @@ public class ResvService {
         if (res.isPresent()) {
             c.setReserved(res.get());
             c.getStates().setResv(ResvState.HELD);
-            c = connRepo.save(c);
-
-            try {
-                String pretty = new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(c);
-                //log.info(pretty);     // commented for output readability
-            } catch (JsonProcessingException e) {
-                e.printStackTrace();
-            }
+            connRepo.save(c);
         } else {
             log.error("Reservation Unsuccessful!");
             c.setReserved(ReservedBlueprintE.builder()
@@ -159,7 +293,6 @@ public class ResvService {
             c.getStates().setResv(ResvState.ABORTING);
             connRepo.save(c);
         }
-
     }
 
     // internal convenience
@@ -251,8 +384,7 @@ public class ResvService {
      */
     public void archiveReservation(ConnectionE c)
     {
-        ModelMapper modelMapper = new ModelMapper();
-        ArchivedBlueprintE archival = modelMapper.map(c.getReserved(), ArchivedBlueprintE.class);
+        ArchivedBlueprintE archival = ConnectionMapper.archive(c.getReserved());
 
         log.debug("Reservation: " + c.getReserved().toString());
         log.debug("Archive: " + archival.toString());
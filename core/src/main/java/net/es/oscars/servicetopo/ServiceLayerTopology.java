@@ -11,12 +11,18 @@ import net.es.oscars.dto.topo.Topology;
 import net.es.oscars.dto.topo.enums.Layer;
 import net.es.oscars.dto.topo.enums.PortLayer;
 import net.es.oscars.dto.topo.enums.VertexType;
+import net.es.oscars.pce.BandwidthAvailabilityTable;
 import net.es.oscars.pce.DijkstraPCE;
+import net.es.oscars.pce.MplsPathCache;
 import net.es.oscars.pce.PruningService;
+import net.es.oscars.pce.ShortestPathSearch;
+import net.es.oscars.pce.TopoGraph;
 import net.es.oscars.resv.ent.RequestedVlanPipeE;
 import net.es.oscars.resv.ent.ReservedVlanE;
 import net.es.oscars.topo.ent.UrnE;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
@@ -26,6 +32,7 @@ import java.util.stream.Collectors;
 @Data
 @Builder
 @Component
+@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
 @AllArgsConstructor
 @NoArgsConstructor
 public class ServiceLayerTopology
@@ -36,6 +43,9 @@ public class ServiceLayerTopology
     @Autowired
     private DijkstraPCE dijkstraPCE;
 
+    @Autowired
+    private MplsPathCache mplsPathCache;
+
     private Set<TopoVertex> serviceLayerDevices;    // ETHERNET and VIRTUAL devices
     private Set<TopoVertex> serviceLayerPorts;      // ETHERNET and VIRTUAL ports
     private Set<TopoEdge> serviceLayerLinks;        // ETHERNET and LOGICAL edges
@@ -300,7 +310,7 @@ public class ServiceLayerTopology
      * @param bwAvailMap - Map of available bandwidth for "Ingress" and "Egress" direction for each URN.
      * @param rsvVlanList - List of currently reserved VLAN elements (during request schedule)
      */
-    public void calculateLogicalLinkWeights(RequestedVlanPipeE requestedVlanPipe, List<UrnE> urnList, Map<String, Map<String, Integer>> bwAvailMap, List<ReservedVlanE> rsvVlanList)
+    public void calculateLogicalLinkWeights(RequestedVlanPipeE requestedVlanPipe, List<UrnE> urnList, BandwidthAvailabilityTable bwAvailMap, List<ReservedVlanE> rsvVlanList)
     {
         this.calculateLogicalLinkWeightsAsymmetric(requestedVlanPipe, urnList, bwAvailMap, rsvVlanList);
     }
@@ -320,140 +330,66 @@ public class ServiceLayerTopology
      * @param bwAvailMap - Map of available bandwidth for "Ingress" and "Egress" direction for each URN.
      * @param rsvVlanList - List of currently reserved VLAN elements (during request schedule)
      */
-    private void calculateLogicalLinkWeightsAsymmetric(RequestedVlanPipeE requestedVlanPipe, List<UrnE> urnList, Map<String, Map<String, Integer>> bwAvailMap, List<ReservedVlanE> rsvVlanList)
+    private void calculateLogicalLinkWeightsAsymmetric(RequestedVlanPipeE requestedVlanPipe, List<UrnE> urnList, BandwidthAvailabilityTable bwAvailMap, List<ReservedVlanE> rsvVlanList)
     {
         Set<LogicalEdge> logicalLinksToRemoveFromServiceLayer = new HashSet<>();
 
-        // Step 1: Construct MPLS-Layer topology
+        // Step 1: Construct MPLS-Layer topology, and identify the INTERNAL adaptation edges between each logical link endpoint and the MPLS-layer
         Topology mplsLayerTopo = new Topology();
         mplsLayerTopo.getVertices().addAll(mplsLayerDevices);
         mplsLayerTopo.getVertices().addAll(mplsLayerPorts);
         mplsLayerTopo.getEdges().addAll(mplsLayerLinks);
 
-        for(LogicalEdge oneLogicalLink : logicalLinks)
-        {
-            TopoVertex srcEthPort = oneLogicalLink.getA();      //Ethernet-source of logical link
-            TopoVertex dstEthPort = oneLogicalLink.getZ();      //Ethernet-dest of logical link
-
-            boolean srcIsOnSwitch = false;
-            boolean dstIsOnSwitch = false;
-            boolean srcIsVirtual = srcEthPort.getVertexType().equals(VertexType.VIRTUAL);
-            boolean dstIsVirtual = dstEthPort.getVertexType().equals(VertexType.VIRTUAL);
-
-            TopoEdge physEdgeAtoRouter = null;      // Edge srcEthPort --> Router
-            TopoEdge physEdgeZtoRouter = null;      // Edge dstEthPort --> Router
-            TopoEdge physEdgeRoutertoA = null;      // Edge Router --> srcEthPort
-            TopoEdge physEdgeRoutertoZ = null;      // Edge Router --> dstEthPort
-
-            TopoEdge physEdgeAtoMplsPort = null;      // Edge srcEthPort --> MPLS-Layer port
-            TopoEdge physEdgeZtoMplsPort = null;      // Edge dstEthPort --> MPLS-Layer port
-            TopoEdge physEdgeMplsPorttoA = null;      // Edge MPLS-Layer port --> srcEthPort
-            TopoEdge physEdgeMplsPorttoZ = null;      // Edge MPLS-Layer port --> dstEthPort
-
-            Set<TopoEdge> adaptationEdgeSet = new HashSet<>();
-
-            List<TopoEdge> pathAZ;
-            List<TopoEdge> pathZA;
+        serviceLayerLinks.stream()
+                .filter(l -> l.getA().getVertexType().equals(VertexType.VIRTUAL) || l.getZ().getVertexType().equals(VertexType.VIRTUAL))
+                .forEach(l -> mplsLayerTopo.getEdges().add(l));
 
-            long weightMetricAZ = 0;
-            long weightMetricZA = 0;
-
-            for(TopoEdge oneSLLink : serviceLayerLinks)
-            {
-                TopoVertex slA = oneSLLink.getA();
-                TopoVertex slZ = oneSLLink.getZ();
-
-                // Step 2: Identify INTERNAL adaptation edges between ETHERNET ports and MPLS devices
-                if(slA.equals(srcEthPort) && slZ.getVertexType().equals(VertexType.ROUTER))
-                    physEdgeAtoRouter = oneSLLink;
-                else if(slZ.equals(srcEthPort) && slA.getVertexType().equals(VertexType.ROUTER))
-                    physEdgeRoutertoA = oneSLLink;
-
-                if(slZ.equals(dstEthPort) && slA.getVertexType().equals(VertexType.ROUTER))
-                    physEdgeRoutertoZ = oneSLLink;
-                else if(slA.equals(dstEthPort) && slZ.getVertexType().equals(VertexType.ROUTER))
-                    physEdgeZtoRouter = oneSLLink;
+        Set<TopoEdge> baseEdges = new HashSet<>(mplsLayerTopo.getEdges());
 
-                if((slA.equals(srcEthPort) && slZ.getVertexType().equals(VertexType.SWITCH)) || (slZ.equals(srcEthPort) && slA.getVertexType().equals(VertexType.SWITCH)))
-                {
-                    srcIsOnSwitch = true;
-                    physEdgeAtoMplsPort = serviceLayerLinks.stream().filter(l -> l.getA().equals(srcEthPort) && l.getZ().getVertexType().equals(VertexType.PORT)).findFirst().get();
-                    physEdgeMplsPorttoA = serviceLayerLinks.stream().filter(l -> l.getZ().equals(srcEthPort) && l.getA().getVertexType().equals(VertexType.PORT)).findFirst().get();
-                }
-
-                if((slA.equals(dstEthPort) && slZ.getVertexType().equals(VertexType.SWITCH)) || (slZ.equals(dstEthPort) && slA.getVertexType().equals(VertexType.SWITCH)))
-                {
-                    dstIsOnSwitch = true;
-                    physEdgeZtoMplsPort = serviceLayerLinks.stream().filter(l -> l.getA().equals(dstEthPort) && l.getZ().getVertexType().equals(VertexType.PORT)).findFirst().get();
-                    physEdgeMplsPorttoZ = serviceLayerLinks.stream().filter(l -> l.getZ().equals(dstEthPort) && l.getA().getVertexType().equals(VertexType.PORT)).findFirst().get();
-                }
-            }
-
-            if(physEdgeAtoRouter == null || physEdgeZtoRouter == null || physEdgeRoutertoA == null || physEdgeRoutertoZ == null)
-            {
-                if(!srcIsOnSwitch && !dstIsOnSwitch)
-                {
-                    if(!srcIsVirtual && !dstIsVirtual)
-                    {
-                        log.error("Service-layer topology has incorrectly identified adaptation edges");
-                        assert false;
-                    }
-                }
-            }
-
-
-            // Step 3: Add ETHERNET src/dst ports and adaptation edges to MPLS-Layer topology
-            if(!srcIsVirtual)
-            {
-                if(!srcIsOnSwitch)
-                {
-                    adaptationEdgeSet.add(physEdgeAtoRouter);
-                    adaptationEdgeSet.add(physEdgeRoutertoA);
-                }
-                else
-                {
-                    adaptationEdgeSet.add(physEdgeAtoMplsPort);
-                    adaptationEdgeSet.add(physEdgeMplsPorttoA);
-                }
-            }
-
-            if(!dstIsVirtual)
-            {
-                if(!dstIsOnSwitch)
-                {
-                    adaptationEdgeSet.add(physEdgeZtoRouter);
-                    adaptationEdgeSet.add(physEdgeRoutertoZ);
-                }
-                else
-                {
-                    adaptationEdgeSet.add(physEdgeZtoMplsPort);
-                    adaptationEdgeSet.add(physEdgeMplsPorttoZ);
-                }
-            }
+        Map<TopoVertex, Set<TopoEdge>> adaptationEdges = new HashMap<>();
+        for(LogicalEdge oneLogicalLink : logicalLinks)
+        {
+            adaptationEdges.computeIfAbsent(oneLogicalLink.getA(), this::identifyAdaptationEdges);
+            adaptationEdges.computeIfAbsent(oneLogicalLink.getZ(), this::identifyAdaptationEdges);
+        }
 
-            serviceLayerLinks.stream()
-                    .filter(l -> l.getA().getVertexType().equals(VertexType.VIRTUAL) || l.getZ().getVertexType().equals(VertexType.VIRTUAL))
-                   .forEach(l -> adaptationEdgeSet.add(l));
+        // Step 2: Add ETHERNET ports and adaptation edges of all logical links, and prune the result once per direction.
+        // Pruning is decided edge by edge, so the pruned topology of a single logical link is this result restricted to the link's own edges.
+        adaptationEdges.forEach((port, edges) -> {
+            mplsLayerTopo.getVertices().add(port);
+            mplsLayerTopo.getEdges().addAll(edges);
+        });
 
-            mplsLayerTopo.getVertices().add(srcEthPort);
-            mplsLayerTopo.getVertices().add(dstEthPort);
-            mplsLayerTopo.getEdges().addAll(adaptationEdgeSet);
+        Map<TopoEdge, TopoEdge> localEdges = new HashMap<>();
+        mplsLayerTopo.getEdges().forEach(e -> localEdges.put(e, e));
+        adaptationEdges.replaceAll((port, edges) -> edges.stream().map(localEdges::get).collect(Collectors.toSet()));
 
+        Set<TopoEdge> availableAZ = pruningService.pruneWithPipeAZ(mplsLayerTopo, requestedVlanPipe, urnList, bwAvailMap, rsvVlanList).getEdges();
+        Set<TopoEdge> availableZA = pruningService.pruneWithPipeZA(mplsLayerTopo, requestedVlanPipe, urnList, bwAvailMap, rsvVlanList).getEdges();
 
-            // Step 4: Prune updated MPLS-Layer topology before pathfinding. Operation must be done in two directions since requested bandwidth may be asymmetric from A->Z and Z->A
-            Topology prunedMPLSTopoAZ = pruningService.pruneWithPipeAZ(mplsLayerTopo, requestedVlanPipe, urnList, bwAvailMap, rsvVlanList);
-            Topology prunedMPLSTopoZA = pruningService.pruneWithPipeZA(mplsLayerTopo, requestedVlanPipe, urnList, bwAvailMap, rsvVlanList);
+        TopoGraph graph = TopoGraph.of(mplsLayerTopo);
+        BitSet baseMask = graph.mask(baseEdges);
+        BitSet maskAZ = graph.mask(availableAZ);
+        BitSet maskZA = graph.mask(availableZA);
+        ShortestPathSearch search = graph.newSearch();
 
+        // MPLS-layer paths are shared between requests routed over the same edges; see MplsPathCache
+        MplsPathCache.Base cacheBase = mplsPathCache == null ? null : mplsPathCache.base(baseEdges);
 
-            // Step 5: Compute MPLS-Layer routes beginning and ending at ETHERNET src/dst ports to construct physical paths corresponding to this logical link (one for each direction because of bandwidth asymmetry)
-            pathAZ = dijkstraPCE.computeShortestPathEdges(prunedMPLSTopoAZ, srcEthPort, dstEthPort);
-            pathZA = dijkstraPCE.computeShortestPathEdges(prunedMPLSTopoZA, srcEthPort, dstEthPort);
+        for(LogicalEdge oneLogicalLink : logicalLinks)
+        {
+            TopoVertex srcEthPort = oneLogicalLink.getA();      //Ethernet-source of logical link
+            TopoVertex dstEthPort = oneLogicalLink.getZ();      //Ethernet-dest of logical link
 
-            // Step 6: Delete ETHERNET src/dst ports and adaptation edges from MPLS-Layer topology so they can't be used in pathfinding for unrelated logical links
-            mplsLayerTopo.getVertices().remove(srcEthPort);
-            mplsLayerTopo.getVertices().remove(dstEthPort);
-            mplsLayerTopo.getEdges().removeAll(adaptationEdgeSet);
+            // Step 3: Restrict the MPLS-Layer topology to the ETHERNET src/dst ports and adaptation edges of this logical link
+            Set<TopoEdge> linkAdaptationEdges = new HashSet<>(adaptationEdges.get(srcEthPort));
+            linkAdaptationEdges.addAll(adaptationEdges.get(dstEthPort));
+            BitSet linkMask = (BitSet) baseMask.clone();
+            linkMask.or(graph.mask(linkAdaptationEdges));
 
+            // Step 4/5: Compute MPLS-Layer routes beginning and ending at ETHERNET src/dst ports to construct physical paths corresponding to this logical link (one for each direction because of bandwidth asymmetry)
+            List<TopoEdge> pathAZ = findMplsPath(graph, search, linkMask, maskAZ, availableAZ, srcEthPort, dstEthPort, requestedVlanPipe.getAzMbps(), linkAdaptationEdges, cacheBase, localEdges);
+            List<TopoEdge> pathZA = findMplsPath(graph, search, linkMask, maskZA, availableZA, srcEthPort, dstEthPort, requestedVlanPipe.getZaMbps(), linkAdaptationEdges, cacheBase, localEdges);
 
             if(pathAZ.isEmpty() && pathZA.isEmpty())
             {
@@ -461,8 +397,10 @@ public class ServiceLayerTopology
                 continue;
             }
 
+            // Step 6: Calculate total cost-metric for logical link (in both directions).
+            long weightMetricAZ = 0;
+            long weightMetricZA = 0;
 
-            // Step 7: Calculate total cost-metric for logical link (in both directions).
             for(TopoEdge pathEdge : pathAZ)
                 weightMetricAZ += pathEdge.getMetric();
 
@@ -475,17 +413,104 @@ public class ServiceLayerTopology
             oneLogicalLink.setMetric(weightMetricAZ);   // The calling function expects metric to be set. Pathfinding is done in the forward direction, so we use that value here
 
 
-            // Step 8: Map the physical path-pair to the corresponding logical link
+            // Step 7: Map the physical path-pair to the corresponding logical link
             oneLogicalLink.setCorrespondingAZTopoEdges(pathAZ);
             oneLogicalLink.setCorrespondingZATopoEdges(pathZA);
 
             oneLogicalLink.setCorrespondingTopoEdges(pathAZ);   // Palindromic calling functions expect correspondingTopoEdges to be set. Pathfinding is done in the forward direction, so we use that value here.
         }
 
-        // Step 9: If any logical links cannot be built, remove them from the Service-Layer Topology for this request.
+        // Step 8: If any logical links cannot be built, remove them from the Service-Layer Topology for this request.
         logicalLinks.removeAll(logicalLinksToRemoveFromServiceLayer);
     }
 
+    /**
+     * Identifies the INTERNAL adaptation edges (in both directions) between a logical link endpoint and the MPLS-layer:
+     * to/from its router, or to/from the MPLS-layer port it faces if the endpoint is on a switch. VIRTUAL endpoints have none of their own.
+     * @param ethPort - Logical link endpoint
+     * @return The adaptation edges of this endpoint
+     */
+    private Set<TopoEdge> identifyAdaptationEdges(TopoVertex ethPort)
+    {
+        Set<TopoEdge> adaptationEdgeSet = new HashSet<>();
+        if(ethPort.getVertexType().equals(VertexType.VIRTUAL))
+            return adaptationEdgeSet;
+
+        TopoEdge physEdgeToRouter = null;
+        TopoEdge physEdgeFromRouter = null;
+        boolean isOnSwitch = false;
+
+        for(TopoEdge oneSLLink : serviceLayerLinks)
+        {
+            TopoVertex slA = oneSLLink.getA();
+            TopoVertex slZ = oneSLLink.getZ();
+
+            if(slA.equals(ethPort) && slZ.getVertexType().equals(VertexType.ROUTER))
+                physEdgeToRouter = oneSLLink;
+            else if(slZ.equals(ethPort) && slA.getVertexType().equals(VertexType.ROUTER))
+                physEdgeFromRouter = oneSLLink;
+
+            if((slA.equals(ethPort) && slZ.getVertexType().equals(VertexType.SWITCH)) || (slZ.equals(ethPort) && slA.getVertexType().equals(VertexType.SWITCH)))
+                isOnSwitch = true;
+        }
+
+        if(isOnSwitch)
+        {
+            serviceLayerLinks.stream().filter(l -> l.getA().equals(ethPort) && l.getZ().getVertexType().equals(VertexType.PORT)).findFirst().ifPresent(adaptationEdgeSet::add);
+            serviceLayerLinks.stream().filter(l -> l.getZ().equals(ethPort) && l.getA().getVertexType().equals(VertexType.PORT)).findFirst().ifPresent(adaptationEdgeSet::add);
+            return adaptationEdgeSet;
+        }
+
+        if(physEdgeToRouter == null || physEdgeFromRouter == null)
+        {
+            log.error("Service-layer topology has incorrectly identified adaptation edges");
+            assert false;
+        }
+
+        if(physEdgeToRouter != null)
+            adaptationEdgeSet.add(physEdgeToRouter);
+        if(physEdgeFromRouter != null)
+            adaptationEdgeSet.add(physEdgeFromRouter);
+
+        return adaptationEdgeSet;
+    }
+
+    /**
+     * Shortest MPLS-layer path for a logical link in one direction, taken from the MplsPathCache when it still holds a valid one.
+     * @param graph - Graph of the MPLS-layer topology with the adaptation edges of every logical link
+     * @param search - Search state for the graph, reused for every logical link
+     * @param linkMask - Edges of this logical link's topology
+     * @param availableMask - Edges left after pruning for the bandwidth in this direction
+     * @param available - The same edges, as a set
+     * @return Path from srcEthPort to dstEthPort; empty if there is none
+     */
+    private List<TopoEdge> findMplsPath(TopoGraph graph, ShortestPathSearch search, BitSet linkMask, BitSet availableMask, Set<TopoEdge> available,
+                                        TopoVertex srcEthPort, TopoVertex dstEthPort, Integer bandwidth, Set<TopoEdge> linkAdaptationEdges,
+                                        MplsPathCache.Base cacheBase, Map<TopoEdge, TopoEdge> localEdges)
+    {
+        if(cacheBase != null)
+        {
+            List<TopoEdge> cached = mplsPathCache.lookup(cacheBase, srcEthPort.getUrn(), dstEthPort.getUrn(), bandwidth, linkAdaptationEdges, available);
+            if(cached != null)
+                return cached.stream().map(localEdges::get).collect(Collectors.toCollection(ArrayList::new));
+        }
+
+        BitSet mask = (BitSet) linkMask.clone();
+        mask.and(availableMask);
+        List<TopoEdge> path = dijkstraPCE.computeShortestPathEdges(search, mask, srcEthPort, dstEthPort);
+
+        if(cacheBase != null)
+        {
+            BitSet blockedMask = (BitSet) linkMask.clone();
+            blockedMask.andNot(availableMask);
+            List<TopoEdge> blocked = new ArrayList<>(blockedMask.cardinality());
+            for(int e = blockedMask.nextSetBit(0); e >= 0; e = blockedMask.nextSetBit(e + 1))
+                blocked.add(graph.edge(e));
+
+            mplsPathCache.store(cacheBase, srcEthPort.getUrn(), dstEthPort.getUrn(), bandwidth, linkAdaptationEdges, path, blocked);
+        }
+        return new ArrayList<>(path);
+    }
 
     /**
      * Doesn't destroy logical links, but resets cost metrics to 0, and clears the corresponding phyical TopoEdges (MPLS-ERO) lists.
@@ -11,12 +11,15 @@ import net.es.oscars.dto.topo.Topology;
 import net.es.oscars.dto.topo.enums.Layer;
 import net.es.oscars.dto.topo.enums.PortLayer;
 import net.es.oscars.dto.topo.enums.VertexType;
+import net.es.oscars.pce.BandwidthAvailabilityTable;
 import net.es.oscars.pce.BhandariPCE;
 import net.es.oscars.pce.PruningService;
 import net.es.oscars.resv.ent.RequestedVlanPipeE;
 import net.es.oscars.resv.ent.ReservedVlanE;
 import net.es.oscars.topo.ent.UrnE;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
@@ -26,6 +29,7 @@ import java.util.stream.Collectors;
 @Data
 @Builder
 @Component
+@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
 @AllArgsConstructor
 @NoArgsConstructor
 public class SurvivableServiceLayerTopology
@@ -296,7 +300,7 @@ public class SurvivableServiceLayerTopology
      * @param bwAvailMap - A map of available "Ingress" and 'Egress" bandwidth for each URN.
      * @param rsvVlanList - List of currently reserved VLAN elements (during request schedule)
      */
-    public void calculateLogicalLinkWeights(RequestedVlanPipeE requestedVlanPipe, List<UrnE> urnList, Map<String, Map<String, Integer>> bwAvailMap, List<ReservedVlanE> rsvVlanList, int numDisjoint)
+    public void calculateLogicalLinkWeights(RequestedVlanPipeE requestedVlanPipe, List<UrnE> urnList, BandwidthAvailabilityTable bwAvailMap, List<ReservedVlanE> rsvVlanList, int numDisjoint)
     {
         Set<SurvivableLogicalEdge> logicalLinksToRemoveFromServiceLayer = new HashSet<>();
 
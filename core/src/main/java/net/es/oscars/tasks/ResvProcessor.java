@@ -1,109 +1,306 @@
 package net.es.oscars.tasks;
 
 import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.helpers.TimerWheel;
 import net.es.oscars.pce.exc.PCEException;
 import net.es.oscars.pss.PSSException;
 import net.es.oscars.pss.svc.PSSAdapter;
-import net.es.oscars.pss.svc.PssResourceService;
+import net.es.oscars.resv.dao.ConnectionStateRow;
+import net.es.oscars.resv.ent.ConnectionE;
+import net.es.oscars.resv.svc.ConnectionStateIndex;
 import net.es.oscars.resv.svc.ResvService;
 import net.es.oscars.st.prov.ProvState;
 import net.es.oscars.st.resv.ResvState;
 import net.es.oscars.tasks.prop.ProcessingProperties;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
+
+/**
+ * Moves connections through the reservation pipeline as soon as their state changes, instead of polling for them.
+ *
+ * The ConnectionStateIndex reports every committed state change. A connection that is SUBMITTED, COMMITTING or
+ * ABORTING, or whose provisioning state is READY, is queued on the worker pool of that stage; a HELD connection
+ * is put on a timer wheel at its held time plus proc.timeout-held-after and times out when the wheel reaches it.
+ *
+ * A hold that fails with a PCE or PSS error leaves the connection SUBMITTED, which produces no further change. It
+ * is put on a second timer wheel and queued for another hold after proc.hold-retry-after seconds, doubling with
+ * every failure; after proc.hold-retries retries the connection is moved to ABORTING.
+ *
+ * Each stage keeps a connection queued at most once. A worker loads the connection in its own transaction and
+ * only acts if it is still in the state the stage handles, so duplicate and stale events are harmless. Changes
+ * made while the processor was not running are picked up from the ConnectionStateIndex at startup.
+ */
 @Slf4j
 @Component
 public class ResvProcessor {
+    private static final long TICK_MILLIS = 1000L;
+    private static final int WHEEL_SLOTS = 512;
 
     @Autowired
     public ResvProcessor(ResvService resvService,
                          PSSAdapter pssAdapter,
-                         ProcessingProperties processingProperties) {
+                         ProcessingProperties processingProperties,
+                         ConnectionStateIndex stateIndex,
+                         PlatformTransactionManager transactionManager) {
         this.pssAdapter = pssAdapter;
         this.processingProperties = processingProperties;
         this.resvService = resvService;
+        this.stateIndex = stateIndex;
+        this.txTemplate = new TransactionTemplate(transactionManager);
+
+        this.holdStage = new Stage("hold", processingProperties.getHoldThreads(),
+                c -> c.getStates().getResv() == ResvState.SUBMITTED, this::hold);
+        this.commitStage = new Stage("commit", processingProperties.getStageThreads(),
+                c -> c.getStates().getResv() == ResvState.COMMITTING, this::commit);
+        this.abortStage = new Stage("abort", processingProperties.getStageThreads(),
+                c -> c.getStates().getResv() == ResvState.ABORTING, this::abort);
+        this.timeoutStage = new Stage("timeout", processingProperties.getStageThreads(),
+                c -> c.getStates().getResv() == ResvState.HELD, this::timeout);
+        this.generateStage = new Stage("generate", processingProperties.getStageThreads(),
+                c -> c.getStates().getProv() == ProvState.READY, this::generate);
+
+        stateIndex.addObserver(this::changed);
     }
 
     private ResvService resvService;
     private ProcessingProperties processingProperties;
     private PSSAdapter pssAdapter;
+    private ConnectionStateIndex stateIndex;
+    private TransactionTemplate txTemplate;
+
+    private final Stage holdStage;
+    private final Stage commitStage;
+    private final Stage abortStage;
+    private final Stage timeoutStage;
+    private final Stage generateStage;
 
+    private final TimerWheel<String> heldTimeouts = new TimerWheel<>(TICK_MILLIS, WHEEL_SLOTS, System.currentTimeMillis());
+    private ScheduledExecutorService ticker;
 
-    private boolean started = false;
+    // failed holds waiting for their next attempt, and the number of failures so far; guarded by holdRetries
+    private final TimerWheel<String> holdRetries = new TimerWheel<>(TICK_MILLIS, WHEEL_SLOTS, System.currentTimeMillis());
+    private final Map<String, Integer> holdFailures = new HashMap<>();
+
+    private volatile boolean started = false;
 
     public void startup() {
-        log.debug("started processing loop");
+        log.debug("starting reservation pipeline");
         this.started = true;
+
+        ticker = Executors.newSingleThreadScheduledExecutor(threadFactory("resv-held-timer"));
+        ticker.scheduleWithFixedDelay(this::expireHeld, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        ticker.scheduleWithFixedDelay(this::retryHolds, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+
+        // pick up whatever changed while nobody was listening; duplicates of events arriving meanwhile are dropped
+        stateIndex.forEach(this::changed);
+        log.info("reservation pipeline started");
     }
 
+    @PreDestroy
+    public void shutdown() {
+        started = false;
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+        Arrays.asList(holdStage, commitStage, abortStage, timeoutStage, generateStage)
+                .forEach(s -> s.executor.shutdownNow());
+    }
 
-    @Scheduled(fixedDelay = 5000)
-    @Transactional
-    public void processingLoop() {
+    /**
+     * Called by the ConnectionStateIndex after a transaction that saved the connection has committed.
+     */
+    private void changed(ConnectionStateRow row) {
         if (!started) {
-            log.info("processing loop not started");
             return;
         }
-        log.info("entering processing loop");
+        String connectionId = row.getConnectionId();
+        ResvState resv = row.getResv();
+        synchronized (heldTimeouts) {
+            if (resv == ResvState.HELD && row.getSubmitted() != null) {
+                heldTimeouts.schedule(connectionId, heldDeadline(row.getSubmitted()));
+            } else {
+                heldTimeouts.cancel(connectionId);
+            }
+        }
+        if (resv != ResvState.SUBMITTED) {
+            forgetHoldFailures(connectionId);
+        }
+        if (resv == ResvState.SUBMITTED) {
+            holdStage.enqueue(connectionId);
+        } else if (resv == ResvState.COMMITTING) {
+            commitStage.enqueue(connectionId);
+        } else if (resv == ResvState.ABORTING) {
+            abortStage.enqueue(connectionId);
+        }
+        if (row.getProv() == ProvState.READY) {
+            generateStage.enqueue(connectionId);
+        }
+    }
 
-        // process aborting reservations
-        resvService.ofResvState(ResvState.ABORTING).forEach(c -> {
-                    log.info("detected connection being aborted" + c.getConnectionId());
-                    resvService.abort(c);
-                }
-        );
+    private long heldDeadline(Date submitted) {
+        return submitted.getTime() + processingProperties.getTimeoutHeldAfter() * 1000L;
+    }
 
-        // time out expired HELD reservations
-        Integer timeoutMs = processingProperties.getTimeoutHeldAfter() * 1000;
-        resvService.ofHeldTimeout(timeoutMs).forEach(c -> {
-                    log.info("reservation " + c.getConnectionId() + " timing out from HELD after " + timeoutMs + "ms");
-                    resvService.timeout(c);
-                }
-        );
+    private void expireHeld() {
+        List<String> expired;
+        synchronized (heldTimeouts) {
+            expired = heldTimeouts.advance(System.currentTimeMillis());
+        }
+        expired.forEach(timeoutStage::enqueue);
+    }
 
-        // process committing reservations
-        resvService.ofResvState(ResvState.COMMITTING).forEach(c -> {
-                    log.info("detected connection being committed" + c.getConnectionId());
-                    resvService.commit(c);
-                }
-        );
-
-        // generate config for reservations
-        resvService.ofProvState(ProvState.READY).forEach(c -> {
-            // TODO: retries or something?
-                    log.info("ready to generate config for " + c.getConnectionId());
-                    try {
-                        pssAdapter.generateConfig(c);
-                        resvService.generated(c);
-                    } catch (PSSException ex) {
-                        log.error("PSS problem", ex);
-                        resvService.provFailed(c);
-                    }
+    private void retryHolds() {
+        List<String> due;
+        synchronized (holdRetries) {
+            due = holdRetries.advance(System.currentTimeMillis());
+        }
+        due.forEach(holdStage::enqueue);
+    }
 
-                }
-        );
+    private void forgetHoldFailures(String connectionId) {
+        synchronized (holdRetries) {
+            holdRetries.cancel(connectionId);
+            holdFailures.remove(connectionId);
+        }
+    }
 
+    // stage actions; each runs in the worker's transaction, on a connection known to be in the stage's state
 
-        // process newly submitted reservations
-        resvService.ofResvState(ResvState.SUBMITTED).forEach(c -> {
-                    log.info("detected submitted connection " + c.getConnectionId());
-                    try {
-                        resvService.hold(c);
-                    } catch (PSSException e) {
-                        e.printStackTrace();
-                        log.error("PSS Exception", e);
+    private void hold(ConnectionE c) {
+        log.info("detected submitted connection " + c.getConnectionId());
+        try {
+            resvService.hold(c);
+        } catch (PSSException | PCEException e) {
+            holdFailed(c, e);
+        }
+    }
 
-                    } catch (PCEException e) {
-                        e.printStackTrace();
-                        log.error("PCE Exception", e);
-                    }
-                }
-        );
+    private void holdFailed(ConnectionE c, Exception e) {
+        String connectionId = c.getConnectionId();
+        int failures;
+        synchronized (holdRetries) {
+            failures = holdFailures.merge(connectionId, 1, Integer::sum);
+        }
+        if (failures > processingProperties.getHoldRetries()) {
+            log.error("hold of " + connectionId + " failed " + failures + " times, aborting", e);
+            forgetHoldFailures(connectionId);
+            resvService.abandonHold(c);
+            return;
+        }
+        long delay = processingProperties.getHoldRetryAfter() * 1000L << Math.min(failures - 1, 16);
+        log.error("hold of " + connectionId + " failed, retrying in " + delay / 1000 + "s", e);
+        synchronized (holdRetries) {
+            holdRetries.schedule(connectionId, System.currentTimeMillis() + delay);
+        }
+    }
 
+    private void commit(ConnectionE c) {
+        log.info("detected connection being committed " + c.getConnectionId());
+        resvService.commit(c);
+    }
 
+    private void abort(ConnectionE c) {
+        log.info("detected connection being aborted " + c.getConnectionId());
+        resvService.abort(c);
+    }
+
+    private void timeout(ConnectionE c) {
+        long deadline = heldDeadline(c.getSchedule().getSubmitted());
+        if (deadline > System.currentTimeMillis()) {
+            // held again since the timer was set
+            synchronized (heldTimeouts) {
+                heldTimeouts.schedule(c.getConnectionId(), deadline);
+            }
+            return;
+        }
+        log.info("reservation " + c.getConnectionId() + " timing out from HELD after "
+                + processingProperties.getTimeoutHeldAfter() + "s");
+        resvService.timeout(c);
+    }
+
+    private void generate(ConnectionE c) {
+        // TODO: retries or something?
+        log.info("ready to generate config for " + c.getConnectionId());
+        try {
+            pssAdapter.generateConfig(c);
+            resvService.generated(c);
+        } catch (PSSException ex) {
+            log.error("PSS problem", ex);
+            resvService.provFailed(c);
+        }
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * A worker pool for one state of the pipeline. A connection is queued or being processed at most once at a
+     * time; a change that arrives meanwhile has it processed once more afterwards.
+     */
+    private class Stage {
+        private final String name;
+        private final ExecutorService executor;
+        private final Predicate<ConnectionE> applies;
+        private final Consumer<ConnectionE> action;
+
+        private final Set<String> queued = new HashSet<>();
+        private final Set<String> again = new HashSet<>();
+
+        Stage(String name, Integer threads, Predicate<ConnectionE> applies, Consumer<ConnectionE> action) {
+            this.name = name;
+            this.executor = Executors.newFixedThreadPool(threads, threadFactory("resv-" + name));
+            this.applies = applies;
+            this.action = action;
+        }
+
+        void enqueue(String connectionId) {
+            synchronized (this) {
+                if (!queued.add(connectionId)) {
+                    again.add(connectionId);
+                    return;
+                }
+            }
+            executor.execute(() -> process(connectionId));
+        }
+
+        private void process(String connectionId) {
+            try {
+                txTemplate.execute(status -> {
+                    resvService.findByConnectionId(connectionId)
+                            .filter(applies)
+                            .ifPresent(action);
+                    return null;
+                });
+            } catch (RuntimeException ex) {
+                log.error("reservation pipeline stage " + name + " failed for " + connectionId, ex);
+            } finally {
+                boolean rerun;
+                synchronized (this) {
+                    rerun = again.remove(connectionId);
+                    if (!rerun) {
+                        queued.remove(connectionId);
+                    }
+                }
+                if (rerun) {
+                    executor.execute(() -> process(connectionId));
+                }
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -13,4 +13,16 @@ import org.springframework.context.annotation.Configuration;
 public class ProcessingProperties {
     @NonNull
     private Integer timeoutHeldAfter;
+
+    // worker threads placing SUBMITTED connections; holds run their PCE computations concurrently
+    private Integer holdThreads = 4;
+
+    // worker threads for each of the other stages (commit, abort, HELD timeout, config generation)
+    private Integer stageThreads = 1;
+
+    // a hold that fails with a PCE or PSS error is tried again this many times before the connection is aborted
+    private Integer holdRetries = 5;
+
+    // seconds before the first retry of a failed hold; each further retry waits twice as long as the one before
+    private Integer holdRetryAfter = 30;
 }
@@ -1,9 +1,12 @@
 package net.es.oscars.topo.dao;
 
 import net.es.oscars.topo.ent.UrnAdjcyE;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -11,4 +14,7 @@ public interface UrnAdjcyRepository extends CrudRepository<UrnAdjcyE, Long> {
 
     List<UrnAdjcyE> findAll();
 
+    @Query("select adj from UrnAdjcyE adj where adj.a.urn in :urns or adj.z.urn in :urns")
+    List<UrnAdjcyE> findTouching(@Param("urns") Collection<String> urns);
+
 }
\ No newline at end of file
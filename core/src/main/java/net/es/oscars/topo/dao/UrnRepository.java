@@ -4,6 +4,7 @@ import net.es.oscars.topo.ent.UrnE;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,6 +13,7 @@ public interface UrnRepository extends CrudRepository<UrnE, Long> {
 
     List<UrnE> findAll();
     Optional<UrnE> findByUrn(String urn);
+    List<UrnE> findByUrnIn(Collection<String> urns);
 
 
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package net.es.oscars.topo.ent;
 
 import lombok.*;
 import net.es.oscars.topo.ent.UrnE;
+import net.es.oscars.topo.svc.TopoChangeListener;
 
 import javax.persistence.*;
 
@@ -11,6 +12,7 @@ import javax.persistence.*;
 @AllArgsConstructor
 @Builder
 @Entity
+@EntityListeners(TopoChangeListener.class)
 public class ReservableBandwidthE {
     @Id
     @GeneratedValue
@@ -3,6 +3,7 @@ package net.es.oscars.topo.ent;
 
 import lombok.*;
 import net.es.oscars.dto.resv.ResourceType;
+import net.es.oscars.topo.svc.TopoChangeListener;
 
 import javax.persistence.*;
 import java.util.Set;
@@ -12,6 +13,7 @@ import java.util.Set;
 @AllArgsConstructor
 @Builder
 @Entity
+@EntityListeners(TopoChangeListener.class)
 public class ReservablePssResourceE {
     @Id
     @GeneratedValue
@@ -5,6 +5,7 @@ import lombok.*;
 import net.es.oscars.dto.IntRange;
 import net.es.oscars.topo.ent.IntRangeE;
 import net.es.oscars.topo.ent.UrnE;
+import net.es.oscars.topo.svc.TopoChangeListener;
 
 import javax.persistence.*;
 import java.util.Set;
@@ -14,6 +15,7 @@ import java.util.Set;
 @AllArgsConstructor
 @Builder
 @Entity
+@EntityListeners(TopoChangeListener.class)
 public class ReservableVlanE {
     @Id
     @GeneratedValue
@@ -2,6 +2,7 @@ package net.es.oscars.topo.ent;
 
 import lombok.*;
 import net.es.oscars.dto.topo.enums.Layer;
+import net.es.oscars.topo.svc.TopoChangeListener;
 
 import javax.persistence.*;
 import java.util.HashMap;
@@ -10,6 +11,7 @@ import java.util.Map;
 
 @Data
 @Entity
+@EntityListeners(TopoChangeListener.class)
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
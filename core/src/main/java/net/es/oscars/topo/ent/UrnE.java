@@ -6,6 +6,7 @@ import net.es.oscars.dto.topo.enums.DeviceModel;
 import net.es.oscars.dto.topo.enums.DeviceType;
 import net.es.oscars.dto.topo.enums.IfceType;
 import net.es.oscars.dto.topo.enums.UrnType;
+import net.es.oscars.topo.svc.TopoChangeListener;
 
 import javax.persistence.*;
 import java.util.HashSet;
@@ -13,6 +14,7 @@ import java.util.Set;
 
 @Data
 @Entity
+@EntityListeners(TopoChangeListener.class)
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
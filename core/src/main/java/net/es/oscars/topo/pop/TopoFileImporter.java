@@ -13,6 +13,7 @@ import net.es.oscars.dto.topo.enums.IfceType;
 import net.es.oscars.dto.topo.enums.UrnType;
 import net.es.oscars.topo.prop.TopoProperties;
 import net.es.oscars.topo.serialization.UrnAdjcy;
+import net.es.oscars.topo.svc.TopoSnapshotService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -31,12 +32,15 @@ public class TopoFileImporter {
 
     private TopoProperties topoProperties;
 
+    private TopoSnapshotService snapshotService;
+
     @Autowired
     public TopoFileImporter(UrnRepository urnRepo, UrnAdjcyRepository adjcyRepo,
-                            TopoProperties topoProperties) {
+                            TopoProperties topoProperties, TopoSnapshotService snapshotService) {
         this.urnRepo = urnRepo;
         this.adjcyRepo = adjcyRepo;
         this.topoProperties = topoProperties;
+        this.snapshotService = snapshotService;
     }
 
     @Transactional
@@ -102,6 +106,7 @@ public class TopoFileImporter {
             log.info("Adjacencies DB is not empty; skipping import");
         }
 
+        snapshotService.refresh();
     }
 
 
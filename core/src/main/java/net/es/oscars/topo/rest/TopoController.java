@@ -8,9 +8,9 @@ import net.es.oscars.dto.topo.ReservedBandwidths;
 import net.es.oscars.dto.topo.Topology;
 import net.es.oscars.dto.topo.enums.Layer;
 import net.es.oscars.resv.ent.ReservedBandwidthE;
+import net.es.oscars.resv.svc.ConnectionMapper;
 import net.es.oscars.topo.ent.ReservableBandwidthE;
 import net.es.oscars.topo.svc.TopoService;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
@@ -24,8 +24,6 @@ import java.util.*;
 public class TopoController {
     private TopoService topoService;
 
-    private ModelMapper modelMapper = new ModelMapper();
-
     @Autowired
     public TopoController(TopoService topoService) {
         this.topoService = topoService;
@@ -125,10 +123,7 @@ public class TopoController {
         List<ReservedBandwidth> allResBwDTO = new ArrayList<>();
 
         for (ReservedBandwidthE oneBwE : allResBwE) {
-            ReservedBandwidth oneBwDTO = new ReservedBandwidth();
-            modelMapper.map(oneBwE, oneBwDTO);
-
-            allResBwDTO.add(oneBwDTO);
+            allResBwDTO.add(ConnectionMapper.toDto(oneBwE));
         }
         return ReservedBandwidths.builder().bandwidths(allResBwDTO).build();
     }
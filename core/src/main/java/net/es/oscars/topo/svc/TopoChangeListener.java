@@ -0,0 +1,189 @@
+package net.es.oscars.topo.svc;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import net.es.oscars.topo.ent.ReservableBandwidthE;
+import net.es.oscars.topo.ent.ReservableVlanE;
+import net.es.oscars.topo.ent.UrnAdjcyE;
+import net.es.oscars.topo.ent.UrnE;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import javax.persistence.PrePersist;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JPA entity listener attached to the topology entities (URNs, adjacencies and their reservable resources).
+ * Every write bumps a global change counter; the TopoSnapshotService compares that counter against the one
+ * recorded when the current snapshot was built to decide whether it needs to rebuild.
+ *
+ * The counter is bumped once more when the surrounding transaction completes, so a snapshot built from
+ * uncommitted (and later rolled back) rows does not outlive the transaction that produced them.
+ *
+ * Alongside the counter it keeps the URNs that were written to (an adjacency counts for both of its ends), so that
+ * the TopoSnapshotService can reload just those. A write that cannot be traced back to a URN asks for a full reload.
+ * The URNs written in a transaction are recorded again when it completes, so that they are reloaded once more
+ * after the commit or rollback.
+ *
+ * While a transaction is open, the writes it made are also kept on it (see hasTransactionChanges() and
+ * drainTransaction()), so that the TopoSnapshotService can give it a snapshot that includes its own
+ * uncommitted writes.
+ */
+public class TopoChangeListener {
+    private static final AtomicLong changes = new AtomicLong(0L);
+
+    private static final Set<String> changedUrns = new HashSet<>();
+
+    private static boolean reloadAll = true;
+
+    /**
+     * What was written to since the last drain().
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Changes {
+        private final Set<String> urns;
+
+        private final boolean reloadAll;
+    }
+
+    public static long changeCount() {
+        return changes.get();
+    }
+
+    /**
+     * @return whether the current transaction has written to the topology
+     */
+    public static boolean hasTransactionChanges() {
+        return TransactionSynchronizationManager.isSynchronizationActive()
+                && TransactionSynchronizationManager.hasResource(TopoChangeListener.class);
+    }
+
+    /**
+     * @return the number of writes made by the current transaction so far
+     */
+    public static long transactionWriteCount() {
+        TxChanges txChanges = (TxChanges) TransactionSynchronizationManager.getResource(TopoChangeListener.class);
+        return txChanges == null ? 0L : txChanges.writes;
+    }
+
+    /**
+     * @return what the current transaction has written to since the last call, forgetting it
+     */
+    public static Changes drainTransaction() {
+        TxChanges txChanges = (TxChanges) TransactionSynchronizationManager.getResource(TopoChangeListener.class);
+        if (txChanges == null) {
+            return new Changes(new HashSet<>(), false);
+        }
+        Changes drained = new Changes(new HashSet<>(txChanges.undrained), txChanges.undrainedReloadAll);
+        txChanges.undrained.clear();
+        txChanges.undrainedReloadAll = false;
+        return drained;
+    }
+
+    /**
+     * @return the changes recorded so far, forgetting them
+     */
+    public static synchronized Changes drain() {
+        Changes drained = new Changes(new HashSet<>(changedUrns), reloadAll);
+        changedUrns.clear();
+        reloadAll = false;
+        return drained;
+    }
+
+    /**
+     * Something changed that calls for reloading the whole topology.
+     */
+    public static void changed() {
+        changed(null);
+    }
+
+    private static void changed(Collection<String> urns) {
+        record(urns);
+        changes.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TxChanges txChanges = (TxChanges) TransactionSynchronizationManager.getResource(TopoChangeListener.class);
+            if (txChanges == null) {
+                TxChanges registered = new TxChanges();
+                txChanges = registered;
+                TransactionSynchronizationManager.bindResource(TopoChangeListener.class, registered);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(TopoChangeListener.class);
+                        record(registered.reloadAll ? null : registered.urns);
+                        changes.incrementAndGet();
+                    }
+                });
+            }
+            txChanges.writes++;
+            if (urns == null) {
+                txChanges.reloadAll = true;
+                txChanges.undrainedReloadAll = true;
+            } else {
+                txChanges.urns.addAll(urns);
+                txChanges.undrained.addAll(urns);
+            }
+        }
+    }
+
+    private static synchronized void record(Collection<String> urns) {
+        if (urns == null) {
+            reloadAll = true;
+            changedUrns.clear();
+        } else if (!reloadAll) {
+            changedUrns.addAll(urns);
+        }
+    }
+
+    private static class TxChanges {
+        private final Set<String> urns = new HashSet<>();
+
+        private boolean reloadAll = false;
+
+        // what was written since the last drainTransaction()
+        private final Set<String> undrained = new HashSet<>();
+
+        private boolean undrainedReloadAll = false;
+
+        private long writes = 0L;
+    }
+
+    @PrePersist
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        changed(urnsOf(entity));
+    }
+
+    // null if the entity can't be traced back to the URNs it belongs to
+    private static Collection<String> urnsOf(Object entity) {
+        if (entity instanceof UrnE) {
+            return urnsOf((UrnE) entity);
+        } else if (entity instanceof UrnAdjcyE) {
+            Collection<String> a = urnsOf(((UrnAdjcyE) entity).getA());
+            Collection<String> z = urnsOf(((UrnAdjcyE) entity).getZ());
+            if (a == null || z == null) {
+                return null;
+            }
+            return Arrays.asList(a.iterator().next(), z.iterator().next());
+        } else if (entity instanceof ReservableVlanE) {
+            return urnsOf(((ReservableVlanE) entity).getUrn());
+        } else if (entity instanceof ReservableBandwidthE) {
+            return urnsOf(((ReservableBandwidthE) entity).getUrn());
+        }
+        return null;
+    }
+
+    private static Collection<String> urnsOf(UrnE urn) {
+        if (urn == null || urn.getUrn() == null) {
+            return null;
+        }
+        return Collections.singletonList(urn.getUrn());
+    }
+}
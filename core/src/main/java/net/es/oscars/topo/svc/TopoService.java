@@ -1,11 +1,7 @@
 package net.es.oscars.topo.svc;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import net.es.oscars.dto.topo.DevicePortMap;
-import net.es.oscars.dto.topo.TopoEdge;
-import net.es.oscars.dto.topo.TopoVertex;
 import net.es.oscars.dto.topo.Topology;
 import net.es.oscars.dto.topo.enums.*;
 import net.es.oscars.resv.dao.ReservedBandwidthRepository;
@@ -39,6 +35,8 @@ public class TopoService {
 
     private ReservedBandwidthRepository bwResRepo;
 
+    private TopoSnapshotService snapshotService;
+
     public UrnE getUrn(String urn) throws NoSuchElementException {
         return urnRepo.findByUrn(urn).orElseThrow(NoSuchElementException::new);
     }
@@ -46,110 +44,27 @@ public class TopoService {
 
     @Autowired
     public TopoService(UrnAdjcyRepository adjcyRepo, UrnRepository urnRepo,
-                       ReservableVlanRepository vlanRepo, ReservableBandwidthRepository bwRepo, ReservedBandwidthRepository bwResRepo) {
+                       ReservableVlanRepository vlanRepo, ReservableBandwidthRepository bwRepo, ReservedBandwidthRepository bwResRepo,
+                       TopoSnapshotService snapshotService) {
         this.adjcyRepo = adjcyRepo;
         this.urnRepo = urnRepo;
         this.vlanRepo = vlanRepo;
         this.bwRepo = bwRepo;
         this.bwResRepo = bwResRepo;
+        this.snapshotService = snapshotService;
     }
 
     public Topology layer(Layer layer) throws NoSuchElementException {
-        Topology topo = new Topology();
-        topo.setLayer(layer);
-        List<UrnE> urns = urnRepo.findAll();
-        List<UrnAdjcyE> adjcies = adjcyRepo.findAll();
-
-        urns.stream()
-                .forEach(u ->
-                {
-                    Set<Layer> urnCapabilities = u.getCapabilities();
-                    DeviceType urnDeviceType = u.getDeviceType();
-                    IfceType urnInterfaceType = u.getIfceType();
-
-                    VertexType vertType = null;
-                    PortLayer portLayer = PortLayer.NONE;
-
-                    if (urnDeviceType == null && urnInterfaceType != null) {
-                        vertType = VertexType.PORT;
-
-                        if (urnCapabilities.contains(Layer.MPLS)) {
-                            portLayer = PortLayer.MPLS;
-                        } else
-                            portLayer = PortLayer.ETHERNET;
-                    } else {
-                        switch (urnDeviceType) {
-                            case ROUTER:
-                                vertType = VertexType.ROUTER;
-                                break;
-                            case SWITCH:
-                                vertType = VertexType.SWITCH;
-                                break;
-                        }
-                    }
-
-                    if (urnCapabilities.contains(layer) || layer.equals(Layer.INTERNAL)) {
-                        TopoVertex dev = new TopoVertex(u.getUrn(), vertType, portLayer);
-                        topo.getVertices().add(dev);
-                    }
-                });
-
-        adjcies.stream()
-                .filter(adj -> adj.getMetrics().containsKey(layer))
-                .forEach(adj -> {
-                    if (adj.getA() == null || adj.getZ() == null) {
-                        log.error("error in adjacency!");
-                        log.error(adj.toString());
-                    } else {
-                        Long metric = adj.getMetrics().get(layer);
-                        Optional<TopoVertex> a = topo.getVertexByUrn(adj.getA().getUrn());
-                        Optional<TopoVertex> z = topo.getVertexByUrn(adj.getZ().getUrn());
-
-                        if (a.isPresent() && z.isPresent()) {
-                            TopoEdge edge = TopoEdge.builder()
-                                    .a(a.get())
-                                    .z(z.get())
-                                    .metric(metric)
-                                    .layer(layer)
-                                    .build();
-                            topo.getEdges().add(edge);
-                        }
-                    }
-                });
-
-        String pretty = null;
-        try {
-            pretty = new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(topo);
-        } catch (JsonProcessingException e) {
-            e.printStackTrace();
-        }
-
-
-        //log.info(pretty);     //commented for output readability
-
-        return topo;
+        return snapshotService.current().layer(layer);
     }
 
     public Topology getMultilayerTopology() {
-        Topology multiLayerTopo = new Topology();
-
-        Topology ethTopo = layer(Layer.ETHERNET);
-        Topology intTopo = layer(Layer.INTERNAL);
-        Topology mplsTopo = layer(Layer.MPLS);
-
-        multiLayerTopo.getVertices().addAll(ethTopo.getVertices());
-        multiLayerTopo.getVertices().addAll(intTopo.getVertices());
-        multiLayerTopo.getVertices().addAll(mplsTopo.getVertices());
-        multiLayerTopo.getEdges().addAll(ethTopo.getEdges());
-        multiLayerTopo.getEdges().addAll(intTopo.getEdges());
-        multiLayerTopo.getEdges().addAll(mplsTopo.getEdges());
-
-        return multiLayerTopo;
+        return snapshotService.current().multilayer();
     }
 
     public Map<String, DeviceModel> deviceModels() {
         Map<String, DeviceModel> modelMap = new HashMap<>();
-        urnRepo.findAll().stream().filter(u -> u.getUrnType().equals(UrnType.DEVICE)).forEach(u -> {
+        snapshotService.current().getUrns().stream().filter(u -> u.getUrnType().equals(UrnType.DEVICE)).forEach(u -> {
             modelMap.put(u.getUrn(), u.getDeviceModel());
         });
 
@@ -181,7 +96,7 @@ public class TopoService {
     public List<String> edges(Layer layer) {
         log.info("finding edges for " + layer);
 
-        return urnRepo.findAll().stream()
+        return snapshotService.current().getUrns().stream()
                 .filter(u -> u.getCapabilities().contains(layer) && u.getUrnType().equals(UrnType.IFCE))
                 .map(UrnE::getUrn)
                 .collect(Collectors.toList());
@@ -190,12 +105,11 @@ public class TopoService {
 
     public List<String> edgesWithCapability(String device, Layer layer) {
         log.info("finding edges with capability " + layer + " for device " + device);
-        List<UrnAdjcyE> adjcies = adjcyRepo.findAll();
+        List<UrnAdjcyE> adjcies = snapshotService.current().adjciesFrom(device);
 
         return adjcies.stream()
                 .filter(adj ->
                         adj.getMetrics().containsKey(Layer.INTERNAL)
-                                && adj.getA().getUrn().equals(device)
                                 && adj.getZ().getCapabilities().contains(layer))
                 .map(adj -> adj.getZ().getUrn())
                 .collect(Collectors.toList());
@@ -205,7 +119,7 @@ public class TopoService {
     public List<String> devices() {
         log.info("retrieving all devices");
 
-        return urnRepo.findAll().stream()
+        return snapshotService.current().getUrns().stream()
                 .filter(u -> u.getUrnType().equals(UrnType.DEVICE))
                 .map(UrnE::getUrn)
                 .collect(Collectors.toList());
@@ -220,62 +134,18 @@ public class TopoService {
     }
 
     public PortLayer lookupPortLayer(String portURN) {
-        Optional<UrnE> thePortOpt = urnRepo.findAll().stream()
-                .filter(p -> p.getUrn().equals(portURN))
-                .findFirst();
-
-        if (thePortOpt.isPresent()) {
-            UrnE thePort = thePortOpt.get();
-
-            if (thePort.getUrnType().equals(UrnType.DEVICE))
-                return PortLayer.NONE;
-            else if (thePort.getCapabilities().contains(Layer.MPLS))
-                return PortLayer.MPLS;
-            else
-                return PortLayer.ETHERNET;
-        }
-
-        return null;
+        return snapshotService.current().portLayer(portURN);
     }
 
     public DevicePortMap buildDeviceToPortMap() {
-        Topology topo = getMultilayerTopology();
-        Map<String, Set<String>> deviceToPortMap = new HashMap<>();
-        Map<TopoVertex, Boolean> checkedMap = topo.getVertices().stream().collect(Collectors.toMap(v -> v, v -> false));
-        for (TopoEdge edge : topo.getEdges()) {
-            TopoVertex a = edge.getA();
-            TopoVertex z = edge.getZ();
-            // If either a or z is a device
-            if (!a.getVertexType().equals(VertexType.PORT) || !z.getVertexType().equals(VertexType.PORT)) {
-                // and if either a or z has not been checked
-                if (!checkedMap.get(a) || !checkedMap.get(z)) {
-                    // Add A (if it is a device) to the map if it has not been already
-                    if (!a.getVertexType().equals(VertexType.PORT)) {
-                        deviceToPortMap.putIfAbsent(a.getUrn(), new HashSet<>());
-                        // If the other node (port) has not been checked, add it to the device's set of ports
-                        if (!checkedMap.get(z) && z.getVertexType().equals(VertexType.PORT)) {
-                            deviceToPortMap.get(a.getUrn()).add(z.getUrn());
-                        }
-                    }
-                    // Add Z (if it is a device) to the map if it has not been already
-                    if (!z.getVertexType().equals(VertexType.PORT)) {
-                        deviceToPortMap.putIfAbsent(z.getUrn(), new HashSet<>());
-                        // If the other node (port) has not been checked, add it to the device's set of ports
-                        if (!checkedMap.get(a) && a.getVertexType().equals(VertexType.PORT)) {
-                            deviceToPortMap.get(z.getUrn()).add(a.getUrn());
-                        }
-                    }
-                    // Mark both as checked
-                    checkedMap.put(a, true);
-                    checkedMap.put(z, true);
-                }
-            }
-        }
-        return DevicePortMap.builder().map(deviceToPortMap).build();
-
+        return DevicePortMap.builder().map(snapshotService.current().getDeviceToPortMap()).build();
     }
 
     public Map<String, String> buildPortToDeviceMap(Map<String, Set<String>> deviceToPortMap) {
+        TopoSnapshot snapshot = snapshotService.current();
+        if (deviceToPortMap == snapshot.getDeviceToPortMap()) {
+            return snapshot.getPortToDeviceMap();
+        }
         Map<String, String> portToDeviceMap = new HashMap<>();
         for (String device : deviceToPortMap.keySet()) {
             deviceToPortMap.get(device).forEach(port -> portToDeviceMap.put(port, device));
@@ -288,58 +158,13 @@ public class TopoService {
     }
 
     public boolean determineIfRouterHasEthernetPorts(String deviceURN) {
-        List<UrnE> deviceList = urnRepo.findAll().stream().filter(u -> u.getUrn().equals(deviceURN)).collect(Collectors.toList());
-
-        if (deviceList.isEmpty())
-            return false;
-
-        assert (deviceList.size() == 1);
-        assert (deviceList.get(0).getDeviceType().equals(DeviceType.ROUTER));
-
-        Map<String, Set<String>> dToPMap = this.buildDeviceToPortMap().getMap();
-        Set<String> portsOnDevice = dToPMap.get(deviceURN);
-
-        for (String onePort : portsOnDevice) {
-            Optional<UrnE> portUrnOpt = urnRepo.findByUrn(onePort);
-            assert (portUrnOpt.isPresent());
-
-            UrnE portURN = portUrnOpt.get();
-
-            if (!portURN.getCapabilities().contains(Layer.MPLS))
-                return true;
-        }
-
-        return false;
+        return snapshotService.current().hasEthernetPorts(deviceURN);
     }
 
+    /**
+     * @return the ports that are not on any ETHERNET or MPLS adjacency; shared, must not be modified
+     */
     public Set<String> identifyEdgePortURNs() {
-        Topology fullTopo = getMultilayerTopology();
-        Set<String> edgePortURNs = new HashSet<>();
-
-        Set<TopoVertex> allPorts = fullTopo.getVertices().stream()
-                .filter(v -> v.getVertexType().equals(VertexType.PORT))
-                .collect(Collectors.toSet());
-
-        Set<TopoEdge> allExternalLinks = fullTopo.getEdges().stream()
-                .filter(l -> !l.getLayer().equals(Layer.INTERNAL))
-                .collect(Collectors.toSet());
-
-        for (TopoVertex onePort : allPorts) {
-            String portURN = onePort.getUrn();
-            boolean portNotOnAnyLink = true;
-
-            for (TopoEdge oneExtAdjcy : allExternalLinks) {
-                if (oneExtAdjcy.getA().equals(onePort) || oneExtAdjcy.getZ().equals(onePort))    // The port doesn't exist on an external (ETHERNET/MPLS) edge
-                {
-                    portNotOnAnyLink = false;
-                    break;
-                }
-            }
-
-            if (portNotOnAnyLink)
-                edgePortURNs.add(portURN);
-        }
-
-        return edgePortURNs;
+        return snapshotService.current().getEdgePorts();
     }
 }
@@ -0,0 +1,336 @@
+package net.es.oscars.topo.svc;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.dto.topo.TopoEdge;
+import net.es.oscars.dto.topo.TopoVertex;
+import net.es.oscars.dto.topo.Topology;
+import net.es.oscars.dto.topo.enums.*;
+import net.es.oscars.helpers.VlanBitmap;
+import net.es.oscars.topo.ent.IntRangeE;
+import net.es.oscars.topo.ent.UrnAdjcyE;
+import net.es.oscars.topo.ent.UrnE;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable, versioned view of the topology held in the URN and adjacency repositories.
+ * Built once by the TopoSnapshotService and shared by every PCE component until the topology changes.
+ *
+ * The TopoVertex / TopoEdge instances handed out by layer() and multilayer() are shared between callers and
+ * must be treated as read-only; the vertex and edge sets themselves are fresh copies and may be pruned freely.
+ */
+@Slf4j
+public class TopoSnapshot {
+    private static final List<Layer> LAYERS = Arrays.asList(Layer.ETHERNET, Layer.INTERNAL, Layer.MPLS);
+
+    @Getter
+    private final long version;
+
+    @Getter
+    private final long changeCount;
+
+    @Getter
+    private final List<UrnE> urns;
+
+    @Getter
+    private final Map<String, UrnE> urnMap;
+
+    @Getter
+    private final List<UrnAdjcyE> adjcies;
+
+    @Getter
+    private final Map<String, Set<String>> deviceToPortMap;
+
+    @Getter
+    private final Map<String, String> portToDeviceMap;
+
+    /**
+     * Ports that are not on any ETHERNET or MPLS adjacency, i.e. where traffic enters or leaves the network.
+     */
+    @Getter
+    private final Set<String> edgePorts;
+
+    private final Set<String> devicesWithEthernetPorts;
+
+    private final Map<String, Integer> ordinals;
+
+    private final String[] urnByOrdinal;
+
+    private final VlanBitmap[] reservableVlans;
+
+    private final Map<String, List<UrnAdjcyE>> adjciesFrom;
+
+    private final Map<Layer, Set<TopoVertex>> layerVertices;
+
+    private final Map<Layer, Set<TopoEdge>> layerEdges;
+
+    private final Set<TopoVertex> allVertices;
+
+    private final Set<TopoEdge> allEdges;
+
+    private final Map<TopoEdge, Integer> edgeOrdinals;
+
+    private final TopoEdge[] edgeByOrdinal;
+
+    private TopoSnapshot(long version, long changeCount, List<UrnE> urns, List<UrnAdjcyE> adjcies) {
+        this.version = version;
+        this.changeCount = changeCount;
+        this.urns = Collections.unmodifiableList(new ArrayList<>(urns));
+        this.adjcies = Collections.unmodifiableList(new ArrayList<>(adjcies));
+
+        Map<String, UrnE> byUrn = new HashMap<>();
+        Map<String, Integer> ordinalMap = new HashMap<>();
+        this.urnByOrdinal = new String[urns.size()];
+        for (UrnE u : urns) {
+            if (byUrn.put(u.getUrn(), u) == null) {
+                ordinalMap.put(u.getUrn(), ordinalMap.size());
+                urnByOrdinal[ordinalMap.get(u.getUrn())] = u.getUrn();
+            }
+        }
+        this.urnMap = Collections.unmodifiableMap(byUrn);
+        this.ordinals = Collections.unmodifiableMap(ordinalMap);
+
+        this.reservableVlans = new VlanBitmap[urnByOrdinal.length];
+        for (int i = 0; i < urnByOrdinal.length; i++) {
+            UrnE u = byUrn.get(urnByOrdinal[i]);
+            if (u.getReservableVlans() != null) {
+                Set<IntRangeE> ranges = u.getReservableVlans().getVlanRanges();
+                reservableVlans[i] = VlanBitmap.fromRanges(ranges == null ? null : ranges.stream()
+                        .map(IntRangeE::toDtoIntRange)
+                        .collect(Collectors.toList()));
+            }
+        }
+
+        Map<String, List<UrnAdjcyE>> from = new HashMap<>();
+        for (UrnAdjcyE adj : adjcies) {
+            if (adj.getA() != null) {
+                from.computeIfAbsent(adj.getA().getUrn(), k -> new ArrayList<>()).add(adj);
+            }
+        }
+        from.replaceAll((k, v) -> Collections.unmodifiableList(v));
+        this.adjciesFrom = Collections.unmodifiableMap(from);
+
+        // one vertex per URN, shared by every layer that URN participates in
+        Map<String, TopoVertex> vertexMap = new HashMap<>();
+        byUrn.values().forEach(u -> vertexMap.put(u.getUrn(), toVertex(u)));
+
+        this.layerVertices = new EnumMap<>(Layer.class);
+        this.layerEdges = new EnumMap<>(Layer.class);
+        this.allVertices = new HashSet<>();
+        this.allEdges = new HashSet<>();
+        for (Layer layer : LAYERS) {
+            Set<TopoVertex> vertices = new HashSet<>();
+            byUrn.values().stream()
+                    .filter(u -> u.getCapabilities().contains(layer) || layer.equals(Layer.INTERNAL))
+                    .forEach(u -> vertices.add(vertexMap.get(u.getUrn())));
+
+            Set<TopoEdge> edges = new HashSet<>();
+            for (UrnAdjcyE adj : adjcies) {
+                if (!adj.getMetrics().containsKey(layer)) {
+                    continue;
+                }
+                if (adj.getA() == null || adj.getZ() == null) {
+                    log.error("error in adjacency!");
+                    log.error(adj.toString());
+                    continue;
+                }
+                TopoVertex a = vertexMap.get(adj.getA().getUrn());
+                TopoVertex z = vertexMap.get(adj.getZ().getUrn());
+                if (a != null && z != null && vertices.contains(a) && vertices.contains(z)) {
+                    edges.add(TopoEdge.builder()
+                            .a(a)
+                            .z(z)
+                            .metric(adj.getMetrics().get(layer))
+                            .layer(layer)
+                            .build());
+                }
+            }
+            layerVertices.put(layer, Collections.unmodifiableSet(vertices));
+            layerEdges.put(layer, Collections.unmodifiableSet(edges));
+            allVertices.addAll(vertices);
+            allEdges.addAll(edges);
+        }
+
+        // every port belongs to the first device it is found attached to
+        Map<String, Set<String>> devToPorts = new HashMap<>();
+        Map<String, String> portToDev = new HashMap<>();
+        for (Layer layer : LAYERS) {
+            for (TopoEdge edge : layerEdges.get(layer)) {
+                TopoVertex a = edge.getA();
+                TopoVertex z = edge.getZ();
+                boolean aIsPort = VertexType.PORT.equals(a.getVertexType());
+                boolean zIsPort = VertexType.PORT.equals(z.getVertexType());
+                if (aIsPort && zIsPort) {
+                    continue;
+                }
+                if (!aIsPort) {
+                    devToPorts.computeIfAbsent(a.getUrn(), k -> new HashSet<>());
+                    if (zIsPort) {
+                        portToDev.putIfAbsent(z.getUrn(), a.getUrn());
+                    }
+                }
+                if (!zIsPort) {
+                    devToPorts.computeIfAbsent(z.getUrn(), k -> new HashSet<>());
+                    if (aIsPort) {
+                        portToDev.putIfAbsent(a.getUrn(), z.getUrn());
+                    }
+                }
+            }
+        }
+        portToDev.forEach((port, device) -> devToPorts.get(device).add(port));
+        devToPorts.replaceAll((k, v) -> Collections.unmodifiableSet(v));
+        this.deviceToPortMap = Collections.unmodifiableMap(devToPorts);
+        this.portToDeviceMap = Collections.unmodifiableMap(portToDev);
+
+        // edges are numbered by instance: an equal edge built elsewhere is not one of ours
+        this.edgeOrdinals = new IdentityHashMap<>();
+        this.edgeByOrdinal = allEdges.toArray(new TopoEdge[allEdges.size()]);
+        for (int i = 0; i < edgeByOrdinal.length; i++) {
+            edgeOrdinals.put(edgeByOrdinal[i], i);
+        }
+
+        Set<TopoVertex> linked = new HashSet<>();
+        for (TopoEdge edge : allEdges) {
+            if (!Layer.INTERNAL.equals(edge.getLayer())) {
+                linked.add(edge.getA());
+                linked.add(edge.getZ());
+            }
+        }
+        Set<String> edges = new HashSet<>();
+        for (TopoVertex v : allVertices) {
+            if (VertexType.PORT.equals(v.getVertexType()) && !linked.contains(v)) {
+                edges.add(v.getUrn());
+            }
+        }
+        this.edgePorts = Collections.unmodifiableSet(edges);
+
+        Set<String> withEthernet = new HashSet<>();
+        devToPorts.forEach((device, ports) -> {
+            if (ports.stream().map(byUrn::get).anyMatch(p -> p != null && !p.getCapabilities().contains(Layer.MPLS))) {
+                withEthernet.add(device);
+            }
+        });
+        this.devicesWithEthernetPorts = Collections.unmodifiableSet(withEthernet);
+    }
+
+    public static TopoSnapshot build(long version, long changeCount, List<UrnE> urns, List<UrnAdjcyE> adjcies) {
+        return new TopoSnapshot(version, changeCount, urns, adjcies);
+    }
+
+    public static TopoSnapshot empty() {
+        return new TopoSnapshot(0L, -1L, new ArrayList<>(), new ArrayList<>());
+    }
+
+    public Optional<UrnE> getUrn(String urn) {
+        return Optional.ofNullable(urnMap.get(urn));
+    }
+
+    /**
+     * @param urn a URN string
+     * @return the dense index of this URN within the snapshot, or -1 if the URN is unknown
+     */
+    public int ordinal(String urn) {
+        Integer idx = ordinals.get(urn);
+        return idx == null ? -1 : idx;
+    }
+
+    public String urnAt(int ordinal) {
+        return urnByOrdinal[ordinal];
+    }
+
+    public int size() {
+        return urnByOrdinal.length;
+    }
+
+    /**
+     * @param edge an edge handed out by layer() or multilayer()
+     * @return the dense index of this edge within the snapshot, or -1 if it was not built by this snapshot
+     */
+    public int edgeOrdinal(TopoEdge edge) {
+        Integer idx = edgeOrdinals.get(edge);
+        return idx == null ? -1 : idx;
+    }
+
+    public TopoEdge edgeAt(int ordinal) {
+        return edgeByOrdinal[ordinal];
+    }
+
+    /**
+     * @param urn a URN string
+     * @return the reservable VLAN IDs of this URN, or null if it has no reservable VLANs.
+     * The bitmap is shared and must not be modified; copy() it first.
+     */
+    public VlanBitmap reservableVlans(String urn) {
+        int idx = ordinal(urn);
+        return idx < 0 ? null : reservableVlans[idx];
+    }
+
+    public List<UrnAdjcyE> adjciesFrom(String urn) {
+        return adjciesFrom.getOrDefault(urn, Collections.emptyList());
+    }
+
+    public Topology layer(Layer layer) {
+        Topology topo = new Topology();
+        topo.setLayer(layer);
+        topo.setVertices(new HashSet<>(layerVertices.get(layer)));
+        topo.setEdges(new HashSet<>(layerEdges.get(layer)));
+        return topo;
+    }
+
+    public Topology multilayer() {
+        Topology topo = new Topology();
+        topo.setVertices(new HashSet<>(allVertices));
+        topo.setEdges(new HashSet<>(allEdges));
+        return topo;
+    }
+
+    /**
+     * @param device a device URN
+     * @return true if any port of the device lacks the MPLS capability
+     */
+    public boolean hasEthernetPorts(String device) {
+        return devicesWithEthernetPorts.contains(device);
+    }
+
+    public PortLayer portLayer(String urn) {
+        UrnE u = urnMap.get(urn);
+        if (u == null) {
+            return null;
+        }
+        if (u.getUrnType().equals(UrnType.DEVICE)) {
+            return PortLayer.NONE;
+        } else if (u.getCapabilities().contains(Layer.MPLS)) {
+            return PortLayer.MPLS;
+        }
+        return PortLayer.ETHERNET;
+    }
+
+    private static TopoVertex toVertex(UrnE u) {
+        DeviceType urnDeviceType = u.getDeviceType();
+        IfceType urnInterfaceType = u.getIfceType();
+
+        VertexType vertType = null;
+        PortLayer portLayer = PortLayer.NONE;
+
+        if (urnDeviceType == null && urnInterfaceType != null) {
+            vertType = VertexType.PORT;
+            if (u.getCapabilities().contains(Layer.MPLS)) {
+                portLayer = PortLayer.MPLS;
+            } else {
+                portLayer = PortLayer.ETHERNET;
+            }
+        } else if (urnDeviceType != null) {
+            switch (urnDeviceType) {
+                case ROUTER:
+                    vertType = VertexType.ROUTER;
+                    break;
+                case SWITCH:
+                    vertType = VertexType.SWITCH;
+                    break;
+            }
+        }
+        return new TopoVertex(u.getUrn(), vertType, portLayer);
+    }
+}
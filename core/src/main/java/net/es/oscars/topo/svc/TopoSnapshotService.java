@@ -0,0 +1,222 @@
+package net.es.oscars.topo.svc;
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.topo.dao.UrnAdjcyRepository;
+import net.es.oscars.topo.dao.UrnRepository;
+import net.es.oscars.topo.ent.ReservableVlanE;
+import net.es.oscars.topo.ent.UrnAdjcyE;
+import net.es.oscars.topo.ent.UrnE;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps an in-memory TopoSnapshot of the URN / adjacency tables so that the PCE does not have to
+ * run urnRepo.findAll() and adjcyRepo.findAll() several times per request.
+ *
+ * The snapshot is rebuilt lazily the first time it is requested after a topology entity has been written
+ * (see TopoChangeListener), and eagerly whenever refresh() is called, e.g. after a topology import.
+ *
+ * When only a few URNs were written to, the lazy rebuild reloads just those URNs and the adjacencies touching them,
+ * and takes everything else from the previous snapshot; otherwise it reloads the whole topology.
+ *
+ * The shared snapshot is built in a transaction of its own, so it only ever holds committed, detached entities.
+ * A transaction that has written to the topology itself gets a snapshot of its own instead, built in its own session
+ * so that it includes those writes; that snapshot is bound to the transaction and never shared.
+ */
+@Slf4j
+@Service
+public class TopoSnapshotService {
+    private UrnRepository urnRepo;
+
+    private UrnAdjcyRepository adjcyRepo;
+
+    private TransactionTemplate txTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final AtomicReference<TopoSnapshot> snapshot = new AtomicReference<>(TopoSnapshot.empty());
+
+    private final AtomicLong versions = new AtomicLong(0L);
+
+    @Autowired
+    public TopoSnapshotService(UrnRepository urnRepo, UrnAdjcyRepository adjcyRepo,
+                               PlatformTransactionManager transactionManager) {
+        this.urnRepo = urnRepo;
+        this.adjcyRepo = adjcyRepo;
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.txTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.txTemplate.setReadOnly(true);
+    }
+
+    /**
+     * @return the current snapshot, rebuilding it first if the topology has changed since it was taken
+     */
+    public TopoSnapshot current() {
+        if (TopoChangeListener.hasTransactionChanges()) {
+            return transactionSnapshot(false);
+        }
+        TopoSnapshot snap = snapshot.get();
+        if (snap.getChangeCount() == TopoChangeListener.changeCount()) {
+            return snap;
+        }
+        return rebuildIfStale();
+    }
+
+    /**
+     * Unconditionally reloads the topology and swaps in the new snapshot.
+     *
+     * @return the new snapshot
+     */
+    public TopoSnapshot refresh() {
+        if (TopoChangeListener.hasTransactionChanges()) {
+            // the shared snapshot is rebuilt once this transaction completes
+            return transactionSnapshot(true);
+        }
+        synchronized (this) {
+            long changeCount = TopoChangeListener.changeCount();
+            TopoChangeListener.drain();
+            return swap(txTemplate.execute(status -> load(changeCount)));
+        }
+    }
+
+    private synchronized TopoSnapshot rebuildIfStale() {
+        TopoSnapshot prev = snapshot.get();
+        long changeCount = TopoChangeListener.changeCount();
+        if (prev.getChangeCount() == changeCount) {
+            return prev;
+        }
+        // read the count before draining, so that a write in between is picked up by the next rebuild
+        TopoChangeListener.Changes changes = TopoChangeListener.drain();
+        if (prev.getVersion() == 0 || changes.isReloadAll()
+                || changes.getUrns().size() > Math.max(8, prev.getUrns().size() / 4)) {
+            return swap(txTemplate.execute(status -> load(changeCount)));
+        }
+        return swap(txTemplate.execute(status -> update(prev, changes.getUrns(), changeCount)));
+    }
+
+    /**
+     * The snapshot for a transaction that has written to the topology, built in that transaction's session.
+     *
+     * The session is flushed first, so that pending updates reach the TopoChangeListener before the change count is
+     * read. The snapshot is updated in place only if every write since it was built came from this transaction;
+     * otherwise it is reloaded.
+     */
+    private TopoSnapshot transactionSnapshot(boolean reload) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            entityManager.flush();
+        }
+        TxSnapshot txSnapshot = (TxSnapshot) TransactionSynchronizationManager.getResource(this);
+        if (txSnapshot == null) {
+            txSnapshot = new TxSnapshot();
+            TransactionSynchronizationManager.bindResource(this, txSnapshot);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(TopoSnapshotService.this);
+                }
+            });
+        }
+
+        long changeCount = TopoChangeListener.changeCount();
+        long writes = TopoChangeListener.transactionWriteCount();
+        TopoSnapshot prev = txSnapshot.snapshot;
+        if (!reload && prev != null && prev.getChangeCount() == changeCount) {
+            return prev;
+        }
+        TopoChangeListener.Changes changes = TopoChangeListener.drainTransaction();
+        boolean onlyOwnWrites = prev != null && changeCount - prev.getChangeCount() == writes - txSnapshot.writes;
+        if (reload || !onlyOwnWrites || changes.isReloadAll()
+                || changes.getUrns().size() > Math.max(8, prev.getUrns().size() / 4)) {
+            txSnapshot.snapshot = load(changeCount);
+        } else {
+            txSnapshot.snapshot = update(prev, changes.getUrns(), changeCount);
+        }
+        txSnapshot.writes = writes;
+        return txSnapshot.snapshot;
+    }
+
+    private static class TxSnapshot {
+        private TopoSnapshot snapshot;
+
+        // the number of writes this transaction had made when the snapshot was built
+        private long writes;
+    }
+
+    private TopoSnapshot swap(TopoSnapshot snap) {
+        snapshot.set(snap);
+        log.debug("topology snapshot v" + snap.getVersion() + ": " + snap.getUrns().size() + " urns, "
+                + snap.getAdjcies().size() + " adjacencies");
+        return snap;
+    }
+
+    private TopoSnapshot load(long changeCount) {
+        List<UrnE> urns = urnRepo.findAll();
+        List<UrnAdjcyE> adjcies = adjcyRepo.findAll();
+        urns.forEach(this::initialize);
+        adjcies.forEach(adj -> adj.getMetrics().size());
+
+        return TopoSnapshot.build(versions.incrementAndGet(), changeCount, urns, adjcies);
+    }
+
+    // the previous snapshot, with the changed URNs and every adjacency touching them reloaded
+    private TopoSnapshot update(TopoSnapshot prev, Set<String> changed, long changeCount) {
+        List<UrnE> loadedUrns = changed.isEmpty() ? new ArrayList<>() : urnRepo.findByUrnIn(changed);
+        List<UrnAdjcyE> loadedAdjcies = changed.isEmpty() ? new ArrayList<>() : adjcyRepo.findTouching(changed);
+        loadedUrns.forEach(this::initialize);
+        for (UrnAdjcyE adj : loadedAdjcies) {
+            adj.getMetrics().size();
+            initialize(adj.getA());
+            initialize(adj.getZ());
+        }
+
+        List<UrnE> urns = new ArrayList<>();
+        prev.getUrns().stream()
+                .filter(u -> !changed.contains(u.getUrn()))
+                .forEach(urns::add);
+        urns.addAll(loadedUrns);
+
+        Set<Long> reloaded = new HashSet<>();
+        loadedAdjcies.forEach(adj -> reloaded.add(adj.getId()));
+        List<UrnAdjcyE> adjcies = new ArrayList<>();
+        for (UrnAdjcyE adj : prev.getAdjcies()) {
+            boolean touched = adj.getA() != null && changed.contains(adj.getA().getUrn())
+                    || adj.getZ() != null && changed.contains(adj.getZ().getUrn());
+            if (!touched && !reloaded.contains(adj.getId())) {
+                adjcies.add(adj);
+            }
+        }
+        adjcies.addAll(loadedAdjcies);
+
+        log.debug("reloaded " + loadedUrns.size() + " urns, " + loadedAdjcies.size() + " adjacencies");
+        return TopoSnapshot.build(versions.incrementAndGet(), changeCount, urns, adjcies);
+    }
+
+    // the snapshot outlives the session; initialize everything the PCE reads while we still can
+    private void initialize(UrnE u) {
+        if (u == null) {
+            return;
+        }
+        u.getCapabilities().size();
+        ReservableVlanE vlan = u.getReservableVlans();
+        if (vlan != null && vlan.getVlanRanges() != null) {
+            vlan.getVlanRanges().size();
+        }
+        if (u.getReservablePssResources() != null) {
+            u.getReservablePssResources().stream()
+                    .filter(r -> r.getReservableRanges() != null)
+                    .forEach(r -> r.getReservableRanges().size());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package net.es.oscars.pce;
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.QuickTests;
+import net.es.oscars.topo.svc.TopoSnapshot;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.time.Instant;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+@Category(QuickTests.class)
+public class BandwidthAvailabilityTableTest {
+
+    @Test
+    public void checkpointsUndoTrialReservations() {
+        BandwidthAvailabilityTable table = new BandwidthAvailabilityTable(TopoSnapshot.empty());
+        table.put("alpha:1/1/1", 1000, 800);
+        table.put("beta:1/1/1", 500, 500);
+
+        int beforeAll = table.checkpoint();
+        table.reserve("alpha:1/1/1", 300, 300);
+
+        int beforePipe = table.checkpoint();
+        table.reserve("alpha:1/1/1", 900, 100);
+        table.reserve("beta:1/1/1", 100, 100);
+        assertEquals(0, table.ingress("alpha:1/1/1"));
+        assertEquals(400, table.egress("alpha:1/1/1"));
+
+        table.rollback(beforePipe);
+        assertEquals(700, table.ingress("alpha:1/1/1"));
+        assertEquals(500, table.egress("alpha:1/1/1"));
+        assertEquals(500, table.ingress("beta:1/1/1"));
+
+        table.rollback(beforeAll);
+        assertEquals(1000, table.ingress("alpha:1/1/1"));
+        assertEquals(800, table.egress("alpha:1/1/1"));
+    }
+
+    @Test
+    public void copiesAreIndependent() {
+        BandwidthAvailabilityTable table = new BandwidthAvailabilityTable(TopoSnapshot.empty());
+        table.put("alpha:1/1/1", 1000, 1000);
+
+        BandwidthAvailabilityTable copy = table.copy();
+        copy.reserve("alpha:1/1/1", 100, 100);
+        // URNs without reservable bandwidth are not tracked
+        copy.reserve("gamma:1/1/1", 100, 100);
+
+        assertEquals(1000, table.ingress("alpha:1/1/1"));
+        assertEquals(900, copy.ingress("alpha:1/1/1"));
+        assertFalse(copy.contains("gamma:1/1/1"));
+        assertEquals(1, copy.urns().size());
+    }
+
+    @Test
+    public void rollbackRestoresTheStamp() {
+        BandwidthAvailabilityTable table = new BandwidthAvailabilityTable(TopoSnapshot.empty());
+        table.put("alpha:1/1/1", 1000, 1000);
+        long beforePipe = table.stamp();
+        int checkpoint = table.checkpoint();
+
+        table.reserve("alpha:1/1/1", 100, 100);
+        long afterPipe = table.stamp();
+        assertNotEquals(beforePipe, afterPipe);
+
+        table.rollback(checkpoint);
+        assertEquals(beforePipe, table.stamp());
+
+        // the same change made again is a new state as far as the stamp is concerned
+        table.reserve("alpha:1/1/1", 100, 100);
+        assertNotEquals(afterPipe, table.stamp());
+
+        // an untouched copy holds the same availability
+        assertEquals(table.stamp(), table.copy().stamp());
+        assertNotEquals(table.stamp(), new BandwidthAvailabilityTable(TopoSnapshot.empty()).stamp());
+    }
+
+    @Test
+    public void tablesFromTheSameOriginShareTheirState() {
+        BandwidthAvailabilityTable.Origin origin = new BandwidthAvailabilityTable.Origin(1L, 5L,
+                Instant.parse("2017-03-01T00:00:00Z"), Instant.parse("2017-03-02T00:00:00Z"));
+        BandwidthAvailabilityTable first = new BandwidthAvailabilityTable(TopoSnapshot.empty());
+        first.put("alpha:1/1/1", 1000, 1000);
+        first.setOrigin(origin);
+        BandwidthAvailabilityTable second = new BandwidthAvailabilityTable(TopoSnapshot.empty());
+        second.put("alpha:1/1/1", 1000, 1000);
+        second.setOrigin(new BandwidthAvailabilityTable.Origin(1L, 5L,
+                Instant.parse("2017-03-01T00:00:00Z"), Instant.parse("2017-03-02T00:00:00Z")));
+        assertEquals(first.state(), second.state());
+
+        // a trial reservation leaves the origin until it is rolled back
+        int checkpoint = first.checkpoint();
+        first.reserve("alpha:1/1/1", 100, 100);
+        assertNotEquals(second.state(), first.state());
+        first.rollback(checkpoint);
+        assertEquals(origin, first.state());
+
+        // a table without an origin only has its stamp
+        assertTrue(new BandwidthAvailabilityTable(TopoSnapshot.empty()).state() instanceof Long);
+    }
+}
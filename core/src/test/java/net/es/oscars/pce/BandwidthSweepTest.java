@@ -0,0 +1,75 @@
+package net.es.oscars.pce;
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.QuickTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.time.Instant;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+@Category(QuickTests.class)
+public class BandwidthSweepTest {
+
+    @Test
+    public void touchingIntervalsOverlap() {
+        long[] begins = {0, 10, 30};
+        long[] ends = {10, 20, 40};
+        int[] ingress = {100, 200, 400};
+        int[] egress = {5, 5, 5};
+
+        int[] peak = BandwidthSweep.peakUsage(begins, ends, ingress, egress, 3);
+        assertEquals(400, peak[0]);
+        assertEquals(10, peak[1]);
+
+        int[] events = BandwidthSweep.timeline(begins, ends, 3);
+        assertArrayEquals(new int[]{0, 1, ~0, ~1, 2, ~2}, events);
+    }
+
+    @Test
+    public void peakAgreesWithBruteForce() {
+        Random random = new Random(7);
+        int n = 500;
+        long[] begins = new long[n];
+        long[] ends = new long[n];
+        int[] ingress = new int[n];
+        int[] egress = new int[n];
+        for (int i = 0; i < n; i++) {
+            begins[i] = random.nextInt(5000);
+            ends[i] = begins[i] + random.nextInt(200);
+            ingress[i] = random.nextInt(1000);
+            egress[i] = random.nextInt(1000);
+        }
+
+        // the peak of a step function over closed intervals is reached at some interval start
+        int expectedIn = 0;
+        int expectedEg = 0;
+        for (int i = 0; i < n; i++) {
+            int in = 0;
+            int eg = 0;
+            for (int j = 0; j < n; j++) {
+                if (begins[j] <= begins[i] && ends[j] >= begins[i]) {
+                    in += ingress[j];
+                    eg += egress[j];
+                }
+            }
+            expectedIn = Math.max(expectedIn, in);
+            expectedEg = Math.max(expectedEg, eg);
+        }
+
+        int[] peak = BandwidthSweep.peakUsage(begins, ends, ingress, egress, n);
+        assertEquals(expectedIn, peak[0]);
+        assertEquals(expectedEg, peak[1]);
+    }
+
+    @Test
+    public void keyPreservesOrderAndSaturates() {
+        Instant now = Instant.now();
+        assertTrue(BandwidthSweep.key(now) < BandwidthSweep.key(now.plusNanos(1)));
+        assertEquals(Long.MAX_VALUE, BandwidthSweep.key(Instant.MAX));
+        assertEquals(Long.MIN_VALUE, BandwidthSweep.key(Instant.MIN));
+    }
+}
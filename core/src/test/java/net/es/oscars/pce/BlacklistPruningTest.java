@@ -260,7 +260,7 @@ public class BlacklistPruningTest extends AbstractCoreTest {
         List<ReservedVlanE> reservedVlans = vlanService.getReservedVlansFromRepo(requestedSched.getStartDates().get(0),
                 requestedSched.getEndDates().get(0));
 
-        Map<String, Map<String, Integer>> bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(reservedBandwidths);
+        BandwidthAvailabilityTable bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(reservedBandwidths);
 
         topo = pruningService.pruneWithPipe(topo, reqPipe, bwAvailMap, reservedVlans);
         Set<TopoEdge> newEdges = topo.getEdges();
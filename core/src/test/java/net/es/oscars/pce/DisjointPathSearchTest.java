@@ -0,0 +1,90 @@
+package net.es.oscars.pce;
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.QuickTests;
+import net.es.oscars.dto.topo.TopoEdge;
+import net.es.oscars.dto.topo.TopoVertex;
+import net.es.oscars.dto.topo.Topology;
+import net.es.oscars.dto.topo.enums.Layer;
+import net.es.oscars.dto.topo.enums.VertexType;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+@Category(QuickTests.class)
+public class DisjointPathSearchTest {
+    private Map<String, TopoVertex> vertices;
+    private Map<String, TopoEdge> edges;
+    private TopoGraph graph;
+
+    /**
+     * The shortest path s-a-b-t blocks any second disjoint path; the two disjoint paths
+     * s-a-d-t and s-c-b-t only appear once the second search cancels a-b.
+     */
+    @Before
+    public void buildTrap() {
+        vertices = new HashMap<>();
+        edges = new LinkedHashMap<>();
+        link("s", "a", 1L);
+        link("a", "b", 1L);
+        link("b", "t", 1L);
+        link("a", "d", 2L);
+        link("d", "t", 2L);
+        link("s", "c", 2L);
+        link("c", "b", 2L);
+
+        Topology topo = new Topology();
+        topo.setVertices(new HashSet<>(vertices.values()));
+        topo.setEdges(new HashSet<>(edges.values()));
+        graph = TopoGraph.of(topo);
+    }
+
+    @Test
+    public void findsDisjointPathsAroundTheShortestPath() {
+        int s = graph.vertexId(vertices.get("s"));
+        int t = graph.vertexId(vertices.get("t"));
+
+        List<List<TopoEdge>> one = new DisjointPathSearch(graph, null).paths(s, t, 1);
+        assertEquals(Collections.singletonList(path("s", "a", "b", "t")), one);
+
+        List<List<TopoEdge>> two = new DisjointPathSearch(graph, null).paths(s, t, 2);
+        assertEquals(2, two.size());
+        assertTrue(two.contains(path("s", "a", "d", "t")));
+        assertTrue(two.contains(path("s", "c", "b", "t")));
+
+        // there are no three link-disjoint paths
+        assertEquals(2, new DisjointPathSearch(graph, null).paths(s, t, 3).size());
+    }
+
+    @Test
+    public void masksRestrictTheSearch() {
+        int s = graph.vertexId(vertices.get("s"));
+        int t = graph.vertexId(vertices.get("t"));
+        List<TopoEdge> withoutCb = new ArrayList<>(edges.values());
+        withoutCb.remove(edges.get("c-b"));
+        withoutCb.remove(edges.get("b-c"));
+
+        List<List<TopoEdge>> paths = new DisjointPathSearch(graph, graph.mask(withoutCb)).paths(s, t, 2);
+        assertEquals(Collections.singletonList(path("s", "a", "b", "t")), paths);
+    }
+
+    private void link(String a, String z, long metric) {
+        TopoVertex va = vertices.computeIfAbsent(a, urn -> new TopoVertex(urn, VertexType.ROUTER));
+        TopoVertex vz = vertices.computeIfAbsent(z, urn -> new TopoVertex(urn, VertexType.ROUTER));
+        edges.put(a + "-" + z, new TopoEdge(va, vz, metric, Layer.MPLS));
+        edges.put(z + "-" + a, new TopoEdge(vz, va, metric, Layer.MPLS));
+    }
+
+    private List<TopoEdge> path(String... hops) {
+        List<TopoEdge> path = new ArrayList<>();
+        for (int i = 1; i < hops.length; i++) {
+            path.add(edges.get(hops[i - 1] + "-" + hops[i]));
+        }
+        return path;
+    }
+}
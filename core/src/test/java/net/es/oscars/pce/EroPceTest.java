@@ -111,7 +111,7 @@ public class EroPceTest extends AbstractCoreTest {
         Map<String, List<TopoEdge>> computedPaths = null;
 
 
-        Map<String, Map<String, Integer>> bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(new ArrayList<>());
+        BandwidthAvailabilityTable bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(new ArrayList<>());
 
         computedPaths = eroPCE.computeSpecifiedERO(pipeAZ, bwAvailMap, new ArrayList<>());
 
@@ -192,7 +192,7 @@ public class EroPceTest extends AbstractCoreTest {
 
         Map<String, List<TopoEdge>> computedPaths = null;
 
-        Map<String, Map<String, Integer>> bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(new ArrayList<>());
+        BandwidthAvailabilityTable bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(new ArrayList<>());
         computedPaths = eroPCE.computeSpecifiedERO(pipeAZ, bwAvailMap, new ArrayList<>());
 
         assert (computedPaths != null);
@@ -273,7 +273,7 @@ public class EroPceTest extends AbstractCoreTest {
 
         Map<String, List<TopoEdge>> computedPaths = null;
 
-        Map<String, Map<String, Integer>> bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(new ArrayList<>());
+        BandwidthAvailabilityTable bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(new ArrayList<>());
 
         computedPaths = eroPCE.computeSpecifiedERO(pipeAZ, bwAvailMap, new ArrayList<>());
     }
@@ -333,7 +333,7 @@ public class EroPceTest extends AbstractCoreTest {
 
         Map<String, List<TopoEdge>> computedPaths = null;
 
-        Map<String, Map<String, Integer>> bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(new ArrayList<>());
+        BandwidthAvailabilityTable bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(new ArrayList<>());
 
         computedPaths = eroPCE.computeSpecifiedERO(pipeAZ, bwAvailMap, new ArrayList<>());
     }
@@ -392,7 +392,7 @@ public class EroPceTest extends AbstractCoreTest {
 
         Map<String, List<TopoEdge>> computedPaths = null;
 
-        Map<String, Map<String, Integer>> bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(new ArrayList<>());
+        BandwidthAvailabilityTable bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(new ArrayList<>());
         computedPaths = eroPCE.computeSpecifiedERO(pipeAZ, bwAvailMap, new ArrayList<>());
 
         assert (computedPaths != null);
@@ -469,7 +469,7 @@ public class EroPceTest extends AbstractCoreTest {
 
         Map<String, List<TopoEdge>> computedPaths = null;
 
-        Map<String, Map<String, Integer>> bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(new ArrayList<>());
+        BandwidthAvailabilityTable bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(new ArrayList<>());
         computedPaths = eroPCE.computeSpecifiedERO(pipeAZ, bwAvailMap, new ArrayList<>());
 
         assert (computedPaths != null);
@@ -751,7 +751,7 @@ public class EroPceTest extends AbstractCoreTest {
 
         Map<String, List<TopoEdge>> computedPaths = null;
 
-        Map<String, Map<String, Integer>> bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(new ArrayList<>());
+        BandwidthAvailabilityTable bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(new ArrayList<>());
         computedPaths = eroPCE.computeSpecifiedERO(pipeAZ, bwAvailMap, new ArrayList<>());
 
         assert (computedPaths == null);
@@ -821,7 +821,7 @@ public class EroPceTest extends AbstractCoreTest {
 
         Map<String, List<TopoEdge>> computedPaths = null;
 
-        Map<String, Map<String, Integer>> bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(new ArrayList<>());
+        BandwidthAvailabilityTable bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(new ArrayList<>());
         computedPaths = eroPCE.computeSpecifiedERO(pipeAZ, bwAvailMap, new ArrayList<>());
 
         assert (computedPaths == null);
@@ -1213,7 +1213,7 @@ public class EroPceTest extends AbstractCoreTest {
 
         Map<String, List<TopoEdge>> computedPaths = null;
 
-        Map<String, Map<String, Integer>> bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(new ArrayList<>());
+        BandwidthAvailabilityTable bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(new ArrayList<>());
 
         computedPaths = eroPCE.computeSpecifiedERO(pipeAZ, bwAvailMap, new ArrayList<>());
 
@@ -1283,7 +1283,7 @@ public class EroPceTest extends AbstractCoreTest {
         Map<String, List<TopoEdge>> computedPaths = null;
 
 
-        Map<String, Map<String, Integer>> bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(new ArrayList<>());
+        BandwidthAvailabilityTable bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(new ArrayList<>());
 
         computedPaths = eroPCE.computeSpecifiedERO(pipeAZ, bwAvailMap, new ArrayList<>());
 
@@ -1355,7 +1355,7 @@ public class EroPceTest extends AbstractCoreTest {
 
         Map<String, List<TopoEdge>> computedPaths = null;
 
-        Map<String, Map<String, Integer>> bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(new ArrayList<>());
+        BandwidthAvailabilityTable bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(new ArrayList<>());
         computedPaths = eroPCE.computeSpecifiedERO(pipeAZ, bwAvailMap, new ArrayList<>());
 
         assert (computedPaths != null);
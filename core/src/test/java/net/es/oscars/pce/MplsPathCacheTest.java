@@ -0,0 +1,71 @@
+package net.es.oscars.pce;
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.QuickTests;
+import net.es.oscars.dto.topo.TopoEdge;
+import net.es.oscars.dto.topo.TopoVertex;
+import net.es.oscars.dto.topo.enums.Layer;
+import net.es.oscars.dto.topo.enums.VertexType;
+import net.es.oscars.pce.prop.PceProperties;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+@Category(QuickTests.class)
+public class MplsPathCacheTest {
+    private MplsPathCache cache;
+
+    private TopoEdge ab;
+    private TopoEdge bc;
+    private TopoEdge ac;
+    private MplsPathCache.Base base;
+
+    @Before
+    public void setup() {
+        cache = new MplsPathCache();
+        ReflectionTestUtils.setField(cache, "pceProperties", new PceProperties());
+
+        TopoVertex a = new TopoVertex("alpha", VertexType.ROUTER);
+        TopoVertex b = new TopoVertex("beta", VertexType.ROUTER);
+        TopoVertex c = new TopoVertex("gamma", VertexType.ROUTER);
+        ab = new TopoEdge(a, b, 1L, Layer.MPLS);
+        bc = new TopoEdge(b, c, 1L, Layer.MPLS);
+        ac = new TopoEdge(a, c, 5L, Layer.MPLS);
+        base = cache.base(new HashSet<>(Arrays.asList(ab, bc, ac)));
+    }
+
+    @Test
+    public void entriesSurviveUnrelatedPruning() {
+        // computed while ac was pruned: still the shortest path as long as ab and bc are available
+        cache.store(base, "alpha", "gamma", 100, Collections.emptySet(), Arrays.asList(ab, bc), Collections.singletonList(ac));
+
+        assertEquals(Arrays.asList(ab, bc), cache.lookup(base, "alpha", "gamma", 120, Collections.emptySet(), set(ab, bc)));
+        // a different bandwidth bucket, or a different base, has no entry
+        assertNull(cache.lookup(base, "alpha", "gamma", 50, Collections.emptySet(), set(ab, bc)));
+        MplsPathCache.Base other = cache.base(new HashSet<>(Arrays.asList(ab, bc)));
+        assertNull(cache.lookup(other, "alpha", "gamma", 100, Collections.emptySet(), set(ab, bc)));
+        assertSame(base, cache.base(new HashSet<>(Arrays.asList(ab, bc, ac))));
+    }
+
+    @Test
+    public void entriesAreDroppedWhenAvailabilityChanges() {
+        cache.store(base, "alpha", "gamma", 100, Collections.emptySet(), Arrays.asList(ab, bc), Collections.singletonList(ac));
+        // a path edge was pruned
+        assertNull(cache.lookup(base, "alpha", "gamma", 100, Collections.emptySet(), set(ab, ac)));
+        assertNull(cache.lookup(base, "alpha", "gamma", 100, Collections.emptySet(), set(ab, bc)));
+
+        cache.store(base, "alpha", "gamma", 100, Collections.emptySet(), Collections.singletonList(ac), Arrays.asList(ab, bc));
+        // a previously pruned edge became available, so there may be a shorter path now
+        assertNull(cache.lookup(base, "alpha", "gamma", 100, Collections.emptySet(), set(ab, ac)));
+    }
+
+    private Set<TopoEdge> set(TopoEdge... edges) {
+        return new HashSet<>(Arrays.asList(edges));
+    }
+}
@@ -0,0 +1,83 @@
+package net.es.oscars.pce;
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.QuickTests;
+import net.es.oscars.dto.topo.enums.Layer;
+import net.es.oscars.helpers.VlanBitmap;
+import net.es.oscars.pce.prop.PceProperties;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+@Category(QuickTests.class)
+public class PruningCacheTest {
+    private PruningCache cache;
+
+    private PceProperties pceProperties;
+
+    @Before
+    public void setup() {
+        cache = new PruningCache();
+        pceProperties = new PceProperties();
+        ReflectionTestUtils.setField(cache, "pceProperties", pceProperties);
+    }
+
+    private PruningCache.Key key(long bandwidthStamp, Integer azMbps, Integer zaMbps, boolean bidirectional,
+                                 int reservedVlan, int... edges) {
+        Map<String, VlanBitmap> reserved = new HashMap<>();
+        reserved.put("alpha:1/1/1", new VlanBitmap().add(reservedVlan));
+        BitSet mask = new BitSet();
+        Arrays.stream(edges).forEach(mask::set);
+        return new PruningCache.Key(1L, bandwidthStamp, Layer.ETHERNET, bidirectional, azMbps, zaMbps,
+                new VlanBitmap().addRange(100, 200), reserved, null, new HashMap<>(), mask);
+    }
+
+    @Test
+    public void entriesAreFoundByContent() {
+        BitSet pruned = new BitSet();
+        pruned.set(0);
+        cache.store(key(7L, 100, 100, true, 150, 0, 1, 2), pruned);
+
+        assertEquals(pruned, cache.lookup(key(7L, 100, 100, true, 150, 0, 1, 2)));
+        // the stored mask is a copy
+        pruned.set(1);
+        assertFalse(cache.lookup(key(7L, 100, 100, true, 150, 0, 1, 2)).get(1));
+
+        // different availability, reservations, bandwidth or edges have no entry
+        assertNull(cache.lookup(key(8L, 100, 100, true, 150, 0, 1, 2)));
+        assertNull(cache.lookup(key(7L, 100, 100, true, 151, 0, 1, 2)));
+        assertNull(cache.lookup(key(7L, 100, 200, true, 150, 0, 1, 2)));
+        assertNull(cache.lookup(key(7L, 100, 100, true, 150, 0, 1)));
+        assertEquals(2L, cache.getHits());
+        assertEquals(4L, cache.getMisses());
+
+        // the Z->A bandwidth does not matter when pruning in one direction
+        cache.store(key(7L, 100, null, false, 150, 0, 1, 2), pruned);
+        assertNotNull(cache.lookup(key(7L, 100, 300, false, 150, 0, 1, 2)));
+    }
+
+    @Test
+    public void equalReservedVlanMapsAreShared() {
+        Map<String, VlanBitmap> first = new HashMap<>();
+        first.put("alpha:1/1/1", new VlanBitmap().add(10));
+        Map<String, VlanBitmap> second = new HashMap<>();
+        second.put("alpha:1/1/1", new VlanBitmap().add(10));
+
+        assertSame(first, cache.intern(first));
+        assertSame(first, cache.intern(second));
+    }
+
+    @Test
+    public void sizeZeroDisablesTheCache() {
+        pceProperties.setPruningCacheSize(0);
+        assertFalse(cache.isEnabled());
+        cache.store(key(7L, 100, 100, true, 150, 0), new BitSet());
+        assertNull(cache.lookup(key(7L, 100, 100, true, 150, 0)));
+    }
+}
@@ -0,0 +1,107 @@
+package net.es.oscars.pce;
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.QuickTests;
+import net.es.oscars.dto.topo.TopoEdge;
+import net.es.oscars.dto.topo.TopoVertex;
+import net.es.oscars.dto.topo.Topology;
+import net.es.oscars.dto.topo.enums.Layer;
+import net.es.oscars.dto.topo.enums.VertexType;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+@Category(QuickTests.class)
+public class TopoGraphTest {
+
+    @Test
+    public void masksRestrictTheSharedGraph() {
+        TopoVertex a = new TopoVertex("alpha", VertexType.ROUTER);
+        TopoVertex b = new TopoVertex("beta", VertexType.ROUTER);
+        TopoVertex c = new TopoVertex("gamma", VertexType.ROUTER);
+        TopoEdge ab = edge(a, b, 1L);
+        TopoEdge bc = edge(b, c, 1L);
+        TopoEdge ac = edge(a, c, 5L);
+
+        Topology topo = new Topology();
+        topo.setVertices(new HashSet<>(Arrays.asList(a, b, c)));
+        topo.setEdges(new HashSet<>(Arrays.asList(ab, bc, ac)));
+        TopoGraph graph = TopoGraph.of(topo);
+
+        int src = graph.vertexId(a);
+        int dst = graph.vertexId(c);
+        assertEquals(Arrays.asList(ab, bc), graph.newSearch().shortestPath(src, dst, null));
+
+        BitSet withoutBc = graph.mask(Arrays.asList(ab, ac));
+        assertEquals(Collections.singletonList(ac), graph.newSearch().shortestPath(src, dst, withoutBc));
+
+        BitSet onlyAb = graph.mask(Collections.singletonList(ab));
+        assertTrue(graph.newSearch().shortestPath(src, dst, onlyAb).isEmpty());
+        assertTrue(graph.newSearch().shortestPath(src, src, null).isEmpty());
+
+        // edges that are not part of the graph have no mask
+        assertNull(graph.mask(Collections.singletonList(edge(a, b, 1L))));
+        assertEquals(-1, graph.vertexId(new TopoVertex("delta", VertexType.ROUTER)));
+    }
+
+    @Test
+    public void distancesMatchBellmanFord() {
+        Random random = new Random(7);
+        for (int trial = 0; trial < 25; trial++) {
+            int n = 2 + random.nextInt(30);
+            List<TopoVertex> vertices = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                vertices.add(new TopoVertex("node-" + i, VertexType.ROUTER));
+            }
+            List<TopoEdge> edges = new ArrayList<>();
+            int m = random.nextInt(4 * n);
+            for (int i = 0; i < m; i++) {
+                edges.add(edge(vertices.get(random.nextInt(n)), vertices.get(random.nextInt(n)), (long) random.nextInt(20)));
+            }
+            Topology topo = new Topology();
+            topo.setVertices(new HashSet<>(vertices));
+            topo.setEdges(new HashSet<>(edges));
+            TopoGraph graph = TopoGraph.of(topo);
+
+            TopoVertex src = vertices.get(0);
+            ShortestPathSearch search = graph.newSearch();
+            search.run(graph.vertexId(src), -1, null);
+
+            Map<TopoVertex, Long> expected = bellmanFord(topo, src);
+            for (TopoVertex v : vertices) {
+                long distance = search.distance(graph.vertexId(v));
+                assertEquals(expected.getOrDefault(v, Long.MAX_VALUE).longValue(), distance);
+
+                long pathWeight = 0L;
+                for (int e : search.pathTo(graph.vertexId(v))) {
+                    pathWeight += graph.weight(e);
+                }
+                if (distance != Long.MAX_VALUE) {
+                    assertEquals(distance, pathWeight);
+                }
+            }
+        }
+    }
+
+    private Map<TopoVertex, Long> bellmanFord(Topology topo, TopoVertex src) {
+        Map<TopoVertex, Long> dist = new HashMap<>();
+        dist.put(src, 0L);
+        for (int i = 0; i < topo.getVertices().size(); i++) {
+            for (TopoEdge e : topo.getEdges()) {
+                Long da = dist.get(e.getA());
+                if (da != null && da + e.getMetric() < dist.getOrDefault(e.getZ(), Long.MAX_VALUE)) {
+                    dist.put(e.getZ(), da + e.getMetric());
+                }
+            }
+        }
+        return dist;
+    }
+
+    private TopoEdge edge(TopoVertex a, TopoVertex z, Long metric) {
+        return TopoEdge.builder().a(a).z(z).metric(metric).layer(Layer.MPLS).build();
+    }
+}
@@ -0,0 +1,71 @@
+package net.es.oscars.pce;
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.QuickTests;
+import net.es.oscars.dto.IntRange;
+import net.es.oscars.helpers.VlanBitmap;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+@Category(QuickTests.class)
+public class VlanBitmapTest {
+
+    @Test
+    public void rangesAcrossWordBoundaries() {
+        VlanBitmap vlans = VlanBitmap.fromRanges(Arrays.asList(
+                IntRange.builder().floor(60).ceiling(130).build(),
+                IntRange.builder().floor(4090).ceiling(5000).build()));
+
+        assertEquals(71 + 6, vlans.cardinality());
+        assertFalse(vlans.contains(59));
+        assertTrue(vlans.contains(64));
+        assertTrue(vlans.contains(130));
+        assertFalse(vlans.contains(131));
+        assertTrue(vlans.contains(4095));
+        assertFalse(vlans.contains(4096));
+
+        assertEquals(60, vlans.first());
+        assertEquals(4090, vlans.nextSetBit(131));
+        assertEquals(-1, vlans.nextSetBit(4096));
+        assertEquals("[60:130,4090:4095]", vlans.toString());
+    }
+
+    @Test
+    public void setOperationsMatchHashSets() {
+        Random random = new Random(42);
+        for (int trial = 0; trial < 20; trial++) {
+            Set<Integer> a = randomIds(random);
+            Set<Integer> b = randomIds(random);
+            VlanBitmap aBits = VlanBitmap.fromIds(a);
+            VlanBitmap bBits = VlanBitmap.fromIds(b);
+
+            Set<Integer> and = new HashSet<>(a);
+            and.retainAll(b);
+            Set<Integer> or = new HashSet<>(a);
+            or.addAll(b);
+            Set<Integer> andNot = new HashSet<>(a);
+            andNot.removeAll(b);
+
+            assertEquals(and, aBits.copy().and(bBits).toSet());
+            assertEquals(or, aBits.copy().or(bBits).toSet());
+            assertEquals(andNot, aBits.copy().andNot(bBits).toSet());
+            assertEquals(!and.isEmpty(), aBits.intersects(bBits));
+            assertEquals(a.size(), aBits.cardinality());
+            assertEquals(aBits, VlanBitmap.fromRanges(aBits.toRanges()));
+        }
+    }
+
+    private Set<Integer> randomIds(Random random) {
+        Set<Integer> ids = new HashSet<>();
+        int count = random.nextInt(200);
+        for (int i = 0; i < count; i++) {
+            ids.add(random.nextInt(VlanBitmap.SIZE));
+        }
+        return ids;
+    }
+}
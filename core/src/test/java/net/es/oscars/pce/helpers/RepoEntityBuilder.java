@@ -12,6 +12,7 @@ import net.es.oscars.topo.dao.UrnRepository;
 import net.es.oscars.topo.ent.*;
 import net.es.oscars.topo.pop.TopoFileImporter;
 import net.es.oscars.topo.prop.TopoProperties;
+import net.es.oscars.topo.svc.TopoSnapshotService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -31,6 +32,9 @@ public class RepoEntityBuilder {
     @Autowired
     private ReservedBandwidthRepository reservedBandwidthRepo;
 
+    @Autowired
+    private TopoSnapshotService topoSnapshotService;
+
 
     public void populateRepos(Collection<TopoVertex> vertices, Collection<TopoEdge> edges, Map<TopoVertex,TopoVertex> portToDeviceMap){
         log.info("Populating URN Repo and Adjcy Repo");
@@ -368,7 +372,7 @@ public class RepoEntityBuilder {
         TopoProperties topoProperties = new TopoProperties();
         topoProperties.setPrefix("esnet");
         log.info("Building ESnet topology");
-        TopoFileImporter topoImporter = new TopoFileImporter(urnRepo, adjcyRepo, topoProperties);
+        TopoFileImporter topoImporter = new TopoFileImporter(urnRepo, adjcyRepo, topoProperties, topoSnapshotService);
         topoImporter.startup();
     }
 
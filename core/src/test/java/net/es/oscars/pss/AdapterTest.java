@@ -12,9 +12,11 @@ import net.es.oscars.dto.pss.st.LifecycleStatus;
 import net.es.oscars.pss.dao.RouterCommandsRepository;
 import net.es.oscars.pss.help.CommandHelper;
 import net.es.oscars.pss.help.MockPssServer;
+import net.es.oscars.pss.prop.PssConfig;
+import net.es.oscars.pss.svc.CommandCompletions;
 import net.es.oscars.pss.svc.PSSAdapter;
+import net.es.oscars.pss.svc.PSSAsyncClient;
 import net.es.oscars.pss.svc.PSSParamsAdapter;
-import net.es.oscars.pss.svc.PSSProxy;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -42,12 +44,17 @@ public class AdapterTest extends AbstractCoreTest {
     @Autowired
     private PSSParamsAdapter paramsAdapter;
 
+    @Autowired
+    private PssConfig pssConfig;
+
     @Test
     @Category(QuickTests.class)
     public void testParallelSubmit() throws InterruptedException, ExecutionException {
         MockPssServer pssProxy = new MockPssServer();
+        CommandCompletions completions = new CommandCompletions(pssProxy);
+        PSSAsyncClient asyncClient = new PSSAsyncClient(pssProxy, pssConfig);
 
-        PSSAdapter adapter = new PSSAdapter(pssProxy, rcr, paramsAdapter);
+        PSSAdapter adapter = new PSSAdapter(pssProxy, rcr, paramsAdapter, completions, asyncClient);
         List<Command> commands = new ArrayList<>();
         commands.add(commandHelper.getAlu());
         commands.add(commandHelper.getAlu());
@@ -57,14 +64,14 @@ public class AdapterTest extends AbstractCoreTest {
 
         List<String> commandIds = responses.stream().map(CommandResponse::getCommandId).collect(Collectors.toList());
 
-        List<CommandStatus> statuses = adapter.pollStatuses(commandIds);
+        List<CommandStatus> statuses = commandIds.stream().map(pssProxy::status).collect(Collectors.toList());
         assert statuses.size() == 3;
 
 
         ExecutorService executor = Executors.newFixedThreadPool(2);
 
 
-        FutureTask<List<CommandStatus>> waitTilStableTask = new FutureTask<>(() -> adapter.pollUntilStable(commandIds));
+        FutureTask<List<CommandStatus>> waitTilStableTask = new FutureTask<>(() -> adapter.awaitStable(commandIds));
         executor.execute(waitTilStableTask);
 
         FutureTask<Void> updateStatuses = new FutureTask<>(() -> {
@@ -88,13 +95,16 @@ public class AdapterTest extends AbstractCoreTest {
            return null;
         });
         executor.execute(updateStatuses);
-        waitTilStableTask.get();
+        List<CommandStatus> stable = waitTilStableTask.get();
 
         executor.shutdown();
+        completions.shutdown();
+        asyncClient.shutdown();
 
-        assert statuses.get(0).getLifecycleStatus().equals(LifecycleStatus.DONE);
-        assert statuses.get(1).getLifecycleStatus().equals(LifecycleStatus.DONE);
-        assert statuses.get(2).getLifecycleStatus().equals(LifecycleStatus.DONE);
+        assert stable.size() == 3;
+        assert stable.get(0).getLifecycleStatus().equals(LifecycleStatus.DONE);
+        assert stable.get(1).getLifecycleStatus().equals(LifecycleStatus.DONE);
+        assert stable.get(2).getLifecycleStatus().equals(LifecycleStatus.DONE);
 
     }
 
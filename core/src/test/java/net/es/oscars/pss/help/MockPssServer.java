@@ -5,10 +5,7 @@ import net.es.oscars.dto.pss.st.*;
 import net.es.oscars.pss.svc.PSSProxy;
 import org.hashids.Hashids;
 
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Random;
+import java.util.*;
 
 public class MockPssServer implements PSSProxy {
 
@@ -21,13 +18,40 @@ public class MockPssServer implements PSSProxy {
                 .build();
     }
 
-    public CommandStatus status(String commandId) {
+    public List<GenerateResponse> generateBatch(List<Command> cmds) {
+        List<GenerateResponse> responses = new ArrayList<>();
+        for (Command cmd : cmds) {
+            responses.add(this.generate(cmd));
+        }
+        return responses;
+    }
+
+    public synchronized CommandStatus status(String commandId) {
         return this.statuses.get(commandId);
     }
 
     private Map<String, CommandStatus> statuses = new HashMap<>();
 
-    public CommandResponse submitCommand(Command cmd) {
+    private List<CommandCompletion> completions = new ArrayList<>();
+
+    public synchronized CompletionBatch completions(Long after, Integer timeoutSec) {
+        long deadline = System.currentTimeMillis() + timeoutSec * 1000L;
+        try {
+            while (after >= 0 && after >= completions.size() && System.currentTimeMillis() < deadline) {
+                this.wait(deadline - System.currentTimeMillis());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        long from = Math.max(after, 0L);
+        return CompletionBatch.builder()
+                .next((long) completions.size())
+                .missed(after < 0)
+                .completions(new ArrayList<>(completions.subList((int) Math.min(from, completions.size()), completions.size())))
+                .build();
+    }
+
+    public synchronized CommandResponse submitCommand(Command cmd) {
         String cmdId = this.randHashId();
 
         CommandStatus status = CommandStatus.builder()
@@ -108,7 +132,7 @@ public class MockPssServer implements PSSProxy {
     }
 
 
-    private void updateStatus(StatusCollection sc, String commandId) {
+    private synchronized void updateStatus(StatusCollection sc, String commandId) {
         CommandStatus status = this.statuses.get(commandId);
         status.setOperationalStatus(sc.os);
         status.setLifecycleStatus(sc.lf);
@@ -116,6 +140,14 @@ public class MockPssServer implements PSSProxy {
         status.setControlPlaneStatus(sc.cp);
         status.setLastUpdated(new Date());
         this.statuses.put(commandId, status);
+        if (sc.lf.equals(LifecycleStatus.DONE)) {
+            completions.add(CommandCompletion.builder()
+                    .sequence(completions.size() + 1L)
+                    .commandId(commandId)
+                    .status(status)
+                    .build());
+            this.notifyAll();
+        }
     }
 
     private class StatusCollection {
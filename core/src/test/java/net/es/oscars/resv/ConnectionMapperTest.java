@@ -0,0 +1,374 @@
+package net.es.oscars.resv;
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.QuickTests;
+import net.es.oscars.acct.ent.CustomerE;
+import net.es.oscars.acct.svc.CustomerMapper;
+import net.es.oscars.authnz.ent.EPermissions;
+import net.es.oscars.authnz.ent.EUser;
+import net.es.oscars.authnz.svc.UserMapper;
+import net.es.oscars.dto.acct.Customer;
+import net.es.oscars.dto.auth.User;
+import net.es.oscars.dto.pss.*;
+import net.es.oscars.dto.resv.Connection;
+import net.es.oscars.dto.resv.ResourceType;
+import net.es.oscars.dto.spec.*;
+import net.es.oscars.dto.topo.BidirectionalPath;
+import net.es.oscars.dto.topo.Edge;
+import net.es.oscars.resv.ent.*;
+import net.es.oscars.resv.svc.ConnectionMapper;
+import net.es.oscars.st.oper.OperState;
+import net.es.oscars.st.prov.ProvState;
+import net.es.oscars.st.resv.ResvState;
+import net.es.oscars.topo.ent.BidirectionalPathE;
+import net.es.oscars.topo.ent.EdgeE;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.modelmapper.ModelMapper;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * The hand-written mappers must give the same results as the ModelMapper conversions they replaced.
+ */
+@Slf4j
+@Category(QuickTests.class)
+public class ConnectionMapperTest {
+
+    private ModelMapper modelMapper = new ModelMapper();
+
+    private Instant beginning = Instant.parse("2017-03-01T00:00:00Z");
+
+    private Instant ending = Instant.parse("2017-03-02T00:00:00Z");
+
+    private ConnectionE connection() {
+        Long id = 1L;
+
+        RequestedVlanFixtureE reqFixA = RequestedVlanFixtureE.builder().id(id++).portUrn("nodeA:1").vlanExpression("100")
+                .fixtureType(EthFixtureType.REQUESTED).inMbps(10).egMbps(20).build();
+        RequestedVlanFixtureE reqFixZ = RequestedVlanFixtureE.builder().id(id++).portUrn("nodeZ:1").vlanExpression("200-210")
+                .fixtureType(EthFixtureType.REQUESTED).inMbps(20).egMbps(10).build();
+        RequestedVlanJunctionE reqJuncA = RequestedVlanJunctionE.builder().id(id++).deviceUrn("nodeA")
+                .junctionType(EthJunctionType.REQUESTED).fixtures(new HashSet<>(Collections.singletonList(reqFixA))).build();
+        RequestedVlanJunctionE reqJuncZ = RequestedVlanJunctionE.builder().id(id++).deviceUrn("nodeZ")
+                .junctionType(EthJunctionType.REQUESTED).fixtures(new HashSet<>(Collections.singletonList(reqFixZ))).build();
+        RequestedVlanPipeE reqPipe = RequestedVlanPipeE.builder().id(id++).aJunction(reqJuncA).zJunction(reqJuncZ)
+                .azMbps(10).zaMbps(20)
+                .azERO(Arrays.asList("nodeA", "nodeB", "nodeZ")).zaERO(Arrays.asList("nodeZ", "nodeB", "nodeA"))
+                .urnBlacklist(new HashSet<>(Collections.singletonList("nodeC")))
+                .pipeType(EthPipeType.REQUESTED).eroPalindromic(PalindromicType.PALINDROME)
+                .eroSurvivability(SurvivabilityType.SURVIVABILITY_NONE).numPaths(1).priority(5).build();
+        RequestedVlanFlowE reqFlow = RequestedVlanFlowE.builder().id(id++)
+                .junctions(new HashSet<>(Arrays.asList(reqJuncA, reqJuncZ)))
+                .pipes(new HashSet<>(Collections.singletonList(reqPipe)))
+                .minPipes(1).maxPipes(1).containerConnectionId("mapped").build();
+
+        Layer3FixtureE l3Fix = Layer3FixtureE.builder().id(id++).portUrn("nodeA:2").vlanId(300).vlanExpression("300")
+                .fixtureType(Layer3FixtureType.ALU_SAP).inMbps(5).egMbps(5).build();
+        Layer3JunctionE l3JuncA = Layer3JunctionE.builder().id(id++).deviceUrn("nodeA").junctionType(Layer3JunctionType.REQUESTED)
+                .fixtures(new HashSet<>(Collections.singletonList(l3Fix)))
+                .resourceIds(new HashSet<>(Collections.singletonList("r1"))).build();
+        Layer3JunctionE l3JuncZ = Layer3JunctionE.builder().id(id++).deviceUrn("nodeZ").junctionType(Layer3JunctionType.REQUESTED)
+                .fixtures(new HashSet<>()).resourceIds(new HashSet<>()).build();
+        Layer3PipeE l3Pipe = Layer3PipeE.builder().id(id++).aJunction(l3JuncA).zJunction(l3JuncZ).azMbps(5)
+                .azERO(Arrays.asList("nodeA", "nodeZ")).pipeType(Layer3PipeType.REQUESTED)
+                .resourceIds(new HashSet<>(Collections.singletonList("r2"))).build();
+        Layer3FlowE l3Flow = Layer3FlowE.builder().id(id++)
+                .junctions(new HashSet<>(Arrays.asList(l3JuncA, l3JuncZ)))
+                .pipes(new HashSet<>(Collections.singletonList(l3Pipe))).build();
+
+        RequestedBlueprintE requested = RequestedBlueprintE.builder().id(id++).vlanFlow(reqFlow).layer3Flow(l3Flow)
+                .containerConnectionId("mapped").build();
+
+        SpecificationE spec = SpecificationE.builder().id(id++).version(1).username("user").description("mapped connection")
+                .containerConnectionId("mapped")
+                .scheduleSpec(ScheduleSpecificationE.builder()
+                        .startDates(Collections.singletonList(Date.from(beginning)))
+                        .endDates(Collections.singletonList(Date.from(ending)))
+                        .minimumDuration(3600L).build())
+                .requested(requested).build();
+
+        ReservedVlanE vlanA = ReservedVlanE.builder().id(id++).urn("nodeA:1").vlan(100).beginning(beginning).ending(ending).build();
+        ReservedVlanE vlanZ = ReservedVlanE.builder().id(id++).urn("nodeZ:1").vlan(200).beginning(beginning).ending(ending).build();
+        ReservedPssResourceE pssA = ReservedPssResourceE.builder().id(id++).urn("nodeA").resourceType(ResourceType.VC_ID)
+                .resource(7000).beginning(beginning).ending(ending).build();
+        ReservedVlanFixtureE resFixA = ReservedVlanFixtureE.builder().id(id++).ifceUrn("nodeA:1")
+                .reservedVlans(new HashSet<>(Collections.singletonList(vlanA)))
+                .reservedBandwidth(bandwidth(id++, "nodeA:1"))
+                .reservedPssResources(new HashSet<>())
+                .fixtureType(EthFixtureType.JUNOS_IFCE).build();
+        ReservedVlanFixtureE resFixZ = ReservedVlanFixtureE.builder().id(id++).ifceUrn("nodeZ:1")
+                .reservedVlans(new HashSet<>(Collections.singletonList(vlanZ)))
+                .reservedBandwidth(bandwidth(id++, "nodeZ:1"))
+                .reservedPssResources(new HashSet<>())
+                .fixtureType(EthFixtureType.JUNOS_IFCE).build();
+        ReservedVlanJunctionE resJuncA = ReservedVlanJunctionE.builder().id(id++).deviceUrn("nodeA")
+                .junctionType(EthJunctionType.JUNOS_VPLS)
+                .fixtures(new HashSet<>(Collections.singletonList(resFixA)))
+                .reservedPssResources(new HashSet<>(Collections.singletonList(pssA)))
+                .reservedVlans(new HashSet<>()).build();
+        ReservedVlanJunctionE resJuncZ = ReservedVlanJunctionE.builder().id(id++).deviceUrn("nodeZ")
+                .junctionType(EthJunctionType.JUNOS_VPLS)
+                .fixtures(new HashSet<>(Collections.singletonList(resFixZ)))
+                .reservedPssResources(new HashSet<>())
+                .reservedVlans(new HashSet<>()).build();
+        ReservedMplsPipeE mplsPipe = ReservedMplsPipeE.builder().id(id++).aJunction(resJuncA).zJunction(resJuncZ)
+                .reservedBandwidths(new HashSet<>(Arrays.asList(bandwidth(id++, "nodeB:1"), bandwidth(id++, "nodeB:2"))))
+                .reservedPssResources(new HashSet<>())
+                .azERO(Arrays.asList("nodeA", "nodeA:2", "nodeB:1", "nodeB", "nodeB:2", "nodeZ:2", "nodeZ"))
+                .zaERO(Arrays.asList("nodeZ", "nodeZ:2", "nodeB:2", "nodeB", "nodeB:1", "nodeA:2", "nodeA"))
+                .pipeType(MplsPipeType.JUNOS_TO_JUNOS_VPLS).build();
+        ReservedEthPipeE ethPipe = ReservedEthPipeE.builder().id(id++).aJunction(resJuncA).zJunction(resJuncZ)
+                .reservedBandwidths(new HashSet<>())
+                .reservedVlans(new HashSet<>(Collections.singletonList(
+                        ReservedVlanE.builder().id(id++).urn("nodeB:1").vlan(150).beginning(beginning).ending(ending).build())))
+                .reservedPssResources(new HashSet<>())
+                .azERO(Arrays.asList("nodeA", "nodeB", "nodeZ")).zaERO(Arrays.asList("nodeZ", "nodeB", "nodeA"))
+                .pipeType(EthPipeType.JUNOS_SWITCH_TO_JUNOS_SWITCH).build();
+        ReservedVlanFlowE resFlow = ReservedVlanFlowE.builder().id(id++)
+                .junctions(new HashSet<>(Arrays.asList(resJuncA, resJuncZ)))
+                .ethPipes(new HashSet<>(Collections.singletonList(ethPipe)))
+                .mplsPipes(new HashSet<>(Collections.singletonList(mplsPipe)))
+                .allPaths(new HashSet<>())
+                .containerConnectionId("mapped").build();
+        ReservedBlueprintE reserved = ReservedBlueprintE.builder().id(id++).vlanFlow(resFlow).containerConnectionId("mapped").build();
+
+        return ConnectionE.builder().id(id)
+                .connectionId("mapped")
+                .states(StatesE.builder().resv(ResvState.HELD).prov(ProvState.INITIAL).oper(OperState.ADMIN_DOWN_OPER_DOWN).build())
+                .schedule(ScheduleE.builder().submitted(new Date(0L)).setup(Date.from(beginning)).teardown(Date.from(ending)).build())
+                .reservedSchedule(Arrays.asList(Date.from(beginning), Date.from(ending)))
+                .specification(spec)
+                .reserved(reserved)
+                .build();
+    }
+
+    private ReservedBandwidthE bandwidth(Long id, String urn) {
+        return ReservedBandwidthE.builder().id(id).urn(urn).containerConnectionId("mapped")
+                .inBandwidth(10).egBandwidth(20).beginning(beginning).ending(ending).build();
+    }
+
+    private BidirectionalPathE path() {
+        List<EdgeE> az = Arrays.asList(
+                EdgeE.builder().origin("nodeA").originType("ROUTER").target("nodeB").targetType("ROUTER").build(),
+                EdgeE.builder().origin("nodeB").originType("ROUTER").target("nodeZ").targetType("ROUTER").build());
+        List<EdgeE> za = Arrays.asList(
+                EdgeE.builder().origin("nodeZ").originType("ROUTER").target("nodeB").targetType("ROUTER").build(),
+                EdgeE.builder().origin("nodeB").originType("ROUTER").target("nodeA").targetType("ROUTER").build());
+        return BidirectionalPathE.builder().id(99L).azPath(az).zaPath(za).build();
+    }
+
+    @Test
+    public void connectionToDto() {
+        ConnectionE c = connection();
+        Connection dto = ConnectionMapper.toDto(c);
+
+        assertEquals(c.getId(), dto.getId());
+        assertEquals("mapped", dto.getConnectionId());
+        assertEquals(ResvState.HELD, dto.getStates().getResv());
+        assertEquals(ProvState.INITIAL, dto.getStates().getProv());
+        assertEquals(OperState.ADMIN_DOWN_OPER_DOWN, dto.getStates().getOper());
+        assertEquals(Date.from(beginning), dto.getSchedule().getSetup());
+        assertEquals(Date.from(ending), dto.getSchedule().getTeardown());
+        assertEquals(c.getReservedSchedule(), dto.getReservedSchedule());
+        assertNotSame(c.getReservedSchedule(), dto.getReservedSchedule());
+
+        assertEquals("user", dto.getSpecification().getUsername());
+        assertEquals(c.getSpecification().getScheduleSpec().getStartDates(), dto.getSpecification().getScheduleSpec().getStartDates());
+        assertEquals(Long.valueOf(3600L), dto.getSpecification().getScheduleSpec().getMinimumDuration());
+
+        RequestedVlanFlow reqFlow = dto.getSpecification().getRequested().getVlanFlow();
+        RequestedVlanJunction reqJuncZ = one(reqFlow.getJunctions(), j -> j.getDeviceUrn().equals("nodeZ"));
+        RequestedVlanFixture reqFixZ = reqJuncZ.getFixtures().iterator().next();
+        assertEquals("200-210", reqFixZ.getVlanExpression());
+        assertEquals(Integer.valueOf(20), reqFixZ.getInMbps());
+        assertNull(reqFixZ.getVlanId());
+        RequestedVlanPipe reqPipe = reqFlow.getPipes().iterator().next();
+        assertEquals("nodeA", reqPipe.getAJunction().getDeviceUrn());
+        assertEquals(Arrays.asList("nodeZ", "nodeB", "nodeA"), reqPipe.getZaERO());
+        assertEquals(Collections.singleton("nodeC"), reqPipe.getUrnBlacklist());
+        assertEquals(PalindromicType.PALINDROME, reqPipe.getEroPalindromic());
+        assertEquals(Integer.valueOf(5), reqPipe.getPriority());
+        Layer3Pipe l3Pipe = dto.getSpecification().getRequested().getLayer3Flow().getPipes().iterator().next();
+        assertEquals(Collections.singleton("r1"), l3Pipe.getAJunction().getResourceIds());
+        assertEquals(Integer.valueOf(300), l3Pipe.getAJunction().getFixtures().iterator().next().getVlanId());
+
+        ReservedVlanFlow resFlow = dto.getReserved().getVlanFlow();
+        ReservedVlanJunction resJuncA = one(resFlow.getJunctions(), j -> j.getDeviceUrn().equals("nodeA"));
+        assertEquals(Integer.valueOf(7000), resJuncA.getReservedPssResources().iterator().next().getResource());
+        ReservedVlanFixture resFixA = resJuncA.getFixtures().iterator().next();
+        assertEquals(Integer.valueOf(100), resFixA.getReservedVlans().iterator().next().getVlan());
+        assertEquals(Integer.valueOf(20), resFixA.getReservedBandwidth().getEgBandwidth());
+        ReservedMplsPipe mplsPipe = resFlow.getMplsPipes().iterator().next();
+        assertEquals("nodeA", mplsPipe.getAJunction().getDeviceUrn());
+        assertEquals("nodeZ", mplsPipe.getZJunction().getDeviceUrn());
+        assertEquals(new HashSet<>(Arrays.asList("nodeB:1", "nodeB:2")),
+                mplsPipe.getReservedBandwidths().stream().map(ReservedBandwidth::getUrn).collect(Collectors.toSet()));
+        ReservedEthPipe ethPipe = resFlow.getEthPipes().iterator().next();
+        assertEquals(Integer.valueOf(150), ethPipe.getReservedVlans().iterator().next().getVlan());
+        assertEquals(EthPipeType.JUNOS_SWITCH_TO_JUNOS_SWITCH, ethPipe.getPipeType());
+    }
+
+    @Test
+    public void pathsToDto() {
+        // BidirectionalPath gets a random uniqueID, so only the edges can be compared
+        ConnectionE c = connection();
+        c.getReserved().getVlanFlow().getAllPaths().add(path());
+
+        Set<BidirectionalPath> expected = modelMapper.map(c, Connection.class).getReserved().getVlanFlow().getAllPaths();
+        Set<BidirectionalPath> mapped = ConnectionMapper.toDto(c).getReserved().getVlanFlow().getAllPaths();
+        assertEquals(edges(expected), edges(mapped));
+    }
+
+    @Test
+    public void connectionToEntity() {
+        ConnectionE c = connection();
+        c.getReserved().getVlanFlow().getAllPaths().add(path());
+        ConnectionE e = ConnectionMapper.toEntity(ConnectionMapper.toDto(c));
+
+        assertEquals(c.getId(), e.getId());
+        assertEquals(c.getConnectionId(), e.getConnectionId());
+        assertEquals(c.getStates(), e.getStates());
+        assertEquals(c.getSchedule(), e.getSchedule());
+        assertEquals(c.getReservedSchedule(), e.getReservedSchedule());
+        assertEquals(c.getSpecification().getUsername(), e.getSpecification().getUsername());
+        assertEquals(c.getSpecification().getScheduleSpec(), e.getSpecification().getScheduleSpec());
+        RequestedVlanFlowE reqFlow = e.getSpecification().getRequested().getVlanFlow();
+        assertEquals(c.getSpecification().getRequested().getVlanFlow().getJunctions(), reqFlow.getJunctions());
+        // pipes get a new uniqueID
+        RequestedVlanPipeE reqPipe = reqFlow.getPipes().iterator().next();
+        assertEquals("nodeZ", reqPipe.getZJunction().getDeviceUrn());
+        assertEquals(Collections.singleton("nodeC"), reqPipe.getUrnBlacklist());
+        assertEquals(SurvivabilityType.SURVIVABILITY_NONE, reqPipe.getEroSurvivability());
+        assertEquals(c.getSpecification().getRequested().getLayer3Flow(), e.getSpecification().getRequested().getLayer3Flow());
+
+        ReservedVlanFlowE resFlow = e.getReserved().getVlanFlow();
+        assertEquals(c.getReserved().getId(), e.getReserved().getId());
+        assertEquals(c.getReserved().getVlanFlow().getId(), resFlow.getId());
+        ReservedVlanJunctionE resJuncA = one(resFlow.getJunctions(), j -> j.getDeviceUrn().equals("nodeA"));
+        assertEquals(Integer.valueOf(7000), resJuncA.getReservedPssResources().iterator().next().getResource());
+        ReservedVlanFixtureE resFixA = resJuncA.getFixtures().iterator().next();
+        ReservedVlanE vlanA = resFixA.getReservedVlans().iterator().next();
+        assertEquals(Integer.valueOf(100), vlanA.getVlan());
+        assertEquals(beginning, vlanA.getBeginning());
+        // reserved VLANs and bandwidths have no id in their DTOs
+        assertNull(vlanA.getId());
+        assertNull(resFixA.getReservedBandwidth().getId());
+        assertEquals(Integer.valueOf(10), resFixA.getReservedBandwidth().getInBandwidth());
+        ReservedMplsPipeE mplsPipe = resFlow.getMplsPipes().iterator().next();
+        assertEquals("nodeA", mplsPipe.getAJunction().getDeviceUrn());
+        assertEquals(c.getReserved().getVlanFlow().getMplsPipes().iterator().next().getAzERO(), mplsPipe.getAzERO());
+        ReservedEthPipeE ethPipe = resFlow.getEthPipes().iterator().next();
+        assertEquals("nodeB:1", ethPipe.getReservedVlans().iterator().next().getUrn());
+
+        BidirectionalPathE path = resFlow.getAllPaths().iterator().next();
+        assertNull(path.getId());
+        assertEquals(path().getAzPath(), path.getAzPath());
+        assertEquals(path().getZaPath(), path.getZaPath());
+    }
+
+    @Test
+    public void archive() {
+        ConnectionE c = connection();
+        c.getReserved().getVlanFlow().getAllPaths().add(path());
+        ReservedVlanFlowE reserved = c.getReserved().getVlanFlow();
+
+        ArchivedBlueprintE archived = ConnectionMapper.archive(c.getReserved());
+        assertEquals(c.getReserved().getId(), archived.getId());
+        assertEquals("mapped", archived.getContainerConnectionId());
+        ArchivedVlanFlowE flow = archived.getVlanFlow();
+        assertEquals(reserved.getId(), flow.getId());
+
+        ArchivedVlanJunctionE juncA = one(flow.getJunctions(), j -> j.getDeviceUrn().equals("nodeA"));
+        ArchivedPssResourceE pssA = juncA.getReservedPssResources().iterator().next();
+        assertEquals(ResourceType.VC_ID, pssA.getResourceType());
+        assertEquals(Integer.valueOf(7000), pssA.getResource());
+        ArchivedVlanFixtureE fixA = juncA.getFixtures().iterator().next();
+        assertEquals("nodeA:1", fixA.getIfceUrn());
+        ArchivedVlanE vlanA = fixA.getReservedVlans().iterator().next();
+        assertEquals(Integer.valueOf(100), vlanA.getVlan());
+        assertEquals(ending, vlanA.getEnding());
+        assertEquals(Integer.valueOf(20), fixA.getReservedBandwidth().getEgBandwidth());
+
+        ReservedMplsPipeE reservedMpls = reserved.getMplsPipes().iterator().next();
+        ArchivedMplsPipeE mplsPipe = flow.getMplsPipes().iterator().next();
+        assertEquals(reservedMpls.getId(), mplsPipe.getId());
+        assertEquals(reservedMpls.getUniqueID(), mplsPipe.getUniqueID());
+        assertEquals("nodeA", mplsPipe.getAJunction().getDeviceUrn());
+        assertEquals("nodeZ", mplsPipe.getZJunction().getDeviceUrn());
+        assertEquals(reservedMpls.getZaERO(), mplsPipe.getZaERO());
+        assertEquals(reservedMpls.getReservedBandwidths().stream().map(ReservedBandwidthE::getId).collect(Collectors.toSet()),
+                mplsPipe.getReservedBandwidths().stream().map(ArchivedBandwidthE::getId).collect(Collectors.toSet()));
+
+        ReservedEthPipeE reservedEth = reserved.getEthPipes().iterator().next();
+        ArchivedEthPipeE ethPipe = flow.getEthPipes().iterator().next();
+        assertEquals(reservedEth.getUniqueID(), ethPipe.getUniqueID());
+        assertEquals(EthPipeType.JUNOS_SWITCH_TO_JUNOS_SWITCH, ethPipe.getPipeType());
+        assertEquals(Integer.valueOf(150), ethPipe.getReservedVlans().iterator().next().getVlan());
+
+        BidirectionalPathE reservedPath = reserved.getAllPaths().iterator().next();
+        BidirectionalPathE archivedPath = flow.getAllPaths().iterator().next();
+        assertNotSame(reservedPath, archivedPath);
+        assertEquals(reservedPath, archivedPath);
+    }
+
+    @Test
+    public void reservedBandwidth() {
+        ReservedBandwidthE bw = bandwidth(5L, "nodeA:1");
+        assertEquals(modelMapper.map(bw, ReservedBandwidth.class), ConnectionMapper.toDto(bw));
+    }
+
+    @Test
+    public void customer() {
+        CustomerE e = new CustomerE("customer", new HashSet<>(Arrays.asList("p1", "p2")));
+        Customer expected = modelMapper.map(e, Customer.class);
+        Customer mapped = CustomerMapper.toDto(e);
+        assertEquals(expected.getName(), mapped.getName());
+        assertEquals(new HashSet<>(expected.getProjects()), new HashSet<>(mapped.getProjects()));
+
+        CustomerE expectedE = modelMapper.map(mapped, CustomerE.class);
+        CustomerE mappedE = CustomerMapper.toEntity(mapped);
+        assertEquals(expectedE.getName(), mappedE.getName());
+        assertEquals(new HashSet<>(expectedE.getProjects()), new HashSet<>(mappedE.getProjects()));
+    }
+
+    @Test
+    public void user() {
+        EPermissions permissions = new EPermissions();
+        permissions.setMaxMbpsPerReservation(1000L);
+        permissions.setAdminAllowed(true);
+        EUser e = EUser.builder().id(3L).username("admin").password("secret").certIssuer("issuer").certSubject("subject")
+                .fullName("Admin User").email("admin@example.net").institution("lab").permissions(permissions).build();
+
+        User dto = UserMapper.toDto(e);
+        assertEquals(modelMapper.map(e, User.class), dto);
+        assertEquals(modelMapper.map(dto, EUser.class), UserMapper.toEntity(dto));
+    }
+
+    private Set<List<String>> edges(Set<BidirectionalPath> paths) {
+        return paths.stream()
+                .map(p -> {
+                    List<String> edges = new ArrayList<>();
+                    p.getAzPath().forEach(e -> edges.add(edge(e)));
+                    edges.add("|");
+                    p.getZaPath().forEach(e -> edges.add(edge(e)));
+                    return edges;
+                })
+                .collect(Collectors.toSet());
+    }
+
+    private <T> T one(Set<T> items, Predicate<T> test) {
+        List<T> matching = items.stream().filter(test).collect(Collectors.toList());
+        assertEquals(1, matching.size());
+        return matching.get(0);
+    }
+
+    private String edge(Edge e) {
+        return e.getOrigin() + ":" + e.getOriginType() + "->" + e.getTarget() + ":" + e.getTargetType();
+    }
+}
@@ -0,0 +1,174 @@
+package net.es.oscars.resv;
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.AbstractCoreTest;
+import net.es.oscars.QuickTests;
+import net.es.oscars.dto.pss.EthFixtureType;
+import net.es.oscars.dto.pss.EthJunctionType;
+import net.es.oscars.dto.resv.ConnectionFilter;
+import net.es.oscars.dto.resv.ConnectionSort;
+import net.es.oscars.resv.dao.ConnectionRepository;
+import net.es.oscars.resv.dao.ConnectionStateRow;
+import net.es.oscars.resv.ent.*;
+import net.es.oscars.resv.svc.ConnectionQueryService;
+import net.es.oscars.resv.svc.ConnectionStateIndex;
+import net.es.oscars.resv.svc.ResvService;
+import net.es.oscars.st.oper.OperState;
+import net.es.oscars.st.prov.ProvState;
+import net.es.oscars.st.resv.ResvState;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+@Transactional
+@Category(QuickTests.class)
+public class ConnectionStateIndexTest extends AbstractCoreTest {
+
+    @Autowired
+    private ConnectionStateIndex stateIndex;
+
+    @Autowired
+    private ConnectionRepository connRepo;
+
+    @Autowired
+    private ResvService resvService;
+
+    @Autowired
+    private ConnectionQueryService queryService;
+
+    private ConnectionE connection(String connectionId, ResvState resv, ProvState prov) {
+        return connRepo.save(ConnectionE.builder()
+                .connectionId(connectionId)
+                .states(StatesE.builder().resv(resv).prov(prov).oper(OperState.ADMIN_DOWN_OPER_DOWN).build())
+                .reservedSchedule(new ArrayList<>())
+                .build());
+    }
+
+    // a connection with a requested fixture, the way a submitted request is saved
+    private ConnectionE requested(String connectionId, String username, Date start, Date end, int inMbps, int egMbps) {
+        RequestedVlanFixtureE fixture = RequestedVlanFixtureE.builder().portUrn("nodeA:1").vlanExpression("100")
+                .fixtureType(EthFixtureType.REQUESTED).inMbps(inMbps).egMbps(egMbps).build();
+        RequestedVlanJunctionE junction = RequestedVlanJunctionE.builder().deviceUrn("nodeA")
+                .junctionType(EthJunctionType.REQUESTED).fixtures(new HashSet<>(Collections.singletonList(fixture))).build();
+        RequestedVlanFlowE flow = RequestedVlanFlowE.builder()
+                .junctions(new HashSet<>(Collections.singletonList(junction)))
+                .pipes(new HashSet<>())
+                .minPipes(0).maxPipes(0).containerConnectionId(connectionId).build();
+        SpecificationE spec = SpecificationE.builder().version(1).username(username).description(connectionId)
+                .containerConnectionId(connectionId)
+                .scheduleSpec(ScheduleSpecificationE.builder()
+                        .startDates(new ArrayList<>(Collections.singletonList(start)))
+                        .endDates(new ArrayList<>(Collections.singletonList(end)))
+                        .minimumDuration(3600L).build())
+                .requested(RequestedBlueprintE.builder().vlanFlow(flow).containerConnectionId(connectionId).build())
+                .build();
+        return connRepo.save(ConnectionE.builder()
+                .connectionId(connectionId)
+                .states(StatesE.builder().resv(ResvState.SUBMITTED).prov(ProvState.INITIAL)
+                        .oper(OperState.ADMIN_DOWN_OPER_DOWN).build())
+                .reservedSchedule(new ArrayList<>())
+                .specification(spec)
+                .build());
+    }
+
+    private Set<String> ids(Collection<ConnectionStateRow> rows) {
+        return rows.stream().map(ConnectionStateRow::getConnectionId).collect(Collectors.toSet());
+    }
+
+    @Test
+    public void indexFollowsStateChanges() {
+        connection("stateA", ResvState.SUBMITTED, ProvState.INITIAL);
+        ConnectionE b = connection("stateB", ResvState.SUBMITTED, ProvState.INITIAL);
+        connection("stateC", ResvState.HELD, ProvState.INITIAL);
+
+        assertTrue(ids(stateIndex.withResvState(ResvState.SUBMITTED)).containsAll(Arrays.asList("stateA", "stateB")));
+        assertTrue(ids(stateIndex.withResvState(ResvState.HELD)).contains("stateC"));
+
+        b.getStates().setResv(ResvState.IDLE_WAIT);
+        b.getStates().setProv(ProvState.READY);
+        connRepo.save(b);
+
+        Set<String> submitted = ids(stateIndex.withResvState(ResvState.SUBMITTED));
+        assertTrue(submitted.contains("stateA"));
+        assertFalse(submitted.contains("stateB"));
+        assertTrue(ids(stateIndex.withProvState(ProvState.READY)).contains("stateB"));
+
+        Set<String> ready = resvService.ofProvState(ProvState.READY)
+                .map(ConnectionE::getConnectionId)
+                .collect(Collectors.toSet());
+        assertTrue(ready.contains("stateB"));
+        assertFalse(ready.contains("stateA"));
+
+        ConnectionQueryService.Page filtered = queryService.page(ConnectionFilter.builder()
+                .numFilters(2)
+                .resvStates(new HashSet<>(Arrays.asList(ResvState.SUBMITTED, ResvState.HELD)))
+                .provStates(Collections.singleton(ProvState.INITIAL))
+                .pageSize(1000)
+                .build());
+        Set<String> filteredIds = filtered.getConnections().stream()
+                .map(ConnectionE::getConnectionId)
+                .collect(Collectors.toSet());
+        assertTrue(filteredIds.containsAll(Arrays.asList("stateA", "stateC")));
+        assertFalse(filteredIds.contains("stateB"));
+
+        connRepo.delete(b);
+        assertFalse(ids(stateIndex.withProvState(ProvState.READY)).contains("stateB"));
+    }
+
+    @Test
+    public void pagesFollowTheCursor() {
+        Set<String> connectionIds = new HashSet<>(Arrays.asList("pageA", "pageB", "pageC", "pageD", "pageE"));
+        connectionIds.forEach(id -> connection(id, ResvState.HELD, ProvState.INITIAL));
+
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            ConnectionQueryService.Page page = queryService.page(ConnectionFilter.builder()
+                    .numFilters(1)
+                    .connectionIds(connectionIds)
+                    .sortBy(ConnectionSort.CONNECTION_ID)
+                    .descending(true)
+                    .pageSize(2)
+                    .cursor(cursor)
+                    .build());
+            assertEquals(Integer.valueOf(5), page.getTotal());
+            assertTrue(page.getConnections().size() <= 2);
+            page.getConnections().forEach(c -> seen.add(c.getConnectionId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(Arrays.asList("pageE", "pageD", "pageC", "pageB", "pageA"), seen);
+    }
+
+    @Test
+    public void requestFieldsAreReadWithoutTheListener() {
+        Date start = new Date(1488326400000L);
+        Date end = new Date(1488412800000L);
+        ConnectionE c = requested("requestA", "alice", start, end, 30, 70);
+
+        // saved by this transaction: read from the projections once the index is queried
+        ConnectionStateRow row = stateIndex.withUsername("alice").stream()
+                .filter(r -> r.getConnectionId().equals("requestA"))
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+        assertEquals(start, row.getStart());
+        assertEquals(end, row.getEnd());
+        assertEquals(Integer.valueOf(30), row.getMinMbps());
+        assertEquals(Integer.valueOf(70), row.getMaxMbps());
+
+        // a state change keeps them
+        c.getStates().setResv(ResvState.HELD);
+        connRepo.save(c);
+        assertTrue(ids(stateIndex.withResvState(ResvState.HELD)).contains("requestA"));
+        assertTrue(ids(stateIndex.withUsername("alice")).contains("requestA"));
+        assertTrue(ids(stateIndex.withMaxMbpsAtLeast(70)).contains("requestA"));
+        assertTrue(ids(stateIndex.endingBy(end)).contains("requestA"));
+    }
+}
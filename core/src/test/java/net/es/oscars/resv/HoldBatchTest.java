@@ -0,0 +1,66 @@
+package net.es.oscars.resv;
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.AbstractCoreTest;
+import net.es.oscars.dto.spec.PalindromicType;
+import net.es.oscars.dto.spec.SurvivabilityType;
+import net.es.oscars.helpers.RequestedEntityBuilder;
+import net.es.oscars.pce.helpers.TopologyBuilder;
+import net.es.oscars.resv.ent.ConnectionE;
+import net.es.oscars.resv.ent.RequestedBlueprintE;
+import net.es.oscars.resv.ent.RequestedVlanPipeE;
+import net.es.oscars.resv.svc.ResvService;
+import net.es.oscars.st.resv.ResvState;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+@Transactional
+public class HoldBatchTest extends AbstractCoreTest {
+
+    @Autowired
+    private ResvService resvService;
+
+    @Autowired
+    private TopologyBuilder topologyBuilder;
+
+    @Autowired
+    private RequestedEntityBuilder testBuilder;
+
+    @Test
+    public void higherPriorityConnectionsArePlacedFirst() {
+        topologyBuilder.buildTopo8();
+
+        Date startDate = Date.from(Instant.now().plus(15L, ChronoUnit.MINUTES));
+        Date endDate = Date.from(Instant.now().plus(1L, ChronoUnit.DAYS));
+
+        // the ports have 1000 Mbps; only one of the two 600 Mbps connections fits
+        ConnectionE low = connection("lowPriority", 600, Integer.MAX_VALUE, startDate, endDate);
+        ConnectionE high = connection("highPriority", 600, 1, startDate, endDate);
+        ConnectionE duplicate = connection("highPriority", 10, 1, startDate, endDate);
+
+        Map<ConnectionE, String> errors = resvService.holdBatch(Arrays.asList(low, high, duplicate));
+
+        assertEquals(ResvState.HELD, high.getStates().getResv());
+        assertEquals(ResvState.ABORTING, low.getStates().getResv());
+        assertFalse(errors.containsKey(high));
+        assertFalse(errors.containsKey(low));
+        assertTrue(errors.get(duplicate).contains("Duplicate"));
+        assertTrue(resvService.findByConnectionId("highPriority").isPresent());
+    }
+
+    private ConnectionE connection(String connectionId, Integer mbps, Integer priority, Date start, Date end) {
+        RequestedVlanPipeE pipe = testBuilder.buildRequestedPipe(Collections.singletonList("portA"), "nodeP",
+                Collections.singletonList("portZ"), "nodeQ", mbps, mbps, PalindromicType.PALINDROME,
+                SurvivabilityType.SURVIVABILITY_NONE, "any", 1, priority);
+        RequestedBlueprintE blueprint = testBuilder.buildRequest(new HashSet<>(Collections.singletonList(pipe)), 1, 1, connectionId);
+        return testBuilder.buildConnection(blueprint, testBuilder.buildSchedule(start, end), connectionId, connectionId);
+    }
+}
@@ -0,0 +1,116 @@
+package net.es.oscars.resv;
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.AbstractCoreTest;
+import net.es.oscars.QuickTests;
+import net.es.oscars.dto.pss.EthFixtureType;
+import net.es.oscars.dto.pss.EthJunctionType;
+import net.es.oscars.dto.topo.enums.UrnType;
+import net.es.oscars.resv.dao.ReservedBandwidthRepository;
+import net.es.oscars.resv.ent.*;
+import net.es.oscars.resv.svc.HoldValidator;
+import net.es.oscars.topo.dao.UrnRepository;
+import net.es.oscars.topo.ent.ReservableBandwidthE;
+import net.es.oscars.topo.ent.UrnE;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+@Transactional
+@Category(QuickTests.class)
+public class HoldValidatorTest extends AbstractCoreTest {
+
+    @Autowired
+    private HoldValidator holdValidator;
+
+    @Autowired
+    private UrnRepository urnRepo;
+
+    @Autowired
+    private ReservedBandwidthRepository bwRepo;
+
+    private final Instant t0 = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+    private Instant at(int minutes) {
+        return t0.plus(minutes, ChronoUnit.MINUTES);
+    }
+
+    @Before
+    public void port() {
+        urnRepo.save(UrnE.builder()
+                .urn("alpha:1/1/1")
+                .urnType(UrnType.IFCE)
+                .valid(true)
+                .capabilities(new HashSet<>())
+                .reservableBandwidth(ReservableBandwidthE.builder().bandwidth(1000).ingressBw(1000).egressBw(1000).build())
+                .build());
+    }
+
+    private ReservedBandwidthE bw(int in, int eg, int from, int to) {
+        return ReservedBandwidthE.builder()
+                .urn("alpha:1/1/1")
+                .containerConnectionId("conn")
+                .inBandwidth(in)
+                .egBandwidth(eg)
+                .beginning(at(from))
+                .ending(at(to))
+                .build();
+    }
+
+    // a blueprint with a single fixture on the port
+    private ReservedBlueprintE blueprint(ReservedBandwidthE bw) {
+        ReservedVlanFixtureE fixture = ReservedVlanFixtureE.builder()
+                .ifceUrn("alpha:1/1/1")
+                .reservedVlans(new HashSet<>())
+                .reservedBandwidth(bw)
+                .reservedPssResources(new HashSet<>())
+                .fixtureType(EthFixtureType.JUNOS_IFCE)
+                .build();
+        ReservedVlanJunctionE junction = ReservedVlanJunctionE.builder()
+                .deviceUrn("alpha")
+                .junctionType(EthJunctionType.JUNOS_VPLS)
+                .fixtures(new HashSet<>(Collections.singletonList(fixture)))
+                .reservedPssResources(new HashSet<>())
+                .reservedVlans(new HashSet<>())
+                .build();
+        ReservedVlanFlowE flow = ReservedVlanFlowE.builder()
+                .junctions(new HashSet<>(Collections.singletonList(junction)))
+                .ethPipes(new HashSet<>())
+                .mplsPipes(new HashSet<>())
+                .allPaths(new HashSet<>())
+                .containerConnectionId("conn")
+                .build();
+        return ReservedBlueprintE.builder().vlanFlow(flow).containerConnectionId("conn").build();
+    }
+
+    @Test
+    public void overlappingHoldsOverCapacityConflict() {
+        // another hold committed while the PCE was routing this one; each fits on its own, together they do not
+        bwRepo.save(bw(600, 100, 0, 60));
+
+        assertEquals(Collections.singletonList("bandwidth on alpha:1/1/1"),
+                holdValidator.conflicts(blueprint(bw(600, 100, 30, 90))));
+        assertEquals(Collections.singletonList("bandwidth on alpha:1/1/1"),
+                holdValidator.conflicts(blueprint(bw(100, 950, 30, 90))));
+    }
+
+    @Test
+    public void holdsWithinCapacityDoNotConflict() {
+        bwRepo.save(bw(600, 100, 0, 60));
+        // usage outside the new hold's window does not count
+        bwRepo.save(bw(900, 900, 100, 120));
+
+        assertTrue(holdValidator.conflicts(blueprint(bw(400, 900, 30, 90))).isEmpty());
+        assertTrue(holdValidator.conflicts(blueprint(bw(600, 100, 61, 99))).isEmpty());
+    }
+}
@@ -0,0 +1,159 @@
+package net.es.oscars.resv;
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.AbstractCoreTest;
+import net.es.oscars.QuickTests;
+import net.es.oscars.dto.resv.ResourceType;
+import net.es.oscars.helpers.IntervalTree;
+import net.es.oscars.resv.dao.ReservedBandwidthRepository;
+import net.es.oscars.resv.dao.ReservedPssResourceRepository;
+import net.es.oscars.resv.dao.ReservedVlanRepository;
+import net.es.oscars.resv.ent.ReservedBandwidthE;
+import net.es.oscars.resv.ent.ReservedPssResourceE;
+import net.es.oscars.resv.ent.ReservedVlanE;
+import net.es.oscars.resv.svc.ReservedResourceIndex;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+@Transactional
+@Category(QuickTests.class)
+public class ReservedResourceIndexTest extends AbstractCoreTest {
+
+    @Autowired
+    private ReservedResourceIndex resvIndex;
+
+    @Autowired
+    private ReservedBandwidthRepository bwRepo;
+
+    @Autowired
+    private ReservedVlanRepository vlanRepo;
+
+    @Autowired
+    private ReservedPssResourceRepository pssResRepo;
+
+    private final Instant t0 = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+    private Instant at(int minutes) {
+        return t0.plus(minutes, ChronoUnit.MINUTES);
+    }
+
+    private ReservedBandwidthE bw(String urn, int in, int eg, int from, int to) {
+        return bwRepo.save(ReservedBandwidthE.builder()
+                .urn(urn)
+                .containerConnectionId("conn")
+                .inBandwidth(in)
+                .egBandwidth(eg)
+                .beginning(at(from))
+                .ending(at(to))
+                .build());
+    }
+
+    @Test
+    public void bandwidthMatchesRepository() {
+        bw("alpha:1/1/1", 100, 50, 0, 10);
+        bw("alpha:1/1/1", 200, 25, 5, 15);
+        bw("alpha:1/1/1", 400, 0, 20, 30);
+        bw("beta:1/1/1", 1000, 1000, 0, 30);
+
+        for (int[] window : new int[][]{{0, 4}, {6, 8}, {10, 20}, {16, 19}, {31, 40}, {-5, 50}}) {
+            Instant start = at(window[0]);
+            Instant end = at(window[1]);
+            Set<Long> expected = new HashSet<>();
+            bwRepo.findOverlappingInterval(start, end).orElse(new ArrayList<>()).forEach(b -> expected.add(b.getId()));
+            Set<Long> actual = new HashSet<>();
+            resvIndex.overlappingBandwidths(start, end).forEach(b -> actual.add(b.getId()));
+            assertEquals(expected, actual);
+        }
+
+        assertEquals(2, resvIndex.overlappingBandwidths("alpha:1/1/1", at(6), at(8)).size());
+        assertEquals(0, resvIndex.overlappingBandwidths("alpha:1/1/1", at(16), at(19)).size());
+
+        Map<String, Integer> peak = resvIndex.peakBandwidth("alpha:1/1/1", at(0), at(19));
+        assertEquals(300, peak.get("Ingress").intValue());
+        assertEquals(75, peak.get("Egress").intValue());
+
+        // touching closed intervals overlap at the shared instant
+        peak = resvIndex.peakBandwidth("alpha:1/1/1", at(15), at(25));
+        assertEquals(400, peak.get("Ingress").intValue());
+    }
+
+    @Test
+    public void updatesAndRemovalsAreTracked() {
+        ReservedBandwidthE first = bw("gamma:1/1/1", 100, 100, 0, 10);
+        assertEquals(100, resvIndex.peakBandwidth("gamma:1/1/1", at(0), at(10)).get("Ingress").intValue());
+
+        first.setInBandwidth(0);
+        first.setEgBandwidth(0);
+        assertEquals(0, resvIndex.peakBandwidth("gamma:1/1/1", at(0), at(10)).get("Ingress").intValue());
+
+        bwRepo.delete(first);
+        assertTrue(resvIndex.overlappingBandwidths("gamma:1/1/1", at(0), at(10)).isEmpty());
+
+        ReservedVlanE vlan = vlanRepo.save(ReservedVlanE.builder()
+                .urn("gamma:1/1/1").vlan(100).beginning(at(0)).ending(at(10)).build());
+        assertEquals(Collections.singleton(100), resvIndex.vlansInUse("gamma:1/1/1", at(5), at(6)));
+        vlan.setVlan(-1);
+        assertTrue(resvIndex.vlansInUse("gamma:1/1/1", at(5), at(6)).isEmpty());
+
+        pssResRepo.save(ReservedPssResourceE.makeSvcIdResource("gamma", 7001, at(0), at(10)));
+        pssResRepo.save(ReservedPssResourceE.makeVcIdResource(7002, at(0), at(10)));
+        assertEquals(Collections.singleton(7001),
+                resvIndex.pssResourcesInUse("gamma", ResourceType.ALU_SVC_ID, at(0), at(1)));
+        assertEquals(1, resvIndex.overlappingPssResources(ResourceType.VC_ID, at(0), at(1)).size());
+        assertTrue(resvIndex.overlappingPssResources(ResourceType.VC_ID, at(11), at(12)).isEmpty());
+    }
+
+    @Test
+    public void intervalTreeAgreesWithScan() {
+        Random random = new Random(42);
+        IntervalTree<long[]> tree = new IntervalTree<>();
+        Map<Long, long[]> live = new HashMap<>();
+
+        for (long id = 0; id < 2000; id++) {
+            long start = random.nextInt(10000);
+            long[] interval = new long[]{start, start + random.nextInt(500), id};
+            tree.insert(interval[0], interval[1], id, interval);
+            live.put(id, interval);
+            if (random.nextInt(3) == 0) {
+                long victim = random.nextInt((int) id + 1);
+                long[] removed = live.remove(victim);
+                if (removed != null) {
+                    assertTrue(tree.remove(removed[0], victim));
+                }
+            }
+        }
+        assertEquals(live.size(), tree.size());
+
+        for (int i = 0; i < 200; i++) {
+            long start = random.nextInt(11000);
+            long end = start + random.nextInt(300);
+            Set<Long> expected = new HashSet<>();
+            live.values().stream()
+                    .filter(iv -> iv[0] <= end && iv[1] >= start)
+                    .forEach(iv -> expected.add(iv[2]));
+            Set<Long> actual = new HashSet<>();
+            tree.overlapping(start, end, iv -> actual.add(iv[2]));
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void epochIsOnlySharedWithoutStagedChanges() {
+        Optional<Long> committed = resvIndex.epoch();
+        assertTrue(committed.isPresent());
+        assertEquals(committed, resvIndex.epoch());
+
+        // reservations written by this transaction are not part of any committed epoch
+        bw("alpha:1/1/1", 100, 50, 0, 10);
+        assertFalse(resvIndex.epoch().isPresent());
+    }
+}
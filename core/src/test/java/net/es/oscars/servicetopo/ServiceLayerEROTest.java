@@ -13,6 +13,7 @@ import net.es.oscars.dto.topo.enums.Layer;
 import net.es.oscars.dto.topo.enums.PortLayer;
 import net.es.oscars.dto.topo.enums.UrnType;
 import net.es.oscars.dto.topo.enums.VertexType;
+import net.es.oscars.pce.BandwidthAvailabilityTable;
 import net.es.oscars.pce.BandwidthService;
 import net.es.oscars.pce.DijkstraPCE;
 import net.es.oscars.pce.PruningService;
@@ -562,7 +563,7 @@ public class ServiceLayerEROTest extends AbstractCoreTest  {
         serviceLayerTopo.buildLogicalLayerDstNodes(dstDevice, dstPort);     // should create VIRTUAL nodes
 
 
-        Map<String, Map<String, Integer>> bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(resvBW);
+        BandwidthAvailabilityTable bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(resvBW);
         // Performs shortest path routing on MPLS-layer to properly assign weights to each logical link on Service-Layer
         serviceLayerTopo.calculateLogicalLinkWeights(requestedPipe, urnList, bwAvailMap, resvVLAN);
 
@@ -13,6 +13,7 @@ import net.es.oscars.dto.topo.enums.Layer;
 import net.es.oscars.dto.topo.enums.PortLayer;
 import net.es.oscars.dto.topo.enums.UrnType;
 import net.es.oscars.dto.topo.enums.VertexType;
+import net.es.oscars.pce.BandwidthAvailabilityTable;
 import net.es.oscars.pce.BandwidthService;
 import net.es.oscars.pce.PruningService;
 import net.es.oscars.pce.helpers.TopologyBuilder;
@@ -111,7 +112,7 @@ public class ServiceLayerTopoLogicalLinkTest extends AbstractCoreTest
 
         serviceLayerTopo.buildLogicalLayerSrcNodes(srcDevice, srcPort);
         serviceLayerTopo.buildLogicalLayerDstNodes(dstDevice, dstPort);
-        Map<String, Map<String, Integer>> bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(resvBW);
+        BandwidthAvailabilityTable bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(resvBW);
         serviceLayerTopo.calculateLogicalLinkWeights(requestedPipe, urnList, bwAvailMap, resvVLAN);
 
         log.info("Beginning test: 'verifyLogicalLinksLinear'.");
@@ -218,7 +219,7 @@ public class ServiceLayerTopoLogicalLinkTest extends AbstractCoreTest
 
         serviceLayerTopo.buildLogicalLayerSrcNodes(srcDevice, srcPort);
         serviceLayerTopo.buildLogicalLayerDstNodes(dstDevice, dstPort);
-        Map<String, Map<String, Integer>> bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(resvBW);
+        BandwidthAvailabilityTable bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(resvBW);
         serviceLayerTopo.calculateLogicalLinkWeights(requestedPipe, urnList, bwAvailMap, resvVLAN);
 
         log.info("Beginning test: 'verifyLogicalLinksMultipath'.");
@@ -341,7 +342,7 @@ public class ServiceLayerTopoLogicalLinkTest extends AbstractCoreTest
         
         serviceLayerTopo.buildLogicalLayerSrcNodes(srcDevice, srcPort);
         serviceLayerTopo.buildLogicalLayerDstNodes(dstDevice, dstPort);
-        Map<String, Map<String, Integer>> bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(resvBW);
+        BandwidthAvailabilityTable bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(resvBW);
         serviceLayerTopo.calculateLogicalLinkWeights(requestedPipe, urnList, bwAvailMap, resvVLAN);
 
         log.info("Beginning test: 'verifyLogicalLinksLongerPath'.");
@@ -465,7 +466,7 @@ public class ServiceLayerTopoLogicalLinkTest extends AbstractCoreTest
 
         serviceLayerTopo.buildLogicalLayerSrcNodes(srcDevice, srcPort);
         serviceLayerTopo.buildLogicalLayerDstNodes(dstDevice, dstPort);
-        Map<String, Map<String, Integer>> bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(resvBW);
+        BandwidthAvailabilityTable bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(resvBW);
         serviceLayerTopo.calculateLogicalLinkWeights(requestedPipe, urnList, bwAvailMap, resvVLAN);
 
         log.info("Beginning test: 'verifyLogicalLinksAsymmetric'.");
@@ -579,7 +580,7 @@ public class ServiceLayerTopoLogicalLinkTest extends AbstractCoreTest
 
         serviceLayerTopo.buildLogicalLayerSrcNodes(srcDevice, srcPort);
         serviceLayerTopo.buildLogicalLayerDstNodes(dstDevice, dstPort);
-        Map<String, Map<String, Integer>> bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(resvBW);
+        BandwidthAvailabilityTable bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(resvBW);
         serviceLayerTopo.calculateLogicalLinkWeights(requestedPipe, urnList, bwAvailMap, resvVLAN);
 
         log.info("Beginning test: 'verifyLogicalLinksDisjointMpls'.");
@@ -747,7 +748,7 @@ public class ServiceLayerTopoLogicalLinkTest extends AbstractCoreTest
                     assert false;
             });
 
-        Map<String, Map<String, Integer>> bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(resvBW);
+        BandwidthAvailabilityTable bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(resvBW);
         serviceLayerTopo.calculateLogicalLinkWeights(requestedPipe, urnList, bwAvailMap, resvVLAN);
 
         logicalLinks = serviceLayerTopo.getLogicalLinks();
@@ -940,7 +941,7 @@ public class ServiceLayerTopoLogicalLinkTest extends AbstractCoreTest
                 });
 
 
-        Map<String, Map<String, Integer>> bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(resvBW);
+        BandwidthAvailabilityTable bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(resvBW);
         serviceLayerTopo.calculateLogicalLinkWeights(requestedPipe, urnList, bwAvailMap, resvVLAN);
 
         logicalLinks = serviceLayerTopo.getLogicalLinks();
@@ -1131,7 +1132,7 @@ public class ServiceLayerTopoLogicalLinkTest extends AbstractCoreTest
                 });
 
 
-        Map<String, Map<String, Integer>> bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(resvBW);
+        BandwidthAvailabilityTable bwAvailMap = bwService.buildBandwidthAvailabilityMapFromUrnRepo(resvBW);
         serviceLayerTopo.calculateLogicalLinkWeights(requestedPipe, urnList, bwAvailMap, resvVLAN);
 
         logicalLinks = serviceLayerTopo.getLogicalLinks();
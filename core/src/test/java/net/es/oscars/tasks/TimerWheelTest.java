@@ -0,0 +1,48 @@
+package net.es.oscars.tasks;
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.QuickTests;
+import net.es.oscars.helpers.TimerWheel;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+@Category(QuickTests.class)
+public class TimerWheelTest {
+
+    @Test
+    public void keysExpireOnceTheirDeadlineHasPassed() {
+        TimerWheel<String> wheel = new TimerWheel<>(1000L, 8, 0L);
+        wheel.schedule("a", 2500L);
+        wheel.schedule("b", 3000L);
+        // more than one rotation away
+        wheel.schedule("c", 20500L);
+
+        assertEquals(Collections.emptyList(), wheel.advance(2999L));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), new HashSet<>(wheel.advance(3000L)));
+        assertEquals(Collections.emptyList(), wheel.advance(19999L));
+        assertEquals(Collections.singletonList("c"), wheel.advance(21000L));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void rescheduledAndCancelledKeys() {
+        TimerWheel<String> wheel = new TimerWheel<>(1000L, 8, 0L);
+        wheel.schedule("a", 1000L);
+        wheel.schedule("b", 1000L);
+        wheel.schedule("a", 5000L);
+        assertTrue(wheel.cancel("b"));
+        assertFalse(wheel.cancel("b"));
+
+        assertEquals(Collections.emptyList(), wheel.advance(4000L));
+        assertTrue(wheel.contains("a"));
+
+        // a deadline already in the past expires at the next advance, however long that takes
+        wheel.schedule("late", 100L);
+        assertEquals(new HashSet<>(Arrays.asList("a", "late")), new HashSet<>(wheel.advance(100000L)));
+    }
+}
@@ -0,0 +1,157 @@
+package net.es.oscars.topo;
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.AbstractCoreTest;
+import net.es.oscars.QuickTests;
+import net.es.oscars.dto.topo.Topology;
+import net.es.oscars.dto.topo.enums.*;
+import net.es.oscars.topo.dao.UrnAdjcyRepository;
+import net.es.oscars.topo.dao.UrnRepository;
+import net.es.oscars.topo.ent.UrnAdjcyE;
+import net.es.oscars.topo.ent.UrnE;
+import net.es.oscars.topo.svc.TopoSnapshot;
+import net.es.oscars.topo.svc.TopoSnapshotService;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+@Transactional
+public class TopoSnapshotTest extends AbstractCoreTest {
+
+    @Autowired
+    private UrnRepository urnRepo;
+
+    @Autowired
+    private UrnAdjcyRepository adjRepo;
+
+    @Autowired
+    private TopoSnapshotService snapshotService;
+
+    private void populate() {
+        urnRepo.deleteAll();
+        adjRepo.deleteAll();
+
+        TopoGen.TopoGenResult tgr = new TopoGen().singleSwitch();
+        urnRepo.save(tgr.urns);
+        adjRepo.save(tgr.urnAdjcys);
+    }
+
+    @Test
+    @Category(QuickTests.class)
+    public void snapshotMatchesRepo() {
+        populate();
+
+        TopoSnapshot snapshot = snapshotService.current();
+        assertEquals(3, snapshot.getUrns().size());
+        assertTrue(snapshot.getUrn("alpha").isPresent());
+        assertEquals(PortLayer.ETHERNET, snapshot.portLayer("alpha:1/1/1"));
+        assertEquals(PortLayer.NONE, snapshot.portLayer("alpha"));
+        assertEquals(-1, snapshot.ordinal("beta"));
+        assertEquals("alpha", snapshot.urnAt(snapshot.ordinal("alpha")));
+
+        Topology eth = snapshot.layer(Layer.ETHERNET);
+        assertEquals(3, eth.getVertices().size());
+        assertEquals(2, eth.getEdges().size());
+
+        assertEquals(2, snapshot.getDeviceToPortMap().get("alpha").size());
+        assertEquals("alpha", snapshot.getPortToDeviceMap().get("alpha:2/1/1"));
+
+        // callers may prune the sets they are handed without affecting the snapshot
+        eth.getEdges().clear();
+        assertEquals(2, snapshot.layer(Layer.ETHERNET).getEdges().size());
+
+        // a snapshot stays valid until the topology is written to
+        assertSame(snapshot, snapshotService.current());
+    }
+
+    @Test
+    @Category(QuickTests.class)
+    public void snapshotRebuiltOnChange() {
+        populate();
+        TopoSnapshot before = snapshotService.current();
+
+        urnRepo.save(UrnE.builder()
+                .urn("beta")
+                .urnType(UrnType.DEVICE)
+                .deviceType(DeviceType.SWITCH)
+                .deviceModel(DeviceModel.JUNIPER_EX)
+                .capabilities(new HashSet<>())
+                .valid(true)
+                .build());
+
+        TopoSnapshot after = snapshotService.current();
+        assertTrue(after.getVersion() > before.getVersion());
+        assertTrue(after.getUrn("beta").isPresent());
+        assertFalse(before.getUrn("beta").isPresent());
+    }
+
+    @Test
+    @Category(QuickTests.class)
+    public void portLookupsFollowIncrementalChanges() {
+        populate();
+        TopoSnapshot before = snapshotService.current();
+        assertTrue(before.getEdgePorts().isEmpty());
+        assertTrue(before.hasEthernetPorts("alpha"));
+
+        UrnE alpha = urnRepo.findByUrn("alpha").get();
+        UrnE port = urnRepo.save(UrnE.builder()
+                .urn("alpha:3/1/1")
+                .urnType(UrnType.IFCE)
+                .ifceType(IfceType.PORT)
+                .capabilities(new HashSet<>(Collections.singleton(Layer.ETHERNET)))
+                .valid(true)
+                .build());
+
+        TopoSnapshot added = snapshotService.current();
+        assertTrue(added.getVersion() > before.getVersion());
+        assertEquals(Collections.singleton("alpha:3/1/1"), added.getEdgePorts());
+        // URNs that were not written to are carried over from the previous snapshot
+        assertSame(before.getUrn("alpha:2/1/1").get(), added.getUrn("alpha:2/1/1").get());
+
+        adjRepo.save(UrnAdjcyE.builder()
+                .a(alpha)
+                .z(port)
+                .metrics(new HashMap<>(Collections.singletonMap(Layer.ETHERNET, 1L)))
+                .build());
+
+        TopoSnapshot linked = snapshotService.current();
+        assertTrue(linked.getEdgePorts().isEmpty());
+        assertEquals("alpha", linked.getPortToDeviceMap().get("alpha:3/1/1"));
+        assertEquals(3, linked.getDeviceToPortMap().get("alpha").size());
+        assertEquals(3, linked.getAdjcies().size());
+
+        UrnE router = urnRepo.save(UrnE.builder()
+                .urn("gamma")
+                .urnType(UrnType.DEVICE)
+                .deviceType(DeviceType.ROUTER)
+                .deviceModel(DeviceModel.JUNIPER_MX)
+                .capabilities(new HashSet<>(Collections.singleton(Layer.MPLS)))
+                .valid(true)
+                .build());
+        UrnE mplsPort = urnRepo.save(UrnE.builder()
+                .urn("gamma:1/1/1")
+                .urnType(UrnType.IFCE)
+                .ifceType(IfceType.PORT)
+                .capabilities(new HashSet<>(Collections.singleton(Layer.MPLS)))
+                .valid(true)
+                .build());
+        adjRepo.save(UrnAdjcyE.builder()
+                .a(router)
+                .z(mplsPort)
+                .metrics(new HashMap<>(Collections.singletonMap(Layer.MPLS, 1L)))
+                .build());
+
+        TopoSnapshot withRouter = snapshotService.current();
+        assertFalse(withRouter.hasEthernetPorts("gamma"));
+        assertTrue(withRouter.hasEthernetPorts("alpha"));
+        assertEquals("gamma", withRouter.getPortToDeviceMap().get("gamma:1/1/1"));
+    }
+}
@@ -19,6 +19,7 @@ import net.es.oscars.topo.ent.UrnE;
 import net.es.oscars.topo.pop.TopoFileImporter;
 import net.es.oscars.topo.prop.TopoProperties;
 import net.es.oscars.topo.pop.ConsistencyChecker;
+import net.es.oscars.topo.svc.TopoSnapshotService;
 import net.es.oscars.ui.pop.UIPopulator;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
@@ -45,6 +46,9 @@ public class ConsistencyCheckingTest extends AbstractCoreTest {
     @Autowired
     private UrnAddressRepository urnAddrRepo;
 
+    @Autowired
+    private TopoSnapshotService topoSnapshotService;
+
     private UIPopulator ui;
 
     private void clear() {
@@ -73,7 +77,7 @@ public class ConsistencyCheckingTest extends AbstractCoreTest {
 
             ui = new UIPopulator(topoProperties);
             UrnAddressImporter uai = new UrnAddressImporter(topoProperties, urnAddrRepo);
-            TopoFileImporter tfi = new TopoFileImporter(urnRepo, adjcyRepo, topoProperties);
+            TopoFileImporter tfi = new TopoFileImporter(urnRepo, adjcyRepo, topoProperties, topoSnapshotService);
 
             ui.startup();
             uai.startup();
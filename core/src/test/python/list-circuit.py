@@ -25,12 +25,18 @@ if args.id:
     r = requests.get(args.url + '/resv/get/' + args.id, auth=HTTPBasicAuth(args.user, args.password), verify=False)
     print str(r.text)
 else:
-    r = requests.get(args.url + '/resv/all', auth=HTTPBasicAuth(args.user, args.password), verify=False)
-    if args.verbose:
-        print str(r.text)
-    obj = r.json()
-    for o in obj:
-        print str(o['id']) + " : " + o['connectionId']
+    cursor = None
+    while True:
+        params = {'cursor': cursor} if cursor else {}
+        r = requests.get(args.url + '/resv/all', params=params, auth=HTTPBasicAuth(args.user, args.password), verify=False)
+        if args.verbose:
+            print str(r.text)
+        page = r.json()
+        for o in page['connections']:
+            print str(o['id']) + " : " + o['connectionId']
+        cursor = page['nextCursor']
+        if not cursor:
+            break
 
 
 
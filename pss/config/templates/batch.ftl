@@ -0,0 +1,7 @@
+<#-- @ftlvariable name="fragments" type="java.util.List<java.lang.String>" -->
+<#-- each fragment is preceded by a comment line, echoed back in the session output, that CommandRunner splits the
+     output at to tell which fragment an error came from -->
+<#list fragments as fragment>
+# oscars-batch-fragment ${fragment_index}
+${fragment}
+</#list>
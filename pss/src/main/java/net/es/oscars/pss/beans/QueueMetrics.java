@@ -0,0 +1,30 @@
+package net.es.oscars.pss.beans;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueueMetrics {
+    // commands waiting to run, per device and in total
+    private Map<String, Integer> queuedPerDevice;
+    private Integer queued;
+
+    private Integer running;
+
+    private Long completed;
+    private Long rejected;
+    private Long timedOut;
+
+    // time spent waiting in the queue, and running, over all completed commands
+    private Long avgWaitMs;
+    private Long maxWaitMs;
+    private Long avgRunMs;
+    private Long maxRunMs;
+}
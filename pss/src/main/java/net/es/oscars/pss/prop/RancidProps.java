@@ -25,6 +25,27 @@ public class RancidProps {
     @NonNull
     private String cloginrc;
 
+    /**
+     * The ssh client used to reach the rancid host.
+     */
+    private String ssh = "ssh";
+
+    /**
+     * Directory for the control sockets of the master SSH connections. Anyone who can reach a socket can run
+     * commands over its connection, so the directory is created (or restricted) to be accessible by its owner only.
+     */
+    private String controlDir = System.getProperty("user.home") + "/.oscars/ssh";
+
+    /**
+     * A master SSH connection unused for this long is closed.
+     */
+    private Integer sessionIdleSec = 600;
+
+    /**
+     * A master SSH connection is checked before use if it has not been for this long.
+     */
+    private Integer sessionCheckSec = 30;
+
 
 }
 
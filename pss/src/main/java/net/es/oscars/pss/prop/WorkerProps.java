@@ -0,0 +1,35 @@
+package net.es.oscars.pss.prop;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@ConfigurationProperties(prefix = "worker")
+@Data
+@Component
+@NoArgsConstructor
+public class WorkerProps {
+
+    // number of commands run at the same time, each on a different device
+    @NonNull
+    private Integer threads = 8;
+
+    // commands waiting to run, over all devices; further commands stay queued until there is room
+    @NonNull
+    private Integer maxQueued = 1000;
+
+    // a command still running after this long is interrupted
+    @NonNull
+    private Integer timeoutSec = 300;
+
+    // build / dismantle commands for the same device arriving this close together run in a single router session
+    @NonNull
+    private Integer batchWindowMs = 200;
+
+    // most commands run in a single router session
+    @NonNull
+    private Integer maxBatch = 20;
+
+}
@@ -6,28 +6,36 @@ import lombok.extern.slf4j.Slf4j;
 import net.es.oscars.dto.pss.cmd.Command;
 import net.es.oscars.dto.pss.cmd.CommandResponse;
 import net.es.oscars.dto.pss.cmd.CommandStatus;
+import net.es.oscars.dto.pss.cmd.CompletionBatch;
 import net.es.oscars.dto.pss.cmd.GenerateResponse;
 import net.es.oscars.dto.pss.cp.ControlPlaneHealth;
 import net.es.oscars.pss.beans.ConfigException;
+import net.es.oscars.pss.beans.QueueMetrics;
+import net.es.oscars.pss.svc.CommandQueuer;
 import net.es.oscars.pss.svc.HealthService;
 import net.es.oscars.pss.svc.RouterConfigBuilder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @RestController
 public class PssController {
+    private static final int MAX_AWAIT_SEC = 60;
 
     private HealthService healthService;
     private RouterConfigBuilder routerConfigBuilder;
+    private CommandQueuer queuer;
 
     @Autowired
-    public PssController(HealthService healthService, RouterConfigBuilder routerConfigBuilder) {
+    public PssController(HealthService healthService, RouterConfigBuilder routerConfigBuilder, CommandQueuer queuer) {
         this.healthService = healthService;
         this.routerConfigBuilder = routerConfigBuilder;
+        this.queuer = queuer;
     }
 
     @ExceptionHandler(NoSuchElementException.class)
@@ -50,8 +58,13 @@ public class PssController {
     @RequestMapping(value = "/command", method = RequestMethod.POST)
     public CommandResponse command(@RequestBody Command cmd) {
         log.info("received a command, connId: " + cmd.getConnectionId() + " device: " + cmd.getDevice());
+        String commandId = queuer.newCommand(cmd);
 
-        return CommandResponse.builder().build();
+        return CommandResponse.builder()
+                .commandId(commandId)
+                .connectionId(cmd.getConnectionId())
+                .device(cmd.getDevice())
+                .build();
 
     }
 
@@ -63,6 +76,24 @@ public class PssController {
         String pretty = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(cmd);
         log.info(pretty);
 
+        return this.generateFor(cmd);
+    }
+
+    /**
+     * Generate the router config of several commands in one request; the responses are in the order of the commands.
+     */
+    @RequestMapping(value = "/generate/batch", method = RequestMethod.POST)
+    public List<GenerateResponse> generateBatch(@RequestBody List<Command> cmds) throws ConfigException {
+        log.info("generating router config for " + cmds.size() + " commands");
+
+        List<GenerateResponse> responses = new ArrayList<>();
+        for (Command cmd : cmds) {
+            responses.add(this.generateFor(cmd));
+        }
+        return responses;
+    }
+
+    private GenerateResponse generateFor(Command cmd) throws ConfigException {
         String generated = routerConfigBuilder.generate(cmd);
         return GenerateResponse.builder()
                 .connectionId(cmd.getConnectionId())
@@ -73,8 +104,28 @@ public class PssController {
     }
 
     @RequestMapping(value = "/status", method = RequestMethod.GET)
-    public CommandStatus commandStatus(@PathVariable("commandId") String commandId) {
-        return CommandStatus.builder().build();
+    public CommandStatus commandStatus(@RequestParam("commandId") String commandId) {
+        return queuer.getStatus(commandId).orElseThrow(NoSuchElementException::new);
+    }
+
+    /**
+     * Long-poll for completed commands: answers as soon as a command completes after the 'after' sequence number
+     * (or right away if some already have), or with an empty batch after timeoutSec.
+     */
+    @RequestMapping(value = "/status/completions", method = RequestMethod.GET)
+    public DeferredResult<CompletionBatch> completions(@RequestParam("after") Long after,
+                                                       @RequestParam(value = "timeoutSec", defaultValue = "30") Integer timeoutSec) {
+        CompletionBatch none = CompletionBatch.builder()
+                .next(after)
+                .missed(false)
+                .completions(new ArrayList<>())
+                .build();
+        DeferredResult<CompletionBatch> result = new DeferredResult<>(Math.min(timeoutSec, MAX_AWAIT_SEC) * 1000L, none);
+
+        CompletableFuture<CompletionBatch> completed = queuer.completionsAfter(after);
+        completed.thenAccept(result::setResult);
+        result.onCompletion(() -> completed.cancel(false));
+        return result;
     }
 
     @RequestMapping(value = "/health", method = RequestMethod.GET)
@@ -82,6 +133,11 @@ public class PssController {
         return healthService.getHealth();
     }
 
+    @RequestMapping(value = "/health/queue", method = RequestMethod.GET)
+    public QueueMetrics queueHealth() {
+        return healthService.getQueueMetrics();
+    }
+
 
 
 
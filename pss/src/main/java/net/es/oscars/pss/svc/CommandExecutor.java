@@ -0,0 +1,192 @@
+package net.es.oscars.pss.svc;
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.pss.beans.QueueMetrics;
+import net.es.oscars.pss.prop.WorkerProps;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs commands on a fixed pool of worker threads, with one FIFO lane per device: commands for different devices
+ * run in parallel, commands for the same device run one at a time and in the order they were submitted.
+ *
+ * A lane holds at most one worker at a time, and gives it back after every command so that busy devices do not
+ * starve the others. The number of waiting commands is capped (worker.max-queued); submit() refuses commands past
+ * that. A command running for longer than worker.timeout-sec has its worker thread interrupted.
+ */
+@Slf4j
+@Component
+public class CommandExecutor {
+    private WorkerProps props;
+
+    private ExecutorService workers;
+
+    private ScheduledExecutorService watchdog;
+
+    private final Map<String, Lane> lanes = new HashMap<>();
+
+    private int queued = 0;
+    private int running = 0;
+
+    private long completed = 0L;
+    private long rejected = 0L;
+    private long timedOut = 0L;
+
+    private long totalWaitMs = 0L;
+    private long maxWaitMs = 0L;
+    private long totalRunMs = 0L;
+    private long maxRunMs = 0L;
+
+    @Autowired
+    public CommandExecutor(WorkerProps props) {
+        this.props = props;
+        AtomicInteger threadNum = new AtomicInteger(0);
+        this.workers = Executors.newFixedThreadPool(props.getThreads(), r -> {
+            Thread t = new Thread(r, "pss-worker-" + threadNum.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pss-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Queue a command behind the others for the same device.
+     *
+     * @param commandId the command id, for logging
+     * @param device    the device the command runs against
+     * @param task      the command
+     * @return false if the queue is full; the command was not queued and should be submitted again later
+     */
+    public synchronized boolean submit(String commandId, String device, Runnable task) {
+        if (queued >= props.getMaxQueued()) {
+            rejected++;
+            return false;
+        }
+        Lane lane = lanes.computeIfAbsent(device, Lane::new);
+        lane.tasks.add(new Task(commandId, task));
+        queued++;
+        if (!lane.busy) {
+            lane.busy = true;
+            workers.execute(() -> runNext(lane));
+        }
+        return true;
+    }
+
+    public synchronized QueueMetrics metrics() {
+        Map<String, Integer> perDevice = new HashMap<>();
+        lanes.forEach((device, lane) -> {
+            if (!lane.tasks.isEmpty()) {
+                perDevice.put(device, lane.tasks.size());
+            }
+        });
+        return QueueMetrics.builder()
+                .queuedPerDevice(perDevice)
+                .queued(queued)
+                .running(running)
+                .completed(completed)
+                .rejected(rejected)
+                .timedOut(timedOut)
+                .avgWaitMs(completed == 0 ? 0L : totalWaitMs / completed)
+                .maxWaitMs(maxWaitMs)
+                .avgRunMs(completed == 0 ? 0L : totalRunMs / completed)
+                .maxRunMs(maxRunMs)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+        watchdog.shutdownNow();
+    }
+
+    // run the command at the head of the lane, then hand the lane back to the pool if there are more
+    private void runNext(Lane lane) {
+        Task task;
+        synchronized (this) {
+            task = lane.tasks.poll();
+            queued--;
+            running++;
+        }
+
+        long started = System.currentTimeMillis();
+        Thread worker = Thread.currentThread();
+        ScheduledFuture<?> timer = watchdog.schedule(() -> task.timeout(worker, lane.device),
+                props.getTimeoutSec(), TimeUnit.SECONDS);
+        try {
+            task.runnable.run();
+        } catch (RuntimeException ex) {
+            log.error("command " + task.commandId + " for " + lane.device + " failed", ex);
+        } finally {
+            timer.cancel(false);
+            task.finish();
+        }
+        long finished = System.currentTimeMillis();
+
+        synchronized (this) {
+            running--;
+            completed++;
+            if (task.timedOut) {
+                timedOut++;
+            }
+            long waitMs = started - task.submitted;
+            long runMs = finished - started;
+            totalWaitMs += waitMs;
+            maxWaitMs = Math.max(maxWaitMs, waitMs);
+            totalRunMs += runMs;
+            maxRunMs = Math.max(maxRunMs, runMs);
+
+            if (lane.tasks.isEmpty()) {
+                lane.busy = false;
+                lanes.remove(lane.device);
+            } else {
+                workers.execute(() -> runNext(lane));
+            }
+        }
+    }
+
+    private static class Lane {
+        private final String device;
+        private final Deque<Task> tasks = new ArrayDeque<>();
+        private boolean busy = false;
+
+        private Lane(String device) {
+            this.device = device;
+        }
+    }
+
+    private static class Task {
+        private final String commandId;
+        private final Runnable runnable;
+        private final long submitted = System.currentTimeMillis();
+        private boolean finished = false;
+        private boolean timedOut = false;
+
+        private Task(String commandId, Runnable runnable) {
+            this.commandId = commandId;
+            this.runnable = runnable;
+        }
+
+        private synchronized void timeout(Thread worker, String device) {
+            if (!finished) {
+                log.error("command " + commandId + " for " + device + " timed out, interrupting");
+                timedOut = true;
+                worker.interrupt();
+            }
+        }
+
+        // no interrupt meant for this command may reach the next one run by the same worker
+        private synchronized void finish() {
+            finished = true;
+            Thread.interrupted();
+        }
+    }
+}
@@ -1,21 +1,36 @@
 package net.es.oscars.pss.svc;
 
 import net.es.oscars.dto.pss.cmd.Command;
+import net.es.oscars.dto.pss.cmd.CommandCompletion;
 import net.es.oscars.dto.pss.cmd.CommandStatus;
+import net.es.oscars.dto.pss.cmd.CommandType;
+import net.es.oscars.dto.pss.cmd.CompletionBatch;
 import net.es.oscars.dto.pss.st.*;
 import org.hashids.Hashids;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Service
 public class CommandQueuer {
+    private static final int MAX_COMPLETIONS = 10000;
+
     private ConcurrentHashMap<String, Command> commands = new ConcurrentHashMap<>();
     private ConcurrentHashMap<String, CommandStatus> statuses = new ConcurrentHashMap<>();
+    private ConcurrentHashMap<String, Long> arrivals = new ConcurrentHashMap<>();
+    private ConcurrentHashMap<String, Long> arrivalTimes = new ConcurrentHashMap<>();
+    private AtomicLong arrivalCount = new AtomicLong(0L);
     private Hashids hashids = new Hashids("ESnet salt");
 
+    // the most recent completions, oldest first, and whoever is waiting for the next one
+    private final Deque<CommandCompletion> completions = new ArrayDeque<>();
+    private long completionCount = 0L;
+    private final Map<CompletableFuture<CompletionBatch>, Long> waiting = new HashMap<>();
+
     public String newCommand(Command command) {
         CommandStatus commandStatus = CommandStatus.builder()
                 .lifecycleStatus(LifecycleStatus.INITIAL_STATE)
@@ -38,6 +53,8 @@ public class CommandQueuer {
 
         String commandId = hashids.encode(id);
 
+        arrivals.put(commandId, arrivalCount.incrementAndGet());
+        arrivalTimes.put(commandId, System.currentTimeMillis());
         commands.put(commandId, command);
         statuses.put(commandId, commandStatus);
 
@@ -53,6 +70,56 @@ public class CommandQueuer {
         statuses.put(commandId, status);
     }
 
+    /**
+     * Record that a command is done, and hand its completion to whoever is waiting for it.
+     */
+    public void completed(String commandId, CommandStatus status) {
+        statuses.put(commandId, status);
+        synchronized (completions) {
+            completionCount++;
+            completions.add(CommandCompletion.builder()
+                    .sequence(completionCount)
+                    .commandId(commandId)
+                    .status(status)
+                    .build());
+            if (completions.size() > MAX_COMPLETIONS) {
+                completions.poll();
+            }
+            waiting.forEach((future, after) -> future.complete(completionsAfter(after, false)));
+            waiting.clear();
+        }
+    }
+
+    /**
+     * @param after the 'next' sequence number of the previous batch; negative if there is none
+     * @return a future of the commands completed after that; already complete if there are any (or if some
+     * completions were missed), otherwise completed at the next completion. Cancel it when giving up on it.
+     */
+    public CompletableFuture<CompletionBatch> completionsAfter(Long after) {
+        synchronized (completions) {
+            waiting.keySet().removeIf(CompletableFuture::isDone);
+            boolean missed = after < 0 || after > completionCount
+                    || (!completions.isEmpty() && after < completions.peek().getSequence() - 1);
+            if (missed || after < completionCount) {
+                return CompletableFuture.completedFuture(completionsAfter(after, missed));
+            }
+            CompletableFuture<CompletionBatch> future = new CompletableFuture<>();
+            waiting.put(future, after);
+            return future;
+        }
+    }
+
+    private CompletionBatch completionsAfter(Long after, boolean missed) {
+        List<CommandCompletion> batch = completions.stream()
+                .filter(c -> c.getSequence() > after)
+                .collect(Collectors.toList());
+        return CompletionBatch.builder()
+                .next(completionCount)
+                .missed(missed)
+                .completions(batch)
+                .build();
+    }
+
     public Optional<Command> getCommand(String commandId) {
         if (commands.containsKey(commandId)) {
             return Optional.of(commands.get(commandId));
@@ -69,10 +136,63 @@ public class CommandQueuer {
         }
     }
 
+    /**
+     * @return the commands with this lifecycle status, in the order they were queued
+     */
     public Map<String, CommandStatus> ofLifecycleStatus(LifecycleStatus status) {
         return statuses.entrySet().stream()
                 .filter(map -> map.getValue().getLifecycleStatus().equals(status))
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+                .sorted(Comparator.comparing(map -> arrivals.getOrDefault(map.getKey(), 0L)))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+    }
+
+    /**
+     * Group the commands waiting to run (in INITIAL_STATE) into the batches they should run in. Consecutive
+     * build / dismantle commands for the same device make up one batch, run in a single router session; any other
+     * command is a batch of its own.
+     *
+     * A batch is only handed out once its first command has waited for windowMs, giving the rest of the batch time
+     * to arrive; until then, later commands for the same device are held back too, so that each device's commands
+     * still run in the order they were queued.
+     *
+     * @param windowMs how long the first command of a batch waits for others
+     * @param maxBatch the most commands in a batch
+     * @return the ids of the commands in each batch, in the order they were queued; batches in the order their
+     * first commands were queued
+     */
+    public List<List<String>> pendingBatches(long windowMs, int maxBatch) {
+        long now = System.currentTimeMillis();
+        List<List<String>> batches = new ArrayList<>();
+        // per device, the build / dismantle batch later commands can join
+        Map<String, List<String>> open = new HashMap<>();
+        Set<String> held = new HashSet<>();
+
+        for (Map.Entry<String, CommandStatus> e : ofLifecycleStatus(LifecycleStatus.INITIAL_STATE).entrySet()) {
+            String commandId = e.getKey();
+            String device = e.getValue().getDevice();
+            if (held.contains(device)) {
+                continue;
+            }
+            CommandType type = e.getValue().getType();
+            boolean batchable = type.equals(CommandType.BUILD) || type.equals(CommandType.DISMANTLE);
+
+            List<String> batch = open.get(device);
+            if (batchable && batch != null && batch.size() < maxBatch) {
+                batch.add(commandId);
+            } else if (batchable && now - arrivalTimes.getOrDefault(commandId, 0L) < windowMs) {
+                held.add(device);
+            } else {
+                batch = new ArrayList<>();
+                batch.add(commandId);
+                batches.add(batch);
+                if (batchable) {
+                    open.put(device, batch);
+                } else {
+                    open.remove(device);
+                }
+            }
+        }
+        return batches;
     }
 
     public Map<String, CommandStatus> ofOperationalStatus(OperationalStatus status) {
@@ -1,8 +1,10 @@
 package net.es.oscars.pss.svc;
 
+import freemarker.template.TemplateException;
 import lombok.extern.slf4j.Slf4j;
 import net.es.oscars.dto.pss.cmd.Command;
 import net.es.oscars.dto.pss.cmd.CommandStatus;
+import net.es.oscars.dto.pss.cmd.CommandType;
 import net.es.oscars.dto.pss.st.*;
 import net.es.oscars.dto.topo.enums.DeviceModel;
 import net.es.oscars.pss.beans.ConfigException;
@@ -10,24 +12,43 @@ import net.es.oscars.pss.beans.ConfigResult;
 import net.es.oscars.pss.beans.ControlPlaneException;
 import net.es.oscars.pss.beans.ControlPlaneResult;
 import net.es.oscars.pss.rancid.RancidArguments;
+import net.es.oscars.pss.rancid.RancidResult;
+import net.es.oscars.pss.tpl.Assembler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Service
 @Slf4j
 public class CommandRunner {
+    private static final String BATCH_TEMPLATE = "batch.ftl";
+
+    // the comment line batch.ftl puts before each fragment; the router session echoes it back
+    private static final Pattern FRAGMENT_MARKER = Pattern.compile("# oscars-batch-fragment (\\d+)");
+
+    // what Junos and SR OS print when they reject a line
+    private static final Pattern ROUTER_ERROR =
+            Pattern.compile("(?i)\\berror:|syntax error|unknown command|invalid input|^\\s*(minor|major|critical):");
+
     private RouterConfigBuilder builder;
     private RancidRunner rancidRunner;
     private HealthService healthService;
+    private Assembler assembler;
 
     @Autowired
-    public CommandRunner(RancidRunner rancidRunner, RouterConfigBuilder builder, HealthService healthService) {
+    public CommandRunner(RancidRunner rancidRunner, RouterConfigBuilder builder, HealthService healthService,
+                         Assembler assembler) {
         this.rancidRunner = rancidRunner;
         this.builder = builder;
         this.healthService = healthService;
+        this.assembler = assembler;
     }
 
     public void run(CommandStatus status, Command command) {
@@ -64,6 +85,94 @@ public class CommandRunner {
         }
     }
 
+    /**
+     * Run build / dismantle commands for the same device in a single router session: their router configs are
+     * generated one by one, in order, and sent together, each after a marker comment. Each command gets the status of
+     * its own section of the session output: ERROR if the router rejected one of its lines, OK otherwise. If the
+     * session itself failed, or the output cannot be split by fragment, a rejected line fails every command.
+     * Commands whose config could not be generated are not sent.
+     */
+    public void runBatch(List<CommandStatus> statuses, List<Command> commands) {
+        List<String> fragments = new ArrayList<>();
+        List<CommandStatus> included = new ArrayList<>();
+        Command first = null;
+
+        for (int i = 0; i < commands.size(); i++) {
+            Command command = commands.get(i);
+            CommandStatus status = statuses.get(i);
+            status.setConfigStatus(ConfigStatus.NONE);
+            try {
+                RancidArguments args = command.getType().equals(CommandType.BUILD)
+                        ? builder.build(command)
+                        : builder.dismantle(command);
+                fragments.add(args.getRouterConfig());
+                included.add(status);
+                if (first == null) {
+                    first = command;
+                }
+            } catch (ConfigException ex) {
+                log.error("error", ex);
+                status.setControlPlaneStatus(ControlPlaneStatus.ERROR);
+            }
+        }
+        if (first == null) {
+            return;
+        }
+
+        List<ConfigStatus> configStatuses;
+        try {
+            String routerConfig = assembler.assemble(fragments, BATCH_TEMPLATE);
+            RancidArguments args = builder.buildRouterConfig(routerConfig, first.getDevice(), first.getModel());
+            RancidResult result = rancidRunner.runRancid(args);
+            configStatuses = fragmentStatuses(result.getDetails(), included.size());
+        } catch (IOException | TemplateException | ConfigException | InterruptedException | TimeoutException
+                | ControlPlaneException ex) {
+            log.error("error", ex);
+            configStatuses = new ArrayList<>();
+            for (int i = 0; i < included.size(); i++) {
+                configStatuses.add(ConfigStatus.ERROR);
+            }
+        }
+        for (int i = 0; i < included.size(); i++) {
+            included.get(i).setConfigStatus(configStatuses.get(i));
+        }
+    }
+
+    /**
+     * @param output the output of a batch session
+     * @param count  the number of fragments in the batch
+     * @return the status of each fragment, going by the lines of its section of the output
+     */
+    private List<ConfigStatus> fragmentStatuses(String output, int count) {
+        ConfigStatus[] statuses = new ConfigStatus[count];
+        Arrays.fill(statuses, ConfigStatus.OK);
+        if (output == null) {
+            return Arrays.asList(statuses);
+        }
+        // -1 until the first marker: login banner and such
+        int current = -1;
+        boolean marked = false;
+        boolean unattributed = false;
+        for (String line : output.split("\\r?\\n")) {
+            Matcher marker = FRAGMENT_MARKER.matcher(line);
+            if (marker.find()) {
+                current = Integer.parseInt(marker.group(1));
+                marked = true;
+            } else if (ROUTER_ERROR.matcher(line).find()) {
+                if (current >= 0 && current < count) {
+                    statuses[current] = ConfigStatus.ERROR;
+                } else {
+                    unattributed = true;
+                }
+            }
+        }
+        if (unattributed && !marked) {
+            log.error("router errors in a batch whose output could not be split by fragment; failing all of them");
+            Arrays.fill(statuses, ConfigStatus.ERROR);
+        }
+        return Arrays.asList(statuses);
+    }
+
     private ConfigResult configure(RancidArguments args) {
 
         ConfigResult result = ConfigResult.builder().build();
@@ -6,6 +6,7 @@ import net.es.oscars.dto.pss.cmd.Command;
 import net.es.oscars.dto.pss.cmd.CommandType;
 import net.es.oscars.dto.pss.cp.ControlPlaneHealth;
 import net.es.oscars.pss.beans.DeviceEntry;
+import net.es.oscars.pss.beans.QueueMetrics;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -15,22 +16,34 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @Service
 public class HealthService {
     private ControlPlaneHealth health;
+    private CommandExecutor executor;
 
-    public HealthService() {
+    @Autowired
+    public HealthService(CommandExecutor executor) {
         log.info("initialized health service");
         this.health = new ControlPlaneHealth();
-        this.health.setDeviceStatus(new HashMap<>());
+        // written to by the command executor's workers
+        this.health.setDeviceStatus(new ConcurrentHashMap<>());
+        this.executor = executor;
     }
 
     public ControlPlaneHealth getHealth() {
         return this.health;
     }
 
+    /**
+     * @return queue depth per device and command latency of the command executor
+     */
+    public QueueMetrics getQueueMetrics() {
+        return executor.metrics();
+    }
+
     public List<DeviceEntry> devicesToCheck(String filename) throws IOException {
         ObjectMapper mapper = new ObjectMapper();
         File jsonFile = new File(filename);
@@ -6,28 +6,32 @@ import net.es.oscars.pss.beans.ControlPlaneException;
 import net.es.oscars.pss.prop.RancidProps;
 import net.es.oscars.pss.rancid.RancidArguments;
 import net.es.oscars.pss.rancid.RancidResult;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import org.zeroturnaround.exec.InvalidExitValueException;
 import org.zeroturnaround.exec.ProcessExecutor;
 import org.zeroturnaround.exec.ProcessResult;
 import org.zeroturnaround.exec.stream.slf4j.Slf4jStream;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.TimeoutException;
 
 @Slf4j
 @Component
 public class RancidRunner {
+    // clogin reads the router config from the stream it is fed instead of from a file
+    private static final String CONFIG_FROM_STDIN = "/dev/stdin";
+
     private RancidProps props;
+    private SshSessionPool sshSessions;
 
     @Autowired
-    public RancidRunner(RancidProps props) {
+    public RancidRunner(RancidProps props, SshSessionPool sshSessions) {
         this.props = props;
+        this.sshSessions = sshSessions;
     }
 
     public RancidResult runRancid(RancidArguments arguments)
@@ -37,33 +41,27 @@ public class RancidRunner {
             log.info("configured to not actually run rancid");
             return RancidResult.builder().commandline("").details("").exitCode(0).build();
         }
-        File temp = File.createTempFile("oscars-routerConfig-", ".tmp");
 
         log.info("routerConfig: " + arguments.getRouterConfig());
 
-        FileUtils.writeStringToFile(temp, arguments.getRouterConfig());
-        String tmpPath = temp.getAbsolutePath();
-        log.info("created temp file" + tmpPath);
         String host = props.getHost();
         String cloginrc = props.getCloginrc();
 
-        String command_line = "";
+        String[] rancidCliArgs = {
+                arguments.getExecutable(),
+                "-x", CONFIG_FROM_STDIN,
+                "-f", cloginrc,
+                arguments.getRouter()
+        };
+        String command_line = StringUtils.join(rancidCliArgs, " ");
         String details;
 
-
         if (host.equals("localhost")) {
-            String[] rancidCliArgs = {
-                    arguments.getExecutable(),
-                    "-x", tmpPath,
-                    "-f", cloginrc,
-                    arguments.getRouter()
-            };
-
-            command_line = StringUtils.join(rancidCliArgs, " ");
 
             // run local rancid
             ProcessResult res = new ProcessExecutor()
                     .command(rancidCliArgs)
+                    .redirectInput(new ByteArrayInputStream(arguments.getRouterConfig().getBytes(StandardCharsets.UTF_8)))
                     .exitValue(0)
                     .readOutput(true)
                     .execute();
@@ -73,56 +71,17 @@ public class RancidRunner {
 
         } else {
 
-            String remotePath = "/tmp/" + temp.getName();
-            String scpTo = host + ":" + remotePath;
-
-            // scp the file to remote host: /tmp/
-            try {
-                log.debug("SCPing: " + tmpPath + " -> " + scpTo);
-                new ProcessExecutor()
-                        .command("scp", tmpPath, scpTo)
-                        .exitValues(0)
-                        .execute();
-
-                // run remote rancid..
-                String[] rancidCliArgs = {
-                        "ssh",
-                        host,
-                        arguments.getExecutable(),
-                        "-x", tmpPath,
-                        "-f", cloginrc,
-                        arguments.getRouter()
-                };
-                command_line = StringUtils.join(rancidCliArgs, " ");
-                log.info("executing rancid command line "+command_line);
-
-                ProcessResult res = new ProcessExecutor()
-                        .command(rancidCliArgs)
-                        .exitValue(0)
-                        .readOutput(true)
-                        .execute();
-
-                details = res.getOutput().getUTF8();
-                log.info("output is: " + details);
-
-                log.debug("deleting: " + scpTo);
-
-                String remoteDelete = "rm " + remotePath;
-                new ProcessExecutor().command("ssh", host, remoteDelete)
-                        .exitValue(0).execute();
-
-
-            } catch (InvalidExitValueException ex) {
-                throw new ControlPlaneException("error running Rancid!");
-
-            } finally {
+            // run remote rancid over the pooled SSH connection to the host
+            log.info("executing rancid command line " + command_line + " on " + host);
+            ProcessResult res = sshSessions.execute(host, arguments.getRouterConfig(), rancidCliArgs);
 
-                FileUtils.deleteQuietly(temp);
+            details = res.getOutput().getUTF8();
+            log.info("output is: " + details);
+            if (res.getExitValue() != 0) {
+                throw new ControlPlaneException("error running Rancid!");
             }
 
         }
-        // delete local file
-        FileUtils.deleteQuietly(temp);
         return RancidResult.builder().commandline(command_line).details(details).exitCode(0).build();
 
     }
@@ -0,0 +1,269 @@
+package net.es.oscars.pss.svc;
+
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.pss.beans.ControlPlaneException;
+import net.es.oscars.pss.prop.RancidProps;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.zeroturnaround.exec.ProcessExecutor;
+import org.zeroturnaround.exec.ProcessOutput;
+import org.zeroturnaround.exec.ProcessResult;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.*;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs commands on remote hosts over one persistent SSH connection per host (an OpenSSH ControlMaster), so that
+ * only the first command pays for the SSH handshake and authentication; later ones open a channel on the
+ * existing connection.
+ *
+ * A master connection is checked (ssh -O check) before use if it has not been for rancid.session-check-sec. A
+ * command is only run again, over a reopened master, if ssh failed before the remote shell started and the master
+ * turns out to be down: the remote shell prints a marker before it runs the command, and once that has been seen the
+ * command (e.g. a config push) may have taken effect, so its result is returned as it is. Masters idle for more than
+ * rancid.session-idle-sec are closed.
+ *
+ * The control sockets are kept in rancid.control-dir, which is made accessible by its owner only.
+ */
+@Slf4j
+@Component
+public class SshSessionPool {
+    // exit value of ssh itself failing, as opposed to the remote command
+    private static final int SSH_ERROR = 255;
+
+    private static final long CONNECT_TIMEOUT_MS = 30000L;
+
+    // printed by the remote shell before it runs the command
+    private static final String SESSION_MARKER = "oscars-ssh-session-open";
+
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+
+    private RancidProps props;
+
+    private final Map<String, Session> sessions = new HashMap<>();
+
+    @Autowired
+    public SshSessionPool(RancidProps props) {
+        this.props = props;
+    }
+
+    /**
+     * Run a command on a host.
+     *
+     * @param host    the host to run it on
+     * @param input   what to feed the command on its standard input
+     * @param command the command and its arguments
+     * @return the result; its exit value is that of the remote command, or 255 if ssh failed
+     * @throws ControlPlaneException if no connection to the host could be made
+     */
+    public ProcessResult execute(String host, String input, String... command)
+            throws ControlPlaneException, IOException, InterruptedException, TimeoutException {
+
+        Session session = session(host);
+        Run run = run(session, input, command);
+        if (run.result.getExitValue() == SSH_ERROR && !run.opened && !checkNow(session)) {
+            log.info("could not reach " + host + " through the master connection, reconnecting");
+            session = session(host);
+            run = run(session, input, command);
+        } else if (run.result.getExitValue() == SSH_ERROR) {
+            log.warn("ssh to " + host + " failed " + (run.opened ? "after the command started" : "with the master up")
+                    + ", not running it again");
+        }
+        session.used();
+        return run.result;
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void evictIdle() {
+        List<Session> idle = new ArrayList<>();
+        long idleSince = System.currentTimeMillis() - props.getSessionIdleSec() * 1000L;
+        synchronized (sessions) {
+            sessions.values().removeIf(s -> {
+                if (s.lastUsed <= idleSince) {
+                    idle.add(s);
+                    return true;
+                }
+                return false;
+            });
+        }
+        idle.forEach(this::close);
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        List<Session> all;
+        synchronized (sessions) {
+            all = new ArrayList<>(sessions.values());
+            sessions.clear();
+        }
+        all.forEach(this::close);
+    }
+
+    // the session for a host, with its master connection up
+    private Session session(String host) throws ControlPlaneException, IOException, InterruptedException, TimeoutException {
+        Session session;
+        synchronized (sessions) {
+            session = sessions.computeIfAbsent(host, h -> new Session(h, socketFor(h)));
+        }
+        synchronized (session) {
+            long checkedBefore = System.currentTimeMillis() - props.getSessionCheckSec() * 1000L;
+            if (session.open && (!session.master.isAlive() || session.lastChecked <= checkedBefore)) {
+                session.open = check(session);
+                session.lastChecked = System.currentTimeMillis();
+                if (!session.open) {
+                    log.info("master SSH connection to " + host + " is down");
+                }
+            }
+            if (!session.open) {
+                open(session);
+            }
+        }
+        session.used();
+        return session;
+    }
+
+    // check the master right away, marking the session closed if it is down
+    private boolean checkNow(Session session) throws IOException, InterruptedException, TimeoutException {
+        synchronized (session) {
+            session.open = session.open && check(session);
+            session.lastChecked = System.currentTimeMillis();
+            return session.open;
+        }
+    }
+
+    private Run run(Session session, String input, String... command)
+            throws IOException, InterruptedException, TimeoutException {
+        List<String> cli = new ArrayList<>(Arrays.asList(
+                props.getSsh(), "-S", session.socket, "-o", "BatchMode=yes", session.host,
+                "echo", SESSION_MARKER, ";"));
+        cli.addAll(Arrays.asList(command));
+
+        ProcessResult res = new ProcessExecutor()
+                .command(cli)
+                .redirectInput(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)))
+                .readOutput(true)
+                .execute();
+
+        // take the marker out of the output; ISO-8859-1 maps every byte to a char and back
+        String output = new String(res.output(), StandardCharsets.ISO_8859_1);
+        int at = output.indexOf(SESSION_MARKER + "\n");
+        if (at < 0) {
+            return new Run(res, false);
+        }
+        output = output.substring(0, at) + output.substring(at + SESSION_MARKER.length() + 1);
+        return new Run(new ProcessResult(res.getExitValue(),
+                new ProcessOutput(output.getBytes(StandardCharsets.ISO_8859_1))), true);
+    }
+
+    private void open(Session session) throws ControlPlaneException, IOException, InterruptedException, TimeoutException {
+        log.info("opening master SSH connection to " + session.host);
+        if (session.master != null) {
+            session.master.destroy();
+        }
+        privateControlDir();
+        new File(session.socket).delete();
+
+        File devNull = new File("/dev/null");
+        session.master = new ProcessBuilder(props.getSsh(), "-M", "-N", "-S", session.socket,
+                "-o", "BatchMode=yes", "-o", "ServerAliveInterval=30", session.host)
+                .redirectInput(devNull)
+                .redirectOutput(devNull)
+                .redirectError(devNull)
+                .start();
+
+        // the master is up once it answers on its control socket
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MS;
+        while (!check(session)) {
+            if (!session.master.isAlive() || System.currentTimeMillis() > deadline) {
+                session.master.destroy();
+                throw new ControlPlaneException("could not open SSH connection to " + session.host);
+            }
+            Thread.sleep(100);
+        }
+        session.open = true;
+        session.lastChecked = System.currentTimeMillis();
+    }
+
+    private boolean check(Session session) throws IOException, InterruptedException, TimeoutException {
+        if (session.master == null || !session.master.isAlive()) {
+            return false;
+        }
+        int exit = new ProcessExecutor()
+                .command(props.getSsh(), "-S", session.socket, "-O", "check", session.host)
+                .execute()
+                .getExitValue();
+        return exit == 0;
+    }
+
+    private void close(Session session) {
+        log.info("closing master SSH connection to " + session.host);
+        try {
+            new ProcessExecutor()
+                    .command(props.getSsh(), "-S", session.socket, "-O", "exit", session.host)
+                    .execute();
+        } catch (IOException | TimeoutException ex) {
+            log.error("could not close SSH connection to " + session.host, ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (session.master != null) {
+                session.master.destroy();
+            }
+        }
+    }
+
+    // anyone who can reach a control socket can run commands over its connection
+    private void privateControlDir() throws IOException {
+        Path dir = Paths.get(props.getControlDir());
+        if (Files.notExists(dir)) {
+            Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+        }
+        Files.setPosixFilePermissions(dir, OWNER_ONLY);
+    }
+
+    private String socketFor(String host) {
+        String name = "oscars-ssh-" + host.replaceAll("[^A-Za-z0-9.-]", "_");
+        return new File(props.getControlDir(), name).getAbsolutePath();
+    }
+
+    private static class Run {
+        private final ProcessResult result;
+        // whether the remote shell started, i.e. the command may have run
+        private final boolean opened;
+
+        private Run(ProcessResult result, boolean opened) {
+            this.result = result;
+            this.opened = opened;
+        }
+    }
+
+    private static class Session {
+        private final String host;
+        private final String socket;
+        private Process master;
+        private boolean open = false;
+        private long lastChecked = 0L;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private Session(String host, String socket) {
+            this.host = host;
+            this.socket = socket;
+        }
+
+        private void used() {
+            lastUsed = System.currentTimeMillis();
+        }
+    }
+}
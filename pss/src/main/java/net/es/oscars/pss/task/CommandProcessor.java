@@ -1,14 +1,23 @@
 package net.es.oscars.pss.task;
 
 import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.dto.pss.cmd.Command;
 import net.es.oscars.dto.pss.cmd.CommandStatus;
+import net.es.oscars.dto.pss.cmd.CommandType;
+import net.es.oscars.dto.pss.st.ConfigStatus;
+import net.es.oscars.dto.pss.st.ControlPlaneStatus;
 import net.es.oscars.dto.pss.st.LifecycleStatus;
+import net.es.oscars.pss.prop.WorkerProps;
+import net.es.oscars.pss.svc.CommandExecutor;
 import net.es.oscars.pss.svc.CommandQueuer;
 import net.es.oscars.pss.svc.CommandRunner;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
 
 
 @Slf4j
@@ -16,30 +25,76 @@ import org.springframework.stereotype.Component;
 public class CommandProcessor {
     private CommandQueuer queuer;
     private CommandRunner runner;
+    private CommandExecutor executor;
+    private WorkerProps props;
 
     @Autowired
-    public CommandProcessor(CommandQueuer queuer, CommandRunner runner) {
+    public CommandProcessor(CommandQueuer queuer, CommandRunner runner, CommandExecutor executor, WorkerProps props) {
 
         this.queuer = queuer;
         this.runner = runner;
+        this.executor = executor;
+        this.props = props;
     }
 
     @Scheduled(fixedDelay = 1000)
     public void processsCommands() throws InterruptedException {
 
-        // serially process everything
-        queuer.ofLifecycleStatus(LifecycleStatus.INITIAL_STATE).entrySet().forEach(e -> {
-            String commandId = e.getKey();
-            CommandStatus status = e.getValue();
-            log.info("processing a command with id "+commandId);
-            status.setLifecycleStatus(LifecycleStatus.PROCESSING);
-            log.info("running command "+commandId);
-            queuer.getCommand(commandId).ifPresent(cmd -> runner.run(status, cmd));
-            log.info("completed command "+commandId);
-            status.setLifecycleStatus(LifecycleStatus.DONE);
-            queuer.setCommandStatus(commandId, status);
-        });
+        // hand new commands to the executor, oldest first; it runs them in parallel across devices
+        for (List<String> commandIds : queuer.pendingBatches(props.getBatchWindowMs(), props.getMaxBatch())) {
+            List<CommandStatus> statuses = commandIds.stream()
+                    .map(commandId -> queuer.getStatus(commandId).orElseThrow(NoSuchElementException::new))
+                    .collect(Collectors.toList());
+            String device = statuses.get(0).getDevice();
+            String batchId = String.join(",", commandIds);
 
+            statuses.forEach(status -> status.setLifecycleStatus(LifecycleStatus.WAITING));
+            if (!executor.submit(batchId, device, () -> process(commandIds, statuses))) {
+                // queue is full; pick up from here next time
+                statuses.forEach(status -> status.setLifecycleStatus(LifecycleStatus.INITIAL_STATE));
+                log.info("command queue full, deferring commands " + batchId);
+                break;
+            }
+            log.info("queued commands with ids " + batchId);
+        }
+
+    }
+
+    private void process(List<String> commandIds, List<CommandStatus> statuses) {
+        String batchId = String.join(",", commandIds);
+        log.info("processing commands with ids " + batchId);
+        statuses.forEach(status -> status.setLifecycleStatus(LifecycleStatus.PROCESSING));
+
+        List<Command> commands = commandIds.stream()
+                .map(commandId -> queuer.getCommand(commandId).orElseThrow(NoSuchElementException::new))
+                .collect(Collectors.toList());
+        log.info("running commands " + batchId);
+        boolean failed = true;
+        try {
+            if (commands.size() == 1) {
+                runner.run(statuses.get(0), commands.get(0));
+            } else {
+                runner.runBatch(statuses, commands);
+            }
+            failed = false;
+            log.info("completed commands " + batchId);
+        } finally {
+            // always hand the statuses back, so the commands do not stay PROCESSING forever
+            if (failed) {
+                log.error("running commands " + batchId + " failed");
+            }
+            for (int i = 0; i < commandIds.size(); i++) {
+                CommandStatus status = statuses.get(i);
+                if (failed) {
+                    status.setControlPlaneStatus(ControlPlaneStatus.ERROR);
+                    if (!commands.get(i).getType().equals(CommandType.CONTROL_PLANE_STATUS)) {
+                        status.setConfigStatus(ConfigStatus.ERROR);
+                    }
+                }
+                status.setLifecycleStatus(LifecycleStatus.DONE);
+                queuer.completed(commandIds.get(i), status);
+            }
+        }
     }
 
 
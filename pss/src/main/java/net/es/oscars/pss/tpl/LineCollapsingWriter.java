@@ -0,0 +1,55 @@
+package net.es.oscars.pss.tpl;
+
+import java.io.Writer;
+
+/**
+ * Writes into a StringBuilder, turning each run of line breaks (\r and \n, in any mix) into a single \n. Line breaks
+ * at the very end are dropped, as are line breaks when nothing else gets written.
+ */
+public class LineCollapsingWriter extends Writer {
+    private final StringBuilder out;
+    private boolean lineBreak = false;
+
+    public LineCollapsingWriter(StringBuilder out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            put(cbuf[i]);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            put(str.charAt(i));
+        }
+    }
+
+    @Override
+    public void write(int c) {
+        put((char) c);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private void put(char c) {
+        if (c == '\r' || c == '\n') {
+            lineBreak = true;
+        } else {
+            if (lineBreak) {
+                out.append('\n');
+                lineBreak = false;
+            }
+            out.append(c);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package net.es.oscars.pss.tpl;
 
 import freemarker.cache.FileTemplateLoader;
 import freemarker.cache.MultiTemplateLoader;
+import freemarker.cache.StrongCacheStorage;
 import freemarker.cache.TemplateLoader;
 import freemarker.template.Configuration;
 import freemarker.template.DefaultObjectWrapper;
@@ -14,16 +15,31 @@ import org.springframework.stereotype.Component;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.StringWriter;
-import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Renders the router config templates.
+ *
+ * All templates under the template dirs are compiled once at startup and kept for the life of the application
+ * (restart to pick up template changes). Rendering goes straight into a per-thread buffer that is reused from one
+ * render to the next, collapsing each run of line breaks into a single newline as it is written.
+ */
 @Slf4j
 @Component
 public class Stringifier {
+    private static final String TEMPLATE_EXTENSION = ".ftl";
+
+    // a buffer grown past this is not kept for the next render
+    private static final int MAX_POOLED_BUFFER = 1024 * 1024;
+
+    private static final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(4096));
 
     private Configuration fmCfg;
 
@@ -59,19 +75,54 @@ public class Stringifier {
 
         MultiTemplateLoader mtl = new MultiTemplateLoader(loaderList.toArray(new TemplateLoader[0]));
         fmCfg.setTemplateLoader(mtl);
+        fmCfg.setCacheStorage(new StrongCacheStorage());
+        fmCfg.setTemplateUpdateDelayMilliseconds(Long.MAX_VALUE);
+
+        this.preloadTemplates();
+    }
+
+    // compile every template up front, so that no render has to
+    private void preloadTemplates() {
+        long start = System.currentTimeMillis();
+        int loaded = 0;
+        for (String templatePath : this.props.getTemplateDirs()) {
+            Path dir = Paths.get(templatePath);
+            if (!Files.isDirectory(dir)) {
+                continue;
+            }
+            try (Stream<Path> paths = Files.walk(dir)) {
+                List<String> names = paths
+                        .filter(path -> path.toString().endsWith(TEMPLATE_EXTENSION))
+                        .map(path -> dir.relativize(path).toString().replace(File.separatorChar, '/'))
+                        .collect(Collectors.toList());
+                for (String name : names) {
+                    try {
+                        fmCfg.getTemplate(name);
+                        loaded++;
+                    } catch (IOException ex) {
+                        log.error("could not load template " + name, ex);
+                    }
+                }
+            } catch (IOException ex) {
+                log.error("IO exception for " + templatePath, ex);
+            }
+        }
+        log.info("preloaded " + loaded + " templates in " + (System.currentTimeMillis() - start) + " ms");
     }
 
     public String stringify(Map<String, Object> root, String templateFilename) throws IOException, TemplateException {
 
-        Writer writer = new StringWriter();
         Template tpl = fmCfg.getTemplate(templateFilename);
-        tpl.process(root, writer);
-        writer.flush();
-
-        String output = writer.toString();
-        List<String> lines = Arrays.asList(output.split("[\\r\\n]+"));
-
-        return String.join("\n", lines);
+        StringBuilder buffer = buffers.get();
+        buffer.setLength(0);
+        try {
+            tpl.process(root, new LineCollapsingWriter(buffer));
+            return buffer.toString();
+        } finally {
+            if (buffer.capacity() > MAX_POOLED_BUFFER) {
+                buffers.remove();
+            }
+        }
 
     }
 }
@@ -0,0 +1,147 @@
+package net.es.oscars.pss.unit;
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.dto.pss.cmd.Command;
+import net.es.oscars.dto.pss.cmd.CommandStatus;
+import net.es.oscars.dto.pss.cmd.CommandType;
+import net.es.oscars.dto.pss.st.ConfigStatus;
+import net.es.oscars.dto.pss.st.ControlPlaneStatus;
+import net.es.oscars.dto.topo.enums.DeviceModel;
+import net.es.oscars.pss.beans.ConfigException;
+import net.es.oscars.pss.ctg.UnitTests;
+import net.es.oscars.pss.prop.RancidProps;
+import net.es.oscars.pss.prop.StartupProps;
+import net.es.oscars.pss.rancid.RancidArguments;
+import net.es.oscars.pss.rancid.RancidResult;
+import net.es.oscars.pss.svc.CommandQueuer;
+import net.es.oscars.pss.svc.CommandRunner;
+import net.es.oscars.pss.svc.RancidRunner;
+import net.es.oscars.pss.svc.RouterConfigBuilder;
+import net.es.oscars.pss.tpl.Assembler;
+import net.es.oscars.pss.tpl.Stringifier;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@Slf4j
+@Category(UnitTests.class)
+public class CommandBatchingTest {
+
+    @Test
+    public void buildsAndDismantlesForTheSameDeviceAreBatched() {
+        CommandQueuer queuer = new CommandQueuer();
+        String a1 = queue(queuer, "alpha", CommandType.BUILD);
+        String a2 = queue(queuer, "alpha", CommandType.BUILD);
+        String b1 = queue(queuer, "beta", CommandType.BUILD);
+        String a3 = queue(queuer, "alpha", CommandType.DISMANTLE);
+        String check = queue(queuer, "alpha", CommandType.CONTROL_PLANE_STATUS);
+        String a4 = queue(queuer, "alpha", CommandType.BUILD);
+
+        List<List<String>> batches = queuer.pendingBatches(0, 20);
+        assertEquals(Arrays.asList(
+                Arrays.asList(a1, a2, a3),
+                Collections.singletonList(b1),
+                Collections.singletonList(check),
+                Collections.singletonList(a4)), batches);
+
+        batches = queuer.pendingBatches(0, 2);
+        assertEquals(Arrays.asList(
+                Arrays.asList(a1, a2),
+                Collections.singletonList(b1),
+                Collections.singletonList(a3),
+                Collections.singletonList(check),
+                Collections.singletonList(a4)), batches);
+    }
+
+    @Test
+    public void batchesWaitForTheirWindow() {
+        CommandQueuer queuer = new CommandQueuer();
+        queue(queuer, "alpha", CommandType.BUILD);
+        String check = queue(queuer, "beta", CommandType.CONTROL_PLANE_STATUS);
+        queue(queuer, "alpha", CommandType.CONTROL_PLANE_STATUS);
+
+        // alpha's control plane check has to wait behind its build
+        List<List<String>> batches = queuer.pendingBatches(60000, 20);
+        assertEquals(Collections.singletonList(Collections.singletonList(check)), batches);
+    }
+
+    @Test
+    public void eachBatchedCommandGetsItsOwnStatus() {
+        List<String> sessions = new ArrayList<>();
+        CommandRunner runner = runner(sessions);
+
+        // "bad" lines are rejected by the router; "broken" configs cannot be generated
+        List<Command> commands = Arrays.asList(batched("set good-1"), batched("set bad-2"),
+                batched("broken"), batched("set good-4\nset good-5"));
+        List<CommandStatus> statuses = commands.stream().map(c -> new CommandStatus()).collect(Collectors.toList());
+        runner.runBatch(statuses, commands);
+
+        assertEquals(1, sessions.size());
+        assertEquals(Arrays.asList(ConfigStatus.OK, ConfigStatus.ERROR, ConfigStatus.NONE, ConfigStatus.OK),
+                statuses.stream().map(CommandStatus::getConfigStatus).collect(Collectors.toList()));
+        assertEquals(ControlPlaneStatus.ERROR, statuses.get(2).getControlPlaneStatus());
+        assertNull(statuses.get(1).getControlPlaneStatus());
+    }
+
+    // a runner whose router session echoes each line it is sent, followed by an error for the "bad" ones
+    private CommandRunner runner(List<String> sessions) {
+        RancidProps rancidProps = new RancidProps();
+        rancidProps.setDir("/usr/local/libexec/rancid");
+        rancidProps.setCloginrc("cloginrc");
+
+        RouterConfigBuilder builder = new RouterConfigBuilder(rancidProps, null, null, null) {
+            @Override
+            public RancidArguments build(Command command) throws ConfigException {
+                if (command.getConnectionId().equals("broken")) {
+                    throw new ConfigException("could not generate");
+                }
+                return buildRouterConfig(command.getConnectionId(), command.getDevice(), command.getModel());
+            }
+        };
+
+        RancidRunner rancid = new RancidRunner(rancidProps, null) {
+            @Override
+            public RancidResult runRancid(RancidArguments arguments) {
+                sessions.add(arguments.getRouterConfig());
+                StringBuilder output = new StringBuilder("alpha login banner\n");
+                for (String line : arguments.getRouterConfig().split("\n")) {
+                    output.append("alpha# ").append(line).append("\n");
+                    if (line.contains("bad")) {
+                        output.append("error: syntax error\n");
+                    }
+                }
+                return RancidResult.builder().details(output.toString()).exitCode(0).build();
+            }
+        };
+
+        StartupProps startupProps = new StartupProps();
+        startupProps.setTemplateDirs(new String[]{"./config/templates/"});
+        Assembler assembler = new Assembler();
+        ReflectionTestUtils.setField(assembler, "stringifier", new Stringifier(startupProps));
+
+        return new CommandRunner(rancid, builder, null, assembler);
+    }
+
+    private Command batched(String routerConfig) {
+        return Command.builder()
+                .device("alpha")
+                .type(CommandType.BUILD)
+                .model(DeviceModel.JUNIPER_MX)
+                .connectionId(routerConfig)
+                .build();
+    }
+
+    private String queue(CommandQueuer queuer, String device, CommandType type) {
+        return queuer.newCommand(Command.builder()
+                .device(device)
+                .type(type)
+                .model(DeviceModel.JUNIPER_MX)
+                .build());
+    }
+}
@@ -0,0 +1,156 @@
+package net.es.oscars.pss.unit;
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.pss.beans.QueueMetrics;
+import net.es.oscars.pss.ctg.UnitTests;
+import net.es.oscars.pss.prop.WorkerProps;
+import net.es.oscars.pss.svc.CommandExecutor;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+@Slf4j
+@Category(UnitTests.class)
+public class CommandExecutorTest {
+    private CommandExecutor executor;
+
+    private CommandExecutor executor(int threads, int maxQueued, int timeoutSec) {
+        WorkerProps props = new WorkerProps();
+        props.setThreads(threads);
+        props.setMaxQueued(maxQueued);
+        props.setTimeoutSec(timeoutSec);
+        executor = new CommandExecutor(props);
+        return executor;
+    }
+
+    @After
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void sameDeviceRunsInOrderOtherDevicesInParallel() throws InterruptedException {
+        executor(4, 100, 60);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        Map<String, AtomicInteger> runningPerDevice = new HashMap<>();
+        AtomicBoolean interleaved = new AtomicBoolean(false);
+        AtomicInteger maxDevicesAtOnce = new AtomicInteger(0);
+        AtomicInteger devicesAtOnce = new AtomicInteger(0);
+        CountDownLatch done = new CountDownLatch(20);
+
+        for (String device : Arrays.asList("alpha", "beta", "gamma", "delta")) {
+            runningPerDevice.put(device, new AtomicInteger(0));
+        }
+        for (int i = 0; i < 5; i++) {
+            for (String device : runningPerDevice.keySet()) {
+                String commandId = device + "-" + i;
+                assertTrue(executor.submit(commandId, device, () -> {
+                    if (runningPerDevice.get(device).incrementAndGet() > 1) {
+                        interleaved.set(true);
+                    }
+                    maxDevicesAtOnce.accumulateAndGet(devicesAtOnce.incrementAndGet(), Math::max);
+                    sleep(20);
+                    order.add(commandId);
+                    devicesAtOnce.decrementAndGet();
+                    runningPerDevice.get(device).decrementAndGet();
+                    done.countDown();
+                }));
+            }
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        assertFalse(interleaved.get());
+        assertTrue(maxDevicesAtOnce.get() > 1);
+        for (String device : runningPerDevice.keySet()) {
+            int last = -1;
+            for (String commandId : order) {
+                if (commandId.startsWith(device)) {
+                    int i = Integer.parseInt(commandId.substring(device.length() + 1));
+                    assertEquals(last + 1, i);
+                    last = i;
+                }
+            }
+        }
+        // the counters are updated right after the last command returns
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.metrics().getCompleted() < 20 && System.currentTimeMillis() < deadline) {
+            sleep(10);
+        }
+        QueueMetrics metrics = executor.metrics();
+        assertEquals(Long.valueOf(20), metrics.getCompleted());
+        assertEquals(Integer.valueOf(0), metrics.getQueued());
+    }
+
+    @Test
+    public void fullQueueRefusesCommands() throws InterruptedException {
+        executor(1, 2, 60);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        assertTrue(executor.submit("running", "alpha", () -> {
+            started.countDown();
+            await(release);
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertTrue(executor.submit("first", "alpha", () -> { }));
+        assertTrue(executor.submit("second", "beta", () -> { }));
+        assertFalse(executor.submit("third", "gamma", () -> { }));
+
+        QueueMetrics metrics = executor.metrics();
+        assertEquals(Integer.valueOf(2), metrics.getQueued());
+        assertEquals(Integer.valueOf(1), metrics.getRunning());
+        assertEquals(Long.valueOf(1), metrics.getRejected());
+        assertEquals(Integer.valueOf(1), metrics.getQueuedPerDevice().get("alpha"));
+        release.countDown();
+    }
+
+    @Test
+    public void slowCommandsAreInterrupted() throws InterruptedException {
+        executor(1, 10, 1);
+        AtomicBoolean interrupted = new AtomicBoolean(false);
+        CountDownLatch done = new CountDownLatch(2);
+        executor.submit("slow", "alpha", () -> {
+            try {
+                Thread.sleep(10000);
+            } catch (InterruptedException ex) {
+                interrupted.set(true);
+            }
+            done.countDown();
+        });
+        // the next command on the same worker is not affected
+        AtomicBoolean nextInterrupted = new AtomicBoolean(true);
+        executor.submit("next", "alpha", () -> {
+            nextInterrupted.set(Thread.currentThread().isInterrupted());
+            done.countDown();
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(interrupted.get());
+        assertFalse(nextInterrupted.get());
+        assertEquals(Long.valueOf(1), executor.metrics().getTimedOut());
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
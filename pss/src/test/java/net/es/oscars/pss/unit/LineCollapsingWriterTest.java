@@ -0,0 +1,28 @@
+package net.es.oscars.pss.unit;
+
+import net.es.oscars.pss.ctg.UnitTests;
+import net.es.oscars.pss.tpl.LineCollapsingWriter;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+@Category(UnitTests.class)
+public class LineCollapsingWriterTest {
+
+    @Test
+    public void collapsesLineBreaksLikeSplittingAndJoining() {
+        for (String output : Arrays.asList("", "\n", "\r\n\r\n", "exit all", "exit all\n",
+                "\nconfigure\r\n\r\n    service\n\n\nexit all\r\n", "a\rb\n\rc")) {
+            StringBuilder out = new StringBuilder();
+            LineCollapsingWriter writer = new LineCollapsingWriter(out);
+            // in pieces, the way templates are rendered
+            for (int i = 0; i < output.length(); i += 3) {
+                writer.write(output, i, Math.min(3, output.length() - i));
+            }
+            assertEquals(String.join("\n", output.split("[\\r\\n]+")), out.toString());
+        }
+    }
+}
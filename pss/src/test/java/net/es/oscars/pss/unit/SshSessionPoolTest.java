@@ -0,0 +1,165 @@
+package net.es.oscars.pss.unit;
+
+import lombok.extern.slf4j.Slf4j;
+import net.es.oscars.pss.ctg.UnitTests;
+import net.es.oscars.pss.prop.RancidProps;
+import net.es.oscars.pss.svc.SshSessionPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.zeroturnaround.exec.ProcessResult;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the pool against a stand-in for ssh that keeps a "master connection" for as long as its control socket file
+ * exists, and runs commands locally. If a "drop" file is present, the next command finds the connection gone before
+ * its session opens.
+ */
+@Slf4j
+@Category(UnitTests.class)
+public class SshSessionPoolTest {
+    private static final String FAKE_SSH = String.join("\n",
+            "#!/bin/bash",
+            "echo \"$*\" >> \"$(dirname \"$0\")/calls.log\"",
+            "sock=''; op=''; master=0",
+            "while [ $# -gt 0 ]; do",
+            "  case \"$1\" in",
+            "    -S) sock=\"$2\"; shift 2;;",
+            "    -O) op=\"$2\"; shift 2;;",
+            "    -o) shift 2;;",
+            "    -M) master=1; shift;;",
+            "    -N|-f) shift;;",
+            "    *) break;;",
+            "  esac",
+            "done",
+            "shift",
+            "if [ $master = 1 ]; then",
+            "  touch \"$sock\"",
+            "  while [ -e \"$sock\" ]; do sleep 0.05; done",
+            "  exit 0",
+            "fi",
+            "case \"$op\" in",
+            "  check) [ -e \"$sock\" ] && exit 0 || exit 255;;",
+            "  exit) rm -f \"$sock\"; exit 0;;",
+            "esac",
+            "if [ -e \"$(dirname \"$0\")/drop\" ]; then rm -f \"$(dirname \"$0\")/drop\" \"$sock\"; exit 255; fi",
+            "[ -e \"$sock\" ] || exit 255",
+            "exec bash -c \"$*\"",
+            "");
+
+    private File dir;
+    private RancidProps props;
+    private SshSessionPool pool;
+
+    @Before
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("oscars-ssh-test").toFile();
+        File ssh = new File(dir, "ssh");
+        Files.write(ssh.toPath(), FAKE_SSH.getBytes(StandardCharsets.UTF_8));
+        assertTrue(ssh.setExecutable(true));
+
+        props = new RancidProps();
+        props.setSsh(ssh.getAbsolutePath());
+        props.setControlDir(dir.getAbsolutePath());
+        props.setSessionIdleSec(600);
+        props.setSessionCheckSec(600);
+        pool = new SshSessionPool(props);
+    }
+
+    @After
+    public void teardown() {
+        pool.closeAll();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void commandsShareOneConnectionAndReadStdin() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            ProcessResult res = pool.execute("router-host", "config " + i, "cat");
+            assertEquals(0, res.getExitValue());
+            assertEquals("config " + i, res.getOutput().getUTF8());
+        }
+        assertEquals(1, masterConnections());
+    }
+
+    @Test
+    public void reconnectsWhenTheConnectionDrops() throws Exception {
+        assertEquals(0, pool.execute("router-host", "", "true").getExitValue());
+        assertTrue(socket("router-host").delete());
+
+        ProcessResult res = pool.execute("router-host", "still here", "cat");
+        assertEquals(0, res.getExitValue());
+        assertEquals("still here", res.getOutput().getUTF8());
+        assertEquals(2, masterConnections());
+    }
+
+    @Test
+    public void reconnectsWhenTheSessionNeverOpened() throws Exception {
+        assertEquals(0, pool.execute("router-host", "", "true").getExitValue());
+        assertTrue(new File(dir, "drop").createNewFile());
+
+        ProcessResult res = pool.execute("router-host", "still here", "cat");
+        assertEquals(0, res.getExitValue());
+        assertEquals("still here", res.getOutput().getUTF8());
+        assertEquals(2, masterConnections());
+    }
+
+    @Test
+    public void commandsThatStartedAreNotRunAgain() throws Exception {
+        File ran = new File(dir, "ran");
+        // the command runs, then the connection drops; pushing it again could apply a config twice
+        ProcessResult res = pool.execute("router-host", "",
+                "echo once >> " + ran.getAbsolutePath() + "; rm -f " + socket("router-host").getAbsolutePath() + "; exit 255");
+        assertEquals(255, res.getExitValue());
+        assertEquals(1, Files.readAllLines(ran.toPath()).size());
+        assertEquals(1, masterConnections());
+    }
+
+    @Test
+    public void controlDirIsPrivate() throws Exception {
+        File controlDir = new File(dir, "sockets");
+        props.setControlDir(controlDir.getAbsolutePath());
+        pool.execute("router-host", "", "true");
+        assertEquals(PosixFilePermissions.fromString("rwx------"), Files.getPosixFilePermissions(controlDir.toPath()));
+        pool.closeAll();
+        new File(controlDir, "oscars-ssh-router-host").delete();
+        controlDir.delete();
+    }
+
+    @Test
+    public void idleConnectionsAreClosed() throws Exception {
+        pool.execute("router-host", "", "true");
+        pool.evictIdle();
+        assertTrue(socket("router-host").exists());
+
+        props.setSessionIdleSec(0);
+        pool.evictIdle();
+        assertFalse(socket("router-host").exists());
+
+        pool.execute("router-host", "", "true");
+        assertEquals(2, masterConnections());
+    }
+
+    private File socket(String host) {
+        return new File(dir, "oscars-ssh-" + host);
+    }
+
+    private long masterConnections() throws Exception {
+        List<String> calls = Files.readAllLines(new File(dir, "calls.log").toPath());
+        return calls.stream().filter(c -> c.startsWith("-M")).count();
+    }
+}
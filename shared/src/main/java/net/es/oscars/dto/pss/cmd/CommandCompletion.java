@@ -0,0 +1,18 @@
+package net.es.oscars.dto.pss.cmd;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CommandCompletion {
+    private Long sequence;
+    private String commandId;
+    private CommandStatus status;
+
+}
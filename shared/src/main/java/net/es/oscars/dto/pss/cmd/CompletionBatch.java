@@ -0,0 +1,26 @@
+package net.es.oscars.dto.pss.cmd;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Commands completed after a given sequence number. 'next' is the sequence number to ask for completions after
+ * next time; 'missed' is set when some completions since the given sequence number are no longer known
+ * (the PSS restarted, or the caller fell too far behind), so the statuses of outstanding commands should be
+ * fetched again.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CompletionBatch {
+    private Long next;
+    private Boolean missed;
+    private List<CommandCompletion> completions;
+
+}
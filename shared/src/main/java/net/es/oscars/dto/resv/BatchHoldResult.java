@@ -0,0 +1,33 @@
+package net.es.oscars.dto.resv;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The outcome of one connection of a /resv/connection/batch request, in the order the connections were submitted.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchHoldResult {
+    private String connectionId;
+
+    /**
+     * Whether the connection is now HELD.
+     */
+    private Boolean held;
+
+    /**
+     * Why the connection could not be considered at all (e.g. a duplicate connection id or an invalid URN);
+     * null if it went through the PCE, whether or not resources were found.
+     */
+    private String error;
+
+    /**
+     * The connection as held, or as aborted if the PCE found no resources; null if there is an error.
+     */
+    private Connection connection;
+}
@@ -36,4 +36,17 @@ public class ConnectionFilter {
     private Set<Date> startDates;
 
     private Set<Date> endDates;
+
+    // paging; all optional
+
+    private ConnectionSort sortBy;
+
+    private Boolean descending;
+
+    private Integer pageSize;
+
+    /**
+     * The nextCursor of the previous page.
+     */
+    private String cursor;
 }
@@ -0,0 +1,29 @@
+package net.es.oscars.dto.resv;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of the connections matching a ConnectionFilter.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConnectionPage {
+    private List<Connection> connections;
+
+    /**
+     * Pass as the cursor of the same filter to get the next page; null on the last page.
+     */
+    private String nextCursor;
+
+    /**
+     * The number of connections matching the filter, on all pages.
+     */
+    private Integer total;
+}
@@ -0,0 +1,11 @@
+package net.es.oscars.dto.resv;
+
+/**
+ * The order in which /resv/filter and /resv/all return connections; ties are broken by connection id.
+ */
+public enum ConnectionSort {
+    CONNECTION_ID,
+    SUBMITTED,
+    START,
+    END
+}
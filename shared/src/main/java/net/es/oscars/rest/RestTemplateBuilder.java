@@ -3,9 +3,14 @@ package net.es.oscars.rest;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.ssl.SSLContexts;
 import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
@@ -23,6 +28,15 @@ import java.security.cert.CertificateException;
 public class RestTemplateBuilder {
 
     public RestTemplate build(RestProperties restProperties) throws CertificateException, NoSuchAlgorithmException, KeyStoreException, IOException, ConfigurationException, KeyManagementException {
+        return build(restProperties, null, null);
+    }
+
+    /**
+     * Build a RestTemplate that keeps up to maxConnections connections alive (to any one host) and gives up on
+     * connecting, waiting for a pooled connection, or reading a response after timeoutMillis.
+     * Null arguments keep the HttpClient defaults.
+     */
+    public RestTemplate build(RestProperties restProperties, Integer maxConnections, Integer timeoutMillis) throws CertificateException, NoSuchAlgorithmException, KeyStoreException, IOException, ConfigurationException, KeyManagementException {
         if (restProperties == null) {
             throw new ConfigurationException("no rest properties set!");
         }
@@ -49,10 +63,29 @@ public class RestTemplateBuilder {
         BasicCredentialsProvider credentialsProvider = new BasicCredentialsProvider();
         credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(sharedusername, sharedpassword));
 
-        HttpClient httpClient = HttpClientBuilder.create()
+        HttpClientBuilder httpClientBuilder = HttpClientBuilder.create()
                 .setSSLSocketFactory(sslSocketFactory)
-                .setDefaultCredentialsProvider(credentialsProvider)
-                .build();
+                .setDefaultCredentialsProvider(credentialsProvider);
+
+        if (maxConnections != null) {
+            PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+                    RegistryBuilder.<ConnectionSocketFactory>create()
+                            .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                            .register("https", sslSocketFactory)
+                            .build());
+            connectionManager.setMaxTotal(maxConnections);
+            connectionManager.setDefaultMaxPerRoute(maxConnections);
+            httpClientBuilder.setConnectionManager(connectionManager);
+        }
+        if (timeoutMillis != null) {
+            httpClientBuilder.setDefaultRequestConfig(RequestConfig.custom()
+                    .setConnectTimeout(timeoutMillis)
+                    .setConnectionRequestTimeout(timeoutMillis)
+                    .setSocketTimeout(timeoutMillis)
+                    .build());
+        }
+
+        HttpClient httpClient = httpClientBuilder.build();
 
         ClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
 
@@ -10,6 +10,8 @@ import net.es.oscars.dto.pss.cmd.CommandType;
 import net.es.oscars.dto.pss.cmd.GeneratedCommands;
 import net.es.oscars.dto.resv.Connection;
 import net.es.oscars.dto.resv.ConnectionFilter;
+import net.es.oscars.dto.resv.ConnectionPage;
+import net.es.oscars.dto.resv.ConnectionSort;
 import net.es.oscars.dto.resv.precheck.PreCheckResponse;
 import net.es.oscars.dto.topo.BidirectionalPath;
 import net.es.oscars.dto.topo.Edge;
@@ -93,14 +95,14 @@ public class ReservationController {
 
     @RequestMapping(value = "/resv/list/allconnections", method = RequestMethod.GET)
     @ResponseBody
-    public Set<Connection> resv_list_connections() {
-        ConnectionFilter f = makeConnectionFilter(Filter.builder().build());
+    public ConnectionPage resv_list_connections(@RequestParam(required = false) String cursor) {
+        ConnectionFilter f = makeConnectionFilter(Filter.builder().cursor(cursor).build());
         return connectionProvider.filtered(f);
     }
 
     @RequestMapping(value = "/resv/list/filter", method = RequestMethod.POST)
     @ResponseBody
-    public Set<Connection> resv_filter_connections(@RequestBody Filter filter) {
+    public ConnectionPage resv_filter_connections(@RequestBody Filter filter) {
         ConnectionFilter f = makeConnectionFilter(filter);
         return connectionProvider.filtered(f);
     }
@@ -145,6 +147,15 @@ public class ReservationController {
 
         Set<Integer> minBandwidths = filter.getMinBandwidths() == null ? new HashSet<>() : filter.getMinBandwidths();
         Set<Integer> maxBandwidths = filter.getMaxBandwidths() == null ? new HashSet<>() : filter.getMaxBandwidths();
+
+        ConnectionSort sortBy = null;
+        if (filter.getSortBy() != null) {
+            try {
+                sortBy = ConnectionSort.valueOf(filter.getSortBy());
+            } catch (IllegalArgumentException e) {
+                log.info("Invalid sort order for filter: " + filter.getSortBy());
+            }
+        }
         return ConnectionFilter.builder()
                 .numFilters(numFilters)
                 .connectionIds(connectionIds)
@@ -156,6 +167,10 @@ public class ReservationController {
                 .endDates(endDates)
                 .minBandwidths(minBandwidths)
                 .maxBandwidths(maxBandwidths)
+                .sortBy(sortBy)
+                .descending(filter.getDescending())
+                .pageSize(filter.getPageSize())
+                .cursor(filter.getCursor())
                 .build();
     }
 
@@ -32,4 +32,12 @@ public class Filter {
     private Set<String> startDates;
 
     private Set<String> endDates;
+
+    private String sortBy;
+
+    private Boolean descending;
+
+    private Integer pageSize;
+
+    private String cursor;
 }
@@ -1,8 +1,8 @@
 package net.es.oscars.webui.ipc;
 
 import lombok.extern.slf4j.Slf4j;
-import net.es.oscars.dto.resv.Connection;
 import net.es.oscars.dto.resv.ConnectionFilter;
+import net.es.oscars.dto.resv.ConnectionPage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
@@ -11,8 +11,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
-import java.util.Set;
-
 
 @Slf4j
 @Component
@@ -28,7 +26,7 @@ public class ConnectionProvider {
 
     private final String oscarsUrl = "https://localhost:8000";
 
-    public Set<Connection> filtered(ConnectionFilter filter)
+    public ConnectionPage filtered(ConnectionFilter filter)
     {
         log.info("Listing filtered connections");
 
@@ -37,10 +35,10 @@ public class ConnectionProvider {
         log.info("sending filter " + filter.toString());
 
         HttpEntity<ConnectionFilter> requestEntity = new HttpEntity<>(filter);
-        ParameterizedTypeReference<Set<Connection>> typeRef = new ParameterizedTypeReference<Set<Connection>>() {};
-        ResponseEntity<Set<Connection>> response = restTemplate.exchange(restPath, HttpMethod.POST, requestEntity, typeRef);
+        ParameterizedTypeReference<ConnectionPage> typeRef = new ParameterizedTypeReference<ConnectionPage>() {};
+        ResponseEntity<ConnectionPage> response = restTemplate.exchange(restPath, HttpMethod.POST, requestEntity, typeRef);
 
-        Set<Connection> result = response.getBody();
+        ConnectionPage result = response.getBody();
 
         return result;
     }
@@ -19,6 +19,7 @@ let userNameFilter = "User Name";
 let startFilter = "Start After Date";
 let endFilter = "End Before Date";
 let idFilter = "Connection ID";
+let pageIncrement = 100;
 
 class ReservationListApp extends React.Component{
 
@@ -36,7 +37,9 @@ class ReservationListApp extends React.Component{
                 "BUILDING_MANUAL", "BUILDING_AUTO", "BUILT_MANUAL", "BUILT_AUTO", "DISMANTLING_MANUAL", "DISMANTLING_AUTO",
                 "FAILED"],
             operStates: ["ADMIN_DOWN_OPER_DOWN", "ADMIN_DOWN_OPER_UP", "ADMIN_UP_OPER_UP", "ADMIN_UP_OPER_DOWN"],
-            updateHeatMap: false
+            updateHeatMap: false,
+            pageSize: pageIncrement,
+            hasMore: false
         };
         this.setState = this.setState.bind(this);
         this.componentDidMount = this.componentDidMount.bind(this);
@@ -51,6 +54,7 @@ class ReservationListApp extends React.Component{
         this.handleStateDropdownSelect = this.handleStateDropdownSelect.bind(this);
         this.updateReservationList = this.updateReservationList.bind(this);
         this.sortNewestSubmissionFirst = this.sortNewestSubmissionFirst.bind(this);
+        this.handleShowMore = this.handleShowMore.bind(this);
     }
 
     componentDidMount(){
@@ -91,7 +95,10 @@ class ReservationListApp extends React.Component{
             endDates: [],
             resvStates: [],
             provStates: [],
-            operStates: []
+            operStates: [],
+            sortBy: "SUBMITTED",
+            descending: true,
+            pageSize: this.state.pageSize
         };
         for(let i = 0; i < filters.length; i++){
             let filter = filters[i];
@@ -129,13 +136,15 @@ class ReservationListApp extends React.Component{
     }
 
     evaluateReservationList(response){
-        let resvs = JSON.parse(response);
+        let page = JSON.parse(response);
+        let resvs = page.connections;
+        let hasMore = page.nextCursor != null;
         if(connHelper.listHasChanged(this.state.reservations, resvs)){
             this.sortNewestSubmissionFirst(resvs);
-            this.setState({reservations: resvs, updateHeatMap: true});
+            this.setState({reservations: resvs, hasMore: hasMore, updateHeatMap: true});
         }
         else{
-            this.setState({updateHeatMap: false})
+            this.setState({hasMore: hasMore, updateHeatMap: false})
         }
     }
 
@@ -147,6 +156,10 @@ class ReservationListApp extends React.Component{
         });
     }
 
+    handleShowMore(){
+        this.setState({pageSize: this.state.pageSize + pageIncrement, updateHeatMap: false}, this.updateReservationList);
+    }
+
     handleFilterTypeSelect(type){
         this.setState({newFilter: {id: this.state.newFilter.id, text: "", type: type.value}, updateHeatMap: false});
     }
@@ -202,6 +215,9 @@ class ReservationListApp extends React.Component{
                 <ReservationHeatMap updateHeatMap={this.state.updateHeatMap}/>
                 <p style={{marginLeft: '40px', color: '#2c5699'}}> Select a connection to view additional reservation details.</p>
                 <ReservationList reservations={this.state.reservations} alwaysExpanded={false}/>
+                {this.state.hasMore ?
+                    <input type="button" className="btn btn-default" style={{marginLeft: '40px'}}
+                           value="Show more" onClick={this.handleShowMore}/> : null}
             </div>
         );
     }
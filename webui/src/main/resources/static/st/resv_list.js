@@ -387,6 +387,25 @@ function getNewConnections(oldConnectionList, newConnectionList)
     return newConnections;
 }
 
+/* Requests the connection list one page at a time, then hands all of the connections to the callback */
+function loadConnectionPages(cursor, connections, callback)
+{
+    var url = "/resv/list/allconnections";
+    if(cursor !== null)
+        url += "?cursor=" + encodeURIComponent(cursor);
+
+    loadJSON(url, function (response)
+    {
+        var page = JSON.parse(response);
+        connections = connections.concat(page.connections);
+
+        if(page.nextCursor === null || page.nextCursor === undefined)
+            callback(connections);
+        else
+            loadConnectionPages(page.nextCursor, connections, callback);
+    });
+}
+
 /* Populates and Refreshes list of connections in the DOM table -- Refreshes automatically */
 function initializeConnectionList()
 {
@@ -396,9 +415,9 @@ function initializeConnectionList()
     filteredConnections = [];
     filteredConnectionIDs = [];
 
-    loadJSON("/resv/list/allconnections", function (response)
+    loadConnectionPages(null, [], function (connections)
     {
-        filteredConnections = JSON.parse(response);
+        filteredConnections = connections;
 
         filteredConnections.forEach(function(conn){ filteredConnectionIDs.push(conn.connectionId); });
 